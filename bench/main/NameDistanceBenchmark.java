@@ -0,0 +1,164 @@
+package main;
+
+import core.AbstractRunner;
+import java.util.Random;
+import org.apache.commons.cli.BasicParser;
+import org.apache.commons.cli.Options;
+import org.apache.commons.lang3.StringUtils;
+import util.CLIUtils;
+import util.MiscUtils;
+import util.govtrack.GTICPSRMatcher;
+import util.govtrack.GTNameDistance;
+
+/**
+ * Microbenchmark of the name comparison used to match VoteView legislators,
+ * comparing GTNameDistance with the full edit distance of StringUtils on
+ * random pairs of names. Most pairs are unrelated names, the others are
+ * misspellings of the same name. Both implementations must agree on every
+ * pair. It is compiled by the bench target of build.xml and is not part of
+ * the jar.
+ *
+ * @author vietan
+ */
+public class NameDistanceBenchmark extends AbstractRunner {
+
+    private static final String LETTERS = "abcdefghijklmnopqrstuvwxyz";
+
+    public static void main(String[] args) {
+        try {
+            // create the command line parser
+            parser = new BasicParser();
+
+            // create the Options
+            options = new Options();
+
+            addOption("pairs", "Number of pairs of names (default: 100000)");
+            addOption("rounds", "Number of timed rounds (default: 10)");
+            addOption("seed", "Random seed (default: 1)");
+            addOption("max-length", "Maximum length of a name (default: 12)");
+
+            options.addOption("help", false, "Help");
+
+            cmd = parser.parse(options, args);
+            if (cmd.hasOption("help")) {
+                CLIUtils.printHelp("java -cp 'build/bench-classes:build/classes:lib/*' "
+                        + "main.NameDistanceBenchmark -help", options);
+                return;
+            }
+
+            int numPairs = CLIUtils.getIntegerArgument(cmd, "pairs", 100000);
+            int numRounds = CLIUtils.getIntegerArgument(cmd, "rounds", 10);
+            int seed = CLIUtils.getIntegerArgument(cmd, "seed", 1);
+            int maxLength = CLIUtils.getIntegerArgument(cmd, "max-length", 12);
+            run(numPairs, numRounds, seed, maxLength);
+        } catch (Exception e) {
+            e.printStackTrace();
+            throw new RuntimeException();
+        }
+    }
+
+    private static void run(int numPairs, int numRounds, int seed, int maxLength) {
+        Random rand = new Random(seed);
+        String[] names1 = new String[numPairs];
+        String[] names2 = new String[numPairs];
+        for (int ii = 0; ii < numPairs; ii++) {
+            names1[ii] = getRandomName(rand, maxLength);
+            if (rand.nextInt(4) == 0) {
+                names2[ii] = misspell(rand, names1[ii]);
+            } else {
+                names2[ii] = getRandomName(rand, maxLength);
+            }
+        }
+
+        // check that both implementations agree
+        int numExceeded = 0;
+        for (int ii = 0; ii < numPairs; ii++) {
+            boolean expected = isTooDifferent(names1[ii], names2[ii]);
+            boolean actual = GTNameDistance.exceeds(names1[ii], names2[ii],
+                    GTICPSRMatcher.MAX_NAME_DISTANCE);
+            if (expected != actual) {
+                throw new RuntimeException("Mismatch on " + names1[ii]
+                        + " vs. " + names2[ii] + ". Expected: " + expected
+                        + ". Actual: " + actual);
+            }
+            if (actual) {
+                numExceeded++;
+            }
+        }
+        System.out.println("--- " + numPairs + " pairs agree. # too different: " + numExceeded);
+
+        long fullTime = 0;
+        long boundedTime = 0;
+        int checksum = 0;
+        for (int round = 0; round < numRounds; round++) {
+            long startTime = System.nanoTime();
+            for (int ii = 0; ii < numPairs; ii++) {
+                if (isTooDifferent(names1[ii], names2[ii])) {
+                    checksum++;
+                }
+            }
+            fullTime += System.nanoTime() - startTime;
+
+            startTime = System.nanoTime();
+            for (int ii = 0; ii < numPairs; ii++) {
+                if (GTNameDistance.exceeds(names1[ii], names2[ii],
+                        GTICPSRMatcher.MAX_NAME_DISTANCE)) {
+                    checksum--;
+                }
+            }
+            boundedTime += System.nanoTime() - startTime;
+        }
+        if (checksum != 0) {
+            throw new RuntimeException("Checksum mismatch: " + checksum);
+        }
+
+        long numComparisons = (long) numPairs * numRounds;
+        System.out.println("--- StringUtils.getLevenshteinDistance: "
+                + MiscUtils.formatDouble(fullTime / 1000000.0) + " ms ("
+                + MiscUtils.formatDouble((double) fullTime / numComparisons) + " ns/pair)");
+        System.out.println("--- GTNameDistance.exceeds: "
+                + MiscUtils.formatDouble(boundedTime / 1000000.0) + " ms ("
+                + MiscUtils.formatDouble((double) boundedTime / numComparisons) + " ns/pair)");
+        System.out.println("--- Speedup: " + MiscUtils.formatDouble((double) fullTime / boundedTime));
+    }
+
+    /**
+     * The comparison previously used by the matcher. StringUtils is kept as
+     * the reference since commons-text is not a dependency.
+     */
+    @SuppressWarnings("deprecation")
+    private static boolean isTooDifferent(String str1, String str2) {
+        int dist = StringUtils.getLevenshteinDistance(str1, str2);
+        int maxLength = Math.max(str1.length(), str2.length());
+        return (double) dist / maxLength > GTICPSRMatcher.MAX_NAME_DISTANCE;
+    }
+
+    private static String getRandomName(Random rand, int maxLength) {
+        int length = 2 + rand.nextInt(Math.max(1, maxLength - 1));
+        StringBuilder str = new StringBuilder();
+        for (int ii = 0; ii < length; ii++) {
+            str.append(LETTERS.charAt(rand.nextInt(LETTERS.length())));
+        }
+        return str.toString();
+    }
+
+    private static String misspell(Random rand, String name) {
+        StringBuilder str = new StringBuilder(name);
+        int numEdits = rand.nextInt(4);
+        for (int ii = 0; ii < numEdits && str.length() > 1; ii++) {
+            int pos = rand.nextInt(str.length());
+            char c = LETTERS.charAt(rand.nextInt(LETTERS.length()));
+            switch (rand.nextInt(3)) {
+                case 0:
+                    str.setCharAt(pos, c);
+                    break;
+                case 1:
+                    str.insert(pos, c);
+                    break;
+                default:
+                    str.deleteCharAt(pos);
+            }
+        }
+        return str.toString();
+    }
+}
@@ -2,6 +2,7 @@ package main;
 
 import core.AbstractRunner;
 import java.io.File;
+import java.io.IOException;
 import java.net.URL;
 import org.apache.commons.cli.BasicParser;
 import org.apache.commons.cli.Options;
@@ -10,7 +11,9 @@ import util.CLIUtils;
 import util.IOUtils;
 import util.freedomworks.FWDownloader;
 import util.govtrack.GTDownloader;
+import util.govtrack.GTMetrics;
 import util.govtrack.GTProcessor;
+import util.govtrack.GTTextNormalizer;
 
 /**
  *
@@ -18,6 +21,9 @@ import util.govtrack.GTProcessor;
  */
 public class Downloader extends AbstractRunner {
 
+    // metrics of the run, written at the end of the run
+    private static final GTMetrics metrics = new GTMetrics();
+
     public static void main(String[] args) {
         try {
             // create the command line parser
@@ -31,7 +37,17 @@ public class Downloader extends AbstractRunner {
             addOption("type", "Download type");
             addOption("year", "Year");
             addOption("congress-type", "Congress type: house or senate");
-
+            addOption("url", "Base URL of the GovTrack data (default: "
+                    + GTDownloader.GOVTRACK_URL + ")");
+            addOption("connections", "Number of concurrent connections");
+            addOption("connections-per-host", "Number of concurrent connections to the same host");
+            addOption("metrics-folder", "Folder to write the metrics of the run "
+                    + "into (default: download folder)");
+            addOption("html-normalizer-file", "File of rules (see GTTextNormalizer.load) "
+                    + "removing HTML tags from bill texts");
+
+            options.addOption("archive", false, "Download into <congress>.zip in the "
+                    + "download folder instead of into the congress folder");
             options.addOption("help", false, "Help");
 
             cmd = parser.parse(options, args);
@@ -40,20 +56,27 @@ public class Downloader extends AbstractRunner {
                 return;
             }
 
+            long startTime = System.currentTimeMillis();
             String type = CLIUtils.getStringArgument(cmd, "type", "fw-score");
             
-            if (type.equals("all")) {
-                download();
-            } else if (type.equals("external")) {
-                downloadExternalResources();
-            } else if (type.equals("bill-text")) {
-                downloadBillTexts();
-            } else if (type.equals("bill-html")) {
-                downloadBillTextInHtmls();
-            } else if (type.equals("fw-score")) {
-                downloadFreedomWorksScores();
-            } else {
-                throw new RuntimeException("Download type " + type + " is not supported");
+            try {
+                if (type.equals("all")) {
+                    download();
+                } else if (type.equals("sync")) {
+                    sync();
+                } else if (type.equals("external")) {
+                    downloadExternalResources();
+                } else if (type.equals("bill-text")) {
+                    downloadBillTexts();
+                } else if (type.equals("bill-html")) {
+                    downloadBillTextInHtmls();
+                } else if (type.equals("fw-score")) {
+                    downloadFreedomWorksScores();
+                } else {
+                    throw new RuntimeException("Download type " + type + " is not supported");
+                }
+            } finally {
+                writeMetrics(startTime);
             }
         } catch (Exception e) {
             e.printStackTrace();
@@ -81,11 +104,13 @@ public class Downloader extends AbstractRunner {
         int congressNo = CLIUtils.getIntegerArgument(cmd, "congress", 112);
 
         GTProcessor proc = new GTProcessor(folder, congressNo);
+        proc.setMetrics(metrics);
         proc.processDebates();
         proc.processBills();
 
-        GTDownloader gtDownloader = new GTDownloader(folder, congressNo);
+        GTDownloader gtDownloader = createGTDownloader(folder, congressNo);
         gtDownloader.downloadBillHtmls(proc.getBills());
+        gtDownloader.closeArchive();
     }
 
     private static void downloadBillTexts() throws Exception {
@@ -94,11 +119,13 @@ public class Downloader extends AbstractRunner {
         int congressNo = CLIUtils.getIntegerArgument(cmd, "congress", 112);
 
         GTProcessor proc = new GTProcessor(folder, congressNo);
+        proc.setMetrics(metrics);
         proc.processDebates();
         proc.processBills();
 
-        GTDownloader gtDownloader = new GTDownloader(folder, congressNo);
+        GTDownloader gtDownloader = createGTDownloader(folder, congressNo);
         gtDownloader.downloadBillTexts(proc.getBills());
+        gtDownloader.closeArchive();
     }
 
     private static void download() throws Exception {
@@ -107,7 +134,7 @@ public class Downloader extends AbstractRunner {
         String folder = cmd.getOptionValue("folder");
         int congressNo = CLIUtils.getIntegerArgument(cmd, "congress", 112);
 
-        GTDownloader gtDownloader = new GTDownloader(folder, congressNo);
+        GTDownloader gtDownloader = createGTDownloader(folder, congressNo);
         gtDownloader.downloadPeopleXML();
         gtDownloader.downloadCR();
 
@@ -120,6 +147,71 @@ public class Downloader extends AbstractRunner {
 //        gtDownloader.downloadIndexCrBill(); // no longer valid
 
         gtDownloader.downloadBills();
+        gtDownloader.closeArchive();
+    }
+
+    /**
+     * Download only files that are new or have changed since the last sync.
+     */
+    private static void sync() throws Exception {
+        System.out.println("Start syncing ...");
+
+        String folder = cmd.getOptionValue("folder");
+        int congressNo = CLIUtils.getIntegerArgument(cmd, "congress", 112);
+
+        GTDownloader gtDownloader = createGTDownloader(folder, congressNo);
+        gtDownloader.downloadPeopleXML();
+        gtDownloader.syncCR();
+        gtDownloader.syncRolls();
+        gtDownloader.syncBills();
+        gtDownloader.closeArchive();
+    }
+
+    private static GTDownloader createGTDownloader(String folder, int congressNo)
+            throws Exception {
+        String url = CLIUtils.getStringArgument(cmd, "url", GTDownloader.GOVTRACK_URL);
+        GTDownloader gtDownloader = new GTDownloader(folder, congressNo, url);
+        gtDownloader.setMetrics(metrics);
+        int maxConnectionsPerHost = CLIUtils.getIntegerArgument(cmd, "connections-per-host", 4);
+        gtDownloader.setConnections(CLIUtils.getIntegerArgument(cmd, "connections", 8),
+                maxConnectionsPerHost);
+        // keep enough idle connections alive for each host to be reused. This
+        // is read by HttpURLConnection when the first connection is made.
+        if (System.getProperty("http.maxConnections") == null) {
+            System.setProperty("http.maxConnections",
+                    Integer.toString(Math.max(1, maxConnectionsPerHost)));
+        }
+        if (cmd.hasOption("html-normalizer-file")) {
+            gtDownloader.setHtmlTagRemover(GTTextNormalizer.load(
+                    new File(cmd.getOptionValue("html-normalizer-file"))));
+        }
+        if (cmd.hasOption("archive")) {
+            gtDownloader.openArchive();
+        }
+        return gtDownloader;
+    }
+
+    /**
+     * Write the metrics of the run into the metrics folder, which is the
+     * download folder by default. This is done whether or not the run
+     * succeeds, so a failure to write the metrics is only reported.
+     *
+     * @param startTime Time the run started at
+     */
+    private static void writeMetrics(long startTime) {
+        String metricsFolder = CLIUtils.getStringArgument(cmd, "metrics-folder",
+                cmd.getOptionValue("folder"));
+        if (metricsFolder == null) {
+            return;
+        }
+        metrics.gauge("gt_run_wall_seconds", "Wall time of the run in seconds")
+                .set((System.currentTimeMillis() - startTime) / 1000.0);
+        try {
+            metrics.write(new File(metricsFolder));
+        } catch (IOException e) {
+            System.out.println("--- --- Failed to write metrics to " + metricsFolder
+                    + ". " + e.getMessage());
+        }
     }
 
     private static void downloadExternalResources() throws Exception {
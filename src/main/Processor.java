@@ -3,6 +3,7 @@ package main;
 import core.AbstractRunner;
 import java.io.BufferedWriter;
 import java.io.File;
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.HashMap;
 import org.apache.commons.cli.BasicParser;
@@ -11,10 +12,17 @@ import util.CLIUtils;
 import util.IOUtils;
 import util.govtrack.GTBill;
 import util.govtrack.GTDebate;
+import util.govtrack.GTICPSRCache;
 import util.govtrack.GTLegislator;
+import util.govtrack.GTMetrics;
 import util.govtrack.GTProcessor;
 import util.govtrack.GTRoll;
+import util.govtrack.GTSnapshot;
+import util.govtrack.GTTextNormalizer;
 import util.govtrack.GTTurn;
+import util.govtrack.GTWriterPool;
+import util.govtrack.StageScheduler;
+import util.govtrack.VoteMatrix;
 
 /**
  *
@@ -31,6 +39,13 @@ public class Processor extends AbstractRunner {
     public static final String SENATE_REPUBLICAN_FILE = "112th-Senate-Republicans.txt";
     public static final String DEBATE_FOLDER = "debates"; // each turn as a document
     public static final String BILL_FOLDER = "bills"; // each bill summary as a document
+    // default removal of boilerplate from bill summaries
+    public static final GTTextNormalizer SUMMARY_NORMALIZER = new GTTextNormalizer.Builder()
+            .delete("(This measure has not been amended since "
+                    + "it was introduced. The summary of that version is repeated here.)")
+            .build();
+    // metrics of the run, written at the end of the run
+    protected static final GTMetrics metrics = new GTMetrics();
 
     public static String getHelpString() {
         return "java -cp 'dist/gtpounder.jar' " + Processor.class.getName() + " -help";
@@ -51,9 +66,23 @@ public class Processor extends AbstractRunner {
             addOption("format-folder", "Format folder");
             addOption("tea-party-file", "Tea party annotation file");
             addOption("mode", "Mode of processing");
+            addOption("threads", "Number of threads used to parse raw files");
+            addOption("cache-folder", "Folder to cache parsed raw files. Only new "
+                    + "or changed raw files are parsed when rerun");
 
             options.addOption("help", false, "Help");
             options.addOption("v", false, "Verbose");
+            options.addOption("streaming", false, "Parse debates using a streaming (StAX) parser");
+            addOption("write-queue-size", "Maximum number of output files waiting "
+                    + "to be written");
+            options.addOption("packed", false, "Output texts of bills and turns "
+                    + "into a single file with an index instead of one file each");
+            addOption("metrics-folder", "Folder to write the metrics of the run "
+                    + "into (default: processed folder)");
+            addOption("turn-normalizer-file", "File of rules (see GTTextNormalizer.load) "
+                    + "normalizing the texts of turns");
+            addOption("summary-normalizer-file", "File of rules (see "
+                    + "GTTextNormalizer.load) removing boilerplate from bill summaries");
 
             cmd = parser.parse(options, args);
             if (cmd.hasOption("help")) {
@@ -61,21 +90,26 @@ public class Processor extends AbstractRunner {
                 return;
             }
 
+            long startTime = System.currentTimeMillis();
             String mode = CLIUtils.getStringArgument(cmd, "mode", "process");
             verbose = cmd.hasOption("v");
 
-            if (mode.equals("process")) {
-                process();
-            } else if (mode.equals("format-debate-turns")) {
-                formatDebateTurns();
-            } else if (mode.equals("format-bill-summaries")) {
-                formatBillSummaries();
-            } else if (mode.equals("extract-republicans")) {
-                extractRepublicans();
-            } else if (mode.equals("format-debate-turns-tea-party")) {
-                formatDebateTurnsWithTeaPartyAnnotations();
-            } else {
-                throw new RuntimeException("Processing mode " + mode + " is not supported.");
+            try {
+                if (mode.equals("process")) {
+                    process();
+                } else if (mode.equals("format-debate-turns")) {
+                    formatDebateTurns();
+                } else if (mode.equals("format-bill-summaries")) {
+                    formatBillSummaries();
+                } else if (mode.equals("extract-republicans")) {
+                    extractRepublicans();
+                } else if (mode.equals("format-debate-turns-tea-party")) {
+                    formatDebateTurnsWithTeaPartyAnnotations();
+                } else {
+                    throw new RuntimeException("Processing mode " + mode + " is not supported.");
+                }
+            } finally {
+                writeMetrics(startTime);
             }
         } catch (Exception e) {
             e.printStackTrace();
@@ -88,58 +122,327 @@ public class Processor extends AbstractRunner {
             System.out.println("Processing ...");
         }
 
-        String folder = cmd.getOptionValue("folder");
-        String processedFolder = cmd.getOptionValue("processed-folder");
+        final String folder = cmd.getOptionValue("folder");
+        final String processedFolder = cmd.getOptionValue("processed-folder");
         String addinfoFolder = cmd.getOptionValue("addinfo-folder");
-        int congressNo = CLIUtils.getIntegerArgument(cmd, "congress", 109); // default
+        final int congressNo = CLIUtils.getIntegerArgument(cmd, "congress", 109); // default
         IOUtils.createFolder(processedFolder);
 
-        GTProcessor proc = new GTProcessor(folder, congressNo);
+        final GTProcessor proc = new GTProcessor(folder, congressNo);
+        proc.setMetrics(metrics);
+        proc.setStreamingDebates(cmd.hasOption("streaming"));
+        int numThreads = CLIUtils.getIntegerArgument(cmd, "threads", 1);
+        proc.setNumThreads(numThreads);
+        proc.setCacheFolder(cmd.getOptionValue("cache-folder"));
+        proc.setPackedOutput(cmd.hasOption("packed"));
+        if (cmd.hasOption("turn-normalizer-file")) {
+            proc.setTurnTextNormalizer(GTTextNormalizer.load(
+                    new File(cmd.getOptionValue("turn-normalizer-file"))));
+        }
+        final GTWriterPool writerPool = createWriterPool();
+        proc.setWriterPool(writerPool);
 
-        // load raw data from GovTrack
-        proc.processDebates();
-        proc.processBills();
-        proc.processRolls();
-        proc.processLegislators();
+        // additional information from external sources
+        final File senFile = new File(addinfoFolder, SENATOR_FILE);
+        final File repFile = new File(addinfoFolder, REPRESENTATIVE_FILE);
+        final File icpsrCacheFile = new File(addinfoFolder, GTICPSRCache.CACHE_FILE);
+        final File nominateFile = new File(addinfoFolder, NOMINATE_SCORE_FILE);
+        final File policyAgendaCodebookFile = new File(addinfoFolder, POLICY_AGENDA_CODEBOOK_FILE);
+        final File congBillsProjTopicFile = new File(addinfoFolder, CONGRESSIONAL_BILL_PROJECT_TOPIC_FILE);
+
+        // output
+        final File legislatorFile = new File(processedFolder, "legislators.txt");
+        final File debateFolder = new File(processedFolder, DEBATE_FOLDER);
+        final File billFolder = new File(processedFolder, BILL_FOLDER);
+
+        final ArrayList<GTDebate> selectedDebates = new ArrayList<GTDebate>();
 
-        // load additional information from external sources
-        File senFile = new File(addinfoFolder, SENATOR_FILE);
-        File repFile = new File(addinfoFolder, REPRESENTATIVE_FILE);
-        File nominateFile = new File(addinfoFolder, NOMINATE_SCORE_FILE);
+        // each stage starts as soon as the stages it depends on are done
+        StageScheduler scheduler = new StageScheduler(numThreads);
+        scheduler.setMetrics(metrics);
+
+        // load raw data from GovTrack
+        scheduler.addStage("debates", new StageScheduler.Stage() {
+            @Override
+            public void run() throws Exception {
+                proc.processDebates();
+            }
+        });
+        scheduler.addStage("bills", new StageScheduler.Stage() {
+            @Override
+            public void run() throws Exception {
+                proc.processBills();
+            }
+        }, "debates");
+        scheduler.addStage("rolls", new StageScheduler.Stage() {
+            @Override
+            public void run() throws Exception {
+                proc.processRolls();
+            }
+        }, "bills");
+        scheduler.addStage("legislators", new StageScheduler.Stage() {
+            @Override
+            public void run() throws Exception {
+                proc.parseLegislators();
+            }
+        });
+        scheduler.addStage("legislator-debates", new StageScheduler.Stage() {
+            @Override
+            public void run() throws Exception {
+                proc.linkLegislatorDebates();
+            }
+        }, "legislators", "debates");
 
         // - entity resolution for legislators with missing ICPSR IDs
-        proc.getMissingICPSRIDs(repFile.getAbsolutePath(), senFile.getAbsolutePath());
+        scheduler.addStage("icpsr", new StageScheduler.Stage() {
+            @Override
+            public void run() throws Exception {
+                proc.getMissingICPSRIDs(repFile.getAbsolutePath(), senFile.getAbsolutePath(),
+                        icpsrCacheFile);
+            }
+        }, "legislators");
 
         // - load pre-computed NOMINATE scores for legislators
-        proc.getNOMINATEScores(nominateFile.getAbsolutePath());
+        scheduler.addStage("nominate", new StageScheduler.Stage() {
+            @Override
+            public void run() throws Exception {
+                proc.getNOMINATEScores(nominateFile.getAbsolutePath());
+            }
+        }, "icpsr");
 
         // - load Policy Agenda codebook
-        File policyAgendaCodebookFile = new File(addinfoFolder, POLICY_AGENDA_CODEBOOK_FILE);
-        proc.loadPolicyAgendaCodebook(policyAgendaCodebookFile.getAbsolutePath());
+        scheduler.addStage("codebook", new StageScheduler.Stage() {
+            @Override
+            public void run() throws Exception {
+                proc.loadPolicyAgendaCodebook(policyAgendaCodebookFile.getAbsolutePath());
+            }
+        });
 
         // - load topics labeled by the Congressional Bills project
-        File congBillsProjTopicFile = new File(addinfoFolder, CONGRESSIONAL_BILL_PROJECT_TOPIC_FILE);
-        proc.loadCongressinalBillsProjectTopicLabels(congBillsProjTopicFile.getAbsolutePath());
+        scheduler.addStage("bill-topics", new StageScheduler.Stage() {
+            @Override
+            public void run() throws Exception {
+                proc.loadCongressinalBillsProjectTopicLabels(congBillsProjTopicFile.getAbsolutePath());
+            }
+        }, "bills");
 
         // select a subset of 'interesting' debates, following Thomas et. at. (EMNLP 06)
-        ArrayList<GTDebate> selectedDebates = proc.selectDebates();
-
-        // output
-        File debateFolder = new File(processedFolder, DEBATE_FOLDER);
-        File billFolder = new File(processedFolder, BILL_FOLDER);
+        scheduler.addStage("select-debates", new StageScheduler.Stage() {
+            @Override
+            public void run() throws Exception {
+                selectedDebates.addAll(proc.selectDebates());
+            }
+        }, "rolls");
 
         // - output legislators
-        proc.outputLegislators(new File(processedFolder, "legislators.txt").getAbsolutePath());
+        scheduler.addStage("output-legislators", new StageScheduler.Stage() {
+            @Override
+            public void run() throws Exception {
+                proc.outputLegislators(legislatorFile.getAbsolutePath());
+            }
+        }, "nominate", "legislator-debates");
 
         // - output debates (texts and info)
-        proc.outputSelectedDebateTurns(debateFolder.getAbsolutePath(), selectedDebates);
+        scheduler.addStage("output-debates", new StageScheduler.Stage() {
+            @Override
+            public void run() throws Exception {
+                proc.outputSelectedDebateTurns(debateFolder.getAbsolutePath(), selectedDebates);
+            }
+        }, "select-debates");
 
         // - output bills (info, summary and subjects)
-        IOUtils.createFolder(billFolder);
-        proc.outputBills(new File(billFolder, "info.txt"));
-        proc.outputBillSubjects(new File(billFolder, "subjects.txt"));
-        proc.outputBillTopics(new File(billFolder, "topics.txt"));
-        proc.outputBillSummaries(new File(billFolder, "summaries"));
+        scheduler.addStage("output-bills", new StageScheduler.Stage() {
+            @Override
+            public void run() throws Exception {
+                IOUtils.createFolder(billFolder);
+                proc.outputBills(new File(billFolder, "info.txt"));
+                proc.outputBillSubjects(new File(billFolder, "subjects.txt"));
+                proc.outputBillTopics(new File(billFolder, "topics.txt"));
+                proc.outputBillSummaries(new File(billFolder, "summaries"));
+            }
+        }, "bill-topics", "codebook");
+
+        // - snapshot of the output for the format-* modes
+        scheduler.addStage("snapshot", new StageScheduler.Stage() {
+            @Override
+            public void run() throws Exception {
+                // the snapshot must be newer than the output files
+                writerPool.flush();
+                writeSnapshot(proc, selectedDebates, processedFolder);
+            }
+        }, "output-legislators", "output-debates", "output-bills");
+
+        try {
+            scheduler.run();
+        } catch (Exception e) {
+            closeWriterPoolQuietly(writerPool);
+            throw e;
+        }
+        closeWriterPool(writerPool);
+        if (verbose) {
+            scheduler.printStageTimes();
+        }
+    }
+
+    /**
+     * Pool writing output files in the background, using as many threads as
+     * used to parse raw files.
+     */
+    protected static GTWriterPool createWriterPool() {
+        return new GTWriterPool(CLIUtils.getIntegerArgument(cmd, "threads", 1),
+                CLIUtils.getIntegerArgument(cmd, "write-queue-size",
+                        GTWriterPool.DEFAULT_QUEUE_SIZE));
+    }
+
+    /**
+     * Close a writer pool and record the number of files it has written.
+     */
+    protected static void closeWriterPool(GTWriterPool writerPool) throws Exception {
+        try {
+            writerPool.close();
+        } finally {
+            metrics.counter("gt_files_written_total", "Number of output files "
+                    + "written through writer pools").add(writerPool.getNumWritten());
+        }
+    }
+
+    /**
+     * Close a writer pool after a failure, reporting files that could not be
+     * written without hiding the exception that caused the failure.
+     */
+    protected static void closeWriterPoolQuietly(GTWriterPool writerPool) {
+        try {
+            closeWriterPool(writerPool);
+        } catch (Exception e) {
+            System.out.println("--- --- Failed to close writer pool. " + e.getMessage());
+        }
+    }
+
+    /**
+     * Write the metrics of the run into the metrics folder, which is the
+     * processed folder by default. This is done whether or not the run succeeds,
+     * so a failure to write the metrics is only reported.
+     *
+     * @param startTime Time the run started at
+     */
+    protected static void writeMetrics(long startTime) {
+        String metricsFolder = CLIUtils.getStringArgument(cmd, "metrics-folder",
+                cmd.getOptionValue("processed-folder"));
+        if (metricsFolder == null) {
+            return;
+        }
+        metrics.gauge("gt_run_wall_seconds", "Wall time of the run in seconds")
+                .set((System.currentTimeMillis() - startTime) / 1000.0);
+        try {
+            metrics.write(new File(metricsFolder));
+        } catch (IOException e) {
+            System.out.println("--- --- Failed to write metrics to " + metricsFolder
+                    + ". " + e.getMessage());
+        }
+    }
+
+    /**
+     * Write a binary snapshot of the processed legislators, debates and bills.
+     * The snapshot is built from the processed data in memory, which is the
+     * same as the data the format-* modes load from the processed files. If
+     * it cannot be built, no snapshot is written and the format-* modes load
+     * the files directly.
+     */
+    private static void writeSnapshot(GTProcessor proc, ArrayList<GTDebate> selectedDebates,
+            String processedFolder) throws Exception {
+        File snapshotFile = new File(processedFolder, GTSnapshot.SNAPSHOT_FILE);
+        snapshotFile.delete();
+        GTSnapshot snapshot;
+        try {
+            snapshot = proc.createSnapshot(selectedDebates,
+                    new File(processedFolder, DEBATE_FOLDER));
+        } catch (Exception e) {
+            System.out.println("Skipping snapshot since the processed data "
+                    + "cannot be loaded");
+            e.printStackTrace();
+            return;
+        }
+        if (verbose) {
+            System.out.println("\nOutputing snapshot to " + snapshotFile);
+        }
+        snapshot.write(snapshotFile);
+    }
+
+    /**
+     * Load the snapshot written by process(), if there is one that is not
+     * older than the files in the processed folder.
+     *
+     * @return The snapshot, or null if the processed files should be loaded
+     * instead
+     */
+    private static GTSnapshot loadSnapshot(GTProcessor proc, String processedFolder)
+            throws Exception {
+        File snapshotFile = new File(processedFolder, GTSnapshot.SNAPSHOT_FILE);
+        if (!snapshotFile.exists()) {
+            return null;
+        }
+        File[] processedFiles = {
+            new File(processedFolder, "legislators.txt"),
+            new File(processedFolder, DEBATE_FOLDER),
+            new File(processedFolder, BILL_FOLDER)};
+        for (File processedFile : processedFiles) {
+            File newerFile = findNewerFile(processedFile, snapshotFile.lastModified());
+            if (newerFile != null) {
+                System.out.println("Ignoring snapshot " + snapshotFile
+                        + " which is older than " + newerFile);
+                return null;
+            }
+        }
+
+        long startTime = System.currentTimeMillis();
+        GTSnapshot snapshot = GTSnapshot.read(snapshotFile, proc.getSymbols());
+        proc.setLegislators(snapshot.getLegislators());
+        if (verbose) {
+            System.out.println("\nLoaded snapshot " + snapshotFile
+                    + " in " + (System.currentTimeMillis() - startTime) + " ms"
+                    + ". # legislators: " + snapshot.getLegislators().size()
+                    + ". # debates: " + snapshot.getDebates().size()
+                    + ". # bills: " + snapshot.getBills().size());
+        }
+        return snapshot;
+    }
+
+    /**
+     * Find a file modified after a given time. The files of a folder are
+     * checked one by one, since the modification time of a folder does not
+     * change when a file in it is rewritten.
+     *
+     * @param file A file or a folder
+     * @param time The time
+     * @return The file or a file in the folder modified after the time, or
+     * null if there is none
+     */
+    private static File findNewerFile(File file, long time) {
+        if (file.lastModified() > time) {
+            return file;
+        }
+        File[] children = file.listFiles();
+        if (children == null) {
+            return null;
+        }
+        for (File child : children) {
+            File newerFile = findNewerFile(child, time);
+            if (newerFile != null) {
+                return newerFile;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Votes of the rolls associated with the debates, one column per roll.
+     */
+    private static VoteMatrix getVoteMatrix(GTProcessor proc, ArrayList<GTDebate> debates) {
+        ArrayList<GTRoll> rolls = new ArrayList<GTRoll>();
+        for (GTDebate debate : debates) {
+            rolls.add(debate.getAssociatedRoll());
+        }
+        return new VoteMatrix(proc.getSymbols(), rolls);
     }
 
     /**
@@ -162,22 +465,34 @@ public class Processor extends AbstractRunner {
         IOUtils.createFolder(outputFolder);
 
         GTProcessor proc = new GTProcessor(folder, congressNo);
+        proc.setMetrics(metrics);
         proc.setVerbose(verbose);
-
-        // load legislators
-        HashMap<String, GTLegislator> legislators = proc.inputLegislators(
-                new File(processedFolder, "legislators.txt").getAbsolutePath());
-
-        // load debates
-        File debateFolder = new File(processedFolder, DEBATE_FOLDER);
-        ArrayList<GTDebate> debates = proc.inputDebates(debateFolder);
+        proc.setNumThreads(CLIUtils.getIntegerArgument(cmd, "threads", 1));
+
+        HashMap<String, GTLegislator> legislators;
+        ArrayList<GTDebate> debates;
+        GTSnapshot snapshot = loadSnapshot(proc, processedFolder);
+        if (snapshot != null) {
+            legislators = snapshot.getLegislators();
+            debates = snapshot.getDebates();
+        } else {
+            // load legislators
+            legislators = proc.inputLegislators(
+                    new File(processedFolder, "legislators.txt").getAbsolutePath());
+
+            // load debates
+            File debateFolder = new File(processedFolder, DEBATE_FOLDER);
+            debates = proc.inputDebates(debateFolder);
+        }
 
         ArrayList<String> docIds = new ArrayList<String>();
         ArrayList<String> docTexts = new ArrayList<String>();
         ArrayList<Double> docResponses = new ArrayList<Double>();
         ArrayList<String> docInfo = new ArrayList<String>();
+        VoteMatrix voteMatrix = getVoteMatrix(proc, debates);
         for (GTDebate debate : debates) {
             int turnCount = -1;
+            int column = voteMatrix.getColumn(debate.getAssociatedRoll());
             for (GTTurn turn : debate.getTurns()) {
                 turnCount++;
 
@@ -205,7 +520,7 @@ public class Processor extends AbstractRunner {
                 docInfo.add(debate.getId() + "_" + turnCount + "\t"
                         + speaker + "\t"
                         + legislator.getParty() + "\t"
-                        + roll.getVote(legislator.getId()) + "\t"
+                        + voteMatrix.getVoteValue(legislator.getSymbol(), column) + "\t"
                         + legislator.getProperty(GTProcessor.NOMINATE_SCORE1) + "\t"
                         + roll.getBillId() + "\t"
                         + roll.getTitle());
@@ -220,25 +535,30 @@ public class Processor extends AbstractRunner {
         // 1. output main texts
         File textFolder = new File(outputFolder, "texts");
         IOUtils.createFolder(textFolder);
-        for (int ii = 0; ii < docIds.size(); ii++) {
-            writer = IOUtils.getBufferedWriter(new File(textFolder, docIds.get(ii) + ".txt"));
-            writer.write(docTexts.get(ii));
-            writer.close();
-        }
+        GTWriterPool writerPool = createWriterPool();
+        try {
+            for (int ii = 0; ii < docIds.size(); ii++) {
+                writerPool.write(new File(textFolder, docIds.get(ii) + ".txt"), docTexts.get(ii));
+            }
 
-        // 2. output responses
-        writer = IOUtils.getBufferedWriter(new File(outputFolder, "responses.txt"));
-        for (int ii = 0; ii < docIds.size(); ii++) {
-            writer.write(docIds.get(ii) + "\t" + docResponses.get(ii) + "\n");
-        }
-        writer.close();
+            // 2. output responses
+            writer = IOUtils.getBufferedWriter(new File(outputFolder, "responses.txt"));
+            for (int ii = 0; ii < docIds.size(); ii++) {
+                writer.write(docIds.get(ii) + "\t" + docResponses.get(ii) + "\n");
+            }
+            writer.close();
 
-        // 3. output info
-        writer = IOUtils.getBufferedWriter(new File(outputFolder, "info.txt"));
-        for (int ii = 0; ii < docIds.size(); ii++) {
-            writer.write(docIds.get(ii) + "\t" + docInfo.get(ii) + "\n");
+            // 3. output info
+            writer = IOUtils.getBufferedWriter(new File(outputFolder, "info.txt"));
+            for (int ii = 0; ii < docIds.size(); ii++) {
+                writer.write(docIds.get(ii) + "\t" + docInfo.get(ii) + "\n");
+            }
+            writer.close();
+        } catch (Exception e) {
+            closeWriterPoolQuietly(writerPool);
+            throw e;
         }
-        writer.close();
+        closeWriterPool(writerPool);
     }
 
     /**
@@ -260,14 +580,22 @@ public class Processor extends AbstractRunner {
         IOUtils.createFolder(outputFolder);
 
         GTProcessor proc = new GTProcessor(folder, congressNo);
+        proc.setMetrics(metrics);
         proc.setVerbose(verbose);
+        proc.setNumThreads(CLIUtils.getIntegerArgument(cmd, "threads", 1));
 
         // load bills
-        File billFolder = new File(processedFolder, BILL_FOLDER);
-        HashMap<String, GTBill> bills = proc.inputBills(new File(billFolder, "info.txt"));
-        proc.inputBillSubjects(new File(billFolder, "subjects.txt"), bills);
-        proc.inputBillTopics(new File(billFolder, "topics.txt"), bills);
-        proc.inputBillSummaries(new File(billFolder, "summaries"), bills);
+        HashMap<String, GTBill> bills;
+        GTSnapshot snapshot = loadSnapshot(proc, processedFolder);
+        if (snapshot != null) {
+            bills = snapshot.getBills();
+        } else {
+            File billFolder = new File(processedFolder, BILL_FOLDER);
+            bills = proc.inputBills(new File(billFolder, "info.txt"));
+            proc.inputBillSubjects(new File(billFolder, "subjects.txt"), bills);
+            proc.inputBillTopics(new File(billFolder, "topics.txt"), bills);
+            proc.inputBillSummaries(new File(billFolder, "summaries"), bills);
+        }
 
         // output
         BufferedWriter writer;
@@ -278,48 +606,56 @@ public class Processor extends AbstractRunner {
         // output bill summaries
         File textFolder = new File(outputFolder, "texts");
         IOUtils.createFolder(textFolder);
-        for (String billId : bills.keySet()) {
-            GTBill bill = bills.get(billId);
-
-            String summary = bill.getSummary();
-            int firstPunct = summary.indexOf(".");
-
-            writer = IOUtils.getBufferedWriter(new File(textFolder, billId + ".txt"));
-            writer.write(bill.getOfficialTitle()
-                    + " " + summary.substring(firstPunct + 1)
-                    .replaceAll("\\(This measure has not been amended since "
-                    + "it was introduced. The summary of that version is repeated here.\\)", "")
-                    .trim()
-                    + "\n");
-            writer.close();
+        GTTextNormalizer summaryNormalizer = SUMMARY_NORMALIZER;
+        if (cmd.hasOption("summary-normalizer-file")) {
+            summaryNormalizer = GTTextNormalizer.load(
+                    new File(cmd.getOptionValue("summary-normalizer-file")));
         }
+        GTWriterPool writerPool = createWriterPool();
+        try {
+            for (String billId : bills.keySet()) {
+                GTBill bill = bills.get(billId);
+
+                String summary = bill.getSummary();
+                int firstPunct = summary.indexOf(".");
 
-        // output bill subjects
-        writer = IOUtils.getBufferedWriter(new File(outputFolder, "subjects.txt"));
-        for (String billId : bills.keySet()) {
-            GTBill bill = bills.get(billId);
-            writer.write(bill.getId());
-            ArrayList<String> billSubjects = bill.getSubjects();
-            for (String bs : billSubjects) {
-                writer.write("\t" + bs);
+                writerPool.write(new File(textFolder, billId + ".txt"), bill.getOfficialTitle()
+                        + " " + summaryNormalizer.normalize(summary.substring(firstPunct + 1))
+                        .trim()
+                        + "\n");
             }
-            writer.write("\n");
-        }
-        writer.close();
 
-        // output bill major topics (from the Policy Agenda Codebook)
-        writer = IOUtils.getBufferedWriter(new File(outputFolder, "topics.txt"));
-        for (String billId : bills.keySet()) {
-            GTBill bill = bills.get(billId);
-            writer.write(bill.getId());
+            // output bill subjects
+            writer = IOUtils.getBufferedWriter(new File(outputFolder, "subjects.txt"));
+            for (String billId : bills.keySet()) {
+                GTBill bill = bills.get(billId);
+                writer.write(bill.getId());
+                ArrayList<String> billSubjects = bill.getSubjects();
+                for (String bs : billSubjects) {
+                    writer.write("\t" + bs);
+                }
+                writer.write("\n");
+            }
+            writer.close();
+
+            // output bill major topics (from the Policy Agenda Codebook)
+            writer = IOUtils.getBufferedWriter(new File(outputFolder, "topics.txt"));
+            for (String billId : bills.keySet()) {
+                GTBill bill = bills.get(billId);
+                writer.write(bill.getId());
 
-            String major = bill.getProperty(GTBill.MAJOR_TOPIC);
-            if (major != null && !major.equals("null") && !major.equals("99")) {
-                writer.write("\t" + bill.getProperty(GTBill.MAJOR_TOPIC));
+                String major = bill.getProperty(GTBill.MAJOR_TOPIC);
+                if (major != null && !major.equals("null") && !major.equals("99")) {
+                    writer.write("\t" + bill.getProperty(GTBill.MAJOR_TOPIC));
+                }
+                writer.write("\n");
             }
-            writer.write("\n");
+            writer.close();
+        } catch (Exception e) {
+            closeWriterPoolQuietly(writerPool);
+            throw e;
         }
-        writer.close();
+        closeWriterPool(writerPool);
     }
 
     private static void extractRepublicans() throws Exception {
@@ -328,6 +664,7 @@ public class Processor extends AbstractRunner {
         int congressNo = CLIUtils.getIntegerArgument(cmd, "congress", 109); // default
 
         GTProcessor proc = new GTProcessor(folder, congressNo);
+        proc.setMetrics(metrics);
         HashMap<String, GTLegislator> legislators = proc.inputLegislators(
                 new File(processedFolder, "legislators.txt").getAbsolutePath());
 
@@ -371,31 +708,45 @@ public class Processor extends AbstractRunner {
         IOUtils.createFolder(outputFolder);
 
         GTProcessor proc = new GTProcessor(folder, congressNo);
+        proc.setMetrics(metrics);
         proc.setVerbose(verbose);
-
-        // load legislators
-        HashMap<String, GTLegislator> legislators = proc.inputLegislators(
-                new File(processedFolder, "legislators.txt").getAbsolutePath());
+        proc.setNumThreads(CLIUtils.getIntegerArgument(cmd, "threads", 1));
+
+        HashMap<String, GTLegislator> legislators;
+        ArrayList<GTDebate> debates;
+        HashMap<String, GTBill> bills;
+        GTSnapshot snapshot = loadSnapshot(proc, processedFolder);
+        if (snapshot != null) {
+            legislators = snapshot.getLegislators();
+            debates = snapshot.getDebates();
+            bills = snapshot.getBills();
+        } else {
+            // load legislators
+            legislators = proc.inputLegislators(
+                    new File(processedFolder, "legislators.txt").getAbsolutePath());
+
+            // load debates
+            File debateFolder = new File(processedFolder, DEBATE_FOLDER);
+            debates = proc.inputDebates(debateFolder);
+
+            File billFolder = new File(processedFolder, BILL_FOLDER);
+            bills = proc.inputBills(new File(billFolder, "info.txt"));
+            proc.inputBillTopics(new File(billFolder, "topics.txt"), bills);
+        }
 
         // load Tea Party annotation for legislators
         proc.loadTeaPartyHouse(teaPartyAnnotationFile);
 
-        // load debates
-        File debateFolder = new File(processedFolder, DEBATE_FOLDER);
-        ArrayList<GTDebate> debates = proc.inputDebates(debateFolder);
-
-        File billFolder = new File(processedFolder, BILL_FOLDER);
-        HashMap<String, GTBill> bills = proc.inputBills(new File(billFolder, "info.txt"));
-        proc.inputBillTopics(new File(billFolder, "topics.txt"), bills);
-
         // output
         ArrayList<String> docIds = new ArrayList<String>();
         ArrayList<String> docTexts = new ArrayList<String>();
         ArrayList<Double> docResponses = new ArrayList<Double>();
         ArrayList<String> docPATopics = new ArrayList<String>();
         ArrayList<String> docInfo = new ArrayList<String>();
+        VoteMatrix voteMatrix = getVoteMatrix(proc, debates);
         for (GTDebate debate : debates) {
             int turnCount = -1;
+            int column = voteMatrix.getColumn(debate.getAssociatedRoll());
             for (GTTurn turn : debate.getTurns()) {
                 turnCount++;
 
@@ -437,7 +788,7 @@ public class Processor extends AbstractRunner {
                 docInfo.add(debate.getId() + "_" + turnCount + "\t"
                         + speaker + "\t"
                         + legislator.getParty() + "\t"
-                        + roll.getVote(legislator.getId()) + "\t"
+                        + voteMatrix.getVoteValue(legislator.getSymbol(), column) + "\t"
                         + legislator.getProperty(GTProcessor.NOMINATE_SCORE1) + "\t"
                         + legislator.getProperty(GTLegislator.FRESHMEN) + "\t"
                         + legislator.getProperty(GTLegislator.TP_SCORE) + "\t"
@@ -455,37 +806,42 @@ public class Processor extends AbstractRunner {
         // 1. output main texts
         File textFolder = new File(outputFolder, "texts");
         IOUtils.createFolder(textFolder);
-        for (int ii = 0; ii < docIds.size(); ii++) {
-            writer = IOUtils.getBufferedWriter(new File(textFolder, docIds.get(ii) + ".txt"));
-            writer.write(docTexts.get(ii));
-            writer.close();
-        }
+        GTWriterPool writerPool = createWriterPool();
+        try {
+            for (int ii = 0; ii < docIds.size(); ii++) {
+                writerPool.write(new File(textFolder, docIds.get(ii) + ".txt"), docTexts.get(ii));
+            }
 
-        // 2. output responses
-        writer = IOUtils.getBufferedWriter(new File(outputFolder, "responses.txt"));
-        for (int ii = 0; ii < docIds.size(); ii++) {
-            writer.write(docIds.get(ii)
-                    + "\t" + docResponses.get(ii)
-                    + "\n");
-        }
-        writer.close();
+            // 2. output responses
+            writer = IOUtils.getBufferedWriter(new File(outputFolder, "responses.txt"));
+            for (int ii = 0; ii < docIds.size(); ii++) {
+                writer.write(docIds.get(ii)
+                        + "\t" + docResponses.get(ii)
+                        + "\n");
+            }
+            writer.close();
 
-        // 3. output info
-        writer = IOUtils.getBufferedWriter(new File(outputFolder, "info.txt"));
-        for (int ii = 0; ii < docIds.size(); ii++) {
-            writer.write(docIds.get(ii) + "\t" + docInfo.get(ii) + "\n");
-        }
-        writer.close();
+            // 3. output info
+            writer = IOUtils.getBufferedWriter(new File(outputFolder, "info.txt"));
+            for (int ii = 0; ii < docIds.size(); ii++) {
+                writer.write(docIds.get(ii) + "\t" + docInfo.get(ii) + "\n");
+            }
+            writer.close();
 
-        // 4. output major topics from congressional bill project
-        writer = IOUtils.getBufferedWriter(new File(outputFolder, "topics.txt"));
-        for (int ii = 0; ii < docPATopics.size(); ii++) {
-            if (docPATopics.get(ii) != null) {
-                writer.write(docIds.get(ii) + "\t" + docPATopics.get(ii) + "\n");
-            } else {
-                writer.write(docIds.get(ii) + "\n");
+            // 4. output major topics from congressional bill project
+            writer = IOUtils.getBufferedWriter(new File(outputFolder, "topics.txt"));
+            for (int ii = 0; ii < docPATopics.size(); ii++) {
+                if (docPATopics.get(ii) != null) {
+                    writer.write(docIds.get(ii) + "\t" + docPATopics.get(ii) + "\n");
+                } else {
+                    writer.write(docIds.get(ii) + "\n");
+                }
             }
+            writer.close();
+        } catch (Exception e) {
+            closeWriterPoolQuietly(writerPool);
+            throw e;
         }
-        writer.close();
+        closeWriterPool(writerPool);
     }
 }
@@ -8,7 +8,12 @@ import util.CLIUtils;
 import util.IOUtils;
 import util.govtrack.GTBill;
 import util.govtrack.GTDebate;
+import util.govtrack.GTICPSRCache;
+import util.govtrack.GTPhraseFilter;
 import util.govtrack.GTProcessorV2;
+import util.govtrack.GTTextNormalizer;
+import util.govtrack.GTWriterPool;
+import util.govtrack.StageScheduler;
 
 /**
  * This use GTProcessorV2 instead of GTProcessor in Processor.
@@ -36,9 +41,23 @@ public class ProcessorV2 extends Processor {
             addOption("format-folder", "Format folder");
             addOption("tea-party-file", "Tea party annotation file");
             addOption("mode", "Mode of processing");
+            addOption("threads", "Number of threads used to parse raw files");
+            addOption("cache-folder", "Folder to cache parsed raw files. Only new "
+                    + "or changed raw files are parsed when rerun");
+            addOption("paragraph-filter-file", "File of phrases, one per line, of "
+                    + "paragraphs that are not included in turns");
 
             options.addOption("help", false, "Help");
             options.addOption("v", false, "Verbose");
+            options.addOption("streaming", false, "Parse debates using a streaming (StAX) parser");
+            addOption("write-queue-size", "Maximum number of output files waiting "
+                    + "to be written");
+            options.addOption("packed", false, "Output texts of bills and turns "
+                    + "into a single file with an index instead of one file each");
+            addOption("metrics-folder", "Folder to write the metrics of the run "
+                    + "into (default: processed folder)");
+            addOption("turn-normalizer-file", "File of rules (see GTTextNormalizer.load) "
+                    + "normalizing the texts of turns");
 
             cmd = parser.parse(options, args);
             if (cmd.hasOption("help")) {
@@ -46,13 +65,18 @@ public class ProcessorV2 extends Processor {
                 return;
             }
 
+            long startTime = System.currentTimeMillis();
             String mode = CLIUtils.getStringArgument(cmd, "mode", "process");
             verbose = cmd.hasOption("v");
 
-            if (mode.equals("process")) {
-                process();
-            } else {
-                throw new RuntimeException("Processing mode " + mode + " is not supported.");
+            try {
+                if (mode.equals("process")) {
+                    process();
+                } else {
+                    throw new RuntimeException("Processing mode " + mode + " is not supported.");
+                }
+            } finally {
+                writeMetrics(startTime);
             }
         } catch (Exception e) {
             e.printStackTrace();
@@ -71,50 +95,155 @@ public class ProcessorV2 extends Processor {
         int congressNo = CLIUtils.getIntegerArgument(cmd, "congress", 109); // default
         IOUtils.createFolder(processedFolder);
 
-        GTProcessorV2 proc = new GTProcessorV2(folder, congressNo);
+        final GTProcessorV2 proc = new GTProcessorV2(folder, congressNo);
         proc.setVerbose(verbose);
-        proc.processDebates();
-        proc.processBills();
-        proc.processRolls();
-        proc.processLegislators();
+        proc.setStreamingDebates(cmd.hasOption("streaming"));
+        int numThreads = CLIUtils.getIntegerArgument(cmd, "threads", 1);
+        proc.setNumThreads(numThreads);
+        proc.setCacheFolder(cmd.getOptionValue("cache-folder"));
+        proc.setPackedOutput(cmd.hasOption("packed"));
+        if (cmd.hasOption("turn-normalizer-file")) {
+            proc.setTurnTextNormalizer(GTTextNormalizer.load(
+                    new File(cmd.getOptionValue("turn-normalizer-file"))));
+        }
+        proc.setMetrics(metrics);
+        if (cmd.hasOption("paragraph-filter-file")) {
+            proc.setParagraphFilter(GTPhraseFilter.load(
+                    new File(cmd.getOptionValue("paragraph-filter-file"))));
+        }
+        GTWriterPool writerPool = createWriterPool();
+        proc.setWriterPool(writerPool);
+
+        // additional information from external sources
+        final File senFile = new File(addinfoFolder, SENATOR_FILE);
+        final File repFile = new File(addinfoFolder, REPRESENTATIVE_FILE);
+        final File icpsrCacheFile = new File(addinfoFolder, GTICPSRCache.CACHE_FILE);
+        final File nominateFile = new File(addinfoFolder, NOMINATE_SCORE_FILE);
+        final File policyAgendaCodebookFile = new File(addinfoFolder, POLICY_AGENDA_CODEBOOK_FILE);
+        final File congBillsProjTopicFile = new File(addinfoFolder, CONGRESSIONAL_BILL_PROJECT_TOPIC_FILE);
+        final File houseRepublicanFile = new File(addinfoFolder, HOUSE_REPUBLICAN_FILE);
 
-        // load additional information from external sources
-        File senFile = new File(addinfoFolder, SENATOR_FILE);
-        File repFile = new File(addinfoFolder, REPRESENTATIVE_FILE);
-        File nominateFile = new File(addinfoFolder, NOMINATE_SCORE_FILE);
+        // output
+        final File legislatorFile = new File(processedFolder, "legislators.txt");
+        final File billFolder = new File(processedFolder, BILL_FOLDER);
+        final File debateTurnFolder = new File(processedFolder, DEBATE_FOLDER);
+
+        // each stage starts as soon as the stages it depends on are done
+        StageScheduler scheduler = new StageScheduler(numThreads);
+        scheduler.setMetrics(metrics);
+
+        // load raw data from GovTrack
+        scheduler.addStage("debates", new StageScheduler.Stage() {
+            @Override
+            public void run() throws Exception {
+                proc.processDebates();
+            }
+        });
+        scheduler.addStage("bills", new StageScheduler.Stage() {
+            @Override
+            public void run() throws Exception {
+                proc.processBills();
+            }
+        }, "debates");
+        scheduler.addStage("rolls", new StageScheduler.Stage() {
+            @Override
+            public void run() throws Exception {
+                proc.processRolls();
+            }
+        }, "bills");
+        scheduler.addStage("legislators", new StageScheduler.Stage() {
+            @Override
+            public void run() throws Exception {
+                proc.parseLegislators();
+            }
+        });
+        scheduler.addStage("legislator-debates", new StageScheduler.Stage() {
+            @Override
+            public void run() throws Exception {
+                proc.linkLegislatorDebates();
+            }
+        }, "legislators", "debates");
 
         // - entity resolution for legislators with missing ICPSR IDs
-        proc.getMissingICPSRIDs(repFile.getAbsolutePath(), senFile.getAbsolutePath());
+        scheduler.addStage("icpsr", new StageScheduler.Stage() {
+            @Override
+            public void run() throws Exception {
+                proc.getMissingICPSRIDs(repFile.getAbsolutePath(), senFile.getAbsolutePath(),
+                        icpsrCacheFile);
+            }
+        }, "legislators");
 
         // - load pre-computed NOMINATE scores for legislators
-        proc.getNOMINATEScores(nominateFile.getAbsolutePath());
+        scheduler.addStage("nominate", new StageScheduler.Stage() {
+            @Override
+            public void run() throws Exception {
+                proc.getNOMINATEScores(nominateFile.getAbsolutePath());
+            }
+        }, "icpsr");
 
         // load topic annotation from the Congressional Bills project
         // - load Policy Agenda codebook
-        File policyAgendaCodebookFile = new File(addinfoFolder, POLICY_AGENDA_CODEBOOK_FILE);
-        proc.loadPolicyAgendaCodebook(policyAgendaCodebookFile.getAbsolutePath());
+        scheduler.addStage("codebook", new StageScheduler.Stage() {
+            @Override
+            public void run() throws Exception {
+                proc.loadPolicyAgendaCodebook(policyAgendaCodebookFile.getAbsolutePath());
+            }
+        });
 
         // - load topics labeled by the Congressional Bills project using topics
         // from the Policy Agenda codebook
-        File congBillsProjTopicFile = new File(addinfoFolder, CONGRESSIONAL_BILL_PROJECT_TOPIC_FILE);
-        proc.loadCongressinalBillsProjectTopicLabels(congBillsProjTopicFile.getAbsolutePath());
-
-        // load Tea Party annotation for legislators
-        File houseRepublicanFile = new File(addinfoFolder, HOUSE_REPUBLICAN_FILE);
-        proc.loadTeaPartyHouse(houseRepublicanFile.getAbsolutePath());
+        scheduler.addStage("bill-topics", new StageScheduler.Stage() {
+            @Override
+            public void run() throws Exception {
+                proc.loadCongressinalBillsProjectTopicLabels(congBillsProjTopicFile.getAbsolutePath());
+            }
+        }, "bills");
+
+        // load Tea Party annotation for legislators. This runs after the
+        // NOMINATE scores are loaded since both add legislator properties.
+        scheduler.addStage("tea-party", new StageScheduler.Stage() {
+            @Override
+            public void run() throws Exception {
+                proc.loadTeaPartyHouse(houseRepublicanFile.getAbsolutePath());
+            }
+        }, "nominate");
 
         // output
         // - output legislators
-        proc.outputLegislators(new File(processedFolder, "legislators.txt").getAbsolutePath());
+        scheduler.addStage("output-legislators", new StageScheduler.Stage() {
+            @Override
+            public void run() throws Exception {
+                proc.outputLegislators(legislatorFile.getAbsolutePath());
+            }
+        }, "tea-party", "legislator-debates");
 
         // output bills
-        ArrayList<GTBill> selectedBills = proc.selectBills();
-        File billFolder = new File(processedFolder, BILL_FOLDER);
-        proc.outputSelectedBills(billFolder, selectedBills);
+        scheduler.addStage("output-bills", new StageScheduler.Stage() {
+            @Override
+            public void run() throws Exception {
+                ArrayList<GTBill> selectedBills = proc.selectBills();
+                proc.outputSelectedBills(billFolder, selectedBills);
+            }
+        }, "bill-topics", "codebook");
 
         // output debates
-        ArrayList<GTDebate> selectedDebates = proc.selectDebates();
-        File debateTurnFolder = new File(processedFolder, DEBATE_FOLDER);
-        proc.outputSelectedDebates(debateTurnFolder, selectedDebates);
+        scheduler.addStage("output-debates", new StageScheduler.Stage() {
+            @Override
+            public void run() throws Exception {
+                ArrayList<GTDebate> selectedDebates = proc.selectDebates();
+                proc.outputSelectedDebates(debateTurnFolder, selectedDebates);
+            }
+        }, "bills");
+
+        try {
+            scheduler.run();
+        } catch (Exception e) {
+            closeWriterPoolQuietly(writerPool);
+            throw e;
+        }
+        closeWriterPool(writerPool);
+        if (verbose) {
+            scheduler.printStageTimes();
+        }
     }
 }
@@ -1,14 +1,13 @@
 package util.freedomworks;
 
-import java.io.BufferedReader;
 import java.io.File;
-import java.io.InputStreamReader;
-import java.net.HttpURLConnection;
+import java.io.IOException;
 import java.net.URL;
 import org.jsoup.Jsoup;
 import org.jsoup.nodes.Document;
 import org.jsoup.nodes.Element;
 import org.jsoup.select.Elements;
+import util.govtrack.HttpFetcher;
 
 /**
  *
@@ -20,6 +19,7 @@ public class FWDownloader {
     private final String congressType; // house or senate
     private final int year;
     private FWYear yearVotes;
+    private final HttpFetcher fetcher = new HttpFetcher();
 
     public FWDownloader(String congressType, int year) {
         this.congressType = congressType;
@@ -45,21 +45,19 @@ public class FWDownloader {
         String urlString = FREEDOMWORKS_URL + "/keyvotes/" + congressType + "/" + year + "/print";
         System.out.println("Downloading from URL: " + urlString);
         URL url = new URL(urlString);
-        if (!urlExists(url)) {
+
+        // read the html file
+        HttpFetcher.Response<String> response = fetcher.get(url, HttpFetcher.toText());
+        if (response.isNotFound()) {
             System.out.println("--- URL does not exist: " + urlString);
             return null;
         }
-
-        // read the html file
-        BufferedReader in = new BufferedReader(new InputStreamReader(url.openStream()));
-        StringBuilder rawContent = new StringBuilder();
-        String line;
-        while ((line = in.readLine()) != null) {
-            rawContent.append(line).append("\n");
+        if (!response.isOk()) {
+            throw new IOException("HTTP " + response.getStatus() + " from " + urlString);
         }
-        in.close();
+        System.out.println("--- Downloaded in " + response.getLatency() + " ms");
 
-        Document doc = Jsoup.parse(rawContent.toString().replaceAll("&nbsp;", " "));
+        Document doc = Jsoup.parse(response.getBody().replaceAll("&nbsp;", " "));
         getKeyBills(doc, yearVotes); // get keyvote descriptions
         getVotes(doc, yearVotes); // get actual votes
 
@@ -150,12 +148,4 @@ public class FWDownloader {
             }
         }
     }
-
-    private static boolean urlExists(URL url) throws Exception {
-        HttpURLConnection huc = (HttpURLConnection) url.openConnection();
-        huc.setRequestMethod("GET");  //OR  huc.setRequestMethod ("HEAD"); 
-        huc.connect();
-        int code = huc.getResponseCode();
-        return code != 404;
-    }
 }
@@ -1,13 +1,12 @@
 package util.freedomworks;
 
 import core.AbstractObject;
-import java.io.BufferedReader;
-import java.io.BufferedWriter;
 import java.io.File;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.Set;
-import util.IOUtils;
+import util.tsv.TSVReader;
+import util.tsv.TSVWriter;
 
 /**
  *
@@ -56,16 +55,16 @@ public class FWYear extends AbstractObject<Integer> {
         }
 
         this.votes = new HashMap<Integer, ArrayList<FWVote>>();
-        BufferedReader reader = IOUtils.getBufferedReader(filepath);
-        String line;
-        while ((line = reader.readLine()) != null) {
-            String[] sline = line.split("\t");
-            int lid = Integer.parseInt(sline[0]);
+        TSVReader reader = new TSVReader(filepath);
+        while (reader.next()) {
+            int lid = reader.getInt(0);
 
             ArrayList<FWVote> legVotes = new ArrayList<FWVote>();
-            for (int ii = 1; ii < sline.length; ii++) {
-                int bid = Integer.parseInt(sline[ii].split(":")[0]);
-                String vt = sline[ii].split(":")[1];
+            for (int ii = 1; ii < reader.getNumFields(); ii++) {
+                String vote = reader.getString(ii);
+                int idx = vote.indexOf(':');
+                int bid = Integer.parseInt(vote.substring(0, idx));
+                String vt = vote.substring(idx + 1);
                 FWVote v = new FWVote(legislators.get(lid), bills.get(bid),
                         this.id, FWVote.getVoteType(vt.toLowerCase()));
                 legVotes.add(v);
@@ -77,42 +76,39 @@ public class FWYear extends AbstractObject<Integer> {
 
     public void outputVotes(File filepath) throws Exception {
         System.out.println("Outputing votes to " + filepath);
-        BufferedWriter writer = IOUtils.getBufferedWriter(filepath);
+        TSVWriter writer = new TSVWriter(filepath);
         for (int lid : votes.keySet()) {
-            writer.write(Integer.toString(lid));
+            writer.field(lid);
             ArrayList<FWVote> lVotes = votes.get(lid);
             for (FWVote v : lVotes) {
                 FWLegislator leg = v.getLegislator();
                 if (leg.getId() != lid) {
                     throw new RuntimeException("ID mismatch");
                 }
-                writer.write("\t" + v.getBill().getId() + ":" + v.getType());
+                writer.field(v.getBill().getId() + ":" + v.getType());
             }
-            writer.write("\n");
+            writer.endLine();
         }
         writer.close();
     }
 
     public void inputKeyVotes(File filepath) throws Exception {
         System.out.println("Inputing key votes from " + filepath);
-        BufferedReader reader = IOUtils.getBufferedReader(filepath);
-        String line;
-        reader.readLine();
+        TSVReader reader = new TSVReader(filepath);
+        reader.next();
         this.keyRollCalls = new ArrayList<Integer>();
         this.bills = new HashMap<Integer, FWBill>();
         this.keyvotes = new HashMap<Integer, FWBill>();
-        while ((line = reader.readLine()) != null) {
-            String[] sline = line.split("\t");
-
-            int bid = Integer.parseInt(sline[0]);
-            int rollcall = Integer.parseInt(sline[1]);
+        while (reader.next()) {
+            int bid = reader.getInt(0);
+            int rollcall = reader.getInt(1);
             FWBill bill = new FWBill(bid);
-            bill.addProperty(FWBill.ROLL_CALL, sline[1]);
-            bill.addProperty(FWBill.BILL, sline[2]);
-            bill.addProperty(FWBill.FW_VOTE_PREFERRED, sline[3]);
-            bill.addProperty(FWBill.TITLE, sline[4]);
-            if (sline.length > 5) {
-                bill.addProperty(FWBill.SUMMARY, sline[5]);
+            bill.addProperty(FWBill.ROLL_CALL, reader.getString(1));
+            bill.addProperty(FWBill.BILL, reader.getString(2));
+            bill.addProperty(FWBill.FW_VOTE_PREFERRED, reader.getString(3));
+            bill.addProperty(FWBill.TITLE, reader.getString(4));
+            if (reader.getNumFields() > 5) {
+                bill.addProperty(FWBill.SUMMARY, reader.getString(5));
             } else {
                 bill.addProperty(FWBill.SUMMARY, "");
             }
@@ -125,8 +121,9 @@ public class FWYear extends AbstractObject<Integer> {
 
     public void outputKeyVotes(File filepath) throws Exception {
         System.out.println("Outputing key votes to " + filepath);
-        BufferedWriter writer = IOUtils.getBufferedWriter(filepath);
-        writer.write("ID\tRollCall\tBill\tVotePref\tTitle\tSummary\n"); // header
+        TSVWriter writer = new TSVWriter(filepath);
+        writer.field("ID").field("RollCall").field("Bill").field("VotePref")
+                .field("Title").field("Summary").endLine(); // header
         for (FWBill bill : this.bills.values()) {
             int rollcall = Integer.parseInt(bill.getProperty(FWBill.ROLL_CALL).replaceAll("Roll Call ", "").trim());
             String billStr = bill.getProperty(FWBill.BILL);
@@ -138,12 +135,13 @@ public class FWYear extends AbstractObject<Integer> {
             } else {
                 summary = "";
             }
-            writer.write(bill.getId()
-                    + "\t" + rollcall
-                    + "\t" + billStr
-                    + "\t" + votePref
-                    + "\t" + title
-                    + "\t" + summary + "\n");
+            writer.field(bill.getId())
+                    .field(rollcall)
+                    .field(billStr)
+                    .field(votePref)
+                    .field(title)
+                    .field(summary)
+                    .endLine();
         }
         writer.close();
     }
@@ -151,15 +149,12 @@ public class FWYear extends AbstractObject<Integer> {
     public void inputLegislators(File filepath) throws Exception {
         System.out.println("Loading FreedomWorks legislators from " + filepath);
 
-        BufferedReader reader = IOUtils.getBufferedReader(filepath);
-        String line;
-        String[] sline;
-        while ((line = reader.readLine()) != null) {
-            sline = line.split("\t");
-            int lid = Integer.parseInt(sline[0]);
-            String name = sline[1];
-            String role = sline[2];
-            int score = Integer.parseInt(sline[3]);
+        TSVReader reader = new TSVReader(filepath);
+        while (reader.next()) {
+            int lid = reader.getInt(0);
+            String name = reader.getString(1);
+            String role = reader.getString(2);
+            int score = reader.getInt(3);
 
             FWLegislator legislator = new FWLegislator(lid);
             legislator.addProperty(FWLegislator.NAME, name);
@@ -173,18 +168,15 @@ public class FWYear extends AbstractObject<Integer> {
     public void inputRepublicans(File filepath) throws Exception {
         System.out.println("Loading FreedomWorks Republicans from " + filepath);
 
-        BufferedReader reader = IOUtils.getBufferedReader(filepath);
-        String line;
-        String[] sline;
-        while ((line = reader.readLine()) != null) {
-            sline = line.split("\t");
-            int lid = Integer.parseInt(sline[0]);
-            String name = sline[1];
-            String role = sline[2];
+        TSVReader reader = new TSVReader(filepath);
+        while (reader.next()) {
+            int lid = reader.getInt(0);
+            String name = reader.getString(1);
+            String role = reader.getString(2);
             if (!role.endsWith("R")) {
                 continue;
             }
-            int score = Integer.parseInt(sline[3]);
+            int score = reader.getInt(3);
 
             FWLegislator legislator = new FWLegislator(lid);
             legislator.addProperty(FWLegislator.NAME, name);
@@ -197,15 +189,15 @@ public class FWYear extends AbstractObject<Integer> {
 
     public void outputLegislators(File filepath) throws Exception {
         System.out.println("Outputing legislators to " + filepath);
-        BufferedWriter writer = IOUtils.getBufferedWriter(filepath);
+        TSVWriter writer = new TSVWriter(filepath);
         for (int lid : this.getLegislatorIDs()) {
             FWLegislator legislator = this.getLegislator(lid);
             int score = this.getLegislatorScore(lid);
-            writer.write(lid
-                    + "\t" + legislator.getProperty(FWLegislator.NAME)
-                    + "\t" + legislator.getProperty(FWLegislator.ROLE)
-                    + "\t" + score
-                    + "\n");
+            writer.field(lid)
+                    .field(legislator.getProperty(FWLegislator.NAME))
+                    .field(legislator.getProperty(FWLegislator.ROLE))
+                    .field(score)
+                    .endLine();
         }
         writer.close();
     }
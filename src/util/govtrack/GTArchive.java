@@ -0,0 +1,493 @@
+package util.govtrack;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+/**
+ * Raw data of a congress stored in a single zip or tar.gz archive (e.g.,
+ * 112.zip next to the folder 112), which contains the same files as the
+ * congress folder: cr/, bills/, bills.html/, rolls/ and people.xml. The files
+ * can also be under a top-level folder (e.g., 112/cr/).
+ *
+ * Entries are streamed sequentially in the order in which they are stored,
+ * without being extracted to disk.
+ *
+ * @author vietan
+ */
+public class GTArchive {
+
+    public static final String[] EXTENSIONS = {".zip", ".tar.gz", ".tgz"};
+    private static final int BUFFER_SIZE = 1 << 16;
+    // maximum number of read entries waiting to be parsed per thread
+    private static final int QUEUED_ENTRIES_PER_THREAD = 16;
+    private final File file;
+
+    public GTArchive(File file) {
+        this.file = file;
+    }
+
+    public File getFile() {
+        return this.file;
+    }
+
+    /**
+     * Find the archive of a congress.
+     *
+     * @param folder Folder containing the congress folders
+     * @param congressNumber The congress number
+     * @return The archive, or null if there is none
+     */
+    public static GTArchive find(String folder, int congressNumber) {
+        for (String extension : EXTENSIONS) {
+            File archiveFile = new File(folder, congressNumber + extension);
+            if (archiveFile.exists()) {
+                return new GTArchive(archiveFile);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Handle an entry of the archive.
+     */
+    public static interface EntryHandler {
+
+        /**
+         * @param filename Name of the file, without its folder
+         * @param in Content of the file
+         */
+        public void handle(String filename, InputStream in) throws Exception;
+    }
+
+    /**
+     * Parse an entry of the archive or a file in a folder.
+     */
+    public static interface EntryParser<T> {
+
+        /**
+         * @param filename Name of the file, without its folder
+         * @param size Size of the file in bytes
+         * @param in Content of the file
+         * @return The parsed object, or null if the file should be skipped
+         */
+        public T parse(String filename, long size, InputStream in) throws Exception;
+    }
+
+    /**
+     * Use an entry parser to parse files in a folder.
+     *
+     * @param parser The entry parser
+     * @return The file parser
+     */
+    public static <T> ParallelFileParser.Parser<T> toFileParser(final EntryParser<T> parser) {
+        return new ParallelFileParser.Parser<T>() {
+            @Override
+            public T parse(File file) throws Exception {
+                InputStream in = new BufferedInputStream(new FileInputStream(file));
+                try {
+                    return parser.parse(file.getName(), file.length(), in);
+                } finally {
+                    in.close();
+                }
+            }
+        };
+    }
+
+    /**
+     * Read the files in a folder of the archive, in the order in which they
+     * are stored.
+     *
+     * @param folderName Name of the folder (e.g., cr)
+     * @param handler The entry handler
+     * @return Number of files read
+     * @throws java.lang.Exception
+     */
+    public int read(String folderName, EntryHandler handler) throws Exception {
+        EntryStream entries = openEntries();
+        // the handler must not close the archive
+        InputStream entryIn = new FilterInputStream(entries) {
+            @Override
+            public void close() {
+            }
+        };
+        int count = 0;
+        try {
+            String path;
+            while ((path = entries.nextEntry()) != null) {
+                String filename = getFilename(path, folderName);
+                if (filename != null) {
+                    handler.handle(filename, entryIn);
+                    count++;
+                }
+            }
+        } finally {
+            entries.close();
+        }
+        return count;
+    }
+
+    /**
+     * Read a file at the top level of the archive (e.g., people.xml).
+     *
+     * @param filename Name of the file
+     * @return Content of the file, or null if the archive does not contain it
+     * @throws java.io.IOException
+     */
+    public byte[] readFile(String filename) throws IOException {
+        EntryStream entries = openEntries();
+        try {
+            String path;
+            while ((path = entries.nextEntry()) != null) {
+                String[] parts = splitPath(path);
+                if (parts.length > 0 && parts.length <= 2
+                        && parts[parts.length - 1].equals(filename)) {
+                    return readBytes(entries);
+                }
+            }
+        } finally {
+            entries.close();
+        }
+        return null;
+    }
+
+    /**
+     * Parse the files in a folder of the archive. Entries are read
+     * sequentially in the calling thread and parsed by numThreads threads. At
+     * most a fixed number of read entries per thread are kept in memory while
+     * waiting to be parsed.
+     *
+     * @param folderName Name of the folder (e.g., cr)
+     * @param label Label used when reporting progress
+     * @param parser The parser
+     * @param numThreads Number of threads
+     * @param verbose Whether progress is reported
+     * @param filenames List to which the names of the files are added, in the
+     * order in which they are stored
+     * @return Map from file name to the parsed object. Skipped files are not
+     * included.
+     * @throws java.lang.Exception
+     */
+    public <T> ConcurrentHashMap<String, T> parse(String folderName, final String label,
+            final EntryParser<T> parser, int numThreads, final boolean verbose,
+            final List<String> filenames) throws Exception {
+        final ConcurrentHashMap<String, T> results = new ConcurrentHashMap<String, T>();
+        final AtomicReference<Exception> error = new AtomicReference<Exception>();
+        final AtomicInteger count = new AtomicInteger();
+        final ExecutorService executor = numThreads > 1
+                ? Executors.newFixedThreadPool(numThreads) : null;
+        final Semaphore queued = new Semaphore(Math.max(1, numThreads) * QUEUED_ENTRIES_PER_THREAD);
+        try {
+            read(folderName, new EntryHandler() {
+                @Override
+                public void handle(final String filename, InputStream in) throws Exception {
+                    if (error.get() != null) {
+                        throw error.get();
+                    }
+                    filenames.add(filename);
+                    final byte[] data = readBytes(in);
+                    Runnable task = new Runnable() {
+                        @Override
+                        public void run() {
+                            try {
+                                int c = count.getAndIncrement();
+                                if (c % 1000 == 0 && verbose) {
+                                    System.out.println("--- Processing " + label + " file " + c);
+                                }
+                                T result = parser.parse(filename, data.length,
+                                        new ByteArrayInputStream(data));
+                                if (result != null) {
+                                    results.put(filename, result);
+                                }
+                            } catch (Exception e) {
+                                error.compareAndSet(null, new Exception(
+                                        "Exception while parsing " + filename, e));
+                            } finally {
+                                queued.release();
+                            }
+                        }
+                    };
+                    queued.acquire();
+                    if (executor == null) {
+                        task.run();
+                    } else {
+                        executor.submit(task);
+                    }
+                }
+            });
+        } finally {
+            if (executor != null) {
+                executor.shutdown();
+                executor.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+            }
+        }
+        if (error.get() != null) {
+            throw error.get();
+        }
+        if (verbose) {
+            System.out.println("--- Read " + filenames.size() + " " + label
+                    + " files from " + file);
+        }
+        return results;
+    }
+
+    /**
+     * @return Name of the file if the entry is directly in the given folder,
+     * or null otherwise
+     */
+    private static String getFilename(String path, String folderName) {
+        if (path.endsWith("/")) { // directory
+            return null;
+        }
+        String[] parts = splitPath(path);
+        if (parts.length < 2 || parts.length > 3
+                || !parts[parts.length - 2].equals(folderName)) {
+            return null;
+        }
+        return parts[parts.length - 1];
+    }
+
+    private static String[] splitPath(String path) {
+        String normalized = path.replace('\\', '/');
+        while (normalized.startsWith("./")) {
+            normalized = normalized.substring(2);
+        }
+        while (normalized.startsWith("/")) {
+            normalized = normalized.substring(1);
+        }
+        if (normalized.isEmpty()) {
+            return new String[0];
+        }
+        return normalized.split("/");
+    }
+
+    public static byte[] readBytes(InputStream in) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[8192];
+        int length;
+        while ((length = in.read(buffer)) != -1) {
+            out.write(buffer, 0, length);
+        }
+        return out.toByteArray();
+    }
+
+    private EntryStream openEntries() throws IOException {
+        InputStream in = new BufferedInputStream(new FileInputStream(file), BUFFER_SIZE);
+        String name = file.getName();
+        if (name.endsWith(".zip")) {
+            return new ZipEntryStream(new ZipInputStream(in));
+        }
+        return new TarEntryStream(new GZIPInputStream(in, BUFFER_SIZE));
+    }
+
+    /**
+     * Stream of archive entries. After nextEntry, reading from the stream
+     * returns the content of the current entry.
+     */
+    private static abstract class EntryStream extends FilterInputStream {
+
+        EntryStream(InputStream in) {
+            super(in);
+        }
+
+        /**
+         * @return Path of the next file or directory, or null at the end of
+         * the archive
+         */
+        abstract String nextEntry() throws IOException;
+
+        @Override
+        public boolean markSupported() {
+            return false;
+        }
+    }
+
+    private static class ZipEntryStream extends EntryStream {
+
+        ZipEntryStream(ZipInputStream in) {
+            super(in);
+        }
+
+        @Override
+        String nextEntry() throws IOException {
+            ZipEntry entry = ((ZipInputStream) in).getNextEntry();
+            if (entry == null) {
+                return null;
+            }
+            return entry.isDirectory() && !entry.getName().endsWith("/")
+                    ? entry.getName() + "/" : entry.getName();
+        }
+    }
+
+    /**
+     * Minimal reader of (ustar or GNU) tar streams. Only regular files and
+     * directories are returned. GNU long names and the path of pax extended
+     * headers are supported.
+     */
+    private static class TarEntryStream extends EntryStream {
+
+        private static final int BLOCK_SIZE = 512;
+        private final byte[] header = new byte[BLOCK_SIZE];
+        private long remaining = 0; // bytes left in the current entry
+        private long padding = 0; // bytes after the current entry
+
+        TarEntryStream(InputStream in) {
+            super(in);
+        }
+
+        @Override
+        String nextEntry() throws IOException {
+            String longName = null;
+            while (true) {
+                skipFully(remaining + padding);
+                remaining = 0;
+                padding = 0;
+                if (!readHeader()) {
+                    return null;
+                }
+                String name = getString(0, 100);
+                long size = getOctal(124, 12);
+                char type = (char) header[156];
+                if (getString(257, 5).equals("ustar")) {
+                    String prefix = getString(345, 155);
+                    if (!prefix.isEmpty()) {
+                        name = prefix + "/" + name;
+                    }
+                }
+                remaining = size;
+                padding = (BLOCK_SIZE - size % BLOCK_SIZE) % BLOCK_SIZE;
+
+                if (type == 'L') { // GNU long name of the next entry
+                    longName = trimNull(new String(readBytes(this), "UTF-8"));
+                } else if (type == 'x') { // pax extended header
+                    String path = getPaxPath(new String(readBytes(this), "UTF-8"));
+                    if (path != null) {
+                        longName = path;
+                    }
+                } else if (type == '0' || type == '\0' || type == '5') {
+                    if (longName != null) {
+                        name = longName;
+                    }
+                    return type == '5' && !name.endsWith("/") ? name + "/" : name;
+                } else { // links, global pax headers etc. are skipped
+                    longName = null;
+                }
+            }
+        }
+
+        private boolean readHeader() throws IOException {
+            int offset = 0;
+            while (offset < BLOCK_SIZE) {
+                int length = in.read(header, offset, BLOCK_SIZE - offset);
+                if (length == -1) {
+                    if (offset == 0) {
+                        return false;
+                    }
+                    throw new EOFException("Truncated tar header");
+                }
+                offset += length;
+            }
+            for (byte b : header) {
+                if (b != 0) {
+                    return true;
+                }
+            }
+            return false; // end-of-archive block
+        }
+
+        private String getString(int offset, int length) throws IOException {
+            int end = offset;
+            while (end < offset + length && header[end] != 0) {
+                end++;
+            }
+            return new String(header, offset, end - offset, "UTF-8");
+        }
+
+        private long getOctal(int offset, int length) throws IOException {
+            String str = getString(offset, length).trim();
+            return str.isEmpty() ? 0 : Long.parseLong(str, 8);
+        }
+
+        private static String trimNull(String str) {
+            int index = str.indexOf('\0');
+            return index == -1 ? str : str.substring(0, index);
+        }
+
+        private static String getPaxPath(String records) {
+            for (String record : records.split("\n")) {
+                int index = record.indexOf(" path=");
+                if (index != -1) {
+                    return record.substring(index + 6);
+                }
+            }
+            return null;
+        }
+
+        private void skipFully(long n) throws IOException {
+            byte[] buffer = new byte[8192];
+            while (n > 0) {
+                int length = in.read(buffer, 0, (int) Math.min(buffer.length, n));
+                if (length == -1) {
+                    throw new EOFException("Truncated tar entry");
+                }
+                n -= length;
+            }
+        }
+
+        @Override
+        public int read() throws IOException {
+            if (remaining <= 0) {
+                return -1;
+            }
+            int b = in.read();
+            if (b == -1) {
+                throw new EOFException("Truncated tar entry");
+            }
+            remaining--;
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (remaining <= 0) {
+                return -1;
+            }
+            int length = in.read(b, off, (int) Math.min(len, remaining));
+            if (length == -1) {
+                throw new EOFException("Truncated tar entry");
+            }
+            remaining -= length;
+            return length;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            long skipped = Math.min(n, remaining);
+            skipFully(skipped);
+            remaining -= skipped;
+            return skipped;
+        }
+
+        @Override
+        public int available() throws IOException {
+            return (int) Math.min(in.available(), remaining);
+        }
+    }
+}
@@ -0,0 +1,207 @@
+package util.govtrack;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Enumeration;
+import java.util.HashSet;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import java.util.zip.ZipInputStream;
+import java.util.zip.ZipOutputStream;
+import util.IOUtils;
+
+/**
+ * Write downloaded files of a congress into a zip archive that can be read by
+ * GTArchive, instead of into the congress folder.
+ *
+ * Files are first stored in a staging folder next to the archive (e.g.,
+ * 112.zip.staging), to which downloads are streamed directly. When the
+ * writer is closed, the staged files and the files of the existing archive
+ * that have not been staged again are written into a new archive, which
+ * replaces the existing one, and the staging folder is deleted. If a run is
+ * interrupted, the files staged so far are kept and added to the archive by
+ * the next run. Files can be written by multiple threads.
+ *
+ * @author vietan
+ */
+public class GTArchiveWriter {
+
+    private static final int BUFFER_SIZE = 1 << 16;
+    // suffix of files being written into the staging folder
+    private static final String PART_EXTENSION = ".part";
+    private final File archiveFile;
+    private final File stagingFolder;
+    private final HashSet<String> existingPaths;
+    private boolean closed;
+
+    /**
+     * @param archiveFile The zip archive, which may already exist
+     * @throws java.io.IOException
+     */
+    public GTArchiveWriter(File archiveFile) throws IOException {
+        this.archiveFile = archiveFile;
+        this.stagingFolder = new File(archiveFile.getAbsolutePath() + ".staging");
+        this.existingPaths = new HashSet<String>();
+        if (archiveFile.exists()) {
+            ZipFile zipFile = new ZipFile(archiveFile);
+            try {
+                Enumeration<? extends ZipEntry> entries = zipFile.entries();
+                while (entries.hasMoreElements()) {
+                    existingPaths.add(entries.nextElement().getName());
+                }
+            } finally {
+                zipFile.close();
+            }
+        }
+        if (stagingFolder.exists()) {
+            System.out.println("--- Resuming from files staged in " + stagingFolder);
+        }
+        IOUtils.createFolder(stagingFolder);
+    }
+
+    public File getArchiveFile() {
+        return this.archiveFile;
+    }
+
+    /**
+     * File in the staging folder into which a file of the archive is
+     * downloaded. It must be written to a temporary file ending with .part,
+     * which is renamed once complete (see HttpFetcher.toFile).
+     *
+     * @param path Path of a file in the archive (e.g., cr/2011-01-05.xml)
+     * @return The staged file
+     */
+    public File getStagedFile(String path) {
+        return new File(stagingFolder, path);
+    }
+
+    /**
+     * @param path Path of a file in the archive (e.g., cr/2011-01-05.xml)
+     * @return True if the file is in the existing archive or has been staged
+     */
+    public boolean contains(String path) {
+        return existingPaths.contains(path) || getStagedFile(path).exists();
+    }
+
+    /**
+     * Write a file into the staging folder.
+     *
+     * @param path Path of the file in the archive (e.g., cr/2011-01-05.xml)
+     * @param data Content of the file
+     * @throws java.io.IOException
+     */
+    public void write(String path, byte[] data) throws IOException {
+        File stagedFile = getStagedFile(path);
+        IOUtils.createFolder(stagedFile.getAbsoluteFile().getParentFile());
+        File partFile = new File(stagedFile.getAbsolutePath() + PART_EXTENSION);
+        OutputStream out = new FileOutputStream(partFile);
+        try {
+            out.write(data);
+        } finally {
+            out.close();
+        }
+        Files.move(partFile.toPath(), stagedFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    /**
+     * Write the staged files and the files of the existing archive that have
+     * not been staged into a new archive, replace the existing archive and
+     * delete the staging folder.
+     *
+     * @throws java.io.IOException
+     */
+    public synchronized void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        File tempFile = new File(archiveFile.getAbsolutePath() + PART_EXTENSION);
+        ZipOutputStream out = new ZipOutputStream(new BufferedOutputStream(
+                new FileOutputStream(tempFile), BUFFER_SIZE));
+        try {
+            byte[] buffer = new byte[BUFFER_SIZE];
+            HashSet<String> writtenPaths = new HashSet<String>();
+            writeStagedFiles(out, stagingFolder, "", writtenPaths, buffer);
+            if (archiveFile.exists()) {
+                ZipInputStream in = new ZipInputStream(new BufferedInputStream(
+                        new FileInputStream(archiveFile), BUFFER_SIZE));
+                try {
+                    ZipEntry entry;
+                    while ((entry = in.getNextEntry()) != null) {
+                        if (!writtenPaths.add(entry.getName())) {
+                            continue;
+                        }
+                        out.putNextEntry(new ZipEntry(entry.getName()));
+                        copy(in, out, buffer);
+                        out.closeEntry();
+                    }
+                } finally {
+                    in.close();
+                }
+            }
+        } finally {
+            out.close();
+        }
+        Files.move(tempFile.toPath(), archiveFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        delete(stagingFolder);
+        closed = true;
+    }
+
+    /**
+     * Write the complete files of a folder of the staging folder, skipping
+     * temporary files of interrupted downloads.
+     *
+     * @param prefix Path of the folder in the archive, ending with / unless it
+     * is the root
+     */
+    private static void writeStagedFiles(ZipOutputStream out, File folder, String prefix,
+            HashSet<String> writtenPaths, byte[] buffer) throws IOException {
+        File[] files = folder.listFiles();
+        if (files == null) {
+            return;
+        }
+        for (File file : files) {
+            String path = prefix + file.getName();
+            if (file.isDirectory()) {
+                writeStagedFiles(out, file, path + "/", writtenPaths, buffer);
+                continue;
+            }
+            if (file.getName().endsWith(PART_EXTENSION) || !writtenPaths.add(path)) {
+                continue;
+            }
+            out.putNextEntry(new ZipEntry(path));
+            InputStream in = new FileInputStream(file);
+            try {
+                copy(in, out, buffer);
+            } finally {
+                in.close();
+            }
+            out.closeEntry();
+        }
+    }
+
+    private static void copy(InputStream in, OutputStream out, byte[] buffer)
+            throws IOException {
+        int length;
+        while ((length = in.read(buffer)) != -1) {
+            out.write(buffer, 0, length);
+        }
+    }
+
+    private static void delete(File file) {
+        File[] files = file.listFiles();
+        if (files != null) {
+            for (File child : files) {
+                delete(child);
+            }
+        }
+        file.delete();
+    }
+}
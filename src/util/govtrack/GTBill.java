@@ -4,6 +4,7 @@ import core.AbstractObject;
 import java.util.ArrayList;
 
 /**
+ * A bill. Rolls about the bill are stored by their symbols (see GTSymbols).
  *
  * @author vietan
  */
@@ -13,18 +14,22 @@ public class GTBill extends AbstractObject<String> {
 
     private final String type;
     private final int number;
+    private final GTSymbols symbols;
+    private final int symbol;
     private String title;
     private String summary;
     private String text;
     private String officialTitle;
     private ArrayList<String> debateIds;
-    private ArrayList<String> rollIds;
+    private IntArrayList rollIds;
     private ArrayList<String> subjects; // labels
 
-    public GTBill(String type, int number) {
+    public GTBill(GTSymbols symbols, String type, int number) {
         super(type + "-" + number);
         this.type = type;
         this.number = number;
+        this.symbols = symbols;
+        this.symbol = symbols.getBillSymbol(type, number);
         this.subjects = new ArrayList<String>();
     }
     
@@ -55,14 +60,39 @@ public class GTBill extends AbstractObject<String> {
         return str.toString();
     }
 
+    /**
+     * @return The symbol of the bill ID
+     */
+    public int getSymbol() {
+        return this.symbol;
+    }
+
     public void addRollId(String rid) {
         if (rollIds == null) {
-            rollIds = new ArrayList<String>();
+            rollIds = new IntArrayList();
         }
-        rollIds.add(rid);
+        rollIds.add(symbols.getRolls().intern(rid));
     }
 
+    /**
+     * @return The IDs of the rolls about this bill, or null if there is none
+     */
     public ArrayList<String> getRollIds() {
+        if (rollIds == null) {
+            return null;
+        }
+        ArrayList<String> ids = new ArrayList<String>(rollIds.size());
+        for (int ii = 0; ii < rollIds.size(); ii++) {
+            ids.add(symbols.getRolls().getName(rollIds.get(ii)));
+        }
+        return ids;
+    }
+
+    /**
+     * @return The symbols of the rolls about this bill, or null if there is
+     * none
+     */
+    public IntArrayList getRollSymbols() {
         return this.rollIds;
     }
 
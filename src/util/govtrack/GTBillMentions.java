@@ -0,0 +1,135 @@
+package util.govtrack;
+
+import java.util.ArrayList;
+
+/**
+ * Bills mentioned in a debate or a turn, stored by their symbols (see
+ * GTSymbols), with the number of mentions of each bill and the bill
+ * mentioned the most updated as mentions are added.
+ *
+ * Since counts only increase, the bill mentioned the most can only change to
+ * the bill whose count has just increased, which happens if it is now
+ * mentioned more often, or as often but first mentioned earlier.
+ *
+ * @author vietan
+ */
+public class GTBillMentions {
+
+    private final GTSymbolTable bills;
+    private final IntArrayList mentions;
+    // bill symbol -> number of mentions, in the order of first mention
+    private final IntIntHashMap counts;
+    private int mostMentioned = GTSymbolTable.MISSING;
+    private int mostMentionedCount;
+    private int mostMentionedOrder;
+
+    /**
+     * @param bills Symbol table of the bills
+     */
+    public GTBillMentions(GTSymbolTable bills) {
+        this.bills = bills;
+        this.mentions = new IntArrayList();
+        this.counts = new IntIntHashMap();
+    }
+
+    /**
+     * @param bills Symbol table of the bills
+     * @param billIds IDs of the bills mentioned, in order
+     */
+    public GTBillMentions(GTSymbolTable bills, ArrayList<String> billIds) {
+        this.bills = bills;
+        this.mentions = new IntArrayList(billIds.size());
+        this.counts = new IntIntHashMap(billIds.size());
+        for (String billId : billIds) {
+            add(billId);
+        }
+    }
+
+    public void add(String billId) {
+        add(bills.intern(billId));
+    }
+
+    /**
+     * @param bill Symbol of a bill
+     */
+    public void add(int bill) {
+        mentions.add(bill);
+        int count = counts.increment(bill, 1);
+        if (bill == mostMentioned) {
+            mostMentionedCount = count;
+            return;
+        }
+        if (count > mostMentionedCount) {
+            mostMentioned = bill;
+            mostMentionedCount = count;
+            mostMentionedOrder = counts.indexOf(bill);
+        } else if (count == mostMentionedCount) {
+            int order = counts.indexOf(bill);
+            if (order < mostMentionedOrder) {
+                mostMentioned = bill;
+                mostMentionedOrder = order;
+            }
+        }
+    }
+
+    public void addAll(ArrayList<String> billIds) {
+        for (String billId : billIds) {
+            add(billId);
+        }
+    }
+
+    /**
+     * @return The symbol of the bill mentioned the most, the earliest in case
+     * of ties, or GTSymbolTable.MISSING if no bill is mentioned
+     */
+    public int getMostMentioned() {
+        return mostMentioned;
+    }
+
+    /**
+     * @return The number of mentions of a bill
+     */
+    public int getCount(int bill) {
+        return counts.get(bill, 0);
+    }
+
+    /**
+     * @return The number of distinct bills mentioned
+     */
+    public int getNumBills() {
+        return counts.size();
+    }
+
+    /**
+     * @param index Index of a distinct bill, in the order of first mention
+     * @return The symbol of the bill
+     */
+    public int getBill(int index) {
+        return counts.getKeyAt(index);
+    }
+
+    /**
+     * @return The number of mentions
+     */
+    public int size() {
+        return mentions.size();
+    }
+
+    /**
+     * @return The symbols of the bills mentioned, in order
+     */
+    public IntArrayList getSymbols() {
+        return mentions;
+    }
+
+    /**
+     * @return The IDs of the bills mentioned, in order
+     */
+    public ArrayList<String> getIds() {
+        ArrayList<String> billIds = new ArrayList<String>(mentions.size());
+        for (int ii = 0; ii < mentions.size(); ii++) {
+            billIds.add(bills.getName(mentions.get(ii)));
+        }
+        return billIds;
+    }
+}
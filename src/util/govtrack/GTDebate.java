@@ -2,25 +2,26 @@ package util.govtrack;
 
 import core.AbstractObject;
 import java.util.ArrayList;
-import java.util.HashMap;
-import util.RankingItem;
-import util.RankingItemList;
 
 /**
+ * A debate. Bills mentioned are stored by their symbols (see GTSymbols),
+ * together with their counts (see GTBillMentions).
  *
  * @author vietan
  */
 public class GTDebate extends AbstractObject<String> {
 
     private String title;
+    private final GTSymbols symbols;
     private final ArrayList<GTTurn> turns;
-    private final ArrayList<String> billsMentioned; // list of bill IDs mentioned
+    private final GTBillMentions billsMentioned;
     private GTRoll associatedRoll;
 
-    public GTDebate(String id) {
+    public GTDebate(GTSymbols symbols, String id) {
         super(id);
+        this.symbols = symbols;
         this.turns = new ArrayList<GTTurn>();
-        this.billsMentioned = new ArrayList<String>();
+        this.billsMentioned = new GTBillMentions(symbols.getBills());
     }
 
     /**
@@ -34,31 +35,8 @@ public class GTDebate extends AbstractObject<String> {
      * @return The bill ID that is associated with this debate.
      */
     public String getBillAssociatedWith() {
-        if (billsMentioned.isEmpty()) {
-            return null;
-        }
-        HashMap<String, Integer> billFirstMentioned = new HashMap<String, Integer>();
-        HashMap<String, Integer> billMentionedCounts = new HashMap<String, Integer>();
-        for (int i = 0; i < billsMentioned.size(); i++) {
-            String bm = billsMentioned.get(i);
-            Integer count = billMentionedCounts.get(bm);
-            if (count == null) {
-                billMentionedCounts.put(bm, 1);
-                billFirstMentioned.put(bm, i);
-            } else {
-                billMentionedCounts.put(bm, count + 1);
-            }
-        }
-
-        RankingItemList<String> rankList = new RankingItemList<String>();
-        for (String billDiscussed : billMentionedCounts.keySet()) {
-            rankList.addRankingItem(new RankingItem<String>(
-                    billDiscussed,
-                    billMentionedCounts.get(billDiscussed),
-                    -billFirstMentioned.get(billDiscussed)));
-        }
-        rankList.sortDescending();
-        return rankList.getRankingItem(0).getObject();
+        int bill = billsMentioned.getMostMentioned();
+        return bill == GTSymbolTable.MISSING ? null : symbols.getBills().getName(bill);
     }
 
     public int getNumTurns() {
@@ -77,7 +55,7 @@ public class GTDebate extends AbstractObject<String> {
     public String toString() {
         StringBuilder str = new StringBuilder();
         str.append(this.getId()).append(":\t").append(title).append("\n");
-        str.append(billsMentioned.toString()).append("\n");
+        str.append(getBillsMentioned().toString()).append("\n");
         for (GTTurn turn : turns) {
             str.append("---").append(turn.toString()).append("\n");
         }
@@ -88,7 +66,18 @@ public class GTDebate extends AbstractObject<String> {
         this.billsMentioned.add(billId);
     }
 
+    /**
+     * @return The IDs of the bills mentioned, in order
+     */
     public ArrayList<String> getBillsMentioned() {
+        return this.billsMentioned.getIds();
+    }
+
+    public int getNumBillsMentioned() {
+        return this.billsMentioned.size();
+    }
+
+    public GTBillMentions getBillMentions() {
         return this.billsMentioned;
     }
 
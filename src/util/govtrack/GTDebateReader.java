@@ -0,0 +1,289 @@
+package util.govtrack;
+
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.InputStream;
+import java.util.ArrayList;
+import javax.xml.parsers.DocumentBuilder;
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamReader;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.NodeList;
+
+/**
+ * Reader for Congressional Record debate files (cr/*.xml) downloaded from
+ * GovTrack. The file is reported to a Handler as a sequence of callbacks so
+ * that GTProcessor and GTProcessorV2 can assemble debates and turns in their
+ * own way.
+ *
+ * Two parsing strategies are supported and produce the same callbacks:
+ *
+ * - DOM: the whole file is loaded into memory before it is traversed.
+ *
+ * - Streaming: the file is read in a single forward pass using a StAX pull
+ * parser. Memory is bounded by the size of a single speaking element.
+ *
+ * @author vietan
+ */
+public class GTDebateReader {
+
+    public static final String SPEAKING = "speaking";
+    public static final String PARAGRAPH = "paragraph";
+    public static final String BILL = "bill";
+    private final boolean streaming;
+
+    public GTDebateReader(boolean streaming) {
+        this.streaming = streaming;
+    }
+
+    public boolean isStreaming() {
+        return this.streaming;
+    }
+
+    /**
+     * Callbacks from reading a debate file.
+     */
+    public static interface Handler {
+
+        /**
+         * Called once with the attributes of the root element.
+         *
+         * @param title Title of the debate
+         * @param where House or Senate
+         * @param datetime Date time of the debate
+         */
+        public void startDebate(String title, String where, String datetime);
+
+        /**
+         * Called for every bill element in the file, in document order.
+         *
+         * @param billId The bill ID (type-number)
+         */
+        public void billMentioned(String billId);
+
+        /**
+         * Called for every speaking element, in document order.
+         *
+         * @param speaker The speaker ID
+         * @param topic The topic attribute
+         * @param paragraphs The paragraphs of this speaking element
+         */
+        public void speaking(String speaker, String topic, ArrayList<Paragraph> paragraphs);
+    }
+
+    /**
+     * A paragraph in a speaking element together with the bills mentioned in
+     * it.
+     */
+    public static class Paragraph {
+
+        private final String text;
+        private final ArrayList<String> billsMentioned;
+
+        public Paragraph(String text, ArrayList<String> billsMentioned) {
+            this.text = text;
+            this.billsMentioned = billsMentioned;
+        }
+
+        public String getText() {
+            return this.text;
+        }
+
+        public ArrayList<String> getBillsMentioned() {
+            return this.billsMentioned;
+        }
+    }
+
+    public void read(File debateFile, Handler handler) throws Exception {
+        InputStream in = new BufferedInputStream(new FileInputStream(debateFile));
+        try {
+            read(in, handler);
+        } finally {
+            in.close();
+        }
+    }
+
+    /**
+     * Read a debate file from a stream (e.g., an entry of a GTArchive).
+     *
+     * @param in Content of the debate file
+     * @param handler The handler
+     * @throws java.lang.Exception
+     */
+    public void read(InputStream in, Handler handler) throws Exception {
+        if (streaming) {
+            readStreaming(in, handler);
+        } else {
+            readDom(in, handler);
+        }
+    }
+
+    private void readDom(InputStream in, Handler handler) throws Exception {
+        DocumentBuilderFactory dbf = DocumentBuilderFactory.newInstance();
+        DocumentBuilder db = dbf.newDocumentBuilder();
+        Document dom = db.parse(in);
+        Element docEle = dom.getDocumentElement();
+
+        handler.startDebate(docEle.getAttribute("title"),
+                docEle.getAttribute("where"),
+                docEle.getAttribute(GTProcessorV2.DATETIME));
+
+        NodeList nodelist = docEle.getElementsByTagName(BILL);
+        for (int i = 0; i < nodelist.getLength(); i++) {
+            handler.billMentioned(getBillId((Element) nodelist.item(i)));
+        }
+
+        nodelist = docEle.getElementsByTagName(SPEAKING);
+        for (int i = 0; i < nodelist.getLength(); i++) {
+            Element el = (Element) nodelist.item(i);
+            ArrayList<Paragraph> paragraphs = new ArrayList<Paragraph>();
+            NodeList nl = el.getElementsByTagName(PARAGRAPH);
+            for (int j = 0; j < nl.getLength(); j++) {
+                Element paraEle = (Element) nl.item(j);
+                ArrayList<String> paraBills = new ArrayList<String>();
+                NodeList billNl = paraEle.getElementsByTagName(BILL);
+                for (int ii = 0; ii < billNl.getLength(); ii++) {
+                    paraBills.add(getBillId((Element) billNl.item(ii)));
+                }
+                paragraphs.add(new Paragraph(paraEle.getTextContent(), paraBills));
+            }
+            handler.speaking(el.getAttribute("speaker"), el.getAttribute("topic"),
+                    paragraphs);
+        }
+    }
+
+    private static String getBillId(Element el) {
+        return el.getAttribute("type") + "-" + el.getAttribute("number");
+    }
+
+    /**
+     * A speaking element whose paragraphs are being read.
+     */
+    private static class PendingSpeaking {
+
+        private final String speaker;
+        private final String topic;
+        private final ArrayList<PendingParagraph> paragraphs;
+
+        PendingSpeaking(String speaker, String topic) {
+            this.speaker = speaker;
+            this.topic = topic;
+            this.paragraphs = new ArrayList<PendingParagraph>();
+        }
+    }
+
+    /**
+     * A paragraph being read, with its text and the bills mentioned in it so
+     * far.
+     */
+    private static class PendingParagraph {
+
+        private final StringBuilder text = new StringBuilder();
+        private final ArrayList<String> bills = new ArrayList<String>();
+    }
+
+    /**
+     * Read a debate file in one forward pass, with the same nesting semantics
+     * as DOM getElementsByTagName and getTextContent: a paragraph belongs to
+     * every speaking element it is nested in and its text and bills include
+     * those of the paragraphs nested inside it, and a speaking element nested
+     * inside another one is reported after the outer one.
+     */
+    private void readStreaming(InputStream in, Handler handler) throws Exception {
+        XMLInputFactory xif = XMLInputFactory.newInstance();
+        xif.setProperty(XMLInputFactory.IS_COALESCING, Boolean.TRUE);
+        xif.setProperty(XMLInputFactory.IS_REPLACING_ENTITY_REFERENCES, Boolean.TRUE);
+
+        XMLStreamReader xsr = xif.createXMLStreamReader(in);
+        try {
+            boolean root = true;
+            // speaking elements that are open, innermost last
+            ArrayList<PendingSpeaking> openSpeakings = new ArrayList<PendingSpeaking>();
+            // speaking elements of the outermost open one, in document order
+            ArrayList<PendingSpeaking> pendingSpeakings = new ArrayList<PendingSpeaking>();
+            // paragraphs that are open, innermost last. Paragraphs outside
+            // speaking elements are null.
+            ArrayList<PendingParagraph> openParagraphs = new ArrayList<PendingParagraph>();
+
+            while (xsr.hasNext()) {
+                int event = xsr.next();
+                if (event == XMLStreamConstants.START_ELEMENT) {
+                    String name = xsr.getLocalName();
+                    if (root) {
+                        handler.startDebate(getAttribute(xsr, "title"),
+                                getAttribute(xsr, "where"),
+                                getAttribute(xsr, GTProcessorV2.DATETIME));
+                        root = false;
+                    } else if (name.equals(BILL)) {
+                        String billId = getAttribute(xsr, "type")
+                                + "-" + getAttribute(xsr, "number");
+                        handler.billMentioned(billId);
+                        for (PendingParagraph paragraph : openParagraphs) {
+                            if (paragraph != null) {
+                                paragraph.bills.add(billId);
+                            }
+                        }
+                    } else if (name.equals(SPEAKING)) {
+                        PendingSpeaking speaking = new PendingSpeaking(
+                                getAttribute(xsr, "speaker"), getAttribute(xsr, "topic"));
+                        openSpeakings.add(speaking);
+                        pendingSpeakings.add(speaking);
+                    } else if (name.equals(PARAGRAPH)) {
+                        PendingParagraph paragraph = null;
+                        if (!openSpeakings.isEmpty()) {
+                            paragraph = new PendingParagraph();
+                            for (PendingSpeaking speaking : openSpeakings) {
+                                speaking.paragraphs.add(paragraph);
+                            }
+                        }
+                        openParagraphs.add(paragraph);
+                    }
+                } else if (event == XMLStreamConstants.END_ELEMENT) {
+                    String name = xsr.getLocalName();
+                    if (name.equals(PARAGRAPH) && !openParagraphs.isEmpty()) {
+                        openParagraphs.remove(openParagraphs.size() - 1);
+                    } else if (name.equals(SPEAKING) && !openSpeakings.isEmpty()) {
+                        openSpeakings.remove(openSpeakings.size() - 1);
+                        if (openSpeakings.isEmpty()) {
+                            for (PendingSpeaking speaking : pendingSpeakings) {
+                                ArrayList<Paragraph> paragraphs = new ArrayList<Paragraph>();
+                                for (PendingParagraph paragraph : speaking.paragraphs) {
+                                    paragraphs.add(new Paragraph(paragraph.text.toString(),
+                                            paragraph.bills));
+                                }
+                                handler.speaking(speaking.speaker, speaking.topic, paragraphs);
+                            }
+                            pendingSpeakings.clear();
+                        }
+                    }
+                } else if (event == XMLStreamConstants.CHARACTERS
+                        || event == XMLStreamConstants.CDATA
+                        || event == XMLStreamConstants.SPACE) {
+                    for (PendingParagraph paragraph : openParagraphs) {
+                        if (paragraph != null) {
+                            paragraph.text.append(xsr.getTextCharacters(),
+                                    xsr.getTextStart(), xsr.getTextLength());
+                        }
+                    }
+                }
+            }
+        } finally {
+            xsr.close();
+        }
+    }
+
+    /**
+     * Same as DOM, a missing attribute is returned as an empty string.
+     */
+    private static String getAttribute(XMLStreamReader xsr, String name) {
+        String value = xsr.getAttributeValue(null, name);
+        if (value == null) {
+            return "";
+        }
+        return value;
+    }
+}
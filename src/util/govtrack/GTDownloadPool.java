@@ -0,0 +1,372 @@
+package util.govtrack;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URL;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import util.MiscUtils;
+
+/**
+ * Download files concurrently. A fixed number of connections are used in
+ * total, and at most a given number of them to the same host. Response bodies
+ * are streamed to a temporary file next to the output file, which is renamed
+ * once the download is complete, so that an interrupted download never leaves
+ * a truncated output file. Requests are sent through an HttpFetcher, which
+ * records their latencies.
+ *
+ * If a GTHttpCache is set, the validators of each downloaded file are stored,
+ * existing files are only downloaded again if they have changed on the server
+ * (304 responses are skipped), and temporary files left by interrupted
+ * downloads are resumed with range requests.
+ *
+ * Downloads to the same host are queued per host and only handed to the
+ * threads of the pool when a connection to the host is available, so that
+ * threads never wait for a host while other hosts have downloads queued.
+ *
+ * Idle connections are kept alive and reused by HttpURLConnection. The number
+ * of idle connections it keeps per host is set by the http.maxConnections
+ * system property, which should be at least the per-host limit.
+ *
+ * @author vietan
+ */
+public class GTDownloadPool {
+
+    private static final int HTTP_RANGE_NOT_SATISFIABLE = 416;
+    // returned by a download if the file has not been modified (304)
+    private static final long NOT_MODIFIED = -1;
+    private final HttpFetcher fetcher;
+    private GTHttpCache cache;
+    private final int numConnections;
+    private final int maxConnectionsPerHost;
+    private final ExecutorService executor;
+    private final ConcurrentHashMap<String, HostQueue> hostQueues;
+    private final AtomicInteger numSubmitted;
+    private final AtomicInteger numDownloaded;
+    private final AtomicInteger numFailed;
+    private final AtomicInteger numNotModified;
+    private final AtomicInteger numResumed;
+    private final AtomicLong numBytes;
+    private final List<String> failedUrls;
+    private final long startTime;
+    // guarded by this
+    private int numPending;
+
+    /**
+     * @param numConnections Maximum number of concurrent connections
+     * @param maxConnectionsPerHost Maximum number of concurrent connections to
+     * the same host
+     * @param fetcher The fetcher used to send requests
+     */
+    public GTDownloadPool(int numConnections, int maxConnectionsPerHost,
+            HttpFetcher fetcher) {
+        this.fetcher = fetcher;
+        this.numConnections = Math.max(1, numConnections);
+        this.maxConnectionsPerHost = Math.max(1, maxConnectionsPerHost);
+        this.executor = Executors.newFixedThreadPool(this.numConnections);
+        this.hostQueues = new ConcurrentHashMap<String, HostQueue>();
+        this.numSubmitted = new AtomicInteger();
+        this.numDownloaded = new AtomicInteger();
+        this.numFailed = new AtomicInteger();
+        this.numNotModified = new AtomicInteger();
+        this.numResumed = new AtomicInteger();
+        this.numBytes = new AtomicLong();
+        this.failedUrls = Collections.synchronizedList(new ArrayList<String>());
+        this.startTime = System.currentTimeMillis();
+    }
+
+    /**
+     * Set the cache used to send conditional and range requests.
+     *
+     * @param cache The cache, which must be open
+     */
+    public void setCache(GTHttpCache cache) {
+        this.cache = cache;
+    }
+
+    /**
+     * A download, which returns the number of bytes downloaded, or
+     * NOT_MODIFIED if no body was fetched.
+     */
+    private static abstract class Download {
+
+        abstract long run() throws IOException;
+    }
+
+    /**
+     * Downloads to a host, at most maxConnectionsPerHost of which are running
+     * at any time. The others are queued until a running one is done.
+     */
+    private class HostQueue {
+
+        private final ArrayDeque<Runnable> queue = new ArrayDeque<Runnable>();
+        private int numRunning;
+
+        synchronized void submit(Runnable task) {
+            if (numRunning < maxConnectionsPerHost) {
+                numRunning++;
+                executor.execute(task);
+            } else {
+                queue.add(task);
+            }
+        }
+
+        /**
+         * Called when a download to the host is done, to start the next one.
+         */
+        synchronized void done() {
+            Runnable next = queue.poll();
+            if (next != null) {
+                executor.execute(next);
+            } else {
+                numRunning--;
+            }
+        }
+    }
+
+    /**
+     * Queue a file to be downloaded.
+     *
+     * @param url The URL
+     * @param outFile The output file
+     */
+    public void submit(final URL url, final File outFile) {
+        submit(url, new Download() {
+            @Override
+            long run() throws IOException {
+                return download(url, outFile);
+            }
+        });
+    }
+
+    /**
+     * Queue a file to be downloaded into an archive. The response is streamed
+     * into the staging folder of the archive.
+     *
+     * @param url The URL
+     * @param path Path of the file in the archive
+     * @param archiveWriter The archive
+     */
+    public void submit(URL url, String path, GTArchiveWriter archiveWriter) {
+        submit(url, archiveWriter.getStagedFile(path));
+    }
+
+    private void submit(final URL url, final Download download) {
+        numSubmitted.incrementAndGet();
+        synchronized (this) {
+            numPending++;
+        }
+        final HostQueue hostQueue = getHostQueue(url.getHost());
+        hostQueue.submit(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    long size = download.run();
+                    if (size != NOT_MODIFIED) {
+                        numBytes.addAndGet(size);
+                        numDownloaded.incrementAndGet();
+                    }
+                } catch (IOException e) {
+                    fail(url, e);
+                } catch (RuntimeException e) {
+                    fail(url, new IOException(e));
+                } finally {
+                    hostQueue.done();
+                    reportProgress();
+                    done();
+                }
+            }
+        });
+    }
+
+    private HostQueue getHostQueue(String host) {
+        HostQueue hostQueue = hostQueues.get(host);
+        if (hostQueue == null) {
+            hostQueues.putIfAbsent(host, new HostQueue());
+            hostQueue = hostQueues.get(host);
+        }
+        return hostQueue;
+    }
+
+    private synchronized void done() {
+        numPending--;
+        if (numPending == 0) {
+            notifyAll();
+        }
+    }
+
+    private void fail(URL url, Exception e) {
+        numFailed.incrementAndGet();
+        failedUrls.add(url.toString());
+        System.out.println("--- --- Failed to download " + url + ". " + e.getMessage());
+    }
+
+    private void reportProgress() {
+        int numDone = numDownloaded.get() + numNotModified.get() + numFailed.get();
+        int stepSize = MiscUtils.getRoundStepSize(numSubmitted.get(), 10);
+        if (numDone % stepSize == 0) {
+            System.out.println("--- Downloaded " + numDone + " / " + numSubmitted.get());
+        }
+    }
+
+    /**
+     * Download a single file.
+     *
+     * @return Number of bytes downloaded, or NOT_MODIFIED
+     */
+    private long download(URL url, File outFile) throws IOException {
+        if (cache == null) {
+            HttpFetcher.Response<Long> response = fetcher.get(url, HttpFetcher.toFile(outFile));
+            if (!response.isOk()) {
+                throw new IOException("HTTP " + response.getStatus());
+            }
+            return response.getBody();
+        }
+        return download(url, outFile, true);
+    }
+
+    /**
+     * Download a single file using conditional and range requests.
+     *
+     * @param resume Whether to resume from a temporary file left by an
+     * interrupted download
+     * @return Number of bytes downloaded, or NOT_MODIFIED
+     */
+    private long download(URL url, File outFile, boolean resume) throws IOException {
+        final File partFile = HttpFetcher.getPartFile(outFile);
+        HashMap<String, String> requestHeaders = new HashMap<String, String>();
+        GTHttpCache.Validators partValidators = cache.get(partFile);
+        boolean resuming = resume && partFile.length() > 0
+                && partValidators != null && partValidators.getIfRange() != null;
+        if (resuming) {
+            // the server sends the whole file (200) if it has changed
+            requestHeaders.put("Range", "bytes=" + partFile.length() + "-");
+            requestHeaders.put("If-Range", partValidators.getIfRange());
+        } else if (outFile.exists()) {
+            GTHttpCache.Validators validators = cache.get(outFile);
+            if (validators != null && validators.getETag() != null) {
+                requestHeaders.put("If-None-Match", validators.getETag());
+            }
+            if (validators != null && validators.getLastModified() != null) {
+                requestHeaders.put("If-Modified-Since", validators.getLastModified());
+            }
+        }
+
+        final HttpFetcher.BodyHandler<Long> fileHandler = HttpFetcher.toFile(outFile);
+        HttpFetcher.Response<Long> response;
+        try {
+            response = fetcher.get(url, requestHeaders,
+                    new HttpFetcher.BodyHandler<Long>() {
+                        @Override
+                        public Long handle(HttpFetcher.Response<Long> response,
+                                InputStream in) throws IOException {
+                            // store the validators of the temporary file before
+                            // writing to it, so that it can be resumed later
+                            cache.put(partFile, GTHttpCache.Validators.get(response));
+                            return fileHandler.handle(response, in);
+                        }
+                    });
+        } catch (HttpFetcher.RangeMismatchException e) {
+            if (!resuming) {
+                throw e;
+            }
+            // the server sent another range than the one requested
+            partFile.delete();
+            cache.remove(partFile);
+            return download(url, outFile, false);
+        }
+
+        if (response.isNotModified()) {
+            numNotModified.incrementAndGet();
+            return NOT_MODIFIED;
+        }
+        if (response.getStatus() == HTTP_RANGE_NOT_SATISFIABLE && resuming) {
+            // the temporary file does not match the file on the server
+            partFile.delete();
+            cache.remove(partFile);
+            return download(url, outFile, false);
+        }
+        if (!response.hasBody()) {
+            throw new IOException("HTTP " + response.getStatus());
+        }
+        if (response.isPartial()) {
+            numResumed.incrementAndGet();
+        }
+        cache.put(outFile, GTHttpCache.Validators.get(response));
+        cache.remove(partFile);
+        return response.getBody();
+    }
+
+    /**
+     * Wait for all queued downloads to finish and shut down the pool.
+     *
+     * @throws java.lang.InterruptedException
+     */
+    public void await() throws InterruptedException {
+        try {
+            synchronized (this) {
+                while (numPending > 0) {
+                    wait();
+                }
+            }
+        } finally {
+            executor.shutdown();
+        }
+        executor.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+    }
+
+    public void printStats() {
+        double seconds = Math.max(1, System.currentTimeMillis() - startTime) / 1000.0;
+        System.out.println("--- Downloaded " + numDownloaded.get() + " files"
+                + " (" + numBytes.get() + " bytes) in "
+                + MiscUtils.formatDouble(seconds) + " s using "
+                + numConnections + " connection(s), at most "
+                + maxConnectionsPerHost + " per host");
+        System.out.println("--- Throughput: "
+                + MiscUtils.formatDouble(numDownloaded.get() / seconds) + " files/s, "
+                + MiscUtils.formatDouble(numBytes.get() / 1024.0 / seconds) + " KB/s");
+        fetcher.printStats();
+        System.out.println("--- Not modified: " + numNotModified.get()
+                + ". Resumed: " + numResumed.get());
+        System.out.println("--- Failed: " + numFailed.get());
+        for (String failedUrl : failedUrls) {
+            System.out.println("--- --- " + failedUrl);
+        }
+    }
+
+    public List<String> getFailedUrls() {
+        synchronized (failedUrls) {
+            return new ArrayList<String>(failedUrls);
+        }
+    }
+
+    public int getNumDownloaded() {
+        return this.numDownloaded.get();
+    }
+
+    public int getNumFailed() {
+        return this.numFailed.get();
+    }
+
+    public int getNumNotModified() {
+        return this.numNotModified.get();
+    }
+
+    public int getNumResumed() {
+        return this.numResumed.get();
+    }
+
+    public long getNumBytes() {
+        return this.numBytes.get();
+    }
+}
@@ -1,19 +1,16 @@
 package util.govtrack;
 
-import java.io.BufferedReader;
 import java.io.BufferedWriter;
 import java.io.File;
-import java.io.InputStreamReader;
+import java.io.IOException;
 import java.net.HttpURLConnection;
 import java.net.MalformedURLException;
 import java.net.URL;
 import java.util.ArrayList;
 import java.util.HashMap;
-import java.util.Scanner;
-import org.apache.commons.io.FileUtils;
+import java.util.HashSet;
 import org.apache.commons.lang3.StringEscapeUtils;
 import util.IOUtils;
-import util.MiscUtils;
 
 /**
  *
@@ -22,15 +19,37 @@ import util.MiscUtils;
 public class GTDownloader {
 
     public static final String GOVTRACK_URL = "https://www.govtrack.us/data/us/";
+    // default removal of HTML tags from bill texts
+    public static final GTTextNormalizer HTML_TAG_REMOVER = new GTTextNormalizer.Builder()
+            .replaceTags(" ")
+            .build();
     private final int congressNumber;
+    private final String baseUrl;
     private File congressFolder;
     private URL congressURL;
+    private int numConnections = 8;
+    private int maxConnectionsPerHost = 4;
+    private final HttpFetcher fetcher = new HttpFetcher();
+    private GTArchiveWriter archiveWriter;
+    private GTMetrics metrics = new GTMetrics();
+    private GTTextNormalizer htmlTagRemover = HTML_TAG_REMOVER;
 
     public GTDownloader(String folder, int congNum) {
+        this(folder, congNum, GOVTRACK_URL);
+    }
+
+    /**
+     * @param folder Folder to store downloaded data
+     * @param congNum Congress number
+     * @param baseUrl URL to download from instead of GOVTRACK_URL, e.g., a
+     * local mirror
+     */
+    public GTDownloader(String folder, int congNum, String baseUrl) {
         this.congressNumber = congNum;
+        this.baseUrl = baseUrl.endsWith("/") ? baseUrl : baseUrl + "/";
         try {
             this.congressFolder = new File(folder, Integer.toString(congressNumber));
-            this.congressURL = new URL(new URL(GOVTRACK_URL), Integer.toString(congressNumber));
+            this.congressURL = new URL(new URL(this.baseUrl), Integer.toString(congressNumber));
         } catch (MalformedURLException e) {
             e.printStackTrace();
             throw new RuntimeException("Exception while initializing GTDownloader");
@@ -38,9 +57,100 @@ public class GTDownloader {
         IOUtils.createFolder(this.congressFolder);
     }
 
+    /**
+     * Record the metrics of the downloads (e.g., number of files and bytes
+     * downloaded) into a given registry.
+     *
+     * @param metrics The metrics registry
+     */
+    public void setMetrics(GTMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    public GTMetrics getMetrics() {
+        return this.metrics;
+    }
+
+    /**
+     * Set the normalization removing HTML tags from bill texts before HTML
+     * entities are unescaped, instead of HTML_TAG_REMOVER.
+     *
+     * @param normalizer The normalizer
+     */
+    public void setHtmlTagRemover(GTTextNormalizer normalizer) {
+        this.htmlTagRemover = normalizer;
+    }
+
+    /**
+     * Set the number of concurrent connections used to download the cr,
+     * rolls and bills folders.
+     *
+     * @param numConnections Maximum number of concurrent connections
+     * @param maxConnectionsPerHost Maximum number of concurrent connections to
+     * the same host
+     */
+    public void setConnections(int numConnections, int maxConnectionsPerHost) {
+        this.numConnections = numConnections;
+        this.maxConnectionsPerHost = maxConnectionsPerHost;
+    }
+
+    /**
+     * Download into the archive of this congress (e.g., 112.zip next to the
+     * congress folder) instead of into the congress folder, until
+     * closeArchive is called. Files already in the archive are kept, and so
+     * are files downloaded by a previous run that was interrupted before
+     * closing the archive.
+     *
+     * @throws java.io.IOException
+     */
+    public void openArchive() throws IOException {
+        File archiveFile = new File(this.congressFolder.getParentFile(),
+                congressNumber + ".zip");
+        System.out.println("Downloading into " + archiveFile);
+        this.archiveWriter = new GTArchiveWriter(archiveFile);
+    }
+
+    public void closeArchive() throws IOException {
+        if (this.archiveWriter != null) {
+            this.archiveWriter.close();
+            this.archiveWriter = null;
+        }
+    }
+
+    /**
+     * @param path Path of a file relative to the congress folder
+     * @return True if the file has been downloaded into the congress folder,
+     * or into the archive if one is open
+     */
+    private boolean isDownloaded(String path) {
+        if (archiveWriter != null) {
+            return archiveWriter.contains(path);
+        }
+        return new File(this.congressFolder, path).exists();
+    }
+
+    /**
+     * Download a file into the congress folder, or into the archive if one is
+     * open.
+     *
+     * @param url The URL
+     * @param path Path of the file relative to the congress folder
+     * @return The response
+     */
+    private HttpFetcher.Response<?> download(URL url, String path) throws IOException {
+        if (archiveWriter == null) {
+            return fetcher.get(url, HttpFetcher.toFile(new File(this.congressFolder, path)));
+        }
+        return fetcher.get(url, HttpFetcher.toFile(archiveWriter.getStagedFile(path)));
+    }
+
     public void downloadBillHtmls(HashMap<String, GTBill> bills) throws Exception {
         System.out.println("Downloading bill htmls. # bills: " + bills.size());
-        IOUtils.createFolder(new File(congressFolder, "bills.html"));
+        if (archiveWriter == null) {
+            IOUtils.createFolder(new File(congressFolder, "bills.html"));
+        }
+        GTMetrics.Timer timer = metrics.startTimer("download-bill-html");
+        long numDownloadedBefore = getNumDownloaded("bill-html");
         int count = 0;
         int downloadCount = 0;
         for (GTBill bill : bills.values()) {
@@ -55,7 +165,10 @@ public class GTDownloader {
                 downloadCount++;
             }
         }
+        setDownloadRate("bill-html", getNumDownloaded("bill-html") - numDownloadedBefore,
+                timer.stop());
         System.out.println("--- Downloaded " + downloadCount + " bill htmls");
+        fetcher.printStats();
     }
 
     /**
@@ -64,34 +177,37 @@ public class GTDownloader {
     private boolean downloadBillHtml(int congressNo, String billType, int billNumber) throws Exception {
         String billId = billType + billNumber;
 
-        File outFile = new File(new File(this.congressFolder, "bills.html"), billId + ".txt");
-        if (outFile.exists()) {
+        String path = "bills.html/" + billId + ".txt";
+        if (isDownloaded(path)) {
             System.out.println("--- Skipping already downloaded file");
             return true;
         }
 
-        String urlString = GOVTRACK_URL + "bills.text/" + congressNo + "/" + billType + "/" + billId + ".html";
+        String urlString = baseUrl + "bills.text/" + congressNo + "/" + billType + "/" + billId + ".html";
         System.out.println("Downloading from URL: " + urlString);
         URL url = new URL(urlString);
-        if (!urlExists(url)) {
+
+        // read the html file
+        HttpFetcher.Response<String> response = fetcher.get(url, HttpFetcher.toText());
+        if (response.isNotFound()) {
             System.out.println("--- URL does not exist: " + urlString);
             return false;
         }
-
-        // read the html file
-        BufferedReader in = new BufferedReader(new InputStreamReader(url.openStream()));
-        StringBuilder rawContent = new StringBuilder();
-        String line;
-        while ((line = in.readLine()) != null) {
-            rawContent.append(line).append("\n");
+        if (!response.isOk()) {
+            throw new IOException("HTTP " + response.getStatus() + " from " + urlString);
         }
-        in.close();
+
+        countDownload("bill-html", response.getNumBytes());
 
         // strip html tags
-        String strippedContent = removeHTML(rawContent.toString());
+        String strippedContent = removeHTML(response.getBody(), htmlTagRemover);
 
         // write text
-        BufferedWriter writer = IOUtils.getBufferedWriter(outFile);
+        if (archiveWriter != null) {
+            archiveWriter.write(path, strippedContent.trim().getBytes("UTF-8"));
+            return true;
+        }
+        BufferedWriter writer = IOUtils.getBufferedWriter(new File(this.congressFolder, path));
         writer.write(strippedContent.trim());
         writer.close();
 
@@ -100,6 +216,8 @@ public class GTDownloader {
 
     public void downloadBillTexts(HashMap<String, GTBill> bills) throws Exception {
         System.out.println("Downloading bill texts. # bills: " + bills.size());
+        GTMetrics.Timer timer = metrics.startTimer("download-bill-text");
+        long numDownloadedBefore = getNumDownloaded("bill-text");
         int count = 0;
         int downloadCount = 0;
         for (GTBill bill : bills.values()) {
@@ -114,96 +232,304 @@ public class GTDownloader {
                 downloadCount++;
             }
         }
+        setDownloadRate("bill-text", getNumDownloaded("bill-text") - numDownloadedBefore,
+                timer.stop());
         System.out.println("--- Downloaded " + downloadCount + " bill texts");
+        fetcher.printStats();
     }
 
     private boolean downloadBillText(int congressNo, String billType, int billNumber) throws Exception {
         String billId = billType + billNumber;
 
-        File outFile = new File(new File(this.congressFolder, "bills.text"), billId + ".txt");
-        if (outFile.exists()) {
+        String path = "bills.text/" + billId + ".txt";
+        if (isDownloaded(path)) {
             System.out.println("--- Skipping already downloaded file");
             return true;
         }
 
-        String urlString = GOVTRACK_URL + "bills.text/" + congressNo + "/" + billType + "/" + billId + ".txt";
+        String urlString = baseUrl + "bills.text/" + congressNo + "/" + billType + "/" + billId + ".txt";
         System.out.println("Downloading from URL: " + urlString);
         URL url = new URL(urlString);
-        if (!urlExists(url)) {
+        HttpFetcher.Response<?> response = download(url, path);
+        if (response.isNotFound()) {
             System.out.println("--- URL does not exist: " + urlString);
             return false;
         }
-        FileUtils.copyURLToFile(url, outFile);
+        if (!response.isOk()) {
+            throw new IOException("HTTP " + response.getStatus() + " from " + urlString);
+        }
+        countDownload("bill-text", getSize(response));
         return true;
     }
 
     public void downloadBills() throws Exception {
-        System.out.println("Downloading files from " + GOVTRACK_URL + congressNumber + "/bills/");
+        downloadFolder("bills", "bill");
+    }
+
+    public void downloadRolls() throws Exception {
+        downloadFolder("rolls", "roll");
+    }
+
+    public void downloadPeopleXML() throws Exception {
+        URL url = new URL(this.congressURL, "people.xml");
+        System.out.println("Downloading file " + url);
+        HttpFetcher.Response<?> response = download(url, "people.xml");
+        if (!response.isOk()) {
+            throw new IOException("HTTP " + response.getStatus() + " from " + url);
+        }
+        countDownload("people", getSize(response));
+    }
+
+    public void downloadCR() throws Exception {
+        downloadFolder("cr", "cr");
+    }
+
+    public void syncBills() throws Exception {
+        syncFolder("bills", "bill");
+    }
+
+    public void syncRolls() throws Exception {
+        syncFolder("rolls", "roll");
+    }
+
+    public void syncCR() throws Exception {
+        syncFolder("cr", "cr");
+    }
+
+    /**
+     * Download all XML files listed in a folder of this congress on GovTrack
+     * using a pool of concurrent connections.
+     *
+     * @param folderName Name of the folder (e.g., cr, rolls, bills)
+     * @param label Label used when reporting progress
+     */
+    private void downloadFolder(String folderName, String label) throws Exception {
+        String folderUrl = baseUrl + congressNumber + "/" + folderName + "/";
+        System.out.println("Downloading files from " + folderUrl);
 
-        ArrayList<String> urls = getUrls(GOVTRACK_URL + congressNumber + "/" + "bills/");
+        GTMetrics.Timer timer = metrics.startTimer("download-" + label);
+        ArrayList<String> urls = getUrls(folderUrl);
+        GTHttpCache cache = openHttpCache();
+        GTDownloadPool pool = createDownloadPool(cache);
         int count = 0;
         for (String urlFile : urls) {
             if (!urlFile.contains(".xml")) {
                 continue;
             }
-            System.out.println("--- Downloading bill " + urlFile
-                    + ". " + count + " / " + urls.size());
-            URL url = new URL(GOVTRACK_URL + congressNumber + "/bills/" + urlFile);
-            File outFile = new File(new File(this.congressFolder, "bills"), urlFile);
-            FileUtils.copyURLToFile(url, outFile);
+            submit(pool, new URL(folderUrl + urlFile), folderName + "/" + urlFile);
             count++;
         }
-        System.out.println("--- " + count + " files downloaded");
+        System.out.println("--- Downloading " + count + " " + label + " files");
+        pool.await();
+        closeHttpCache(cache);
+        recordDownloads(label, pool, timer.stop());
+        pool.printStats();
+        checkFailures(label, pool);
     }
 
-    public void downloadRolls() throws Exception {
-        System.out.println("Downloading files from " + GOVTRACK_URL + congressNumber + "/" + "rolls/");
+    /**
+     * Download only the XML files in a folder of this congress that are new or
+     * have changed since the last sync. The directory index, including the
+     * size and date of each file, is compared with the index of the last sync,
+     * which is saved in the congress folder. Files whose size and date are not
+     * shown in the index are always scheduled, relying on conditional requests
+     * to skip them if they have not changed.
+     *
+     * @param folderName Name of the folder (e.g., cr, rolls, bills)
+     * @param label Label used when reporting progress
+     */
+    private void syncFolder(String folderName, String label) throws Exception {
+        String folderUrl = baseUrl + congressNumber + "/" + folderName + "/";
+        System.out.println("Syncing files from " + folderUrl);
 
-        ArrayList<String> urls = getUrls(GOVTRACK_URL + congressNumber + "/" + "rolls/");
-        int count = 0;
-        for (String urlFile : urls) {
-            if (!urlFile.contains(".xml")) {
+        GTMetrics.Timer timer = metrics.startTimer("sync-" + label);
+        GTListing listing = getListing(folderUrl);
+        File outFolder = new File(this.congressFolder, folderName);
+        File listingFile = new File(this.congressFolder, ".listing-" + folderName + ".txt");
+        GTListing lastListing = GTListing.load(listingFile);
+        GTListing syncedListing = new GTListing();
+        ArrayList<GTListing.Entry> scheduledEntries = new ArrayList<GTListing.Entry>();
+
+        GTHttpCache cache = openHttpCache();
+        GTDownloadPool pool = createDownloadPool(cache);
+        int numNew = 0;
+        int numChanged = 0;
+        int numUnchanged = 0;
+        for (GTListing.Entry entry : listing.getEntries()) {
+            if (!entry.getName().contains(".xml")) {
+                continue;
+            }
+            String path = folderName + "/" + entry.getName();
+            GTListing.Entry lastEntry = lastListing.getEntry(entry.getName());
+            boolean downloaded = isDownloaded(path);
+            if (downloaded && lastEntry != null && entry.isSameAs(lastEntry)) {
+                syncedListing.addEntry(entry);
+                numUnchanged++;
                 continue;
             }
+            if (downloaded) {
+                numChanged++;
+            } else {
+                numNew++;
+            }
+            submit(pool, new URL(folderUrl + entry.getName()), path);
+            scheduledEntries.add(entry);
+        }
+        System.out.println("--- " + numNew + " new, " + numChanged + " changed, "
+                + numUnchanged + " unchanged " + label + " files");
+        pool.await();
+        closeHttpCache(cache);
+        metrics.counter("gt_downloads_unchanged_total", "Number of files not scheduled "
+                + "since they are unchanged in the listing", "type", label).add(numUnchanged);
+        recordDownloads(label, pool, timer.stop());
 
-            System.out.println("--- Downloading roll " + urlFile
-                    + ". " + MiscUtils.formatDouble(100 * (double) count / urls.size())
-                    + "%");
-            URL url = new URL(GOVTRACK_URL + congressNumber + "/rolls/" + urlFile);
-            File outFile = new File(new File(this.congressFolder, "rolls"), urlFile);
-            FileUtils.copyURLToFile(url, outFile);
-            count++;
+        // only successfully downloaded files are recorded as synced, so that
+        // failed ones are scheduled again in the next sync
+        HashSet<String> failedUrls = new HashSet<String>(pool.getFailedUrls());
+        for (GTListing.Entry entry : scheduledEntries) {
+            if (!failedUrls.contains(folderUrl + entry.getName())) {
+                syncedListing.addEntry(entry);
+            }
         }
-        System.out.println("--- " + count + " files downloaded");
+        syncedListing.save(listingFile);
+
+        int numRemoved = 0;
+        String[] localFilenames = archiveWriter == null ? outFolder.list() : null;
+        if (localFilenames != null) {
+            for (String filename : localFilenames) {
+                if (filename.endsWith(".xml") && listing.getEntry(filename) == null) {
+                    numRemoved++;
+                }
+            }
+        }
+        if (numRemoved > 0) {
+            System.out.println("--- " + numRemoved + " local " + label
+                    + " files are no longer listed");
+        }
+        pool.printStats();
+        checkFailures(label, pool);
     }
 
-    public void downloadPeopleXML() throws Exception {
-        URL url = new URL(this.congressURL, "people.xml");
-        File outFile = new File(this.congressFolder, "people.xml");
+    /**
+     * Fail if any file could not be downloaded by a pool, so that an
+     * incomplete folder is not processed. This is called once the downloads
+     * have been recorded (and, when syncing, the listing saved), so that the
+     * next run only downloads the missing files.
+     *
+     * @param label Type of the files
+     * @param pool The pool, which has finished
+     */
+    private static void checkFailures(String label, GTDownloadPool pool) throws IOException {
+        if (pool.getNumFailed() > 0) {
+            throw new IOException("Failed to download " + pool.getNumFailed()
+                    + " " + label + " files");
+        }
+    }
 
-        System.out.println("Downloading file " + url + " to " + outFile);
-        FileUtils.copyURLToFile(url, outFile);
+    /**
+     * @return Size in bytes of the body of a response returned by download()
+     */
+    private static long getSize(HttpFetcher.Response<?> response) {
+        Object body = response.getBody();
+        if (body instanceof Long) {
+            return (Long) body;
+        }
+        if (body instanceof byte[]) {
+            return ((byte[]) body).length;
+        }
+        return 0;
     }
 
-    public void downloadCR() throws Exception {
-        System.out.println("Downloading files from " + GOVTRACK_URL + congressNumber + "/" + "cr/");
+    /**
+     * Count a file downloaded one by one.
+     *
+     * @param label Type of the file
+     * @param numBytes Size of the file
+     */
+    private void countDownload(String label, long numBytes) {
+        metrics.counter("gt_downloads_total", "Number of files downloaded",
+                "type", label).inc();
+        metrics.counter("gt_download_bytes_total", "Total size of the files "
+                + "downloaded in bytes", "type", label).add(numBytes);
+    }
 
-        ArrayList<String> urls = getUrls(GOVTRACK_URL + congressNumber + "/" + "cr/");
-        int count = 0;
-        for (String urlFile : urls) {
-            if (!urlFile.contains(".xml")) {
-                continue;
-            }
+    /**
+     * Record the files downloaded by a pool.
+     *
+     * @param label Type of the files
+     * @param pool The pool, which has finished
+     * @param seconds Wall time of the downloads in seconds
+     */
+    private void recordDownloads(String label, GTDownloadPool pool, double seconds) {
+        metrics.counter("gt_downloads_total", "Number of files downloaded",
+                "type", label).add(pool.getNumDownloaded());
+        metrics.counter("gt_download_bytes_total", "Total size of the files "
+                + "downloaded in bytes", "type", label).add(pool.getNumBytes());
+        metrics.counter("gt_downloads_not_modified_total", "Number of files not "
+                + "downloaded since they have not been modified", "type", label)
+                .add(pool.getNumNotModified());
+        metrics.counter("gt_download_failures_total", "Number of files that could "
+                + "not be downloaded", "type", label).add(pool.getNumFailed());
+        setDownloadRate(label, pool.getNumDownloaded(), seconds);
+    }
 
-            System.out.println("--- Downloading cr " + urlFile
-                    + ". " + MiscUtils.formatDouble(100 * (double) count / urls.size()));
-            URL url = new URL(GOVTRACK_URL + congressNumber + "/cr/" + urlFile);
-            File outFile = new File(new File(this.congressFolder, "cr"), urlFile);
-            FileUtils.copyURLToFile(url, outFile);
+    /**
+     * @return Number of files of a type downloaded so far
+     */
+    private long getNumDownloaded(String label) {
+        return metrics.counter("gt_downloads_total", "Number of files downloaded",
+                "type", label).get();
+    }
 
-            count++;
+    /**
+     * Set the download rate of a type of files from the files downloaded by
+     * a single call (e.g., of downloadFolder), since the counter of
+     * downloaded files also includes the files of earlier calls.
+     *
+     * @param numDownloaded Number of files downloaded by the call
+     * @param seconds Wall time of the call in seconds
+     */
+    private void setDownloadRate(String label, long numDownloaded, double seconds) {
+        metrics.gauge("gt_downloads_per_second", "Number of files downloaded per "
+                + "second", "type", label).set(numDownloaded / Math.max(seconds, 0.001));
+    }
+
+    /**
+     * Queue a file to be downloaded into the congress folder, or into the
+     * archive if one is open.
+     */
+    private void submit(GTDownloadPool pool, URL url, String path) {
+        if (archiveWriter == null) {
+            pool.submit(url, new File(this.congressFolder, path));
+        } else {
+            pool.submit(url, path, archiveWriter);
+        }
+    }
+
+    /**
+     * @return The open HTTP cache of this congress, or null when downloading
+     * into an archive
+     */
+    private GTHttpCache openHttpCache() throws IOException {
+        if (archiveWriter != null) {
+            return null;
         }
-        System.out.println("--- " + count + " files downloaded");
+        GTHttpCache cache = new GTHttpCache(this.congressFolder);
+        cache.open();
+        return cache;
+    }
+
+    private static void closeHttpCache(GTHttpCache cache) throws IOException {
+        if (cache != null) {
+            cache.close();
+        }
+    }
+
+    private GTDownloadPool createDownloadPool(GTHttpCache cache) {
+        GTDownloadPool pool = new GTDownloadPool(numConnections, maxConnectionsPerHost,
+                fetcher);
+        pool.setCache(cache);
+        return pool;
     }
 
     /**
@@ -213,26 +539,34 @@ public class GTDownloader {
      * @throws java.lang.Exception
      */
     public ArrayList<String> getUrls(String urlStr) throws Exception {
+        ArrayList<String> urls = getListing(urlStr).getNames();
+        System.out.println("--- " + urls.size() + " urls retrieved");
+        return urls;
+    }
+
+    /**
+     * Get the entries of a directory index page.
+     *
+     * @param urlStr URL of the directory
+     * @return The listing
+     */
+    public GTListing getListing(String urlStr) throws Exception {
         System.out.println("Getting links from " + urlStr);
 
-        ArrayList<String> urls = new ArrayList<String>();
-        URL url = new URL(urlStr);
-        Scanner in = new Scanner(url.openStream());
-        while (in.hasNext()) {
-            String line = in.nextLine();
-            int hrefIndex = line.indexOf("href");
-            if (hrefIndex == -1) {
-                continue;
-            }
-            int startQuoteIndex = hrefIndex + 6;
-            int endQuoteIndex = line.indexOf("\"", startQuoteIndex);
-            urls.add(line.substring(startQuoteIndex, endQuoteIndex));
+        HttpFetcher.Response<String> response = fetcher.get(new URL(urlStr),
+                HttpFetcher.toText());
+        if (!response.isOk()) {
+            throw new IOException("HTTP " + response.getStatus() + " from " + urlStr);
         }
-
-        System.out.println("--- " + urls.size() + " urls retrieved");
-        return urls;
+        return GTListing.parse(response.getBody());
     }
     
+    /**
+     * @deprecated Sends a request only to check the status code, so that
+     * fetching the URL takes a second request. Use HttpFetcher.get, whose
+     * response has the status code and the body of a single request.
+     */
+    @Deprecated
     public static boolean urlExists(URL url) throws Exception {
         HttpURLConnection huc = (HttpURLConnection) url.openConnection();
         huc.setRequestMethod("GET");  //OR  huc.setRequestMethod ("HEAD"); 
@@ -240,9 +574,24 @@ public class GTDownloader {
         int code = huc.getResponseCode();
         return code != 404;
     }
-    
+
+    /**
+     * Replace HTML tags by spaces and unescape HTML entities twice. Texts
+     * without any '&' have no entities to unescape.
+     */
     public static String removeHTML(String htmlString) {
-        String noHTMLString = htmlString.replaceAll("\\<.*?\\>", " ");
+        return removeHTML(htmlString, HTML_TAG_REMOVER);
+    }
+
+    /**
+     * Remove HTML tags with a given normalizer and unescape HTML entities
+     * twice.
+     */
+    public static String removeHTML(String htmlString, GTTextNormalizer tagRemover) {
+        String noHTMLString = tagRemover.normalize(htmlString);
+        if (noHTMLString.indexOf('&') == -1) {
+            return noHTMLString;
+        }
         return StringEscapeUtils.unescapeHtml4(StringEscapeUtils.unescapeHtml3(noHTMLString));
     }
 }
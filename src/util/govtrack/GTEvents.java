@@ -0,0 +1,180 @@
+package util.govtrack;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Java Flight Recorder events of the processing pipeline, which show the time
+ * spent on each raw file, entity resolution batch, debate selection and
+ * output file in a recording, e.g., one started with
+ * -XX:StartFlightRecording=filename=run.jfr.
+ *
+ * Each event is begun before the work it times and finished with the values
+ * of its fields, which are only computed if the event is recorded.
+ *
+ * @author vietan
+ */
+public class GTEvents {
+
+    public static final String CATEGORY = "GovTrack";
+
+    /**
+     * Parsing of a raw cr, bills or rolls file.
+     */
+    @Name("gtpounder.ParseFile")
+    @Label("Parse Raw File")
+    @Category({CATEGORY, "Ingest"})
+    @Description("Parsing of a raw debate, bill or roll file")
+    @StackTrace(false)
+    public static class ParseFile extends Event {
+
+        @Label("Type")
+        private String type;
+        @Label("File Name")
+        private String filename;
+        @Label("Size")
+        @DataAmount(DataAmount.BYTES)
+        private long size;
+        @Label("Elements")
+        @Description("Number of turns of a debate, subjects of a bill or votes of a roll")
+        private int numElements;
+        @Label("Skipped")
+        private boolean skipped;
+
+        /**
+         * @param type Type of the file (e.g., debate)
+         * @param filename Name of the file
+         * @param size Size of the file in bytes
+         * @param parsed The parsed object, or null if the file is skipped
+         */
+        public void finish(String type, String filename, long size, Object parsed) {
+            end();
+            if (!shouldCommit()) {
+                return;
+            }
+            this.type = type;
+            this.filename = filename;
+            this.size = size;
+            this.skipped = parsed == null;
+            if (parsed instanceof GTDebate) {
+                this.numElements = ((GTDebate) parsed).getNumTurns();
+            } else if (parsed instanceof GTBill) {
+                ArrayList<String> subjects = ((GTBill) parsed).getSubjects();
+                this.numElements = subjects == null ? 0 : subjects.size();
+            } else if (parsed instanceof GTRoll) {
+                this.numElements = ((GTRoll) parsed).getNumVotes();
+            }
+            commit();
+        }
+    }
+
+    /**
+     * Matching of the legislators of a VoteView file that have no ICPSR ID in
+     * the GovTrack data.
+     */
+    @Name("gtpounder.ResolveICPSRBatch")
+    @Label("Resolve ICPSR IDs")
+    @Category({CATEGORY, "Linking"})
+    @Description("Entity resolution of the legislators of a VoteView file")
+    @StackTrace(false)
+    public static class ResolveICPSRBatch extends Event {
+
+        @Label("Chamber")
+        private String chamber;
+        @Label("File Name")
+        private String filename;
+        @Label("Candidates")
+        @Description("Number of legislators of the file to resolve")
+        private int numCandidates;
+        @Label("Resolved From Cache")
+        private int numCached;
+        @Label("Unmatched")
+        private int numUnmatched;
+
+        public void finish(String chamber, String filename, int numCandidates,
+                int numCached, int numUnmatched) {
+            end();
+            if (!shouldCommit()) {
+                return;
+            }
+            this.chamber = chamber;
+            this.filename = filename;
+            this.numCandidates = numCandidates;
+            this.numCached = numCached;
+            this.numUnmatched = numUnmatched;
+            commit();
+        }
+    }
+
+    /**
+     * Selection of the debates to output.
+     */
+    @Name("gtpounder.SelectDebates")
+    @Label("Select Debates")
+    @Category({CATEGORY, "Linking"})
+    @StackTrace(false)
+    public static class SelectDebates extends Event {
+
+        @Label("Debates")
+        private int numDebates;
+        @Label("Selected Debates")
+        private int numSelected;
+        @Label("Selected Turns")
+        private int numTurns;
+
+        /**
+         * @param numDebates Number of debates selected from
+         * @param selectedDebates The selected debates
+         */
+        public void finish(int numDebates, List<GTDebate> selectedDebates) {
+            end();
+            if (!shouldCommit()) {
+                return;
+            }
+            this.numDebates = numDebates;
+            this.numSelected = selectedDebates.size();
+            for (GTDebate debate : selectedDebates) {
+                this.numTurns += debate.getNumTurns();
+            }
+            commit();
+        }
+    }
+
+    /**
+     * Writing of an output file by GTProcessor.writeFile, a GTWriterPool or
+     * a GTTSVWriter. Files written by a plain TSVWriter are not recorded.
+     */
+    @Name("gtpounder.WriteFile")
+    @Label("Write Output File")
+    @Category({CATEGORY, "Output"})
+    @StackTrace(false)
+    public static class WriteFile extends Event {
+
+        @Label("Path")
+        private String path;
+        @Label("Size")
+        @DataAmount(DataAmount.BYTES)
+        private long size;
+
+        /**
+         * @param file The file, which has been closed
+         */
+        public void finish(File file) {
+            end();
+            if (!shouldCommit()) {
+                return;
+            }
+            this.path = file.getPath();
+            this.size = file.length();
+            commit();
+        }
+    }
+}
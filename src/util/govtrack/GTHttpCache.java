@@ -0,0 +1,172 @@
+package util.govtrack;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.HashMap;
+import util.IOUtils;
+import util.tsv.TSVReader;
+
+/**
+ * Validators (ETag and Last-Modified) of downloaded files, used to send
+ * conditional requests so that unchanged files are not downloaded again, and
+ * to resume interrupted downloads only if the file has not changed on the
+ * server in the meantime.
+ *
+ * The validators are stored in a journal in the root folder, with one line per
+ * update: the path of the file relative to the root folder, the ETag and the
+ * Last-Modified value (- if missing). The last line of a file wins. Every
+ * update is flushed immediately so that the validators of partially
+ * downloaded files survive an interrupted run. The journal is compacted when
+ * it is opened.
+ *
+ * @author vietan
+ */
+public class GTHttpCache {
+
+    public static final String CACHE_FILE = ".httpcache.txt";
+    private static final String MISSING = "-";
+    private final File rootFolder;
+    private final File cacheFile;
+    private final HashMap<String, Validators> entries;
+    private BufferedWriter journal;
+
+    public GTHttpCache(File rootFolder) {
+        this.rootFolder = rootFolder.getAbsoluteFile();
+        this.cacheFile = new File(rootFolder, CACHE_FILE);
+        this.entries = new HashMap<String, Validators>();
+    }
+
+    /**
+     * Validators of a response.
+     */
+    public static class Validators {
+
+        private final String etag;
+        private final String lastModified;
+
+        public Validators(String etag, String lastModified) {
+            this.etag = etag;
+            this.lastModified = lastModified;
+        }
+
+        /**
+         * @return The validators of a response, or null if it has none
+         */
+        public static Validators get(HttpFetcher.Response<?> response) {
+            String etag = response.getHeader("ETag");
+            String lastModified = response.getHeader("Last-Modified");
+            if (etag == null && lastModified == null) {
+                return null;
+            }
+            return new Validators(etag, lastModified);
+        }
+
+        public String getETag() {
+            return this.etag;
+        }
+
+        public String getLastModified() {
+            return this.lastModified;
+        }
+
+        /**
+         * @return The value of the If-Range header, or null if the validators
+         * cannot be used to resume a download. Weak ETags are not allowed in
+         * If-Range.
+         */
+        public String getIfRange() {
+            if (etag != null && !etag.startsWith("W/")) {
+                return etag;
+            }
+            return lastModified;
+        }
+    }
+
+    /**
+     * Load the journal and compact it.
+     *
+     * @throws java.io.IOException
+     */
+    public synchronized void open() throws IOException {
+        entries.clear();
+        if (cacheFile.exists()) {
+            TSVReader reader = new TSVReader(cacheFile);
+            while (reader.next()) {
+                if (reader.getNumFields() < 3) { // truncated line of an interrupted run
+                    continue;
+                }
+                String etag = reader.fieldEquals(1, MISSING) ? null : reader.getString(1);
+                String lastModified = reader.fieldEquals(2, MISSING) ? null : reader.getString(2);
+                if (etag == null && lastModified == null) {
+                    entries.remove(reader.getString(0));
+                } else {
+                    entries.put(reader.getString(0), new Validators(etag, lastModified));
+                }
+            }
+            reader.close();
+        }
+
+        IOUtils.createFolder(rootFolder);
+        File tempFile = new File(rootFolder, CACHE_FILE + ".tmp");
+        BufferedWriter writer = IOUtils.getBufferedWriter(tempFile);
+        for (String path : entries.keySet()) {
+            writeEntry(writer, path, entries.get(path));
+        }
+        writer.close();
+        Files.move(tempFile.toPath(), cacheFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+
+        this.journal = new BufferedWriter(new OutputStreamWriter(
+                new FileOutputStream(cacheFile, true), "UTF-8"));
+    }
+
+    public synchronized void close() throws IOException {
+        if (journal != null) {
+            journal.close();
+            journal = null;
+        }
+    }
+
+    public synchronized Validators get(File file) {
+        return entries.get(getPath(file));
+    }
+
+    public synchronized void put(File file, Validators validators) throws IOException {
+        if (validators == null) {
+            remove(file);
+            return;
+        }
+        String path = getPath(file);
+        entries.put(path, validators);
+        writeEntry(journal, path, validators);
+        journal.flush();
+    }
+
+    public synchronized void remove(File file) throws IOException {
+        String path = getPath(file);
+        if (entries.remove(path) != null) {
+            writeEntry(journal, path, new Validators(null, null));
+            journal.flush();
+        }
+    }
+
+    private static void writeEntry(BufferedWriter writer, String path,
+            Validators validators) throws IOException {
+        writer.write(path
+                + "\t" + (validators.etag == null ? MISSING : validators.etag)
+                + "\t" + (validators.lastModified == null ? MISSING : validators.lastModified)
+                + "\n");
+    }
+
+    /**
+     * Path of a file relative to the root folder, with / as separator.
+     */
+    private String getPath(File file) {
+        String path = rootFolder.toURI().relativize(file.getAbsoluteFile().toURI()).getPath();
+        return path.replace(File.separatorChar, '/');
+    }
+}
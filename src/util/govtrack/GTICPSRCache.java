@@ -0,0 +1,244 @@
+package util.govtrack;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.channels.FileLock;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import util.tsv.TSVReader;
+import util.tsv.TSVWriter;
+
+/**
+ * ICPSR IDs of GovTrack legislators resolved by matching with VoteView
+ * legislators, kept across runs so that a VoteView legislator that has been
+ * matched before is not matched again.
+ *
+ * The cache file has one line per resolved VoteView legislator with the
+ * congress number, the fingerprint of the matcher (see
+ * GTICPSRMatcher.getFingerprint), the GovTrack ID, the ICPSR ID and the score
+ * of the match. Entries are keyed by congress, fingerprint and ICPSR ID, since
+ * the ICPSR ID of a legislator changes when the legislator switches party,
+ * several VoteView legislators can be matched with the same GovTrack
+ * legislator, and a match is only valid for the GovTrack legislators it has
+ * been found among. Entries of other fingerprints are kept but never returned.
+ *
+ * The cache file can be shared by several processes (e.g., Processor and
+ * ProcessorV2). Saving locks a lock file next to it, merges the entries added
+ * and removed since loading into the current content of the file, and
+ * replaces the file with a renamed temporary file.
+ *
+ * @author vietan
+ */
+public class GTICPSRCache {
+
+    public static final String CACHE_FILE = "icpsr-cache.txt";
+    private final File cacheFile;
+    private final String fingerprint;
+    // congress + fingerprint + ICPSR ID -> entry
+    private final HashMap<String, Entry> entries;
+    // changes since the cache file was loaded
+    private final HashMap<String, Entry> addedEntries;
+    private final HashSet<String> removedKeys;
+
+    /**
+     * @param cacheFile The cache file
+     * @param fingerprint Fingerprint of the current GovTrack legislators
+     */
+    public GTICPSRCache(File cacheFile, String fingerprint) {
+        this.cacheFile = cacheFile;
+        this.fingerprint = fingerprint;
+        this.entries = new HashMap<String, Entry>();
+        this.addedEntries = new HashMap<String, Entry>();
+        this.removedKeys = new HashSet<String>();
+    }
+
+    /**
+     * A resolved legislator.
+     */
+    public static class Entry {
+
+        private final int congress;
+        private final String fingerprint;
+        private final String govtrackId;
+        private final String icpsrId;
+        private final double score;
+
+        public Entry(int congress, String fingerprint, String govtrackId, String icpsrId,
+                double score) {
+            this.congress = congress;
+            this.fingerprint = fingerprint;
+            this.govtrackId = govtrackId;
+            this.icpsrId = icpsrId;
+            this.score = score;
+        }
+
+        public int getCongress() {
+            return this.congress;
+        }
+
+        public String getFingerprint() {
+            return this.fingerprint;
+        }
+
+        public String getGovTrackId() {
+            return this.govtrackId;
+        }
+
+        public String getICPSRId() {
+            return this.icpsrId;
+        }
+
+        public double getScore() {
+            return this.score;
+        }
+
+        private String getKey() {
+            return congress + "\t" + fingerprint + "\t" + icpsrId;
+        }
+    }
+
+    public File getCacheFile() {
+        return this.cacheFile;
+    }
+
+    public String getFingerprint() {
+        return this.fingerprint;
+    }
+
+    public int size() {
+        return this.entries.size();
+    }
+
+    /**
+     * @return The entry of the legislator with a given ICPSR ID in a congress,
+     * resolved among the current GovTrack legislators, or null if there is
+     * none
+     */
+    public Entry getByICPSRId(int congress, String icpsrId) {
+        return this.entries.get(congress + "\t" + fingerprint + "\t" + icpsrId);
+    }
+
+    /**
+     * Add or replace the entry of a legislator.
+     */
+    public void put(Entry entry) {
+        String key = entry.getKey();
+        this.entries.put(key, entry);
+        this.addedEntries.put(key, entry);
+        this.removedKeys.remove(key);
+    }
+
+    /**
+     * Remove the entry of a legislator.
+     */
+    public void remove(Entry entry) {
+        String key = entry.getKey();
+        if (this.entries.remove(key) != null) {
+            this.addedEntries.remove(key);
+            this.removedKeys.add(key);
+        }
+    }
+
+    /**
+     * Load the cache file, if it exists. Lines without a fingerprint, written
+     * by earlier versions, are ignored.
+     *
+     * @throws java.io.IOException
+     */
+    public void load() throws IOException {
+        this.entries.clear();
+        this.addedEntries.clear();
+        this.removedKeys.clear();
+        read(this.entries);
+    }
+
+    private void read(HashMap<String, Entry> map) throws IOException {
+        if (!cacheFile.exists()) {
+            return;
+        }
+        TSVReader reader = new TSVReader(cacheFile);
+        try {
+            while (reader.next()) {
+                if (reader.getNumFields() < 5) {
+                    continue;
+                }
+                Entry entry = new Entry(reader.getInt(0), reader.getString(1),
+                        reader.getString(2), reader.getString(3), reader.getDouble(4));
+                map.put(entry.getKey(), entry);
+            }
+        } finally {
+            reader.close();
+        }
+    }
+
+    /**
+     * Save the entries added or removed since the cache file was loaded, if
+     * any, into the cache file.
+     *
+     * @throws java.io.IOException
+     */
+    public void save() throws IOException {
+        if (addedEntries.isEmpty() && removedKeys.isEmpty()) {
+            return;
+        }
+        File lockFile = new File(cacheFile.getAbsolutePath() + ".lock");
+        RandomAccessFile lockRaf = new RandomAccessFile(lockFile, "rw");
+        try {
+            FileLock lock = lockRaf.getChannel().lock();
+            try {
+                // merge with the entries saved by other processes since loading
+                HashMap<String, Entry> merged = new HashMap<String, Entry>();
+                read(merged);
+                for (String key : removedKeys) {
+                    merged.remove(key);
+                }
+                merged.putAll(addedEntries);
+                write(merged);
+            } finally {
+                lock.release();
+            }
+        } finally {
+            lockRaf.close();
+        }
+        this.addedEntries.clear();
+        this.removedKeys.clear();
+    }
+
+    private void write(HashMap<String, Entry> map) throws IOException {
+        ArrayList<String> keys = new ArrayList<String>(map.keySet());
+        Collections.sort(keys);
+        File tempFile = File.createTempFile(cacheFile.getName(), ".tmp",
+                cacheFile.getAbsoluteFile().getParentFile());
+        try {
+            TSVWriter writer = new GTTSVWriter(tempFile);
+            try {
+                for (String key : keys) {
+                    Entry entry = map.get(key);
+                    writer.field(entry.congress)
+                            .field(entry.fingerprint)
+                            .field(entry.govtrackId)
+                            .field(entry.icpsrId)
+                            .field(entry.score)
+                            .endLine();
+                }
+            } finally {
+                writer.close();
+            }
+            try {
+                Files.move(tempFile.toPath(), cacheFile.toPath(),
+                        StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(tempFile.toPath(), cacheFile.toPath(),
+                        StandardCopyOption.REPLACE_EXISTING);
+            }
+        } finally {
+            tempFile.delete();
+        }
+    }
+}
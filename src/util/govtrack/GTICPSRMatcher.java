@@ -0,0 +1,312 @@
+package util.govtrack;
+
+import java.io.UnsupportedEncodingException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import util.MiscUtils;
+
+/**
+ * Match legislators listed in VoteView files with GovTrack legislators, used
+ * to fill in missing ICPSR IDs.
+ *
+ * GovTrack legislators are indexed by blocks of (chamber, party, state,
+ * district) for Representatives and (chamber, party, state) for Senators, so
+ * that each VoteView legislator is only compared with the few legislators in
+ * the same block. A candidate is rejected if its last name and its first name
+ * (and nickname, if any) are all more than MAX_NAME_DISTANCE apart from those
+ * of the VoteView legislator, using the edit distance normalized by the length
+ * of the longer name. Since the edit distance is at least the difference
+ * between the lengths of the names, most mismatches are rejected without
+ * computing any edit distance. The remaining ones are compared with
+ * GTNameDistance, which stops as soon as the distance is over the bound.
+ *
+ * If multiple candidates in a block match, the last one is returned, with the
+ * similarity of the name that matched (one minus its normalized edit
+ * distance) as the score of the match.
+ *
+ * The fingerprint of a matcher is a hash of the candidates it compares with,
+ * so that matches can be reused (see GTICPSRCache) only as long as they would
+ * be found again.
+ *
+ * @author vietan
+ */
+public class GTICPSRMatcher {
+
+    public static final double MAX_NAME_DISTANCE = 0.3;
+    private final HashMap<String, ArrayList<Candidate>> blocks;
+    private final String fingerprint;
+    private final boolean verbose;
+    // statistics
+    private int numQueries;
+    private int numMatches;
+    private int numCandidates;
+    private int numPruned;
+    private int numDistances;
+    private long time;
+
+    /**
+     * @param legislators GovTrack legislators. Candidates in a block are
+     * compared in the order in which they are given.
+     * @param verbose Whether rejected candidates are reported
+     */
+    public GTICPSRMatcher(Collection<GTLegislator> legislators, boolean verbose) {
+        this.verbose = verbose;
+        this.blocks = new HashMap<String, ArrayList<Candidate>>();
+        MessageDigest md;
+        try {
+            md = MessageDigest.getInstance("MD5");
+        } catch (NoSuchAlgorithmException e) {
+            throw new RuntimeException(e);
+        }
+        update(md, Double.toString(MAX_NAME_DISTANCE));
+        for (GTLegislator legislator : legislators) {
+            String key;
+            if (legislator.getType().equals("rep")) {
+                key = getRepresentativeKey(legislator.getParty(), legislator.getState(),
+                        legislator.getDistrict());
+            } else if (legislator.getType().equals("sen")) {
+                key = getSenatorKey(legislator.getParty(), legislator.getState());
+            } else {
+                continue;
+            }
+            ArrayList<Candidate> block = blocks.get(key);
+            if (block == null) {
+                block = new ArrayList<Candidate>();
+                blocks.put(key, block);
+            }
+            Candidate candidate = new Candidate(legislator);
+            block.add(candidate);
+            update(md, legislator.getId() + "\t" + key + "\t" + candidate.lastname
+                    + "\t" + candidate.firstname + "\t" + candidate.nickname);
+        }
+        StringBuilder str = new StringBuilder();
+        for (byte b : md.digest()) {
+            str.append(String.format("%02x", b));
+        }
+        this.fingerprint = str.toString();
+    }
+
+    private static void update(MessageDigest md, String str) {
+        try {
+            md.update(str.getBytes("UTF-8"));
+        } catch (UnsupportedEncodingException e) {
+            throw new RuntimeException(e);
+        }
+        md.update((byte) '\n');
+    }
+
+    /**
+     * @return The MD5 hash of the candidates, in the order in which they are
+     * compared, and of the name distance threshold
+     */
+    public String getFingerprint() {
+        return this.fingerprint;
+    }
+
+    /**
+     * Names of a GovTrack legislator in lower case.
+     */
+    private static class Candidate {
+
+        final GTLegislator legislator;
+        final String lastname;
+        final String firstname;
+        final String nickname;
+
+        Candidate(GTLegislator legislator) {
+            this.legislator = legislator;
+            this.lastname = legislator.getLastname().toLowerCase();
+            this.firstname = legislator.getFirstname().toLowerCase();
+            this.nickname = legislator.hasProperty("nickname")
+                    ? legislator.getProperty("nickname").toLowerCase() : null;
+        }
+    }
+
+    /**
+     * A matching GovTrack legislator and the score of the match.
+     */
+    public static class Match {
+
+        private final GTLegislator legislator;
+        private final double score;
+
+        public Match(GTLegislator legislator, double score) {
+            this.legislator = legislator;
+            this.score = score;
+        }
+
+        public GTLegislator getLegislator() {
+            return this.legislator;
+        }
+
+        public double getScore() {
+            return this.score;
+        }
+    }
+
+    private static String getRepresentativeKey(String party, String state, int district) {
+        return "rep\t" + party + "\t" + state + "\t" + district;
+    }
+
+    private static String getSenatorKey(String party, String state) {
+        return "sen\t" + party + "\t" + state;
+    }
+
+    /**
+     * Find the GovTrack Representative of a VoteView legislator.
+     *
+     * @return The matching legislator, or null if there is none
+     */
+    public GTLegislator findRepresentative(String party, String state, int district,
+            String lastname, String firstname) {
+        Match match = matchRepresentative(party, state, district, lastname, firstname);
+        return match == null ? null : match.getLegislator();
+    }
+
+    /**
+     * Find the GovTrack Senator of a VoteView legislator.
+     *
+     * @return The matching legislator, or null if there is none
+     */
+    public GTLegislator findSenator(String party, String state,
+            String lastname, String firstname) {
+        Match match = matchSenator(party, state, lastname, firstname);
+        return match == null ? null : match.getLegislator();
+    }
+
+    /**
+     * Find the GovTrack Representative of a VoteView legislator.
+     *
+     * @return The match, or null if there is none
+     */
+    public Match matchRepresentative(String party, String state, int district,
+            String lastname, String firstname) {
+        return findMatch(getRepresentativeKey(party, state, district), lastname, firstname);
+    }
+
+    /**
+     * Find the GovTrack Senator of a VoteView legislator.
+     *
+     * @return The match, or null if there is none
+     */
+    public Match matchSenator(String party, String state,
+            String lastname, String firstname) {
+        return findMatch(getSenatorKey(party, state), lastname, firstname);
+    }
+
+    private Match findMatch(String key, String lastname, String firstname) {
+        long startTime = System.nanoTime();
+        numQueries++;
+        String curLastname = lastname.toLowerCase();
+        String curFirstname = firstname.toLowerCase();
+
+        Match match = null;
+        ArrayList<Candidate> block = blocks.get(key);
+        if (block != null) {
+            for (Candidate candidate : block) {
+                numCandidates++;
+                double score = getNameScore(candidate, curLastname, curFirstname);
+                if (score >= 0) {
+                    match = new Match(candidate.legislator, score);
+                } else if (verbose) {
+                    GTLegislator legislator = candidate.legislator;
+                    System.out.println("\t\tDetecting a mismatch, check if reasonable"
+                            + ". lastname: " + candidate.lastname + " vs. " + curLastname
+                            + ". firstname: " + candidate.firstname + " vs. " + curFirstname
+                            + ". type: " + legislator.getType()
+                            + ". party: " + legislator.getParty()
+                            + ". state: " + legislator.getState());
+                }
+            }
+        }
+        if (match != null) {
+            numMatches++;
+        }
+        time += System.nanoTime() - startTime;
+        return match;
+    }
+
+    /**
+     * @return The similarity of the first name (last name, first name or
+     * nickname) that matches, or -1 if none does
+     */
+    private double getNameScore(Candidate candidate, String curLastname, String curFirstname) {
+        // reject without computing edit distances if the lengths of the names
+        // are already too different
+        if (getLengthBound(candidate.lastname, curLastname) > MAX_NAME_DISTANCE
+                && getLengthBound(candidate.firstname, curFirstname) > MAX_NAME_DISTANCE
+                && (candidate.nickname == null
+                || getLengthBound(candidate.nickname, curFirstname) > MAX_NAME_DISTANCE)) {
+            numPruned++;
+            return -1;
+        }
+
+        double score = getSimilarity(candidate.lastname, curLastname);
+        if (score >= 0) {
+            return score;
+        }
+        score = getSimilarity(candidate.firstname, curFirstname);
+        if (score >= 0 || candidate.nickname == null) {
+            return score;
+        }
+        return getSimilarity(candidate.nickname, curFirstname);
+    }
+
+    /**
+     * Lower bound of the normalized edit distance between two strings.
+     */
+    private static double getLengthBound(String str1, String str2) {
+        int maxLength = Math.max(str1.length(), str2.length());
+        if (maxLength == 0) {
+            return 0.0;
+        }
+        return (double) Math.abs(str1.length() - str2.length()) / maxLength;
+    }
+
+    /**
+     * Similarity of two names, or -1 if their edit distance normalized by the
+     * length of the longer name is larger than MAX_NAME_DISTANCE.
+     */
+    private double getSimilarity(String str1, String str2) {
+        numDistances++;
+        return GTNameDistance.getSimilarity(str1, str2, MAX_NAME_DISTANCE);
+    }
+
+    public int getNumBlocks() {
+        return this.blocks.size();
+    }
+
+    public int getNumQueries() {
+        return this.numQueries;
+    }
+
+    public int getNumMatches() {
+        return this.numMatches;
+    }
+
+    public int getNumCandidates() {
+        return this.numCandidates;
+    }
+
+    public int getNumPruned() {
+        return this.numPruned;
+    }
+
+    public int getNumDistances() {
+        return this.numDistances;
+    }
+
+    public void printReport() {
+        System.out.println("--- ICPSR matching: " + numQueries + " queries"
+                + ", " + numMatches + " matched"
+                + ", " + (numQueries - numMatches) + " unmatched");
+        System.out.println("--- --- " + blocks.size() + " blocks"
+                + ". # candidates compared: " + numCandidates
+                + ". # pruned by name length: " + numPruned
+                + ". # edit distances: " + numDistances
+                + ". Time: " + MiscUtils.formatDouble(time / 1000000.0) + " ms");
+    }
+}
@@ -43,12 +43,14 @@ public class GTLegislator extends AbstractObject<String> {
     private final String state;
     private int district;
     private String type; // rep or sen
+    private final int symbol;
     private ArrayList<String> debateIds;
 
-    public GTLegislator(String id, String lname, String fname, String mname,
-            String type,
+    public GTLegislator(GTSymbols symbols, String id, String lname, String fname,
+            String mname, String type,
             String party, String state) {
         super(id);
+        this.symbol = symbols.getSpeakers().intern(id);
         this.lastname = lname;
         this.firstname = fname;
         this.middlename = mname;
@@ -57,9 +59,10 @@ public class GTLegislator extends AbstractObject<String> {
         this.state = state;
     }
 
-    public GTLegislator(String id, String lname, String fname, String mname,
-            String party, String state, int district) {
+    public GTLegislator(GTSymbols symbols, String id, String lname, String fname,
+            String mname, String party, String state, int district) {
         super(id);
+        this.symbol = symbols.getSpeakers().intern(id);
         this.lastname = lname;
         this.firstname = fname;
         this.middlename = mname;
@@ -68,6 +71,13 @@ public class GTLegislator extends AbstractObject<String> {
         this.district = district;
     }
 
+    /**
+     * @return The symbol of the legislator ID
+     */
+    public int getSymbol() {
+        return this.symbol;
+    }
+
     public void addDebateId(String sid) {
         if (debateIds == null) {
             debateIds = new ArrayList<String>();
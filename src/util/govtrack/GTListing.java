@@ -0,0 +1,221 @@
+package util.govtrack;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Scanner;
+import java.util.TimeZone;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import util.tsv.TSVReader;
+import util.tsv.TSVWriter;
+
+/**
+ * Entries of a directory index page (e.g., https://www.govtrack.us/data/us/112/rolls/)
+ * with the size and last modified date shown next to each link, if any.
+ *
+ * Apache and nginx style indexes are supported, in which each link is
+ * followed by a date (e.g., 07-Jan-2012 10:11 or 2012-01-07 10:11) and a size
+ * (e.g., 12345, 1.2K or -). Sizes with a unit are approximate. Sizes and dates
+ * that are not shown are stored as -1.
+ *
+ * A listing can be saved to and loaded from a file to compare it with the
+ * listing of the next sync.
+ *
+ * @author vietan
+ */
+public class GTListing {
+
+    private static final Pattern DATE_SIZE_PATTERN = Pattern.compile(
+            "(\\d{2}-[A-Za-z]{3}-\\d{4} \\d{2}:\\d{2}(?::\\d{2})?"
+            + "|\\d{4}-\\d{2}-\\d{2} \\d{2}:\\d{2}(?::\\d{2})?)"
+            + "\\s+(\\d+(?:\\.\\d+)?[KMGT]?|-)");
+    private final LinkedHashMap<String, Entry> entries;
+
+    public GTListing() {
+        this.entries = new LinkedHashMap<String, Entry>();
+    }
+
+    /**
+     * Entry of a listing.
+     */
+    public static class Entry {
+
+        private final String name;
+        private final long size;
+        private final long lastModified;
+
+        public Entry(String name, long size, long lastModified) {
+            this.name = name;
+            this.size = size;
+            this.lastModified = lastModified;
+        }
+
+        public String getName() {
+            return this.name;
+        }
+
+        /**
+         * @return Size in bytes, or -1 if not shown
+         */
+        public long getSize() {
+            return this.size;
+        }
+
+        /**
+         * @return Last modified time in milliseconds (UTC), or -1 if not shown
+         */
+        public long getLastModified() {
+            return this.lastModified;
+        }
+
+        /**
+         * @return True if the size or date is shown
+         */
+        public boolean hasStamp() {
+            return this.size >= 0 || this.lastModified >= 0;
+        }
+
+        /**
+         * @return True if this entry has the same size and date as the other
+         * entry, and at least one of them is shown
+         */
+        public boolean isSameAs(Entry other) {
+            return hasStamp() && this.size == other.size
+                    && this.lastModified == other.lastModified;
+        }
+    }
+
+    public void addEntry(Entry entry) {
+        this.entries.put(entry.getName(), entry);
+    }
+
+    public Entry getEntry(String name) {
+        return this.entries.get(name);
+    }
+
+    public ArrayList<Entry> getEntries() {
+        return new ArrayList<Entry>(this.entries.values());
+    }
+
+    public ArrayList<String> getNames() {
+        return new ArrayList<String>(this.entries.keySet());
+    }
+
+    public int size() {
+        return this.entries.size();
+    }
+
+    /**
+     * Parse a directory index page. Every line containing a link adds an
+     * entry.
+     *
+     * @param html Content of the index page
+     * @return The listing
+     */
+    public static GTListing parse(String html) {
+        GTListing listing = new GTListing();
+        Scanner in = new Scanner(html);
+        while (in.hasNext()) {
+            String line = in.nextLine();
+            int hrefIndex = line.indexOf("href");
+            if (hrefIndex == -1) {
+                continue;
+            }
+            int startQuoteIndex = hrefIndex + 6;
+            int endQuoteIndex = line.indexOf("\"", startQuoteIndex);
+            String name = line.substring(startQuoteIndex, endQuoteIndex);
+
+            long size = -1;
+            long lastModified = -1;
+            int anchorEndIndex = line.indexOf("</a>", endQuoteIndex);
+            if (anchorEndIndex != -1) {
+                String rest = line.substring(anchorEndIndex + 4).replaceAll("<[^>]*>", " ");
+                Matcher matcher = DATE_SIZE_PATTERN.matcher(rest);
+                if (matcher.find()) {
+                    lastModified = parseDate(matcher.group(1));
+                    size = parseSize(matcher.group(2));
+                }
+            }
+            listing.addEntry(new Entry(name, size, lastModified));
+        }
+        return listing;
+    }
+
+    private static long parseDate(String str) {
+        String[] formats = {"dd-MMM-yyyy HH:mm:ss", "dd-MMM-yyyy HH:mm",
+            "yyyy-MM-dd HH:mm:ss", "yyyy-MM-dd HH:mm"};
+        for (String format : formats) {
+            if (format.length() != str.length()) {
+                continue;
+            }
+            SimpleDateFormat dateFormat = new SimpleDateFormat(format, Locale.US);
+            dateFormat.setTimeZone(TimeZone.getTimeZone("UTC"));
+            try {
+                return dateFormat.parse(str).getTime();
+            } catch (ParseException e) {
+                // try the next format
+            }
+        }
+        return -1;
+    }
+
+    private static long parseSize(String str) {
+        if (str.equals("-")) {
+            return -1;
+        }
+        char unit = str.charAt(str.length() - 1);
+        if (Character.isDigit(unit)) {
+            return Long.parseLong(str);
+        }
+        double value = Double.parseDouble(str.substring(0, str.length() - 1));
+        int power = "KMGT".indexOf(unit) + 1;
+        return Math.round(value * Math.pow(1024, power));
+    }
+
+    /**
+     * Save the listing, one entry per line with its name, size and date.
+     *
+     * @param file The output file
+     * @throws java.io.IOException
+     */
+    public void save(File file) throws IOException {
+        File tempFile = new File(file.getAbsolutePath() + ".tmp");
+        TSVWriter writer = new GTTSVWriter(tempFile);
+        for (Entry entry : entries.values()) {
+            writer.field(entry.getName())
+                    .field(entry.getSize())
+                    .field(entry.getLastModified())
+                    .endLine();
+        }
+        writer.close();
+        Files.move(tempFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    /**
+     * Load a saved listing.
+     *
+     * @param file The saved listing
+     * @return The listing, which is empty if the file does not exist
+     * @throws java.io.IOException
+     */
+    public static GTListing load(File file) throws IOException {
+        GTListing listing = new GTListing();
+        if (!file.exists()) {
+            return listing;
+        }
+        TSVReader reader = new TSVReader(file);
+        while (reader.next()) {
+            listing.addEntry(new Entry(reader.getString(0), reader.getLong(1),
+                    reader.getLong(2)));
+        }
+        reader.close();
+        return listing;
+    }
+}
@@ -0,0 +1,422 @@
+package util.govtrack;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import util.IOUtils;
+
+/**
+ * Counters and gauges describing a run (e.g., the number of files parsed, the
+ * number of records skipped and the time each stage took), which are dumped
+ * at the end of the run as JSON and in the Prometheus text format.
+ *
+ * A metric is identified by its name and its labels, which are given as pairs
+ * of label name and value (e.g., "type", "debate"). Metrics can be updated by
+ * multiple threads.
+ *
+ * @author vietan
+ */
+public class GTMetrics {
+
+    public static final String JSON_FILE = "metrics.json";
+    public static final String PROMETHEUS_FILE = "metrics.prom";
+    public static final String COUNTER = "counter";
+    public static final String GAUGE = "gauge";
+    private static final ThreadMXBean THREAD_BEAN = ManagementFactory.getThreadMXBean();
+    private final ConcurrentHashMap<String, Metric> metrics;
+
+    public GTMetrics() {
+        this.metrics = new ConcurrentHashMap<String, Metric>();
+    }
+
+    /**
+     * A metric with its name, help text and labels.
+     */
+    public static abstract class Metric {
+
+        private final String name;
+        private final String help;
+        private final String[] labels;
+
+        Metric(String name, String help, String[] labels) {
+            this.name = name;
+            this.help = help;
+            this.labels = labels;
+        }
+
+        public String getName() {
+            return this.name;
+        }
+
+        public String getHelp() {
+            return this.help;
+        }
+
+        /**
+         * @return Label names and values, one after the other
+         */
+        public String[] getLabels() {
+            return this.labels.clone();
+        }
+
+        public abstract String getType();
+
+        /**
+         * @return The value, formatted as in the dumped files
+         */
+        public abstract String getValueString();
+    }
+
+    /**
+     * A count that only increases (e.g., number of files parsed).
+     */
+    public static class Counter extends Metric {
+
+        private final AtomicLong value;
+
+        Counter(String name, String help, String[] labels) {
+            super(name, help, labels);
+            this.value = new AtomicLong();
+        }
+
+        public void inc() {
+            value.incrementAndGet();
+        }
+
+        public void add(long n) {
+            value.addAndGet(n);
+        }
+
+        public long get() {
+            return value.get();
+        }
+
+        @Override
+        public String getType() {
+            return COUNTER;
+        }
+
+        @Override
+        public String getValueString() {
+            return Long.toString(value.get());
+        }
+    }
+
+    /**
+     * A value that can be set (e.g., number of downloads per second) or
+     * accumulated (e.g., seconds spent in a stage).
+     */
+    public static class Gauge extends Metric {
+
+        // bits of the double value
+        private final AtomicLong bits;
+
+        Gauge(String name, String help, String[] labels) {
+            super(name, help, labels);
+            this.bits = new AtomicLong(Double.doubleToLongBits(0.0));
+        }
+
+        public void set(double value) {
+            bits.set(Double.doubleToLongBits(value));
+        }
+
+        public void add(double delta) {
+            while (true) {
+                long current = bits.get();
+                long next = Double.doubleToLongBits(Double.longBitsToDouble(current) + delta);
+                if (bits.compareAndSet(current, next)) {
+                    return;
+                }
+            }
+        }
+
+        public double get() {
+            return Double.longBitsToDouble(bits.get());
+        }
+
+        @Override
+        public String getType() {
+            return GAUGE;
+        }
+
+        @Override
+        public String getValueString() {
+            double value = get();
+            if (Double.isInfinite(value)) {
+                return value > 0 ? "+Inf" : "-Inf";
+            }
+            return Double.toString(value);
+        }
+    }
+
+    /**
+     * Get a counter, creating it if it does not exist.
+     *
+     * @param name Name of the counter
+     * @param help Description of the counter
+     * @param labels Label names and values, one after the other
+     * @return The counter
+     */
+    public Counter counter(String name, String help, String... labels) {
+        String key = getKey(name, labels);
+        Metric metric = metrics.get(key);
+        if (metric == null) {
+            metric = new Counter(name, help, labels.clone());
+            Metric existing = metrics.putIfAbsent(key, metric);
+            if (existing != null) {
+                metric = existing;
+            }
+        }
+        if (!(metric instanceof Counter)) {
+            throw new IllegalArgumentException("Metric " + key + " is not a counter");
+        }
+        return (Counter) metric;
+    }
+
+    /**
+     * Get a gauge, creating it if it does not exist.
+     *
+     * @param name Name of the gauge
+     * @param help Description of the gauge
+     * @param labels Label names and values, one after the other
+     * @return The gauge
+     */
+    public Gauge gauge(String name, String help, String... labels) {
+        String key = getKey(name, labels);
+        Metric metric = metrics.get(key);
+        if (metric == null) {
+            metric = new Gauge(name, help, labels.clone());
+            Metric existing = metrics.putIfAbsent(key, metric);
+            if (existing != null) {
+                metric = existing;
+            }
+        }
+        if (!(metric instanceof Gauge)) {
+            throw new IllegalArgumentException("Metric " + key + " is not a gauge");
+        }
+        return (Gauge) metric;
+    }
+
+    private static String getKey(String name, String[] labels) {
+        if (labels.length % 2 != 0) {
+            throw new IllegalArgumentException("Labels of metric " + name
+                    + " are not pairs of name and value");
+        }
+        return name + getLabelString(labels);
+    }
+
+    /**
+     * Labels as written in the Prometheus format, e.g., {type="debate"}, or
+     * an empty string if there are no labels.
+     */
+    private static String getLabelString(String[] labels) {
+        if (labels.length == 0) {
+            return "";
+        }
+        StringBuilder str = new StringBuilder("{");
+        for (int ii = 0; ii < labels.length; ii += 2) {
+            if (ii > 0) {
+                str.append(",");
+            }
+            str.append(labels[ii]).append("=\"");
+            for (int jj = 0; jj < labels[ii + 1].length(); jj++) {
+                char c = labels[ii + 1].charAt(jj);
+                if (c == '\\' || c == '"') {
+                    str.append('\\').append(c);
+                } else if (c == '\n') {
+                    str.append("\\n");
+                } else {
+                    str.append(c);
+                }
+            }
+            str.append("\"");
+        }
+        return str.append("}").toString();
+    }
+
+    /**
+     * Time a stage. The wall time and the CPU time of the thread running the
+     * stage are added to the gt_stage_wall_seconds and gt_stage_cpu_seconds
+     * gauges of the stage when the timer is stopped. Work the stage hands
+     * over to other threads (e.g., parsing pools) is not included in its CPU
+     * time.
+     *
+     * @param stage Name of the stage
+     * @return The started timer
+     */
+    public Timer startTimer(String stage) {
+        return new Timer(stage);
+    }
+
+    /**
+     * Timer of a stage, which is stopped by the thread that started it.
+     */
+    public class Timer {
+
+        private final String stage;
+        private final long startWallTime;
+        private final long startCpuTime;
+
+        private Timer(String stage) {
+            this.stage = stage;
+            this.startWallTime = System.nanoTime();
+            this.startCpuTime = getCurrentThreadCpuTime();
+        }
+
+        /**
+         * @return The wall time of the stage in seconds
+         */
+        public double stop() {
+            double wallTime = (System.nanoTime() - startWallTime) / 1e9;
+            gauge("gt_stage_wall_seconds", "Wall time of a stage in seconds",
+                    "stage", stage).add(wallTime);
+            long cpuTime = getCurrentThreadCpuTime();
+            if (startCpuTime >= 0 && cpuTime >= 0) {
+                gauge("gt_stage_cpu_seconds", "CPU time of the thread running "
+                        + "a stage in seconds", "stage", stage).add((cpuTime - startCpuTime) / 1e9);
+            }
+            return wallTime;
+        }
+    }
+
+    /**
+     * @return CPU time of the current thread in nanoseconds, or -1 if it is
+     * not supported by the JVM
+     */
+    private static long getCurrentThreadCpuTime() {
+        if (!THREAD_BEAN.isCurrentThreadCpuTimeSupported()) {
+            return -1;
+        }
+        return THREAD_BEAN.getCurrentThreadCpuTime();
+    }
+
+    /**
+     * @return All metrics, sorted by name and then by labels
+     */
+    public ArrayList<Metric> getMetrics() {
+        ArrayList<Metric> list = new ArrayList<Metric>(metrics.values());
+        Collections.sort(list, new Comparator<Metric>() {
+            @Override
+            public int compare(Metric m1, Metric m2) {
+                int c = m1.name.compareTo(m2.name);
+                if (c != 0) {
+                    return c;
+                }
+                return getLabelString(m1.labels).compareTo(getLabelString(m2.labels));
+            }
+        });
+        return list;
+    }
+
+    /**
+     * Write the metrics as JSON and in the Prometheus text format into a
+     * folder (see JSON_FILE and PROMETHEUS_FILE).
+     *
+     * @param folder The folder
+     * @throws java.io.IOException
+     */
+    public void write(File folder) throws IOException {
+        IOUtils.createFolder(folder);
+        File jsonFile = new File(folder, JSON_FILE);
+        File prometheusFile = new File(folder, PROMETHEUS_FILE);
+        writeJson(jsonFile);
+        writePrometheus(prometheusFile);
+        System.out.println("--- Wrote " + metrics.size() + " metrics to "
+                + jsonFile + " and " + prometheusFile);
+    }
+
+    /**
+     * Write the metrics as a JSON object with a list of metrics, each with its
+     * name, type, help, labels and value.
+     *
+     * @param file The output file
+     * @throws java.io.IOException
+     */
+    public void writeJson(File file) throws IOException {
+        StringBuilder str = new StringBuilder("{\n  \"metrics\": [");
+        ArrayList<Metric> list = getMetrics();
+        for (int ii = 0; ii < list.size(); ii++) {
+            Metric metric = list.get(ii);
+            str.append(ii == 0 ? "\n" : ",\n");
+            str.append("    {\"name\": ").append(toJsonString(metric.name))
+                    .append(", \"type\": ").append(toJsonString(metric.getType()))
+                    .append(", \"help\": ").append(toJsonString(metric.help))
+                    .append(", \"labels\": {");
+            for (int jj = 0; jj < metric.labels.length; jj += 2) {
+                if (jj > 0) {
+                    str.append(", ");
+                }
+                str.append(toJsonString(metric.labels[jj])).append(": ")
+                        .append(toJsonString(metric.labels[jj + 1]));
+            }
+            str.append("}, \"value\": ");
+            if (metric instanceof Gauge
+                    && (Double.isNaN(((Gauge) metric).get())
+                    || Double.isInfinite(((Gauge) metric).get()))) {
+                str.append("null");
+            } else {
+                str.append(metric.getValueString());
+            }
+            str.append("}");
+        }
+        str.append("\n  ]\n}\n");
+
+        BufferedWriter writer = IOUtils.getBufferedWriter(file);
+        writer.write(str.toString());
+        writer.close();
+    }
+
+    private static String toJsonString(String value) {
+        StringBuilder str = new StringBuilder("\"");
+        for (int ii = 0; ii < value.length(); ii++) {
+            char c = value.charAt(ii);
+            if (c == '"' || c == '\\') {
+                str.append('\\').append(c);
+            } else if (c == '\n') {
+                str.append("\\n");
+            } else if (c == '\t') {
+                str.append("\\t");
+            } else if (c < 0x20) {
+                str.append(String.format("\\u%04x", (int) c));
+            } else {
+                str.append(c);
+            }
+        }
+        return str.append("\"").toString();
+    }
+
+    /**
+     * Write the metrics in the Prometheus text exposition format, with the
+     * help and type of each metric name followed by its samples.
+     *
+     * @param file The output file
+     * @throws java.io.IOException
+     */
+    public void writePrometheus(File file) throws IOException {
+        StringBuilder str = new StringBuilder();
+        String lastName = null;
+        for (Metric metric : getMetrics()) {
+            if (!metric.name.equals(lastName)) {
+                str.append("# HELP ").append(metric.name).append(" ")
+                        .append(metric.help.replace("\\", "\\\\").replace("\n", "\\n"))
+                        .append("\n");
+                str.append("# TYPE ").append(metric.name).append(" ")
+                        .append(metric.getType()).append("\n");
+                lastName = metric.name;
+            }
+            str.append(metric.name).append(getLabelString(metric.labels))
+                    .append(" ").append(metric.getValueString()).append("\n");
+        }
+
+        BufferedWriter writer = IOUtils.getBufferedWriter(file);
+        writer.write(str.toString());
+        writer.close();
+    }
+}
@@ -0,0 +1,207 @@
+package util.govtrack;
+
+/**
+ * Edit distance between names that only needs to be computed up to a bound,
+ * used to decide whether two names are too different to refer to the same
+ * legislator.
+ *
+ * The distance is computed with Myers' bit-parallel algorithm (in Hyyro's
+ * formulation for the edit distance), which processes a column of the dynamic
+ * programming table per character using a few operations on a 64-bit word, as
+ * long as the shorter string has at most 64 characters. Longer strings use the
+ * dynamic programming table restricted to a band around the diagonal. In both
+ * cases, the computation stops as soon as the distance is known to exceed the
+ * bound.
+ *
+ * @author vietan
+ */
+public class GTNameDistance {
+
+    private static final int WORD_SIZE = 64;
+    private static final int ASCII_SIZE = 128;
+    // match masks of ASCII characters, cleared after each use
+    private static final ThreadLocal<long[]> PEQ = new ThreadLocal<long[]>() {
+        @Override
+        protected long[] initialValue() {
+            return new long[ASCII_SIZE];
+        }
+    };
+
+    private GTNameDistance() {
+    }
+
+    /**
+     * Check whether the edit distance between two strings, normalized by the
+     * length of the longer string, is larger than a threshold. This gives the
+     * same result as comparing (double) distance / maxLength with the
+     * threshold, including for two empty strings (which are never too
+     * different).
+     *
+     * @param str1 A string
+     * @param str2 Another string
+     * @param threshold The threshold
+     * @return True if the normalized edit distance is larger than the
+     * threshold
+     */
+    public static boolean exceeds(String str1, String str2, double threshold) {
+        return getSimilarity(str1, str2, threshold) < 0;
+    }
+
+    /**
+     * Compute the similarity between two strings, which is one minus the edit
+     * distance normalized by the length of the longer string, if the
+     * normalized edit distance is not larger than a threshold.
+     *
+     * @param str1 A string
+     * @param str2 Another string
+     * @param threshold The threshold
+     * @return The similarity between 0 and 1 (1 for two empty strings), or -1
+     * if the normalized edit distance is larger than the threshold
+     */
+    public static double getSimilarity(String str1, String str2, double threshold) {
+        int maxLength = Math.max(str1.length(), str2.length());
+        if (maxLength == 0) {
+            return 1.0;
+        }
+        // largest distance whose normalized value is not above the threshold
+        int bound = (int) Math.floor(threshold * maxLength);
+        while (bound < maxLength && !((double) (bound + 1) / maxLength > threshold)) {
+            bound++;
+        }
+        while (bound >= 0 && (double) bound / maxLength > threshold) {
+            bound--;
+        }
+        if (bound < 0) {
+            return -1;
+        }
+        int dist = getBoundedDistance(str1, str2, bound);
+        if (dist > bound) {
+            return -1;
+        }
+        return 1.0 - (double) dist / maxLength;
+    }
+
+    /**
+     * Compute the edit distance between two strings if it is at most a bound.
+     *
+     * @param str1 A string
+     * @param str2 Another string
+     * @param bound The bound
+     * @return The edit distance if it is at most the bound, or bound + 1
+     * otherwise
+     */
+    public static int getBoundedDistance(String str1, String str2, int bound) {
+        String pattern = str1.length() <= str2.length() ? str1 : str2;
+        String text = pattern == str1 ? str2 : str1;
+        if (text.length() - pattern.length() > bound) {
+            return bound + 1;
+        }
+        if (pattern.isEmpty()) {
+            return text.length();
+        }
+        if (pattern.length() <= WORD_SIZE) {
+            return getBitParallelDistance(pattern, text, bound);
+        }
+        return getBandedDistance(pattern, text, bound);
+    }
+
+    private static int getBitParallelDistance(String pattern, String text, int bound) {
+        int m = pattern.length();
+        int n = text.length();
+        long[] peq = PEQ.get();
+        for (int ii = 0; ii < m; ii++) {
+            char c = pattern.charAt(ii);
+            if (c < ASCII_SIZE) {
+                peq[c] |= 1L << ii;
+            }
+        }
+
+        long highBit = 1L << (m - 1);
+        long pv = m == WORD_SIZE ? -1L : (1L << m) - 1;
+        long mv = 0L;
+        int score = m;
+        try {
+            for (int jj = 0; jj < n; jj++) {
+                char c = text.charAt(jj);
+                long eq = c < ASCII_SIZE ? peq[c] : getMatchMask(pattern, c);
+                long xv = eq | mv;
+                long xh = (((eq & pv) + pv) ^ pv) | eq;
+                long ph = mv | ~(xh | pv);
+                long mh = pv & xh;
+                if ((ph & highBit) != 0) {
+                    score++;
+                } else if ((mh & highBit) != 0) {
+                    score--;
+                }
+                // the score can decrease by at most one per remaining column
+                if (score - (n - jj - 1) > bound) {
+                    return bound + 1;
+                }
+                ph = (ph << 1) | 1L;
+                mh = mh << 1;
+                pv = mh | ~(xv | ph);
+                mv = ph & xv;
+            }
+        } finally {
+            for (int ii = 0; ii < m; ii++) {
+                char c = pattern.charAt(ii);
+                if (c < ASCII_SIZE) {
+                    peq[c] = 0L;
+                }
+            }
+        }
+        return score > bound ? bound + 1 : score;
+    }
+
+    private static long getMatchMask(String pattern, char c) {
+        long mask = 0L;
+        for (int ii = 0; ii < pattern.length(); ii++) {
+            if (pattern.charAt(ii) == c) {
+                mask |= 1L << ii;
+            }
+        }
+        return mask;
+    }
+
+    /**
+     * Dynamic programming restricted to the cells within the bound of the
+     * diagonal.
+     */
+    private static int getBandedDistance(String str1, String str2, int bound) {
+        int m = str1.length();
+        int n = str2.length();
+        int big = bound + 1;
+        int[] prev = new int[n + 1];
+        int[] cur = new int[n + 1];
+        for (int jj = 0; jj <= n; jj++) {
+            prev[jj] = jj <= bound ? jj : big;
+        }
+        for (int ii = 1; ii <= m; ii++) {
+            int from = Math.max(1, ii - bound);
+            int to = Math.min(n, ii + bound);
+            cur[0] = ii <= bound ? ii : big;
+            if (from > 1) {
+                cur[from - 1] = big;
+            }
+            int rowMin = cur[0];
+            char c = str1.charAt(ii - 1);
+            for (int jj = from; jj <= to; jj++) {
+                int cost = c == str2.charAt(jj - 1) ? 0 : 1;
+                int value = Math.min(Math.min(cur[jj - 1] + 1, prev[jj] + 1),
+                        prev[jj - 1] + cost);
+                cur[jj] = Math.min(value, big);
+                rowMin = Math.min(rowMin, cur[jj]);
+            }
+            if (to < n) {
+                cur[to + 1] = big;
+            }
+            if (rowMin > bound) {
+                return big;
+            }
+            int[] temp = prev;
+            prev = cur;
+            cur = temp;
+        }
+        return prev[n] > bound ? big : prev[n];
+    }
+}
@@ -0,0 +1,294 @@
+package util.govtrack;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.io.StringReader;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.UUID;
+import util.IOUtils;
+
+/**
+ * Texts (e.g., of turns or bills) packed into a single file instead of one
+ * file per text, which is much faster to write, copy and list when there are
+ * many texts.
+ *
+ * A set of packed texts named after a folder (e.g., texts) consists of two
+ * files next to where the folder would be: texts.dat, which contains the
+ * UTF-8 bytes of all the texts one after the other, and texts.idx, which
+ * contains the ID, offset and length of each text in the order they are
+ * written. The index is loaded in memory so that any text can be read
+ * directly.
+ *
+ * Both files start with a header holding a random token of the set they were
+ * written for, and the index also holds the length of the data. Since the two
+ * files are replaced one after the other, the reader checks that the tokens
+ * are the same and that the data has the length given by the index, so that
+ * the data and the index of different sets (e.g., if a run is interrupted
+ * between the two replacements) are never read together.
+ *
+ * @author vietan
+ */
+public class GTPackedTexts {
+
+    public static final String DATA_EXTENSION = ".dat";
+    public static final String INDEX_EXTENSION = ".idx";
+    private static final int MAGIC = 0x47545054;
+    private static final int VERSION = 2;
+    // magic number, version and token
+    private static final int DATA_HEADER_SIZE = 16;
+    private static final int BUFFER_SIZE = 1 << 16;
+    private static final String UTF8 = "UTF-8";
+
+    public static File getDataFile(File base) {
+        return new File(base.getAbsolutePath() + DATA_EXTENSION);
+    }
+
+    public static File getIndexFile(File base) {
+        return new File(base.getAbsolutePath() + INDEX_EXTENSION);
+    }
+
+    /**
+     * @param base The folder the texts would be stored in if not packed
+     * @return True if packed texts exist
+     */
+    public static boolean exists(File base) {
+        return getDataFile(base).exists() && getIndexFile(base).exists();
+    }
+
+    /**
+     * Delete packed texts, if they exist.
+     */
+    public static void delete(File base) {
+        getDataFile(base).delete();
+        getIndexFile(base).delete();
+    }
+
+    /**
+     * Write texts, which replace the existing packed texts when the writer is
+     * closed.
+     */
+    public static class Writer {
+
+        private final File base;
+        private final File tempDataFile;
+        private final OutputStream out;
+        private final ArrayList<String> ids;
+        private final ArrayList<long[]> positions;
+        private final HashMap<String, Integer> indices;
+        private final long token;
+        private long offset;
+
+        /**
+         * @param base The folder the texts would be stored in if not packed
+         * @throws java.io.IOException
+         */
+        public Writer(File base) throws IOException {
+            this.base = base;
+            IOUtils.createFolder(base.getAbsoluteFile().getParentFile());
+            this.tempDataFile = new File(getDataFile(base).getAbsolutePath() + ".tmp");
+            this.out = new BufferedOutputStream(new FileOutputStream(tempDataFile), BUFFER_SIZE);
+            this.ids = new ArrayList<String>();
+            this.positions = new ArrayList<long[]>();
+            this.indices = new HashMap<String, Integer>();
+            this.token = UUID.randomUUID().getLeastSignificantBits();
+            DataOutputStream headerOut = new DataOutputStream(out);
+            headerOut.writeInt(MAGIC);
+            headerOut.writeInt(VERSION);
+            headerOut.writeLong(token);
+            headerOut.flush();
+        }
+
+        /**
+         * @param id ID of the text, which is unique
+         * @param text The text
+         * @throws java.io.IOException
+         */
+        public void write(String id, String text) throws IOException {
+            if (indices.containsKey(id)) {
+                throw new IllegalArgumentException("Duplicate text " + id);
+            }
+            byte[] bytes = text.getBytes(UTF8);
+            out.write(bytes);
+            indices.put(id, ids.size());
+            ids.add(id);
+            positions.add(new long[]{offset, bytes.length});
+            offset += bytes.length;
+        }
+
+        public void close() throws IOException {
+            out.close();
+            File tempIndexFile = new File(getIndexFile(base).getAbsolutePath() + ".tmp");
+            DataOutputStream indexOut = new DataOutputStream(new BufferedOutputStream(
+                    new FileOutputStream(tempIndexFile), BUFFER_SIZE));
+            try {
+                indexOut.writeInt(MAGIC);
+                indexOut.writeInt(VERSION);
+                indexOut.writeLong(token);
+                indexOut.writeLong(offset);
+                indexOut.writeInt(ids.size());
+                for (int ii = 0; ii < ids.size(); ii++) {
+                    indexOut.writeUTF(ids.get(ii));
+                    indexOut.writeLong(positions.get(ii)[0]);
+                    indexOut.writeInt((int) positions.get(ii)[1]);
+                }
+            } finally {
+                indexOut.close();
+            }
+            // an interruption between the two moves is detected by the reader
+            Files.move(tempDataFile.toPath(), getDataFile(base).toPath(),
+                    StandardCopyOption.REPLACE_EXISTING);
+            Files.move(tempIndexFile.toPath(), getIndexFile(base).toPath(),
+                    StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    /**
+     * Read texts by their IDs. Texts can be read by multiple threads.
+     */
+    public static class Reader {
+
+        private final RandomAccessFile dataFile;
+        private final FileChannel channel;
+        private final String[] ids;
+        private final long[] offsets;
+        private final int[] lengths;
+        private final HashMap<String, Integer> indices;
+
+        /**
+         * @param base The folder the texts would be stored in if not packed
+         * @throws java.io.IOException if the files cannot be read, or if the
+         * data and the index do not belong to the same set of texts
+         */
+        public Reader(File base) throws IOException {
+            long token;
+            long dataLength;
+            DataInputStream in = new DataInputStream(new BufferedInputStream(
+                    new FileInputStream(getIndexFile(base)), BUFFER_SIZE));
+            try {
+                if (in.readInt() != MAGIC) {
+                    throw new IOException("Not a packed text index " + getIndexFile(base));
+                }
+                int version = in.readInt();
+                if (version != VERSION) {
+                    throw new IOException("Unsupported packed text version " + version);
+                }
+                token = in.readLong();
+                dataLength = in.readLong();
+                int numTexts = in.readInt();
+                this.ids = new String[numTexts];
+                this.offsets = new long[numTexts];
+                this.lengths = new int[numTexts];
+                this.indices = new HashMap<String, Integer>(numTexts * 2);
+                for (int ii = 0; ii < numTexts; ii++) {
+                    ids[ii] = in.readUTF();
+                    offsets[ii] = DATA_HEADER_SIZE + in.readLong();
+                    lengths[ii] = in.readInt();
+                    indices.put(ids[ii], ii);
+                }
+            } finally {
+                in.close();
+            }
+            this.dataFile = new RandomAccessFile(getDataFile(base), "r");
+            this.channel = dataFile.getChannel();
+            try {
+                if (dataFile.length() != DATA_HEADER_SIZE + dataLength
+                        || dataFile.readInt() != MAGIC
+                        || dataFile.readInt() != VERSION
+                        || dataFile.readLong() != token) {
+                    throw new IOException("Packed text data " + getDataFile(base)
+                            + " does not match its index " + getIndexFile(base));
+                }
+            } catch (IOException e) {
+                dataFile.close();
+                throw e;
+            }
+        }
+
+        /**
+         * @return The number of texts
+         */
+        public int size() {
+            return ids.length;
+        }
+
+        /**
+         * @param index Index of a text, in the order they were written
+         */
+        public String getId(int index) {
+            return ids[index];
+        }
+
+        public boolean contains(String id) {
+            return indices.containsKey(id);
+        }
+
+        /**
+         * @param id ID of a text
+         * @return The size of the text in bytes
+         * @throws java.io.IOException if there is no text with the ID
+         */
+        public int getSize(String id) throws IOException {
+            Integer index = indices.get(id);
+            if (index == null) {
+                throw new IOException("Text " + id + " not found");
+            }
+            return lengths[index];
+        }
+
+        /**
+         * @param id ID of a text
+         * @return The text
+         * @throws java.io.IOException if there is no text with the ID
+         */
+        public String read(String id) throws IOException {
+            Integer index = indices.get(id);
+            if (index == null) {
+                throw new IOException("Text " + id + " not found");
+            }
+            return read(index);
+        }
+
+        /**
+         * @param index Index of a text, in the order they were written
+         * @return The text
+         * @throws java.io.IOException
+         */
+        public String read(int index) throws IOException {
+            ByteBuffer buffer = ByteBuffer.allocate(lengths[index]);
+            long position = offsets[index];
+            while (buffer.hasRemaining()) {
+                int numRead = channel.read(buffer, position);
+                if (numRead < 0) {
+                    throw new IOException("Truncated packed text " + ids[index]);
+                }
+                position += numRead;
+            }
+            return new String(buffer.array(), UTF8);
+        }
+
+        /**
+         * Reader of the lines of a text, as if it was read from its own file.
+         */
+        public BufferedReader getBufferedReader(String id) throws IOException {
+            return new BufferedReader(new StringReader(read(id)));
+        }
+
+        public void close() throws IOException {
+            dataFile.close();
+        }
+    }
+}
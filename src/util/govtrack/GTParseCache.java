@@ -0,0 +1,352 @@
+package util.govtrack;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.concurrent.ConcurrentHashMap;
+import util.IOUtils;
+import util.tsv.TSVReader;
+import util.tsv.TSVWriter;
+
+/**
+ * Cache of parsed raw files in a folder, used to re-process only files that
+ * are new or have changed since the last run.
+ *
+ * The cache folder contains
+ *
+ * - manifest.txt: the cache key on the first line, then one line per source
+ * file with its name, size, last modified time, MD5 hash and the sizes and
+ * last modified times of the files it depends on.
+ *
+ * - fragments.bin: the parsed object of each source file, encoded using a
+ * GTRecordCodec. Files that were skipped during parsing are stored as
+ * missing fragments so that they are not parsed again either.
+ *
+ * A file is considered unchanged if its size and last modified time, and those
+ * of its dependencies, match the manifest. Otherwise, the hash of the file and
+ * its dependencies is computed and compared, so that files which are only
+ * touched are not parsed again. The cache key describes everything else the
+ * parse results depend on (e.g., the processor class). If it changes, the
+ * whole cache is discarded.
+ *
+ * @author vietan
+ */
+public class GTParseCache<T> {
+
+    public static final String MANIFEST_FILE = "manifest.txt";
+    public static final String FRAGMENT_FILE = "fragments.bin";
+    private final File cacheFolder;
+    private final String key;
+    private final GTRecordCodec.RecordCodec<T> codec;
+    private DependencyResolver dependencyResolver;
+    // entries and fragments from the previous run
+    private HashMap<String, Entry> entries;
+    private HashMap<String, T> fragments;
+    private HashMap<String, Boolean> hasFragments;
+    // entries of the current run
+    private HashMap<String, Entry> newEntries;
+
+    public GTParseCache(File cacheFolder, String key, GTRecordCodec.RecordCodec<T> codec) {
+        this.cacheFolder = cacheFolder;
+        this.key = key;
+        this.codec = codec;
+        this.entries = new HashMap<String, Entry>();
+        this.fragments = new HashMap<String, T>();
+        this.hasFragments = new HashMap<String, Boolean>();
+        this.newEntries = new HashMap<String, Entry>();
+    }
+
+    /**
+     * Other files that the parse result of a source file depends on (e.g., the
+     * text of a bill which is stored separately from its XML file).
+     */
+    public static interface DependencyResolver {
+
+        /**
+         * @param file The source file
+         * @return Files the parse result depends on. Files that do not exist
+         * are allowed.
+         */
+        public File[] getDependencies(File file);
+    }
+
+    public void setDependencyResolver(DependencyResolver dependencyResolver) {
+        this.dependencyResolver = dependencyResolver;
+    }
+
+    /**
+     * Manifest entry of a source file.
+     */
+    static class Entry {
+
+        final long size;
+        final long lastModified;
+        final String hash;
+        final String dependencies;
+
+        Entry(long size, long lastModified, String hash, String dependencies) {
+            this.size = size;
+            this.lastModified = lastModified;
+            this.hash = hash;
+            this.dependencies = dependencies;
+        }
+    }
+
+    /**
+     * Load the cache from the previous run. A missing, outdated or corrupted
+     * cache results in an empty cache.
+     */
+    public void load() {
+        File manifestFile = new File(cacheFolder, MANIFEST_FILE);
+        File fragmentFile = new File(cacheFolder, FRAGMENT_FILE);
+        if (!manifestFile.exists() || !fragmentFile.exists()) {
+            return;
+        }
+
+        try {
+            HashMap<String, Entry> loadedEntries = new HashMap<String, Entry>();
+            TSVReader reader = new TSVReader(manifestFile);
+            try {
+                if (!reader.next() || !key.contentEquals(reader.getLine())) {
+                    return;
+                }
+                while (reader.next()) {
+                    loadedEntries.put(reader.getString(0), new Entry(reader.getLong(1),
+                            reader.getLong(2), reader.getString(3),
+                            reader.getNumFields() > 4 ? reader.getString(4) : ""));
+                }
+            } finally {
+                reader.close();
+            }
+
+            HashMap<String, T> loadedFragments = new HashMap<String, T>();
+            HashMap<String, Boolean> loadedHasFragments = new HashMap<String, Boolean>();
+            DataInputStream in = new DataInputStream(new BufferedInputStream(
+                    new FileInputStream(fragmentFile)));
+            try {
+                int numFragments = in.readInt();
+                for (int ii = 0; ii < numFragments; ii++) {
+                    String filename = in.readUTF();
+                    boolean hasFragment = in.readBoolean();
+                    loadedHasFragments.put(filename, hasFragment);
+                    if (hasFragment) {
+                        loadedFragments.put(filename, codec.read(in));
+                    }
+                }
+            } finally {
+                in.close();
+            }
+
+            this.entries = loadedEntries;
+            this.fragments = loadedFragments;
+            this.hasFragments = loadedHasFragments;
+        } catch (Exception e) {
+            System.out.println("--- --- Discarding unreadable cache " + cacheFolder);
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Compare the source files against the manifest.
+     *
+     * @param folder The source folder
+     * @param filenames Names of the current source files
+     * @return Names of the files that need to be parsed
+     * @throws java.io.IOException
+     */
+    public String[] getChangedFilenames(File folder, String[] filenames) throws IOException {
+        this.newEntries = new HashMap<String, Entry>();
+        ArrayList<String> changed = new ArrayList<String>();
+        for (String filename : filenames) {
+            File file = new File(folder, filename);
+            long size = file.length();
+            long lastModified = file.lastModified();
+            File[] dependencies = getDependencies(file);
+            String dependencyStamps = getStamps(dependencies);
+            Entry entry = entries.get(filename);
+            boolean cached = entry != null && hasFragments.containsKey(filename);
+            if (cached && entry.size == size && entry.lastModified == lastModified
+                    && entry.dependencies.equals(dependencyStamps)) {
+                newEntries.put(filename, entry);
+                continue;
+            }
+
+            String hash = hash(file, dependencies);
+            newEntries.put(filename, new Entry(size, lastModified, hash, dependencyStamps));
+            if (!cached || !entry.hash.equals(hash)) {
+                changed.add(filename);
+            }
+        }
+        return changed.toArray(new String[changed.size()]);
+    }
+
+    /**
+     * Merge newly parsed objects with the cached fragments of unchanged files.
+     * Fragments of files that no longer exist are dropped.
+     *
+     * @param filenames Names of the current source files
+     * @param changedFilenames Names of the files that have been parsed
+     * @param parsed Objects parsed from the changed files. Skipped files are
+     * not included.
+     * @return Map from file name to object for all current source files
+     */
+    public ConcurrentHashMap<String, T> update(String[] filenames,
+            String[] changedFilenames, ConcurrentHashMap<String, T> parsed) {
+        HashMap<String, T> updatedFragments = new HashMap<String, T>();
+        HashMap<String, Boolean> updatedHasFragments = new HashMap<String, Boolean>();
+        for (String filename : filenames) {
+            Boolean hasFragment = hasFragments.get(filename);
+            if (hasFragment != null) {
+                updatedHasFragments.put(filename, hasFragment);
+                if (hasFragment) {
+                    updatedFragments.put(filename, fragments.get(filename));
+                }
+            }
+        }
+        for (String filename : changedFilenames) {
+            T obj = parsed.get(filename);
+            updatedHasFragments.put(filename, obj != null);
+            if (obj != null) {
+                updatedFragments.put(filename, obj);
+            } else {
+                updatedFragments.remove(filename);
+            }
+        }
+
+        this.entries = newEntries;
+        this.fragments = updatedFragments;
+        this.hasFragments = updatedHasFragments;
+        return new ConcurrentHashMap<String, T>(updatedFragments);
+    }
+
+    /**
+     * Write the cache. The fragments are written before the manifest, and
+     * each file is written to a temporary file first, so that an interrupted
+     * write leaves a cache that is either valid or discarded on the next load.
+     *
+     * @throws java.io.IOException
+     */
+    public void save() throws IOException {
+        IOUtils.createFolder(cacheFolder);
+        File manifestFile = new File(cacheFolder, MANIFEST_FILE);
+        File fragmentFile = new File(cacheFolder, FRAGMENT_FILE);
+        manifestFile.delete();
+
+        File tempFile = new File(cacheFolder, FRAGMENT_FILE + ".tmp");
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+                new FileOutputStream(tempFile)));
+        try {
+            out.writeInt(hasFragments.size());
+            for (String filename : hasFragments.keySet()) {
+                boolean hasFragment = hasFragments.get(filename);
+                out.writeUTF(filename);
+                out.writeBoolean(hasFragment);
+                if (hasFragment) {
+                    codec.write(out, fragments.get(filename));
+                }
+            }
+        } finally {
+            out.close();
+        }
+        Files.move(tempFile.toPath(), fragmentFile.toPath(),
+                StandardCopyOption.REPLACE_EXISTING);
+
+        tempFile = new File(cacheFolder, MANIFEST_FILE + ".tmp");
+        TSVWriter writer = new GTTSVWriter(tempFile);
+        writer.field(key).endLine();
+        for (String filename : entries.keySet()) {
+            Entry entry = entries.get(filename);
+            writer.field(filename)
+                    .field(entry.size)
+                    .field(entry.lastModified)
+                    .field(entry.hash)
+                    .field(entry.dependencies)
+                    .endLine();
+        }
+        writer.close();
+        Files.move(tempFile.toPath(), manifestFile.toPath(),
+                StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    private File[] getDependencies(File file) {
+        if (dependencyResolver == null) {
+            return new File[0];
+        }
+        return dependencyResolver.getDependencies(file);
+    }
+
+    /**
+     * Sizes and last modified times of a list of files. Missing files are
+     * marked with -.
+     */
+    private static String getStamps(File[] files) {
+        StringBuilder str = new StringBuilder();
+        for (File file : files) {
+            if (str.length() > 0) {
+                str.append(",");
+            }
+            if (file.exists()) {
+                str.append(file.length()).append(":").append(file.lastModified());
+            } else {
+                str.append("-");
+            }
+        }
+        return str.toString();
+    }
+
+    /**
+     * Compute the MD5 hash of a file together with the files it depends on.
+     *
+     * @param file The file
+     * @param dependencies The dependencies
+     * @return The hash as a hexadecimal string
+     * @throws java.io.IOException
+     */
+    public static String hash(File file, File... dependencies) throws IOException {
+        MessageDigest md;
+        try {
+            md = MessageDigest.getInstance("MD5");
+        } catch (NoSuchAlgorithmException e) {
+            throw new RuntimeException(e);
+        }
+        byte[] buffer = new byte[8192];
+        update(md, file, buffer);
+        for (File dependency : dependencies) {
+            // mark whether the dependency exists so that a missing file and
+            // an empty file have different hashes
+            md.update(dependency.exists() ? (byte) 1 : (byte) 0);
+            if (dependency.exists()) {
+                update(md, dependency, buffer);
+            }
+        }
+        StringBuilder str = new StringBuilder();
+        for (byte b : md.digest()) {
+            str.append(String.format("%02x", b));
+        }
+        return str.toString();
+    }
+
+    private static void update(MessageDigest md, File file, byte[] buffer) throws IOException {
+        InputStream in = new FileInputStream(file);
+        try {
+            int length;
+            while ((length = in.read(buffer)) != -1) {
+                md.update(buffer, 0, length);
+            }
+        } finally {
+            in.close();
+        }
+    }
+}
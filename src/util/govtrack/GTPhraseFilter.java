@@ -0,0 +1,228 @@
+package util.govtrack;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.concurrent.atomic.AtomicLongArray;
+import util.IOUtils;
+
+/**
+ * Filter matching a set of literal phrases (e.g., procedural boilerplate such
+ * as "I yield" or "I suggest the absence of a quorum") in texts using an
+ * Aho-Corasick automaton, so that each text is scanned once regardless of the
+ * number of phrases.
+ *
+ * The automaton is stored as a table of transitions over the characters that
+ * occur in the phrases; every other character goes back to the root. The
+ * number of occurrences of each phrase is counted across all the texts that
+ * are matched, which is thread-safe.
+ *
+ * @author vietan
+ */
+public class GTPhraseFilter {
+
+    private static final int ROOT = 0;
+    private final String[] phrases;
+    // character -> column in the transition table, 0 for other characters
+    private final int[] charClasses;
+    private final int numClasses;
+    // state * numClasses + column -> next state
+    private final int[] transitions;
+    // state -> phrases ending at the state, or null
+    private final int[][] outputs;
+    private final AtomicLongArray hits;
+
+    private GTPhraseFilter(String[] phrases) {
+        this.phrases = phrases;
+        this.hits = new AtomicLongArray(phrases.length);
+
+        // columns of the characters in the phrases
+        char maxChar = 0;
+        for (String phrase : phrases) {
+            for (int ii = 0; ii < phrase.length(); ii++) {
+                maxChar = (char) Math.max(maxChar, phrase.charAt(ii));
+            }
+        }
+        this.charClasses = new int[maxChar + 1];
+        int nextClass = 1;
+        for (String phrase : phrases) {
+            for (int ii = 0; ii < phrase.length(); ii++) {
+                char c = phrase.charAt(ii);
+                if (charClasses[c] == 0) {
+                    charClasses[c] = nextClass++;
+                }
+            }
+        }
+        this.numClasses = nextClass;
+
+        // trie of the phrases
+        ArrayList<HashMap<Integer, Integer>> children = new ArrayList<HashMap<Integer, Integer>>();
+        ArrayList<IntArrayList> stateOutputs = new ArrayList<IntArrayList>();
+        children.add(new HashMap<Integer, Integer>());
+        stateOutputs.add(null);
+        for (int pp = 0; pp < phrases.length; pp++) {
+            int state = ROOT;
+            for (int ii = 0; ii < phrases[pp].length(); ii++) {
+                int column = charClasses[phrases[pp].charAt(ii)];
+                Integer child = children.get(state).get(column);
+                if (child == null) {
+                    child = children.size();
+                    children.get(state).put(column, child);
+                    children.add(new HashMap<Integer, Integer>());
+                    stateOutputs.add(null);
+                }
+                state = child;
+            }
+            if (stateOutputs.get(state) == null) {
+                stateOutputs.set(state, new IntArrayList());
+            }
+            stateOutputs.get(state).add(pp);
+        }
+
+        // breadth-first over the trie, filling in the transitions of each
+        // state from those of its failure state, which is closer to the root
+        int numStates = children.size();
+        this.transitions = new int[numStates * numClasses];
+        int[] failures = new int[numStates];
+        int[] queue = new int[numStates];
+        int head = 0;
+        int tail = 0;
+        queue[tail++] = ROOT;
+        while (head < tail) {
+            int state = queue[head++];
+            for (int column = 1; column < numClasses; column++) {
+                Integer child = children.get(state).get(column);
+                if (child == null) {
+                    transitions[state * numClasses + column] = state == ROOT
+                            ? ROOT : transitions[failures[state] * numClasses + column];
+                    continue;
+                }
+                failures[child] = state == ROOT
+                        ? ROOT : transitions[failures[state] * numClasses + column];
+                transitions[state * numClasses + column] = child;
+                // phrases ending at the failure state also end at the child
+                IntArrayList failureOutputs = stateOutputs.get(failures[child]);
+                if (failureOutputs != null) {
+                    if (stateOutputs.get(child) == null) {
+                        stateOutputs.set(child, new IntArrayList());
+                    }
+                    stateOutputs.get(child).addAll(failureOutputs);
+                }
+                queue[tail++] = child;
+            }
+        }
+
+        this.outputs = new int[numStates][];
+        for (int state = 0; state < numStates; state++) {
+            if (stateOutputs.get(state) != null) {
+                outputs[state] = stateOutputs.get(state).toArray();
+            }
+        }
+    }
+
+    /**
+     * Builder of a filter. Phrases that are added more than once are only
+     * matched once.
+     */
+    public static class Builder {
+
+        private final LinkedHashSet<String> phrases = new LinkedHashSet<String>();
+
+        public Builder add(String phrase) {
+            if (phrase.isEmpty()) {
+                throw new IllegalArgumentException("Empty phrase");
+            }
+            phrases.add(phrase);
+            return this;
+        }
+
+        public GTPhraseFilter build() {
+            return new GTPhraseFilter(phrases.toArray(new String[phrases.size()]));
+        }
+    }
+
+    /**
+     * Load phrases from a file, one phrase per line. Empty lines and lines
+     * starting with # are skipped. Phrases are not trimmed.
+     *
+     * @param file The phrase file
+     * @return The filter
+     * @throws java.io.IOException
+     */
+    public static GTPhraseFilter load(File file) throws IOException {
+        Builder builder = new Builder();
+        BufferedReader reader = IOUtils.getBufferedReader(file);
+        String line;
+        while ((line = reader.readLine()) != null) {
+            if (line.isEmpty() || line.startsWith("#")) {
+                continue;
+            }
+            builder.add(line);
+        }
+        reader.close();
+        return builder.build();
+    }
+
+    private int next(int state, char c) {
+        if (c >= charClasses.length) {
+            return ROOT;
+        }
+        return transitions[state * numClasses + charClasses[c]];
+    }
+
+    /**
+     * Whether a text contains any of the phrases. The whole text is scanned
+     * so that every occurrence of every phrase is counted.
+     *
+     * @param text The text
+     * @return True if the text contains a phrase
+     */
+    public boolean matches(String text) {
+        boolean matched = false;
+        int state = ROOT;
+        for (int ii = 0; ii < text.length(); ii++) {
+            state = next(state, text.charAt(ii));
+            if (outputs[state] != null) {
+                for (int phrase : outputs[state]) {
+                    hits.incrementAndGet(phrase);
+                }
+                matched = true;
+            }
+        }
+        return matched;
+    }
+
+    public int getNumPhrases() {
+        return phrases.length;
+    }
+
+    public String getPhrase(int index) {
+        return phrases[index];
+    }
+
+    /**
+     * @param index Index of a phrase
+     * @return The number of occurrences of the phrase in the texts matched so
+     * far (e.g., not in the texts of debates loaded from a parse cache)
+     */
+    public long getHits(int index) {
+        return hits.get(index);
+    }
+
+    public void resetHits() {
+        for (int ii = 0; ii < phrases.length; ii++) {
+            hits.set(ii, 0);
+        }
+    }
+
+    /**
+     * @return A signature of the phrases, which changes when the phrases do
+     */
+    public String getSignature() {
+        return Integer.toHexString(Arrays.hashCode(phrases));
+    }
+}
@@ -1,23 +1,33 @@
 package util.govtrack;
 
+import java.io.BufferedInputStream;
 import java.io.BufferedReader;
 import java.io.BufferedWriter;
+import java.io.ByteArrayInputStream;
+import java.io.CharArrayReader;
+import java.io.CharArrayWriter;
 import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
 import java.text.ParseException;
 import java.text.SimpleDateFormat;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 import javax.xml.parsers.DocumentBuilder;
 import javax.xml.parsers.DocumentBuilderFactory;
-import org.apache.commons.lang3.StringUtils;
 import org.w3c.dom.Document;
 import org.w3c.dom.Element;
 import org.w3c.dom.NodeList;
 import util.IOUtils;
-import util.MiscUtils;
+import util.tsv.TSVReader;
+import util.tsv.TSVWriter;
 
 /**
  * This processing pipeline follows Thomas et. al. (EMNLP 06). Here are some
@@ -41,18 +51,38 @@ public class GTProcessor {
     public static final int LASTNAME = 0;
     public static final int FIRSTNAME = 1;
     public static final int MIDDLENAME = 2;
+    // default normalization of the text of a turn
+    public static final GTTextNormalizer TURN_TEXT_NORMALIZER = new GTTextNormalizer.Builder()
+            .replace("\n", " ")
+            .delete("nbsp")
+            .delete("&")
+            .build();
     protected String folder;
     protected int congressNumber;
     protected HashMap<String, GTDebate> debates;
     protected HashMap<String, GTBill> bills;
     protected HashMap<String, GTRoll> rolls;
+    // roll symbol -> roll of this.rolls, or null
+    protected ArrayList<GTRoll> rollsBySymbol;
+    protected VoteMatrix voteMatrix;
     protected HashMap<String, GTLegislator> legislators;
     protected HashMap<String, GTLegislator> icpsrLegislatorMap;
     public static HashMap<String, GTState> states;
     public static HashMap<Integer, String> stateCodeMap;
     public static HashMap<Integer, String> policyAgendaCodebook;
     protected File congressFolder;
+    protected GTArchive archive; // raw data archive, used for missing raw folders
     protected boolean verbose = true;
+    protected boolean streamingDebates = false;
+    protected int numThreads = 1;
+    protected File cacheFolder;
+    protected boolean packedOutput = false;
+    protected GTWriterPool writerPool;
+    protected GTMetrics metrics = new GTMetrics();
+    // symbols of the objects parsed or loaded by this processor
+    protected final GTSymbols symbols = new GTSymbols();
+    // normalization of the first speech of a turn
+    protected GTTextNormalizer turnTextNormalizer = TURN_TEXT_NORMALIZER;
 
     public GTProcessor() {
         GTProcessor.getStates();
@@ -68,6 +98,7 @@ public class GTProcessor {
             if (!this.congressFolder.exists()) {
                 IOUtils.createFolder(this.congressFolder);
             }
+            this.archive = GTArchive.find(this.folder, this.congressNumber);
         } catch (Exception e) {
             e.printStackTrace();
             throw new RuntimeException("Exception in initiating GTProcessor");
@@ -78,6 +109,138 @@ public class GTProcessor {
         this.verbose = v;
     }
 
+    /**
+     * Parse debate files with a streaming (StAX) parser instead of building a
+     * DOM for each file. Both produce the same debates.
+     *
+     * @param s Whether to use the streaming parser
+     */
+    public void setStreamingDebates(boolean s) {
+        this.streamingDebates = s;
+    }
+
+    /**
+     * Set the normalization of the texts of turns, instead of
+     * TURN_TEXT_NORMALIZER (or GTProcessorV2.TEXT_NORMALIZER), e.g., one
+     * loaded with GTTextNormalizer.load.
+     *
+     * @param normalizer The normalizer
+     */
+    public void setTurnTextNormalizer(GTTextNormalizer normalizer) {
+        this.turnTextNormalizer = normalizer;
+    }
+
+    public GTTextNormalizer getTurnTextNormalizer() {
+        return this.turnTextNormalizer;
+    }
+
+    /**
+     * Set the number of threads used to parse the raw cr, bills and rolls
+     * files. With more than one thread, files are parsed on a work-stealing
+     * pool and the results are then linked in the same order as the
+     * single-threaded run.
+     *
+     * @param numThreads Number of threads
+     */
+    public void setNumThreads(int numThreads) {
+        this.numThreads = numThreads;
+    }
+
+    /**
+     * Cache parsed cr, bills and rolls files in a folder. When set, only files
+     * that are new or have changed since the last run are parsed, and the
+     * others are loaded from the cache.
+     *
+     * @param cacheFolder The cache folder, or null to disable caching
+     */
+    public void setCacheFolder(String cacheFolder) {
+        if (cacheFolder == null) {
+            this.cacheFolder = null;
+        } else {
+            this.cacheFolder = new File(cacheFolder, Integer.toString(this.congressNumber));
+        }
+    }
+
+    /**
+     * Output the texts of bills and turns packed into a single file with an
+     * index (see GTPackedTexts) instead of one file per bill or turn. The
+     * input methods read either format.
+     *
+     * @param p Whether to pack the output texts
+     */
+    public void setPackedOutput(boolean p) {
+        this.packedOutput = p;
+    }
+
+    /**
+     * Write the files of bills and debates through a writer pool instead of
+     * one by one. The files may then still be pending when the output methods
+     * return, until the pool is flushed.
+     *
+     * @param writerPool The writer pool, or null to write files directly
+     */
+    public void setWriterPool(GTWriterPool writerPool) {
+        this.writerPool = writerPool;
+    }
+
+    /**
+     * Write a file, through the writer pool if one is set.
+     */
+    protected void writeFile(File file, String content) throws IOException {
+        if (writerPool != null) {
+            writerPool.write(file, content);
+            return;
+        }
+        GTEvents.WriteFile event = new GTEvents.WriteFile();
+        event.begin();
+        BufferedWriter writer = IOUtils.getBufferedWriter(file);
+        writer.write(content);
+        writer.close();
+        event.finish(file);
+    }
+
+    /**
+     * Record the metrics of this processor (e.g., files parsed and records
+     * skipped) into a given registry, e.g., one shared by all the stages of a
+     * run.
+     *
+     * @param metrics The metrics registry
+     */
+    public void setMetrics(GTMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    public GTMetrics getMetrics() {
+        return this.metrics;
+    }
+
+    /**
+     * @return The symbol tables of the objects parsed or loaded by this
+     * processor
+     */
+    public GTSymbols getSymbols() {
+        return this.symbols;
+    }
+
+    /**
+     * Count records (e.g., files or lines) that are skipped.
+     *
+     * @param type Type of the records
+     * @param reason Why the records are skipped
+     * @param n Number of records
+     */
+    protected void countSkipped(String type, String reason, long n) {
+        metrics.counter("gt_records_skipped_total", "Number of records skipped",
+                "type", type, "reason", reason).add(n);
+    }
+
+    /**
+     * Record the number of records (e.g., debates) kept after a stage.
+     */
+    protected void setNumRecords(String type, int n) {
+        metrics.gauge("gt_records", "Number of records kept", "type", type).set(n);
+    }
+
     public HashMap<String, GTLegislator> getLegislators() {
         return this.legislators;
     }
@@ -111,12 +274,10 @@ public class GTProcessor {
         }
 
         policyAgendaCodebook = new HashMap<Integer, String>();
-        BufferedReader reader = IOUtils.getBufferedReader(filepath);
-        String line;
-        while ((line = reader.readLine()) != null) {
-            String[] sline = line.split("\t");
-            int topicId = Integer.parseInt(sline[0]);
-            String topicLabel = sline[1];
+        TSVReader reader = new TSVReader(new File(filepath));
+        while (reader.next()) {
+            int topicId = reader.getInt(0);
+            String topicLabel = reader.getString(1);
             policyAgendaCodebook.put(topicId, topicLabel);
         }
         reader.close();
@@ -131,30 +292,28 @@ public class GTProcessor {
                     + filepath);
         }
 
-        BufferedReader reader = IOUtils.getBufferedReader(filepath);
-        String line;
-        reader.readLine(); // headers
+        TSVReader reader = new TSVReader(new File(filepath));
+        reader.next(); // headers
 
         int numBillsLabeled = 0;
-        while ((line = reader.readLine()) != null) {
-            String[] sline = line.split("\t");
-            if (sline[7] == null || sline[7].trim().isEmpty()) {
-                System.out.println("Skipping line " + line);
+        while (reader.next()) {
+            if (reader.getString(7).trim().isEmpty()) {
+                System.out.println("Skipping line " + reader.getLine());
+                countSkipped("bill-topic", "missing-congress", 1);
                 continue;
             }
 
-            int congressNo = Integer.parseInt(sline[7]);
+            int congressNo = reader.getInt(7);
             if (congressNo != this.congressNumber) {
                 continue;
             }
 
-            String billNum = sline[2];
-            String billType = sline[3];
-            int major = Integer.parseInt(sline[10]);
-            int minor = Integer.parseInt(sline[11]);
+            String billNum = reader.getString(2);
+            int major = reader.getInt(10);
+            int minor = reader.getInt(11);
 
             String billId;
-            if (billType.equals("HR")) {
+            if (reader.fieldEquals(3, "HR")) {
                 billId = "h-" + billNum;
             } else {
                 billId = "s-" + billNum;
@@ -172,19 +331,43 @@ public class GTProcessor {
         System.out.println("--- # bills labeled: " + numBillsLabeled);
     }
 
+    /**
+     * Load legislators from people.xml and store the list of debates each
+     * legislator participated in.
+     *
+     * @throws java.lang.Exception
+     */
     public void processLegislators() throws Exception {
+        parseLegislators();
+        linkLegislatorDebates();
+    }
+
+    /**
+     * Load legislators from people.xml. This does not depend on debates,
+     * bills or rolls.
+     *
+     * @throws java.lang.Exception
+     */
+    public void parseLegislators() throws Exception {
         File peopleFile = new File(new File(folder, Integer.toString(congressNumber)), "people.xml");
-        if (!peopleFile.exists()) {
+        byte[] peopleData = null;
+        if (!peopleFile.exists() && archive != null) {
+            peopleData = archive.readFile("people.xml");
+        }
+        if (!peopleFile.exists() && peopleData == null) {
             throw new RuntimeException(peopleFile.getAbsolutePath() + " not found");
         }
 
         if (verbose) {
-            System.out.println("\nProcessing legislators " + peopleFile.getAbsolutePath() + " ...");
+            System.out.println("\nProcessing legislators " + (peopleData == null
+                    ? peopleFile.getAbsolutePath() : archive.getFile() + ":people.xml") + " ...");
         }
 
         this.icpsrLegislatorMap = new HashMap<String, GTLegislator>();
         this.legislators = new HashMap<String, GTLegislator>();
-        Element docEle = getDocumentElement(peopleFile.getAbsolutePath());
+        Element docEle = peopleData == null
+                ? getDocumentElement(peopleFile.getAbsolutePath())
+                : getDocumentElement(new ByteArrayInputStream(peopleData));
         NodeList nodelist;
         Element el;
 
@@ -203,6 +386,7 @@ public class GTProcessor {
             el = (Element) roleNodelist.item(0);
 
             if (el == null) {
+                countSkipped("legislator", "missing-role", 1);
                 if (verbose) {
                     System.out.println("--- Skipping missing role"
                             + ". ID: " + pid
@@ -217,7 +401,7 @@ public class GTProcessor {
             String type = el.getAttribute("type").trim();
             String distStr = el.getAttribute("district").trim();
 
-            GTLegislator legislator = new GTLegislator(
+            GTLegislator legislator = new GTLegislator(symbols,
                     pid, lastname, firstname, middlename,
                     type, party, state);
             if (!nickname.isEmpty()) {
@@ -239,13 +423,18 @@ public class GTProcessor {
             this.legislators.put(pid, legislator);
         }
 
+        setNumRecords("legislator", legislators.size());
         if (verbose) {
             System.out.println("--- Loaded " + legislators.size() + " legislators ...");
             System.out.println("--- # legislators having ICPSR IDs "
                     + this.icpsrLegislatorMap.size() + ". " + icpsrCount);
         }
+    }
 
-        // get all debates involving each legislator
+    /**
+     * Get all debates involving each legislator.
+     */
+    public void linkLegislatorDebates() {
         for (GTDebate debate : this.debates.values()) {
             Set<String> speakerIds = new HashSet<String>();
             for (GTTurn turn : debate.getTurns()) {
@@ -267,26 +456,23 @@ public class GTProcessor {
             System.out.println("\nLoading NOMINATE scores from " + filepath);
         }
 
-        BufferedReader reader = IOUtils.getBufferedReader(filepath);
-        String line;
-        String[] sline;
+        TSVReader reader = new TSVReader(new File(filepath));
         int count = 0;
-        while ((line = reader.readLine()) != null) {
-            sline = line.split("\t");
-
-            int congressNum = Integer.parseInt(sline[0]);
+        while (reader.next()) {
+            int congressNum = reader.getInt(0);
             if (this.congressNumber != congressNum) {
                 continue;
             }
-            String icpsrid = sline[1];
-            String score1 = sline[7];
-            String score2 = sline[8];
+            String icpsrid = reader.getString(1);
+            String score1 = reader.getString(7);
+            String score2 = reader.getString(8);
 
             GTLegislator legislator = this.icpsrLegislatorMap.get(icpsrid);
             if (legislator == null) {
+                countSkipped("nominate-score", "unknown-icpsr-id", 1);
                 if (verbose) {
                     System.out.println("--- --- Skipping the following line since "
-                            + "no ICPSR ID is found from GovTrack\n" + line);
+                            + "no ICPSR ID is found from GovTrack\n" + reader.getLine());
                 }
                 continue;
             }
@@ -312,8 +498,36 @@ public class GTProcessor {
      * @throws java.lang.Exception
      */
     public void getMissingICPSRIDs(String repFilepath, String senFilepath) throws Exception {
+        getMissingICPSRIDs(repFilepath, senFilepath, null);
+    }
+
+    /**
+     * Fill in missing ICPSR IDs, reusing the legislators resolved in previous
+     * runs among the same GovTrack legislators. Only VoteView legislators that
+     * are not in the cache are matched, and the new matches are added to the
+     * cache.
+     *
+     * @param repFilepath File containing information about Representatives
+     * @param senFilepath File containing information about Senators
+     * @param cacheFile File storing resolved ICPSR IDs across runs, or null
+     * to disable caching
+     * @throws java.lang.Exception
+     */
+    public void getMissingICPSRIDs(String repFilepath, String senFilepath,
+            File cacheFile) throws Exception {
         String line;
         BufferedReader reader;
+        GTICPSRMatcher matcher = new GTICPSRMatcher(this.legislators.values(), verbose);
+        GTICPSRCache cache = null;
+        if (cacheFile != null) {
+            cache = new GTICPSRCache(cacheFile, matcher.getFingerprint());
+            cache.load();
+            if (verbose) {
+                System.out.println("--- Loaded " + cache.size() + " resolved legislators from "
+                        + cacheFile);
+            }
+        }
+        int numCached = 0;
 
         // for Representatives
         if (verbose) {
@@ -323,6 +537,10 @@ public class GTProcessor {
         int count = 0;
         File repFile = new File(repFilepath);
         if (repFile.exists()) {
+            GTEvents.ResolveICPSRBatch event = new GTEvents.ResolveICPSRBatch();
+            event.begin();
+            int numCandidates = 0;
+            int numCachedBefore = numCached;
             reader = IOUtils.getBufferedReader(repFilepath);
             while ((line = reader.readLine()) != null) {
                 int congNum = Integer.parseInt(line.substring(0, 4).trim());
@@ -346,45 +564,16 @@ public class GTProcessor {
                     continue;
                 }
 
-                GTLegislator matchLegislator = null;
                 // find legislator
-                for (GTLegislator legislator : this.legislators.values()) {
-                    if (!legislator.getType().equals("rep")) // skip Senators
-                    {
-                        continue;
-                    }
-                    if (!legislator.getParty().equals(getParty(partyCode))) {
-                        continue;
-                    }
-                    if (!legislator.getState().equals(stateAbbre) || legislator.getDistrict() != districtCode) {
-                        continue;
-                    }
-                    String legLastname = legislator.getLastname().toLowerCase();
-                    String legFirstname = legislator.getFirstname().toLowerCase();
-                    String curLastname = names[LASTNAME].toLowerCase();
-                    String curFirstname = names[FIRSTNAME].toLowerCase();
-
-                    double lastnameDist = getEditDistance(legLastname, curLastname);
-                    double firstnameDist = getEditDistance(legFirstname, curFirstname);
-                    double firstNicknameDist = 1.0;
-                    if (legislator.hasProperty("nickname")) {
-                        firstNicknameDist = getEditDistance(
-                                legislator.getProperty("nickname").toLowerCase(),
-                                curFirstname);
-                    }
-
-                    if (lastnameDist > 0.3 && (firstnameDist > 0.3 && firstNicknameDist > 0.3)) {
-                        if (verbose) {
-                            System.out.println("\t\tDetecting a mismatch, check if reasonable"
-                                    + ". lastname: " + legLastname + " vs. " + curLastname
-                                    + ". firstname: " + legFirstname + " vs. " + curFirstname
-                                    + ". type: " + legislator.getType()
-                                    + ". party: " + legislator.getParty()
-                                    + ". state: " + legislator.getState());
-                        }
-                        continue;
-                    }
-                    matchLegislator = legislator;
+                numCandidates++;
+                GTLegislator matchLegislator = getCachedLegislator(cache, icpsrId);
+                if (matchLegislator != null) {
+                    numCached++;
+                } else {
+                    GTICPSRMatcher.Match match = matcher.matchRepresentative(
+                            getParty(partyCode), stateAbbre, districtCode,
+                            names[LASTNAME], names[FIRSTNAME]);
+                    matchLegislator = addCachedMatch(cache, icpsrId, match);
                 }
 
                 if (matchLegislator == null) {
@@ -395,6 +584,9 @@ public class GTProcessor {
                 icpsrLegislatorMap.put(icpsrId, matchLegislator);
             }
             reader.close();
+            event.finish("representative", repFile.getName(), numCandidates,
+                    numCached - numCachedBefore, count);
+            countSkipped("representative", "no-icpsr-match", count);
             if (verbose) {
                 System.out.println("--- Number of Representatives in "
                         + repFilepath + " don't match: " + count);
@@ -409,6 +601,10 @@ public class GTProcessor {
         count = 0;
         File senFile = new File(senFilepath);
         if (senFile.exists()) {
+            GTEvents.ResolveICPSRBatch event = new GTEvents.ResolveICPSRBatch();
+            event.begin();
+            int numCandidates = 0;
+            int numCachedBefore = numCached;
             reader = IOUtils.getBufferedReader(senFilepath);
             while ((line = reader.readLine()) != null) {
                 int congNum = Integer.parseInt(line.substring(0, 4).trim());
@@ -432,45 +628,16 @@ public class GTProcessor {
                     continue;
                 }
 
-                GTLegislator matchLegislator = null;
                 // find legislator
-                for (GTLegislator legislator : this.legislators.values()) {
-                    if (!legislator.getType().equals("sen")) // skip Representatives
-                    {
-                        continue;
-                    }
-                    if (!legislator.getParty().equals(getParty(partyCode))) {
-                        continue;
-                    }
-                    if (!legislator.getState().equals(stateAbbre)) {
-                        continue;
-                    }
-                    String legLastname = legislator.getLastname().toLowerCase();
-                    String legFirstname = legislator.getFirstname().toLowerCase();
-                    String curLastname = names[LASTNAME].toLowerCase();
-                    String curFirstname = names[FIRSTNAME].toLowerCase();
-
-                    double lastnameDist = getEditDistance(legLastname, curLastname);
-                    double firstnameDist = getEditDistance(legFirstname, curFirstname);
-                    double firstNicknameDist = 1.0;
-                    if (legislator.hasProperty("nickname")) {
-                        firstNicknameDist = getEditDistance(
-                                legislator.getProperty("nickname").toLowerCase(),
-                                curFirstname);
-                    }
-
-                    if (lastnameDist > 0.3 && (firstnameDist > 0.3 && firstNicknameDist > 0.3)) {
-                        if (verbose) {
-                            System.out.println("\t\tDetecting a mismatch, check if reasonable"
-                                    + ". lastname: " + legLastname + " vs. " + curLastname
-                                    + ". firstname: " + legFirstname + " vs. " + curFirstname
-                                    + ". type: " + legislator.getType()
-                                    + ". party: " + legislator.getParty()
-                                    + ". state: " + legislator.getState());
-                        }
-                        continue;
-                    }
-                    matchLegislator = legislator;
+                numCandidates++;
+                GTLegislator matchLegislator = getCachedLegislator(cache, icpsrId);
+                if (matchLegislator != null) {
+                    numCached++;
+                } else {
+                    GTICPSRMatcher.Match match = matcher.matchSenator(
+                            getParty(partyCode), stateAbbre,
+                            names[LASTNAME], names[FIRSTNAME]);
+                    matchLegislator = addCachedMatch(cache, icpsrId, match);
                 }
 
                 if (matchLegislator == null) {
@@ -481,29 +648,80 @@ public class GTProcessor {
                 icpsrLegislatorMap.put(icpsrId, matchLegislator);
             }
             reader.close();
+            event.finish("senator", senFile.getName(), numCandidates,
+                    numCached - numCachedBefore, count);
+            countSkipped("senator", "no-icpsr-match", count);
             if (verbose) {
                 System.out.println("--- Number of Senators in "
                         + senFilepath + " don't match: " + count);
             }
         }
 
+        if (cache != null) {
+            cache.save();
+        }
+        metrics.counter("gt_icpsr_resolved_from_cache_total",
+                "Number of legislators whose ICPSR IDs are resolved from the cache").add(numCached);
+        setNumRecords("icpsr-legislator", icpsrLegislatorMap.size());
         if (verbose) {
+            System.out.println("--- # legislators resolved from cache: " + numCached);
+            matcher.printReport();
             System.out.println("--- icpsr size = " + icpsrLegislatorMap.size());
         }
     }
 
+    /**
+     * @return The legislator of a VoteView legislator resolved in a previous
+     * run, or null if there is none
+     */
+    private GTLegislator getCachedLegislator(GTICPSRCache cache, String icpsrId) {
+        if (cache == null) {
+            return null;
+        }
+        GTICPSRCache.Entry entry = cache.getByICPSRId(congressNumber, icpsrId);
+        if (entry == null) {
+            return null;
+        }
+        GTLegislator legislator = this.legislators.get(entry.getGovTrackId());
+        if (legislator == null) { // no longer in the GovTrack data
+            cache.remove(entry);
+        }
+        return legislator;
+    }
+
+    /**
+     * @return The matching legislator, or null if there is none
+     */
+    private GTLegislator addCachedMatch(GTICPSRCache cache, String icpsrId,
+            GTICPSRMatcher.Match match) {
+        if (match == null) {
+            return null;
+        }
+        if (cache != null) {
+            cache.put(new GTICPSRCache.Entry(congressNumber, cache.getFingerprint(),
+                    match.getLegislator().getId(), icpsrId, match.getScore()));
+        }
+        return match.getLegislator();
+    }
+
     public void outputBillSummaries(File folder) throws Exception {
         if (verbose) {
             System.out.println("\nOutputing bill summaries " + folder);
         }
 
-        BufferedWriter writer;
+        if (packedOutput) {
+            GTPackedTexts.Writer packedWriter = new GTPackedTexts.Writer(folder);
+            for (GTBill bill : this.bills.values()) {
+                packedWriter.write(bill.getId(), bill.getSummary());
+            }
+            packedWriter.close();
+            return;
+        }
+
         IOUtils.createFolder(folder);
+        GTPackedTexts.delete(folder);
         for (GTBill bill : this.bills.values()) {
-            File billSumFile = new File(folder, bill.getId());
-            writer = IOUtils.getBufferedWriter(billSumFile);
-            writer.write(bill.getSummary());
-            writer.close();
+            writeFile(new File(folder, bill.getId()), bill.getSummary());
         }
     }
 
@@ -513,18 +731,111 @@ public class GTProcessor {
             System.out.println("\nInputing bill summaries " + folder);
         }
 
-        BufferedReader reader;
-        String line;
-        for (String billId : billMap.keySet()) {
-            StringBuilder str = new StringBuilder();
-            reader = IOUtils.getBufferedReader(new File(folder, billId));
-            while ((line = reader.readLine()) != null) {
-                str.append(" ").append(line);
-            }
-            reader.close();
+        String[] billIds = billMap.keySet().toArray(new String[billMap.size()]);
+        ConcurrentHashMap<String, String> summaries = inputTexts(folder, billIds, "bill summary");
+        for (String billId : billIds) {
+            billMap.get(billId).setSummary(getSummary(summaries.get(billId)));
+        }
+    }
+
+    /**
+     * Summary from the content of a file written by outputBillSummaries, in
+     * which each line is preceded by a space.
+     */
+    private static String getSummary(String content) {
+        StringBuilder str = new StringBuilder();
+        for (String line : GTTextFiles.getLines(content)) {
+            str.append(" ").append(line);
+        }
+        return str.toString();
+    }
+
+    /**
+     * IDs of the texts stored in a folder, either as one file per text or as
+     * packed texts (see GTPackedTexts), in which case they are listed in the
+     * order they were written.
+     *
+     * @param folder The folder
+     * @return The IDs, or null if there are no texts
+     * @throws java.io.IOException
+     */
+    protected static String[] listTexts(File folder) throws IOException {
+        if (!GTPackedTexts.exists(folder)) {
+            return folder.list();
+        }
+        GTPackedTexts.Reader packedTexts = new GTPackedTexts.Reader(folder);
+        String[] ids = new String[packedTexts.size()];
+        for (int ii = 0; ii < ids.length; ii++) {
+            ids[ii] = packedTexts.getId(ii);
+        }
+        packedTexts.close();
+        return ids;
+    }
 
-            billMap.get(billId).setSummary(str.toString());
+    /**
+     * Load texts in parallel from their files in a folder, or from the packed
+     * texts of the folder if they exist.
+     *
+     * @param folder The folder
+     * @param ids IDs of the texts, which are the names of their files
+     * @param label Type of texts, used when reporting progress
+     * @return Map from ID to text
+     * @throws java.io.IOException
+     */
+    protected ConcurrentHashMap<String, String> inputTexts(File folder, String[] ids,
+            String label) throws IOException {
+        final AtomicLong numBytes = new AtomicLong();
+        long startTime = System.currentTimeMillis();
+        ConcurrentHashMap<String, String> texts;
+        if (GTPackedTexts.exists(folder)) {
+            final GTPackedTexts.Reader packedTexts = new GTPackedTexts.Reader(folder);
+            try {
+                texts = parseFiles(folder, ids, label, new ParallelFileParser.Parser<String>() {
+                    @Override
+                    public String parse(File file) throws Exception {
+                        numBytes.addAndGet(packedTexts.getSize(file.getName()));
+                        return packedTexts.read(file.getName());
+                    }
+                });
+            } finally {
+                packedTexts.close();
+            }
+        } else {
+            texts = parseFiles(folder, ids, label, new ParallelFileParser.Parser<String>() {
+                @Override
+                public String parse(File file) throws Exception {
+                    String text = GTTextFiles.read(file);
+                    numBytes.addAndGet(file.length());
+                    return text;
+                }
+            });
         }
+        printLoadingThroughput(label, ids.length, numBytes.get(), startTime);
+        return texts;
+    }
+
+    /**
+     * Print the throughput of loading files from a processed folder.
+     *
+     * @param label Type of files
+     * @param numFiles Number of files
+     * @param numBytes Total size of the files
+     * @param startTime Time the loading started
+     */
+    protected void printLoadingThroughput(String label, int numFiles, long numBytes,
+            long startTime) {
+        metrics.counter("gt_files_loaded_total", "Number of processed files loaded",
+                "type", label).add(numFiles);
+        metrics.counter("gt_bytes_loaded_total", "Total size of the processed files "
+                + "loaded in bytes", "type", label).add(numBytes);
+        if (!verbose) {
+            return;
+        }
+        long time = Math.max(1, System.currentTimeMillis() - startTime);
+        System.out.println("--- Loaded " + numFiles + " " + label + " files ("
+                + numBytes + " bytes) in " + time + " ms using " + numThreads
+                + " thread(s). " + String.format("%.2f", numBytes / 1048576.0 / (time / 1000.0))
+                + " MB/s");
     }
 
     public void outputBillSubjects(File file) throws Exception {
@@ -532,15 +843,19 @@ public class GTProcessor {
             System.out.println("Outputing bill subjects " + file);
         }
 
-        BufferedWriter writer = IOUtils.getBufferedWriter(file);
+        TSVWriter writer = new GTTSVWriter(file);
+        writeBillSubjects(writer);
+        writer.close();
+    }
+
+    private void writeBillSubjects(TSVWriter writer) throws IOException {
         for (GTBill bill : this.bills.values()) {
-            writer.write(bill.getId() + "\t");
+            writer.field(bill.getId());
             for (String subject : bill.getSubjects()) {
-                writer.write(subject + "\t");
+                writer.field(subject);
             }
-            writer.write("\n");
+            writer.field("").endLine();
         }
-        writer.close();
     }
 
     public void inputBillSubjects(File file, HashMap<String, GTBill> billMap)
@@ -549,16 +864,19 @@ public class GTProcessor {
             System.out.println("\nInputing bill subjects " + file);
         }
 
-        BufferedReader reader = IOUtils.getBufferedReader(file);
-        String line;
-        while ((line = reader.readLine()) != null) {
-            String[] sline = line.split("\t");
-            String billId = sline[0];
-            for (int i = 1; i < sline.length; i++) {
-                billMap.get(billId).addSubject(sline[i]);
+        TSVReader reader = new TSVReader(file);
+        readBillSubjects(reader, billMap);
+        reader.close();
+    }
+
+    private static void readBillSubjects(TSVReader reader, HashMap<String, GTBill> billMap)
+            throws IOException {
+        while (reader.next()) {
+            GTBill bill = billMap.get(reader.getString(0));
+            for (int i = 1; i < reader.getNumFields(); i++) {
+                bill.addSubject(reader.getString(i));
             }
         }
-        reader.close();
     }
 
     public void outputBillTopics(File file) throws Exception {
@@ -567,7 +885,12 @@ public class GTProcessor {
                     + " Bill Project " + file);
         }
 
-        BufferedWriter writer = IOUtils.getBufferedWriter(file);
+        TSVWriter writer = new GTTSVWriter(file);
+        writeBillTopics(writer);
+        writer.close();
+    }
+
+    private void writeBillTopics(TSVWriter writer) throws IOException {
         for (GTBill bill : this.bills.values()) {
             String majorTopicId = bill.getProperty(GTBill.MAJOR_TOPIC);
             String minorTopicId = bill.getProperty(GTBill.MINOR_TOPIC);
@@ -581,14 +904,13 @@ public class GTProcessor {
                 minorTopic = policyAgendaCodebook.get(Integer.parseInt(minorTopicId));
             }
 
-            writer.write(bill.getId()
-                    + "\t" + majorTopicId
-                    + "\t" + minorTopicId
-                    + "\t" + majorTopic
-                    + "\t" + minorTopic
-                    + "\n");
+            writer.field(bill.getId())
+                    .field(majorTopicId)
+                    .field(minorTopicId)
+                    .field(majorTopic)
+                    .field(minorTopic)
+                    .endLine();
         }
-        writer.close();
     }
 
     public void inputBillTopics(File file, HashMap<String, GTBill> billMap)
@@ -597,23 +919,25 @@ public class GTProcessor {
             System.out.println("\tInputing bill topics from " + file);
         }
 
-        BufferedReader reader = IOUtils.getBufferedReader(file);
-        String line;
-        while ((line = reader.readLine()) != null) {
-            String[] sline = line.split("\t");
-            String billId = sline[0];
+        TSVReader reader = new TSVReader(file);
+        readBillTopics(reader, billMap);
+        reader.close();
+    }
+
+    private static void readBillTopics(TSVReader reader, HashMap<String, GTBill> billMap)
+            throws IOException {
+        while (reader.next()) {
+            String billId = reader.getString(0);
             GTBill bill = billMap.get(billId);
             if (bill == null) {
                 throw new RuntimeException("Bill " + billId + " not found");
             }
-            String majorTopic = sline[3];
-            if (majorTopic.equals("null")) {
+            if (reader.fieldEquals(3, "null")) {
                 continue;
             }
-            bill.addProperty(GTBill.MAJOR_TOPIC, sline[3]);
-            bill.addProperty(GTBill.MINOR_TOPIC, sline[4]);
+            bill.addProperty(GTBill.MAJOR_TOPIC, reader.getString(3));
+            bill.addProperty(GTBill.MINOR_TOPIC, reader.getString(4));
         }
-        reader.close();
     }
 
     public void outputBills(File file) throws Exception {
@@ -621,18 +945,22 @@ public class GTProcessor {
             System.out.println("\nOutputing bills " + file);
         }
 
-        BufferedWriter writer = IOUtils.getBufferedWriter(file);
+        TSVWriter writer = new GTTSVWriter(file);
+        writeBills(writer);
+        writer.close();
+    }
+
+    private void writeBills(TSVWriter writer) throws IOException {
         for (String billId : this.bills.keySet()) {
             GTBill bill = this.bills.get(billId);
-            writer.write(bill.getType()
-                    + "\t" + bill.getNumber()
-                    + "\t" + bill.getProperty(GTBill.MAJOR_TOPIC)
-                    + "\t" + bill.getProperty(GTBill.MINOR_TOPIC)
-                    + "\t" + bill.getTitle()
-                    + "\t" + bill.getOfficialTitle()
-                    + "\n");
+            writer.field(bill.getType())
+                    .field(bill.getNumber())
+                    .field(bill.getProperty(GTBill.MAJOR_TOPIC))
+                    .field(bill.getProperty(GTBill.MINOR_TOPIC))
+                    .field(bill.getTitle())
+                    .field(bill.getOfficialTitle())
+                    .endLine();
         }
-        writer.close();
     }
 
     public HashMap<String, GTBill> inputBills(File file) throws Exception {
@@ -640,33 +968,35 @@ public class GTProcessor {
             System.out.println("\nInputing bills " + file);
         }
 
+        TSVReader reader = new TSVReader(file);
+        HashMap<String, GTBill> billMap = readBills(reader);
+        reader.close();
+
+        if (verbose) {
+            System.out.println("--- Loaded " + billMap.size() + " bills");
+        }
+        return billMap;
+    }
+
+    private HashMap<String, GTBill> readBills(TSVReader reader) throws IOException {
         HashMap<String, GTBill> billMap = new HashMap<String, GTBill>();
-        BufferedReader reader = IOUtils.getBufferedReader(file);
-        String line;
-        String[] sline;
-        while ((line = reader.readLine()) != null) {
-            sline = line.split("\t");
-            String type = sline[0];
-            int number = Integer.parseInt(sline[1]);
-            GTBill bill = new GTBill(type, number);
-            if (!sline[2].equals("null")) {
-                bill.addProperty(GTBill.MAJOR_TOPIC, sline[2]);
+        while (reader.next()) {
+            String type = reader.getString(0);
+            int number = reader.getInt(1);
+            GTBill bill = new GTBill(symbols, type, number);
+            if (!reader.fieldEquals(2, "null")) {
+                bill.addProperty(GTBill.MAJOR_TOPIC, reader.getString(2));
             }
-            if (!sline[3].equals("null")) {
-                bill.addProperty(GTBill.MINOR_TOPIC, sline[3]);
+            if (!reader.fieldEquals(3, "null")) {
+                bill.addProperty(GTBill.MINOR_TOPIC, reader.getString(3));
             }
-            String title = sline[4];
-            String officialTitle = sline[5];
+            String title = reader.getString(4);
+            String officialTitle = reader.getString(5);
 
             bill.setTitle(title);
             bill.setOfficialTitle(officialTitle);
             billMap.put(bill.getId(), bill);
         }
-        reader.close();
-
-        if (verbose) {
-            System.out.println("--- Loaded " + billMap.size() + " bills");
-        }
         return billMap;
     }
 
@@ -675,7 +1005,12 @@ public class GTProcessor {
             System.out.println("\nOutputing legislators with ICPSR IDs to " + filepath);
         }
 
-        BufferedWriter writer = IOUtils.getBufferedWriter(filepath);
+        TSVWriter writer = new GTTSVWriter(new File(filepath));
+        writeLegislators(writer);
+        writer.close();
+    }
+
+    private void writeLegislators(TSVWriter writer) throws IOException {
         for (String icpsrId : this.icpsrLegislatorMap.keySet()) {
             GTLegislator legislator = this.icpsrLegislatorMap.get(icpsrId);
             String score1 = legislator.getProperty(NOMINATE_SCORE1);
@@ -684,21 +1019,20 @@ public class GTProcessor {
                 score1 = EMPTY_SCORE;
                 score2 = EMPTY_SCORE;
             }
-            writer.write(legislator.getId()
-                    + "\t" + legislator.getProperty(GTLegislator.ICPSRID)
-                    + "\t" + legislator.getParty()
-                    + "\t" + legislator.getType()
-                    + "\t" + legislator.getState()
-                    + "\t" + legislator.getDistrict()
-                    + "\t" + score1
-                    + "\t" + score2
-                    + "\t" + legislator.getLastname()
-                    + "\t" + legislator.getFirstname()
-                    + "\t" + legislator.getMiddlename()
-                    + "\t" + legislator.getDebateIds()
-                    + "\n");
+            writer.field(legislator.getId())
+                    .field(legislator.getProperty(GTLegislator.ICPSRID))
+                    .field(legislator.getParty())
+                    .field(legislator.getType())
+                    .field(legislator.getState())
+                    .field(legislator.getDistrict())
+                    .field(score1)
+                    .field(score2)
+                    .field(legislator.getLastname())
+                    .field(legislator.getFirstname())
+                    .field(legislator.getMiddlename())
+                    .field(legislator.getDebateIds())
+                    .endLine();
         }
-        writer.close();
     }
 
     public HashMap<String, GTLegislator> inputLegislators(String inputFilepath)
@@ -706,36 +1040,8 @@ public class GTProcessor {
         if (verbose) {
             System.out.println("\nLoading legislators from file " + inputFilepath);
         }
-        this.legislators = new HashMap<String, GTLegislator>();
-        this.icpsrLegislatorMap = new HashMap<String, GTLegislator>();
-        BufferedReader reader = IOUtils.getBufferedReader(inputFilepath);
-        String line;
-        String[] sline;
-        while ((line = reader.readLine()) != null) {
-            sline = line.split("\t");
-            String lid = sline[0];
-            String icpsrid = sline[1];
-            String party = sline[2];
-            String type = sline[3];
-            String state = sline[4];
-            int district = Integer.parseInt(sline[5]);
-            String scoreStr1 = (sline[6]);
-            String scoreStr2 = (sline[7]);
-            String lastname = sline[8];
-            String firstname = sline[9];
-            String middlename = sline[10];
-
-            GTLegislator legislator = new GTLegislator(lid, lastname, firstname,
-                    middlename, party, state, district);
-            legislator.setType(type);
-            legislator.addProperty(GTLegislator.ICPSRID, icpsrid);
-            if (!scoreStr1.equals(EMPTY_SCORE)) {
-                legislator.addProperty(NOMINATE_SCORE1, scoreStr1);
-                legislator.addProperty(NOMINATE_SCORE2, scoreStr2);
-            }
-            this.legislators.put(lid, legislator);
-            this.icpsrLegislatorMap.put(icpsrid, legislator);
-        }
+        TSVReader reader = new TSVReader(new File(inputFilepath));
+        readLegislators(reader);
         reader.close();
 
         // info for debug
@@ -758,10 +1064,50 @@ public class GTProcessor {
         return this.legislators;
     }
 
-    private static double getEditDistance(String str1, String str2) {
-        int dist = StringUtils.getLevenshteinDistance(str1, str2);
-        int maxLength = Math.max(str1.length(), str2.length());
-        return (double) dist / maxLength;
+    private void readLegislators(TSVReader reader) throws IOException {
+        this.legislators = new HashMap<String, GTLegislator>();
+        this.icpsrLegislatorMap = new HashMap<String, GTLegislator>();
+        while (reader.next()) {
+            String lid = reader.getString(0);
+            String icpsrid = reader.getString(1);
+            String party = reader.getString(2);
+            String type = reader.getString(3);
+            String state = reader.getString(4);
+            int district = reader.getInt(5);
+            String scoreStr1 = reader.getString(6);
+            String scoreStr2 = reader.getString(7);
+            String lastname = reader.getString(8);
+            String firstname = reader.getString(9);
+            String middlename = reader.getString(10);
+
+            GTLegislator legislator = new GTLegislator(symbols, lid, lastname, firstname,
+                    middlename, party, state, district);
+            legislator.setType(type);
+            legislator.addProperty(GTLegislator.ICPSRID, icpsrid);
+            if (!scoreStr1.equals(EMPTY_SCORE)) {
+                legislator.addProperty(NOMINATE_SCORE1, scoreStr1);
+                legislator.addProperty(NOMINATE_SCORE2, scoreStr2);
+            }
+            this.legislators.put(lid, legislator);
+            this.icpsrLegislatorMap.put(icpsrid, legislator);
+        }
+    }
+
+    /**
+     * Use a given set of legislators, e.g., loaded from a snapshot, in the
+     * same way as the ones loaded by inputLegislators.
+     *
+     * @param legislators Map from legislator ID to legislator
+     */
+    public void setLegislators(HashMap<String, GTLegislator> legislators) {
+        this.legislators = legislators;
+        this.icpsrLegislatorMap = new HashMap<String, GTLegislator>();
+        for (GTLegislator legislator : legislators.values()) {
+            String icpsrId = legislator.getProperty(GTLegislator.ICPSRID);
+            if (icpsrId != null) {
+                this.icpsrLegislatorMap.put(icpsrId, legislator);
+            }
+        }
     }
 
     private static String getParty(int partycode) {
@@ -796,7 +1142,7 @@ public class GTProcessor {
      */
     public void processDebates() {
         File crFolder = new File(this.congressFolder, "cr");
-        if (!crFolder.exists()) {
+        if (!crFolder.exists() && archive == null) {
             throw new RuntimeException(crFolder + " not found.");
         }
         if (verbose) {
@@ -804,92 +1150,41 @@ public class GTProcessor {
         }
 
         this.debates = new HashMap<String, GTDebate>();
-        String[] debateFilenames = crFolder.list();
-
-        NodeList nodelist;
-        Element el;
-        int count = 0;
-        for (String filename : debateFilenames) {
-            if (count % 100 == 0 && verbose) {
-                System.out.println("--- Processing debate file "
-                        + count + " / " + debateFilenames.length);
-            }
-            count++;
-
-            File debateFile = new File(crFolder, filename);
-            if (debateFile.length() == 0) {
-                if (verbose) {
-                    System.out.println("--- --- Skipping empty file " + debateFile);
+        ArrayList<String> debateFilenames = new ArrayList<String>();
+        ConcurrentHashMap<String, GTDebate> parsedDebates = parseRawFiles("cr",
+                "debate", new GTRecordCodec(symbols).getDebateCodec(),
+                new GTArchive.EntryParser<GTDebate>() {
+            @Override
+            public GTDebate parse(String debateFilename, long size, InputStream in) {
+                if (size == 0) {
+                    countSkipped("debate", "empty", 1);
+                    if (verbose) {
+                        System.out.println("--- --- Skipping empty file " + debateFilename);
+                    }
+                    return null;
                 }
-                continue;
-            }
 
-            Element docEle;
-            try {
-                docEle = getDocumentElement(debateFile.getAbsolutePath());
-            } catch (Exception e) {
-                if (verbose) {
-                    System.out.println("--- --- Skipping problematic debate file "
-                            + debateFile);
-                    e.printStackTrace();
+                try {
+                    return parseDebate(debateFilename, in);
+                } catch (Exception e) {
+                    countSkipped("debate", "invalid-xml", 1);
+                    if (verbose) {
+                        System.out.println("--- --- Skipping problematic debate file "
+                                + debateFilename);
+                        e.printStackTrace();
+                    }
+                    return null;
                 }
+            }
+        }, debateFilenames);
+        for (String filename : debateFilenames) {
+            GTDebate debate = parsedDebates.get(filename);
+            if (debate == null) {
                 continue;
             }
-            String title = docEle.getAttribute("title");
-            String where = docEle.getAttribute("where");
-            String debateId = IOUtils.removeExtension(filename);
-            GTDebate debate = new GTDebate(debateId);
-            debate.setTitle(title);
-            debate.addProperty("where", where);
-
-            // list of bill mentions
-            nodelist = docEle.getElementsByTagName("bill");
-            for (int i = 0; i < nodelist.getLength(); i++) {
-                el = (Element) nodelist.item(i);
-                String billType = el.getAttribute("type");
-                String billNumber = el.getAttribute("number");
-                debate.addBillMentioned(billType + "-" + billNumber);
-            }
-
-            // list of turns
-            GTTurn preTurn = null;
-            int turnCount = 0;
-            nodelist = docEle.getElementsByTagName("speaking");
-            for (int i = 0; i < nodelist.getLength(); i++) {
-                el = (Element) nodelist.item(i);
-                String speaker = el.getAttribute("speaker");
-                String topic = el.getAttribute("topic");
-
-                // get the actual texts
-                StringBuilder text = new StringBuilder();
-                NodeList nl = el.getElementsByTagName("paragraph");
-                for (int j = 0; j < nl.getLength(); j++) {
-                    text.append(nl.item(j).getTextContent()).append(" ");
-                }
-
-                // merge consecutive turns are from the same speaker
-                if (preTurn != null && preTurn.getSpeakerId().equals(speaker)) {
-                    String preTurnText = preTurn.getText();
-                    preTurnText += " " + text.toString();
-                    preTurn.setText(preTurnText);
-                } else { // or create a new turn
-                    GTTurn turn = new GTTurn(
-                            debateId + "_" + turnCount,
-                            speaker,
-                            text.toString()
-                            .replaceAll("\n", " ")
-                            .replace("nbsp", "")
-                            .replace("&", ""));
-                    if (!topic.trim().isEmpty()) {
-                        turn.addProperty("topic", topic);
-                    }
-                    debate.addTurn(turn);
-                    preTurn = turn;
-                    turnCount++;
-                }
-            }
-            this.debates.put(debateId, debate);
+            this.debates.put(debate.getId(), debate);
         }
+        setNumRecords("debate", debates.size());
         if (verbose) {
             System.out.println("--- Loaded " + debates.size() + " debates");
         }
@@ -922,9 +1217,239 @@ public class GTProcessor {
 //        }
     }
 
+    /**
+     * Parse a single debate file.
+     *
+     * @param debateFile The debate file
+     * @return The debate
+     * @throws java.lang.Exception
+     */
+    protected GTDebate parseDebate(File debateFile) throws Exception {
+        InputStream in = new BufferedInputStream(new FileInputStream(debateFile));
+        try {
+            return parseDebate(debateFile.getName(), in);
+        } finally {
+            in.close();
+        }
+    }
+
+    /**
+     * Parse a single debate file. Consecutive turns from the same speaker are
+     * merged into one turn.
+     *
+     * @param debateFilename Name of the debate file
+     * @param in Content of the debate file
+     * @return The debate
+     * @throws java.lang.Exception
+     */
+    protected GTDebate parseDebate(String debateFilename, InputStream in) throws Exception {
+        String debateId = IOUtils.removeExtension(debateFilename);
+        final GTDebate debate = new GTDebate(symbols, debateId);
+        getDebateReader().read(in, new GTDebateReader.Handler() {
+            private GTTurn preTurn = null;
+
+            @Override
+            public void startDebate(String title, String where, String datetime) {
+                debate.setTitle(title);
+                debate.addProperty("where", where);
+            }
+
+            @Override
+            public void billMentioned(String billId) {
+                debate.addBillMentioned(billId);
+            }
+
+            @Override
+            public void speaking(String speaker, String topic,
+                    ArrayList<GTDebateReader.Paragraph> paragraphs) {
+                // get the actual texts
+                StringBuilder text = new StringBuilder();
+                for (GTDebateReader.Paragraph paragraph : paragraphs) {
+                    text.append(paragraph.getText()).append(" ");
+                }
+
+                // merge consecutive turns are from the same speaker
+                if (preTurn != null && preTurn.getSpeakerId().equals(speaker)) {
+                    preTurn.appendText(text.toString());
+                } else { // or create a new turn
+                    GTTurn turn = new GTTurn(symbols,
+                            debate.getId() + "_" + debate.getNumTurns(),
+                            speaker,
+                            text.toString(),
+                            turnTextNormalizer);
+                    if (!topic.trim().isEmpty()) {
+                        turn.addProperty("topic", topic);
+                    }
+                    debate.addTurn(turn);
+                    preTurn = turn;
+                }
+            }
+        });
+        return debate;
+    }
+
+    /**
+     * Reader for debate files, using either DOM or streaming (StAX) parsing
+     * depending on setStreamingDebates.
+     *
+     * @return The debate reader
+     */
+    protected GTDebateReader getDebateReader() {
+        return new GTDebateReader(this.streamingDebates);
+    }
+
+    /**
+     * Parse the raw files of a folder of this congress (e.g., cr). The files
+     * are read from the congress folder if it contains the folder, or streamed
+     * from the archive of this congress otherwise. The parse cache is only
+     * used for folders.
+     *
+     * @param folderName Name of the folder
+     * @param label Label used when reporting progress and naming the cache
+     * @param codec Codec used to store parsed objects in the cache
+     * @param parser The parser
+     * @param filenames List to which the names of all files are added
+     * @return Map from file name to parsed object
+     */
+    protected <T> ConcurrentHashMap<String, T> parseRawFiles(String folderName,
+            String label, GTRecordCodec.RecordCodec<T> codec,
+            GTArchive.EntryParser<T> parser, ArrayList<String> filenames) {
+        parser = countParsedFiles(label, parser);
+        File rawFolder = new File(this.congressFolder, folderName);
+        if (rawFolder.exists() || archive == null) {
+            String[] rawFilenames = rawFolder.list();
+            filenames.addAll(Arrays.asList(rawFilenames));
+            return parseFiles(rawFolder, rawFilenames, label, codec,
+                    GTArchive.toFileParser(parser));
+        }
+
+        if (verbose) {
+            System.out.println("--- Reading " + folderName + " from " + archive.getFile());
+        }
+        try {
+            return archive.parse(folderName, label, parser, numThreads, verbose, filenames);
+        } catch (Exception e) {
+            e.printStackTrace();
+            throw new RuntimeException("Exception while reading " + folderName
+                    + " from " + archive.getFile());
+        }
+    }
+
+    /**
+     * Count the files parsed by a parser and their total size, and record a
+     * JFR event for each file.
+     */
+    private <T> GTArchive.EntryParser<T> countParsedFiles(final String label,
+            final GTArchive.EntryParser<T> parser) {
+        final GTMetrics.Counter numFiles = metrics.counter("gt_files_parsed_total",
+                "Number of raw files parsed", "type", label);
+        final GTMetrics.Counter numBytes = metrics.counter("gt_bytes_parsed_total",
+                "Total size of the raw files parsed in bytes", "type", label);
+        return new GTArchive.EntryParser<T>() {
+            @Override
+            public T parse(String filename, long size, InputStream in) throws Exception {
+                numFiles.inc();
+                numBytes.add(size);
+                GTEvents.ParseFile event = new GTEvents.ParseFile();
+                event.begin();
+                T parsed = null;
+                try {
+                    parsed = parser.parse(filename, size, in);
+                    return parsed;
+                } finally {
+                    event.finish(label, filename, size, parsed);
+                }
+            }
+        };
+    }
+
+    /**
+     * Parse files in a folder using numThreads threads.
+     *
+     * @param folder The folder
+     * @param filenames Names of files to parse
+     * @param label Label used when reporting progress
+     * @param parser The parser
+     * @return Map from file name to parsed object
+     */
+    protected <T> ConcurrentHashMap<String, T> parseFiles(File folder,
+            String[] filenames, String label, ParallelFileParser.Parser<T> parser) {
+        ParallelFileParser<T> fileParser = new ParallelFileParser<T>(numThreads, verbose);
+        return fileParser.parse(folder, filenames, label, parser);
+    }
+
+    /**
+     * Parse files in a folder, using the cache if a cache folder is set.
+     *
+     * @param folder The folder
+     * @param filenames Names of files to parse
+     * @param label Label used when reporting progress and naming the cache
+     * @param codec Codec used to store parsed objects in the cache
+     * @param parser The parser
+     * @return Map from file name to parsed object
+     */
+    protected <T> ConcurrentHashMap<String, T> parseFiles(File folder,
+            String[] filenames, String label, GTRecordCodec.RecordCodec<T> codec,
+            ParallelFileParser.Parser<T> parser) {
+        if (this.cacheFolder == null) {
+            return parseFiles(folder, filenames, label, parser);
+        }
+
+        try {
+            GTParseCache<T> cache = new GTParseCache<T>(new File(cacheFolder, label),
+                    getCacheKey(label), codec);
+            cache.setDependencyResolver(getCacheDependencies(label));
+            cache.load();
+            String[] changedFilenames = cache.getChangedFilenames(folder, filenames);
+            metrics.counter("gt_files_cached_total", "Number of raw files loaded from "
+                    + "the parse cache", "type", label).add(filenames.length - changedFilenames.length);
+            if (verbose) {
+                System.out.println("--- Parsing " + changedFilenames.length
+                        + " new or changed " + label + " files. Loading "
+                        + (filenames.length - changedFilenames.length)
+                        + " from cache " + cacheFolder);
+            }
+            ConcurrentHashMap<String, T> parsed = parseFiles(folder,
+                    changedFilenames, label, parser);
+            ConcurrentHashMap<String, T> results = cache.update(filenames,
+                    changedFilenames, parsed);
+            cache.save();
+            return results;
+        } catch (IOException e) {
+            e.printStackTrace();
+            throw new RuntimeException("Exception while caching " + label + " files");
+        }
+    }
+
+    /**
+     * Key of the cache of a given type of files. Parsed objects are only
+     * loaded from the cache if they were stored with the same key. Texts of
+     * turns depend on the normalizer of turns.
+     *
+     * @param label The type of files
+     * @return The key
+     */
+    protected String getCacheKey(String label) {
+        String key = getClass().getName() + "\t" + label + "\t" + GTRecordCodec.VERSION;
+        if (label.equals("debate")) {
+            key += "\t" + turnTextNormalizer.getSignature();
+        }
+        return key;
+    }
+
+    /**
+     * Other files that the parsed objects of a given type of files depend on.
+     *
+     * @param label The type of files
+     * @return The dependencies, or null if there are none
+     */
+    protected GTParseCache.DependencyResolver getCacheDependencies(String label) {
+        return null;
+    }
+
     public void processBills() {
         File billFolder = new File(this.congressFolder, "bills");
-        if (!billFolder.exists()) {
+        if (!billFolder.exists() && archive == null) {
             throw new RuntimeException(billFolder + " not found.");
         }
 
@@ -933,77 +1458,128 @@ public class GTProcessor {
         }
 
         this.bills = new HashMap<String, GTBill>();
-        String[] billFilenames = billFolder.list();
-        int count = 0;
+        ArrayList<String> billFilenames = new ArrayList<String>();
+        ConcurrentHashMap<String, GTBill> parsedBills = parseRawFiles("bills",
+                "bill", new GTRecordCodec(symbols).getBillCodec(),
+                new GTArchive.EntryParser<GTBill>() {
+            @Override
+            public GTBill parse(String billFilename, long size, InputStream in) {
+                return parseBill(billFilename, in);
+            }
+        }, billFilenames);
         for (String billFilename : billFilenames) {
-            if (count % 100 == 0 && verbose) {
-                System.out.println("--- Processing bill file "
-                        + count + " / " + billFilenames.length);
-            }
-            count++;
-
-            File billFile = new File(billFolder, billFilename);
-            Element docEle;
-            try {
-                docEle = getDocumentElement(billFile.getAbsolutePath());
-            } catch (Exception e) {
-                if (verbose) {
-                    System.out.println("--- --- Skipping problematic bill file "
-                            + billFile);
-                    e.printStackTrace();
-                }
+            GTBill bill = parsedBills.get(billFilename);
+            if (bill == null || !acceptBill(billFilename)) {
                 continue;
             }
-            NodeList nodelist;
-            Element element;
-
-            // create bill
-            String billType = docEle.getAttribute("type");
-            int billNumber = Integer.parseInt(docEle.getAttribute("number"));
-            GTBill bill = new GTBill(billType, billNumber);
-
-            // titles
-            nodelist = docEle.getElementsByTagName("title");
-            for (int ii = 0; ii < nodelist.getLength(); ii++) {
-                element = (Element) nodelist.item(ii);
-                String type = element.getAttribute("type");
-                String title = element.getTextContent();
-                if (type.equals("popular")) {
-                    bill.setTitle(title);
-                } else if (type.equals("official")) {
-                    bill.setOfficialTitle(title);
-                }
-            }
+            this.bills.put(bill.getId(), bill);
+        }
+
+        // store the list of debates that discuss each bill
+        linkBillDebates();
+
+        setNumRecords("bill", bills.size());
+        if (verbose) {
+            System.out.println("--- Loaded " + this.bills.size() + " bills.");
+        }
+    }
 
-            // subjects (labels) of this bill
-            ArrayList<String> subjects = new ArrayList<String>();
-            nodelist = docEle.getElementsByTagName("term");
-            for (int i = 0; i < nodelist.getLength(); i++) {
-                element = (Element) nodelist.item(i);
-                subjects.add(element.getAttribute("name"));
+    /**
+     * Whether a parsed bill is kept. It is called for every bill, whether it
+     * has just been parsed or loaded from the parse cache, so a bill that is
+     * skipped here is skipped (and counted) the same way in both cases.
+     *
+     * @param billFilename Name of the bill file
+     * @return True if the bill is kept
+     */
+    protected boolean acceptBill(String billFilename) {
+        return true;
+    }
+
+    /**
+     * Parse a single bill file.
+     *
+     * @param billFile The bill file
+     * @return The bill, or null if the file cannot be parsed
+     * @throws java.io.IOException
+     */
+    protected GTBill parseBill(File billFile) throws IOException {
+        InputStream in = new BufferedInputStream(new FileInputStream(billFile));
+        try {
+            return parseBill(billFile.getName(), in);
+        } finally {
+            in.close();
+        }
+    }
+
+    /**
+     * Parse a single bill file.
+     *
+     * @param billFilename Name of the bill file
+     * @param in Content of the bill file
+     * @return The bill, or null if the file cannot be parsed
+     */
+    protected GTBill parseBill(String billFilename, InputStream in) {
+        Element docEle;
+        try {
+            docEle = getDocumentElement(in);
+        } catch (Exception e) {
+            countSkipped("bill", "invalid-xml", 1);
+            if (verbose) {
+                System.out.println("--- --- Skipping problematic bill file "
+                        + billFilename);
+                e.printStackTrace();
             }
-            bill.setSubjects(subjects);
+            return null;
+        }
+        NodeList nodelist;
+        Element element;
 
-            // bill summary
-            nodelist = docEle.getElementsByTagName("summary");
-            element = (Element) nodelist.item(0);
-            String summary = element.getTextContent();
-            bill.setSummary(summary);
+        // create bill
+        String billType = docEle.getAttribute("type");
+        int billNumber = Integer.parseInt(docEle.getAttribute("number"));
+        GTBill bill = new GTBill(symbols, billType, billNumber);
 
-            // add bill
-            this.bills.put(bill.getId(), bill);
+        // titles
+        nodelist = docEle.getElementsByTagName("title");
+        for (int ii = 0; ii < nodelist.getLength(); ii++) {
+            element = (Element) nodelist.item(ii);
+            String type = element.getAttribute("type");
+            String title = element.getTextContent();
+            if (type.equals("popular")) {
+                bill.setTitle(title);
+            } else if (type.equals("official")) {
+                bill.setOfficialTitle(title);
+            }
         }
 
-        // store the list of debates that discuss each bill
+        // subjects (labels) of this bill
+        ArrayList<String> subjects = new ArrayList<String>();
+        nodelist = docEle.getElementsByTagName("term");
+        for (int i = 0; i < nodelist.getLength(); i++) {
+            element = (Element) nodelist.item(i);
+            subjects.add(element.getAttribute("name"));
+        }
+        bill.setSubjects(subjects);
+
+        // bill summary
+        nodelist = docEle.getElementsByTagName("summary");
+        element = (Element) nodelist.item(0);
+        String summary = element.getTextContent();
+        bill.setSummary(summary);
+        return bill;
+    }
+
+    /**
+     * Store the list of debates that discuss each bill.
+     */
+    protected void linkBillDebates() {
         for (GTDebate debate : this.debates.values()) {
             String debateId = debate.getId();
 
-            Set<String> billsMentionedSet = new HashSet<String>();
-            for (String billId : debate.getBillsMentioned()) {
-                billsMentionedSet.add(billId);
-            }
-
-            for (String billId : billsMentionedSet) {
+            GTBillMentions billMentions = debate.getBillMentions();
+            for (int ii = 0; ii < billMentions.getNumBills(); ii++) {
+                String billId = symbols.getBills().getName(billMentions.getBill(ii));
                 GTBill bill = this.bills.get(billId);
                 if (bill == null) {
                     continue;
@@ -1011,10 +1587,6 @@ public class GTProcessor {
                 bill.addDebateId(debateId);
             }
         }
-
-        if (verbose) {
-            System.out.println("--- Loaded " + this.bills.size() + " bills.");
-        }
     }
 
     /**
@@ -1022,7 +1594,7 @@ public class GTProcessor {
      */
     public void processRolls() {
         File rollFolder = new File(this.congressFolder, "rolls");
-        if (!rollFolder.exists()) {
+        if (!rollFolder.exists() && archive == null) {
             throw new RuntimeException(rollFolder + " not found");
         }
 
@@ -1030,98 +1602,149 @@ public class GTProcessor {
             System.out.println("\nProcessing rolls " + rollFolder);
         }
 
-        SimpleDateFormat sdf = new SimpleDateFormat("yyyy-MM-dd kk:mm:ss");
-
         this.rolls = new HashMap<String, GTRoll>();
-        String[] rollFilenames = rollFolder.list();
-        int count = 0;
-        int stepSize = MiscUtils.getRoundStepSize(rollFilenames.length, 10);
+        this.rollsBySymbol = new ArrayList<GTRoll>();
+        ArrayList<String> rollFilenames = new ArrayList<String>();
+        ConcurrentHashMap<String, GTRoll> parsedRolls = parseRawFiles("rolls",
+                "roll", new GTRecordCodec(symbols).getRollCodec(),
+                new GTArchive.EntryParser<GTRoll>() {
+            @Override
+            public GTRoll parse(String rollFilename, long size, InputStream in) {
+                return parseRoll(rollFilename, in);
+            }
+        }, rollFilenames);
+
+        // link rolls to bills in the same order as the roll files are listed
+        ArrayList<GTRoll> linkedRolls = new ArrayList<GTRoll>();
         for (String rollFilename : rollFilenames) {
-            if (count % stepSize == 0 && verbose) {
-                System.out.println("--- Processing roll file "
-                        + count + " / " + rollFilenames.length);
-            }
-            count++;
-
-            File rollFile = new File(rollFolder, rollFilename);
-            Element docEle;
-            try {
-                docEle = getDocumentElement(rollFile.getAbsolutePath());
-            } catch (Exception e) {
-                if (verbose) {
-                    System.out.println("--- --- Skipping problematic roll file "
-                            + rollFile);
-                    e.printStackTrace();
-                }
-                continue;
-            }
-            NodeList nodelist;
-            Element element;
-
-            // create new roll
-            String rollId = IOUtils.removeExtension(rollFilename);
-            GTRoll roll = new GTRoll(rollId);
-
-            roll.setWhere(docEle.getAttribute("where"));
-            roll.setRoll(Integer.parseInt(docEle.getAttribute("roll")));
-
-            // datetime
-            String datetime = docEle.getAttribute("datetime").replaceAll("T", " ");
-            int lastHyphenIndex = datetime.lastIndexOf("-");
-            datetime = datetime.substring(0, lastHyphenIndex);
-            long timeInMillisSinceEpoch = 0L;
-            try {
-                timeInMillisSinceEpoch = sdf.parse(datetime).getTime();
-            } catch (ParseException e) {
-                System.out.println("Ill-formatted datetime.");
-                e.printStackTrace();
-            }
-            long date = TimeUnit.MILLISECONDS.toMinutes(timeInMillisSinceEpoch);
-            roll.setDate(date);
-
-            // get bill associated with this
-            nodelist = docEle.getElementsByTagName("bill");
-            if (nodelist.getLength() == 0) {
+            GTRoll roll = parsedRolls.get(rollFilename);
+            if (roll == null) {
                 continue;
             }
-            element = (Element) nodelist.item(0);
-            String billType = element.getAttribute("type");
-            int billNum = Integer.parseInt(element.getAttribute("number"));
-            String billId = billType + "-" + billNum;
-            GTBill bill = this.bills.get(billId);
+            // skip rolls that are not about a bill that has been processed
+            GTBill bill = this.bills.get(roll.getBillId());
             if (bill == null) {
+                countSkipped("roll", "unknown-bill", 1);
                 continue;
             }
-            roll.setBillId(billId);
             roll.setTitle(bill.getOfficialTitle());
             bill.addRollId(roll.getId());
+            this.rolls.put(roll.getId(), roll);
+            while (rollsBySymbol.size() <= roll.getSymbol()) {
+                rollsBySymbol.add(null);
+            }
+            rollsBySymbol.set(roll.getSymbol(), roll);
+            linkedRolls.add(roll);
+        }
+        this.voteMatrix = new VoteMatrix(symbols, linkedRolls);
 
-            // roll category
-            nodelist = docEle.getElementsByTagName("category");
-            element = (Element) nodelist.item(0);
-            String category = element.getFirstChild().getNodeValue();
-            roll.addProperty("category", category);
+        setNumRecords("roll", rolls.size());
+        if (verbose) {
+            System.out.println("--- Loaded " + rolls.size() + " votes");
+        }
+    }
+
+    /**
+     * @return The votes of the rolls loaded by processRolls, with one column
+     * per roll in the order of the roll files
+     */
+    public VoteMatrix getVoteMatrix() {
+        return this.voteMatrix;
+    }
 
-            // roll result
-            nodelist = docEle.getElementsByTagName("result");
-            element = (Element) nodelist.item(0);
-            String result = element.getFirstChild().getNodeValue();
-            roll.addProperty("result", result);
+    /**
+     * Parse a single roll file.
+     *
+     * @param rollFile The roll file
+     * @return The roll, or null if the roll is skipped
+     * @throws java.io.IOException
+     */
+    protected GTRoll parseRoll(File rollFile) throws IOException {
+        InputStream in = new BufferedInputStream(new FileInputStream(rollFile));
+        try {
+            return parseRoll(rollFile.getName(), in);
+        } finally {
+            in.close();
+        }
+    }
 
-            nodelist = docEle.getElementsByTagName("voter");
-            for (int i = 0; i < nodelist.getLength(); i++) {
-                Element el = (Element) nodelist.item(i);
-                String pid = el.getAttribute("id");
-                String v = el.getAttribute("vote");
-                roll.putVote(pid, v);
+    /**
+     * Parse a single roll file. Rolls that are not about a bill are skipped.
+     *
+     * @param rollFilename Name of the roll file
+     * @param in Content of the roll file
+     * @return The roll, or null if the roll is skipped
+     */
+    protected GTRoll parseRoll(String rollFilename, InputStream in) {
+        Element docEle;
+        try {
+            docEle = getDocumentElement(in);
+        } catch (Exception e) {
+            countSkipped("roll", "invalid-xml", 1);
+            if (verbose) {
+                System.out.println("--- --- Skipping problematic roll file "
+                        + rollFilename);
+                e.printStackTrace();
             }
+            return null;
+        }
+        NodeList nodelist;
+        Element element;
+
+        // create new roll
+        String rollId = IOUtils.removeExtension(rollFilename);
+        GTRoll roll = new GTRoll(symbols, rollId);
+
+        roll.setWhere(docEle.getAttribute("where"));
+        roll.setRoll(Integer.parseInt(docEle.getAttribute("roll")));
 
-            this.rolls.put(rollId, roll);
+        // datetime
+        SimpleDateFormat sdf = new SimpleDateFormat("yyyy-MM-dd kk:mm:ss");
+        String datetime = docEle.getAttribute("datetime").replaceAll("T", " ");
+        int lastHyphenIndex = datetime.lastIndexOf("-");
+        datetime = datetime.substring(0, lastHyphenIndex);
+        long timeInMillisSinceEpoch = 0L;
+        try {
+            timeInMillisSinceEpoch = sdf.parse(datetime).getTime();
+        } catch (ParseException e) {
+            System.out.println("Ill-formatted datetime.");
+            e.printStackTrace();
         }
+        long date = TimeUnit.MILLISECONDS.toMinutes(timeInMillisSinceEpoch);
+        roll.setDate(date);
 
-        if (verbose) {
-            System.out.println("--- Loaded " + rolls.size() + " votes");
+        // get bill associated with this
+        nodelist = docEle.getElementsByTagName("bill");
+        if (nodelist.getLength() == 0) {
+            countSkipped("roll", "no-bill", 1);
+            return null;
+        }
+        element = (Element) nodelist.item(0);
+        String billType = element.getAttribute("type");
+        int billNum = Integer.parseInt(element.getAttribute("number"));
+        String billId = billType + "-" + billNum;
+        roll.setBillId(billId);
+
+        // roll category
+        nodelist = docEle.getElementsByTagName("category");
+        element = (Element) nodelist.item(0);
+        String category = element.getFirstChild().getNodeValue();
+        roll.addProperty("category", category);
+
+        // roll result
+        nodelist = docEle.getElementsByTagName("result");
+        element = (Element) nodelist.item(0);
+        String result = element.getFirstChild().getNodeValue();
+        roll.addProperty("result", result);
+
+        nodelist = docEle.getElementsByTagName("voter");
+        for (int i = 0; i < nodelist.getLength(); i++) {
+            Element el = (Element) nodelist.item(i);
+            String pid = el.getAttribute("id");
+            String v = el.getAttribute("vote");
+            roll.putVote(pid, v);
         }
+        return roll;
     }
 
     /**
@@ -1148,36 +1771,48 @@ public class GTProcessor {
      * @return 
      */
     protected String getMainRollId(GTBill bill) {
-        if (bill.getRollIds() == null) {
+        GTRoll mainRoll = getMainRoll(bill);
+        return mainRoll == null ? null : mainRoll.getId();
+    }
+
+    /**
+     * Same as getMainRollId, looking up the rolls of the bill by their
+     * symbols.
+     *
+     * @param bill The given bill
+     * @return The main roll, or null if there is none
+     */
+    protected GTRoll getMainRoll(GTBill bill) {
+        IntArrayList rollSymbols = bill.getRollSymbols();
+        if (rollSymbols == null) {
             return null;
         }
 
-        String mainRollId = null;
-        for (String rid : bill.getRollIds()) {
-            String result = this.rolls.get(rid).getProperty("result");
-            if (result.equals("Bill Passed")) {
-                mainRollId = rid;
+        GTRoll mainRoll = null;
+        for (int ii = 0; ii < rollSymbols.size(); ii++) {
+            GTRoll roll = this.rollsBySymbol.get(rollSymbols.get(ii));
+            if (roll.getProperty("result").equals("Bill Passed")) {
+                mainRoll = roll;
             }
         }
 
-        if (mainRollId == null) {
-            ArrayList<String> passageRollIds = new ArrayList<String>();
-            for (String rid : bill.getRollIds()) {
-                GTRoll roll = this.rolls.get(rid);
+        if (mainRoll == null) {
+            ArrayList<GTRoll> passageRolls = new ArrayList<GTRoll>();
+            for (int ii = 0; ii < rollSymbols.size(); ii++) {
+                GTRoll roll = this.rollsBySymbol.get(rollSymbols.get(ii));
                 if (roll.getProperty("category").equals("passage")) {
-                    passageRollIds.add(rid);
+                    passageRolls.add(roll);
                 }
             }
 
-            if (passageRollIds.isEmpty()) {
+            if (passageRolls.isEmpty()) {
                 return null;
-            } else if (passageRollIds.size() == 1) {
-                mainRollId = passageRollIds.get(0);
+            } else if (passageRolls.size() == 1) {
+                mainRoll = passageRolls.get(0);
             } else {
-                for (String rid : passageRollIds) {
-                    GTRoll roll = this.rolls.get(rid);
+                for (GTRoll roll : passageRolls) {
                     if (roll.getTitle().startsWith("On Passage")) {
-                        mainRollId = rid;
+                        mainRoll = roll;
                         break;
                     }
 
@@ -1185,7 +1820,7 @@ public class GTProcessor {
             }
         }
 
-        return mainRollId;
+        return mainRoll;
     }
 
     /**
@@ -1198,6 +1833,8 @@ public class GTProcessor {
         if (verbose) {
             System.out.println("\nSelecting debates ...");
         }
+        GTEvents.SelectDebates event = new GTEvents.SelectDebates();
+        event.begin();
 
         int count = 0;
         int hcount = 0;
@@ -1205,7 +1842,8 @@ public class GTProcessor {
 
         // Debates are grouped according to bills. There might be multiple 
         // debates about the same bill.
-        HashMap<String, ArrayList<GTDebate>> groupedDebateByBill = new HashMap<String, ArrayList<GTDebate>>();
+        IntIntHashMap groupIndexByBill = new IntIntHashMap(); // bill symbol -> group
+        ArrayList<ArrayList<GTDebate>> groupedDebateByBill = new ArrayList<ArrayList<GTDebate>>();
 
         for (GTDebate debate : this.debates.values()) {
             // bill associated with this debate. A debate can be about more
@@ -1227,23 +1865,25 @@ public class GTProcessor {
 //            if (bill.getProperty("major") == null) { 
 //                continue;
 //            }
-            if (bill.getRollIds() == null) { // skip debate that has no roll-call vote
+            if (bill.getRollSymbols() == null) { // skip debate that has no roll-call vote
                 continue;
             }
             // select the main vote associated with the bill
-            String rollId = this.getMainRollId(bill);
-            if (rollId == null) { // if we can't select a main vote for this bill, discard it
+            GTRoll mainRoll = this.getMainRoll(bill);
+            if (mainRoll == null) { // if we can't select a main vote for this bill, discard it
                 continue;
             }
-            debate.setAssociatedVote(this.rolls.get(rollId));
+            String rollId = mainRoll.getId();
+            debate.setAssociatedVote(mainRoll);
 
             // group debates according to their associated bill
-            ArrayList<GTDebate> groupedDebates = groupedDebateByBill.get(billId);
-            if (groupedDebates == null) {
-                groupedDebates = new ArrayList<GTDebate>();
+            int groupIndex = groupIndexByBill.get(bill.getSymbol(), GTSymbolTable.MISSING);
+            if (groupIndex == GTSymbolTable.MISSING) {
+                groupIndex = groupedDebateByBill.size();
+                groupIndexByBill.put(bill.getSymbol(), groupIndex, GTSymbolTable.MISSING);
+                groupedDebateByBill.add(new ArrayList<GTDebate>());
             }
-            groupedDebates.add(debate);
-            groupedDebateByBill.put(billId, groupedDebates);
+            groupedDebateByBill.get(groupIndex).add(debate);
 
             // counts for debugging
             count++;
@@ -1277,21 +1917,15 @@ public class GTProcessor {
         hcount = 0;
         scount = 0;
         ArrayList<GTDebate> selectedDebates = new ArrayList<GTDebate>();
-        for (String billId : groupedDebateByBill.keySet()) {
-            ArrayList<GTDebate> groupedDebates = groupedDebateByBill.get(billId);
+        for (ArrayList<GTDebate> groupedDebates : groupedDebateByBill) {
             int yeaCount = 0;
             int nayCount = 0;
             for (GTDebate debate : groupedDebates) {
-                GTRoll roll = debate.getAssociatedRoll();
+                int column = voteMatrix.getColumn(debate.getAssociatedRoll());
                 for (GTTurn turn : debate.getTurns()) {
-                    String speakerId = turn.getSpeakerId();
-                    String vote = roll.getVote(speakerId);
-                    if (vote == null) {
-                        continue;
-                    }
-                    if (vote.equals(GTRoll.YEA)) {
+                    if (voteMatrix.isYea(turn.getSpeaker(), column)) {
                         yeaCount++;
-                    } else if (vote.equals(GTRoll.NAY)) {
+                    } else if (voteMatrix.isNay(turn.getSpeaker(), column)) {
                         nayCount++;
                     }
                 }
@@ -1314,6 +1948,8 @@ public class GTProcessor {
             }
         }
 
+        event.finish(debates.size(), selectedDebates);
+        setNumRecords("selected-debate", selectedDebates.size());
         if (verbose) {
             System.out.println("--- Done selecting. Only keep interesting debates that"
                     + " have the YeaToNayRatio in the range (0.2, 0.8). This range was"
@@ -1337,36 +1973,161 @@ public class GTProcessor {
         IOUtils.createFolder(debateTextFolder);
         IOUtils.createFolder(debateInfoFolder);
 
-        BufferedWriter writer;
         for (GTDebate debate : selectedDebates) {
-            // output debate texts
-            writer = IOUtils.getBufferedWriter(new File(debateTextFolder, debate.getId() + ".txt"));
-            for (GTTurn turn : debate.getTurns()) {
-                writer.write(turn.getSpeakerId() + ":\t" + turn.getText() + "\n");
+            writeFile(new File(debateTextFolder, debate.getId() + ".txt"), getDebateText(debate));
+            writeFile(new File(debateInfoFolder, debate.getId() + ".info"), getDebateInfo(debate));
+        }
+    }
+
+    /**
+     * Content of the text file of a debate, with one turn per line.
+     */
+    private static String getDebateText(GTDebate debate) {
+        StringBuilder str = new StringBuilder();
+        for (GTTurn turn : debate.getTurns()) {
+            str.append(turn.getSpeakerId()).append(":\t").append(turn.getText()).append("\n");
+        }
+        return str.toString();
+    }
+
+    /**
+     * Content of the info file of a debate, with its associated roll followed
+     * by one vote per line.
+     */
+    private static String getDebateInfo(GTDebate debate) {
+        StringBuilder str = new StringBuilder();
+        GTRoll roll = debate.getAssociatedRoll();
+        str.append(roll.getId()
+                + "\t" + roll.getWhere()
+                + "\t" + roll.getRoll()
+                + "\t" + roll.getBillId()
+                + "\t" + roll.getProperty("category")
+                + "\t" + roll.getProperty("result")
+                + "\t" + roll.getTitle()
+                + "\n");
+        for (int ii = 0; ii < roll.getNumVotes(); ii++) {
+            str.append(roll.getVoterId(ii)).append("\t").append(roll.getVoteAt(ii)).append("\n");
+        }
+        return str.toString();
+    }
+
+    /**
+     * Build the snapshot of the processed folder from the processed data in
+     * memory. Legislators, debates and bills are formatted as in the
+     * processed files and parsed back in memory, so that they are the same
+     * as the ones loaded from these files, without reading them.
+     *
+     * @param selectedDebates The debates output by outputSelectedDebateTurns
+     * @param debateFolder The folder the debates are output to, whose listing
+     * gives the order of the debates as loaded by inputDebates
+     * @return The snapshot
+     * @throws java.lang.Exception
+     */
+    public GTSnapshot createSnapshot(ArrayList<GTDebate> selectedDebates,
+            File debateFolder) throws Exception {
+        GTProcessor loader = new GTProcessor();
+
+        CharArrayWriter buffer = new CharArrayWriter();
+        TSVWriter writer = new TSVWriter(buffer);
+        writeLegislators(writer);
+        writer.close();
+        loader.readLegislators(new TSVReader(new CharArrayReader(buffer.toCharArray())));
+
+        HashMap<String, GTDebate> debateMap = new HashMap<String, GTDebate>();
+        for (GTDebate debate : selectedDebates) {
+            debateMap.put(debate.getId() + ".txt", loader.inputDebate(debate.getId(),
+                    debate.getId() + ".txt", getDebateText(debate), getDebateInfo(debate)));
+        }
+        ArrayList<GTDebate> debateList = new ArrayList<GTDebate>();
+        for (String filename : new File(debateFolder, "texts").list()) {
+            GTDebate debate = debateMap.get(filename);
+            if (debate == null) {
+                throw new RuntimeException("Debate file " + filename
+                        + " is not one of the selected debates");
             }
-            writer.close();
+            debateList.add(debate);
+        }
+
+        buffer.reset();
+        writer = new TSVWriter(buffer);
+        writeBills(writer);
+        writer.close();
+        HashMap<String, GTBill> billMap = loader.readBills(
+                new TSVReader(new CharArrayReader(buffer.toCharArray())));
+        buffer.reset();
+        writer = new TSVWriter(buffer);
+        writeBillSubjects(writer);
+        writer.close();
+        readBillSubjects(new TSVReader(new CharArrayReader(buffer.toCharArray())), billMap);
+        buffer.reset();
+        writer = new TSVWriter(buffer);
+        writeBillTopics(writer);
+        writer.close();
+        readBillTopics(new TSVReader(new CharArrayReader(buffer.toCharArray())), billMap);
+        for (GTBill bill : billMap.values()) {
+            bill.setSummary(getSummary(this.bills.get(bill.getId()).getSummary()));
+        }
+
+        return new GTSnapshot(loader.symbols, loader.legislators, debateList, billMap);
+    }
 
-            // output debate info
-            writer = IOUtils.getBufferedWriter(new File(debateInfoFolder, debate.getId() + ".info"));
-            GTRoll roll = debate.getAssociatedRoll();
-            writer.write(roll.getId()
-                    + "\t" + roll.getWhere()
-                    + "\t" + roll.getRoll()
-                    + "\t" + roll.getBillId()
-                    + "\t" + roll.getProperty("category")
-                    + "\t" + roll.getProperty("result")
-                    + "\t" + roll.getTitle()
-                    + "\n");
-            for (String pid : roll.getVotes().keySet()) {
-                writer.write(pid + "\t" + roll.getVote(pid) + "\n");
+    /**
+     * Debate from the content of its text and info files written by
+     * outputSelectedDebateTurns.
+     */
+    private GTDebate inputDebate(String debateId, String filename,
+            String text, String info) throws IOException {
+        GTDebate debate = new GTDebate(symbols, debateId);
+
+        // read in the debate texts
+        String[] sline;
+        int count = 0;
+        for (String line : GTTextFiles.getLines(text)) {
+            sline = GTTextFiles.split(line, ":\t");
+            if (sline.length < 2) {
+                System.out.println(line + ". " + filename);
             }
-            writer.close();
+            String lid = sline[0];
+            String turnText = sline[1];
+            GTTurn turn = new GTTurn(symbols, debateId + "_" + count, lid, turnText);
+            count++;
+
+            debate.addTurn(turn);
+        }
+
+        // read in debate metadata
+        TSVReader reader = GTTextFiles.getReader(info);
+        reader.next(); // first line
+        String rid = reader.getString(0);
+        String where = reader.getString(1);
+        int rollNum = reader.getInt(2);
+        String billId = reader.getString(3);
+        String category = reader.getString(4);
+        String result = reader.getString(5);
+        String title = reader.getString(6);
+        for (int i = 7; i < reader.getNumFields(); i++) {
+            title += " " + reader.getString(i);
+        }
+        GTRoll roll = new GTRoll(symbols, rid);
+        roll.setWhere(where);
+        roll.setBillId(billId);
+        roll.setRoll(rollNum);
+        roll.addProperty("category", category);
+        roll.addProperty("result", result);
+        roll.setTitle(title);
+
+        while (reader.next()) {
+            roll.putVote(reader.getString(0), reader.getString(1));
         }
+        reader.close();
+
+        debate.setAssociatedVote(roll);
+        return debate;
     }
 
     public ArrayList<GTDebate> inputDebates(File inputFolder) throws Exception {
         File debateTextFolder = new File(inputFolder, "texts");
-        File debateInfoFolder = new File(inputFolder, "info");
+        final File debateInfoFolder = new File(inputFolder, "info");
         if (!debateTextFolder.exists() || !debateInfoFolder.exists()) {
             throw new RuntimeException("Exception while loading debates. "
                     + debateTextFolder.getAbsolutePath()
@@ -1379,65 +2140,27 @@ public class GTProcessor {
                     + " and " + debateInfoFolder);
         }
 
+        // debates are loaded in parallel, then listed in the order of the files
         String[] filenames = debateTextFolder.list();
-        BufferedReader reader;
-        String line;
-        String[] sline;
+        final AtomicLong numBytes = new AtomicLong();
+        long startTime = System.currentTimeMillis();
+        ConcurrentHashMap<String, GTDebate> loadedDebates = parseFiles(debateTextFolder,
+                filenames, "debate", new ParallelFileParser.Parser<GTDebate>() {
+            @Override
+            public GTDebate parse(File debateTextFile) throws Exception {
+                String debateId = IOUtils.removeExtension(debateTextFile.getName());
+                File debateInfoFile = new File(debateInfoFolder, debateId + ".info");
+                String text = GTTextFiles.read(debateTextFile);
+                String info = GTTextFiles.read(debateInfoFile);
+                numBytes.addAndGet(debateTextFile.length() + debateInfoFile.length());
+                return inputDebate(debateId, debateTextFile.getName(), text, info);
+            }
+        });
         ArrayList<GTDebate> debateList = new ArrayList<GTDebate>();
         for (String filename : filenames) {
-            String debateId = IOUtils.removeExtension(filename);
-            GTDebate debate = new GTDebate(debateId);
-
-            // read in the debate texts
-            reader = IOUtils.getBufferedReader(new File(debateTextFolder, filename));
-            int count = 0;
-            while ((line = reader.readLine()) != null) {
-                sline = line.split(":\t");
-                if (sline.length < 2) {
-                    System.out.println(line + ". " + filename);
-                }
-                String lid = sline[0];
-                String text = sline[1];
-                GTTurn turn = new GTTurn(debateId + "_" + count, lid, text);
-                count++;
-
-                debate.addTurn(turn);
-            }
-            reader.close();
-
-            // read in debate metadata
-            reader = IOUtils.getBufferedReader(new File(debateInfoFolder, debateId + ".info"));
-            line = reader.readLine(); // first line
-            sline = line.split("\t");
-            String rid = sline[0];
-            String where = sline[1];
-            int rollNum = Integer.parseInt(sline[2]);
-            String billId = sline[3];
-            String category = sline[4];
-            String result = sline[5];
-            String title = sline[6];
-            for (int i = 7; i < sline.length; i++) {
-                title += " " + sline[i];
-            }
-            GTRoll roll = new GTRoll(rid);
-            roll.setWhere(where);
-            roll.setBillId(billId);
-            roll.setRoll(rollNum);
-            roll.addProperty("category", category);
-            roll.addProperty("result", result);
-            roll.setTitle(title);
-
-            while ((line = reader.readLine()) != null) {
-                sline = line.split("\t");
-                String pid = sline[0];
-                String vote = sline[1];
-                roll.putVote(pid, vote);
-            }
-            reader.close();
-
-            debate.setAssociatedVote(roll);
-            debateList.add(debate);
+            debateList.add(loadedDebates.get(filename));
         }
+        printLoadingThroughput("debate", filenames.length * 2, numBytes.get(), startTime);
 
         if (verbose) {
             System.out.println("--- Loaded " + debateList.size() + " debates");
@@ -1476,29 +2199,26 @@ public class GTProcessor {
             throw new RuntimeException("Legislator list is null");
         }
 
-        BufferedReader reader = IOUtils.getBufferedReader(file);
-        String line;
-        String[] sline;
-        reader.readLine();
+        TSVReader reader = new TSVReader(new File(file));
+        reader.next();
         int count = 0;
-        while ((line = reader.readLine()) != null) {
-            sline = line.split("\t");
-            if (sline.length == 0) {
+        while (reader.next()) {
+            if (reader.getNumFields() == 0) {
                 break;
             }
-            String icpsrId = sline[0];
-            if (icpsrId.isEmpty() || icpsrId == null) {
-                System.out.println("Skipping " + line);
+            String icpsrId = reader.getString(0);
+            if (icpsrId.isEmpty()) {
+                System.out.println("Skipping " + reader.getLine());
                 continue;
             }
 
-            String freshmen = sline[7];
-            int tpCaucus = Integer.parseInt(sline[8]);
-            int tpExpress = Integer.parseInt(sline[9]);
+            String freshmen = reader.getString(7);
+            int tpCaucus = reader.getInt(8);
+            int tpExpress = reader.getInt(9);
             double tpScore = (double)(tpCaucus + tpExpress) / 2;
-            String tp_caucus = sline[8];
-            String tp_express = sline[9];
-            String fwScore = sline[12];
+            String tp_caucus = reader.getString(8);
+            String tp_express = reader.getString(9);
+            String fwScore = reader.getString(12);
 
             GTLegislator legislator = this.icpsrLegislatorMap.get(icpsrId);
             if (legislator == null) {
@@ -1529,24 +2249,21 @@ public class GTProcessor {
             throw new RuntimeException("Legislator list is null");
         }
 
-        BufferedReader reader = IOUtils.getBufferedReader(file);
-        String line;
-        String[] sline;
-        reader.readLine(); // header
+        TSVReader reader = new TSVReader(new File(file));
+        reader.next(); // header
         int count = 0;
-        while ((line = reader.readLine()) != null) {
-            sline = line.split("\t");
-            if (sline.length == 0) {
+        while (reader.next()) {
+            if (reader.getNumFields() == 0) {
                 break;
             }
 
-            String icpsrId = sline[0];
-            String freshmen = sline[6];
-            String tp_caucus = sline[7];
-            String fw_endorsement = sline[8];
-            String tp_express = sline[9];
-            String sp_endorsement = sline[10];
-            String fwScore = sline[14];
+            String icpsrId = reader.getString(0);
+            String freshmen = reader.getString(6);
+            String tp_caucus = reader.getString(7);
+            String fw_endorsement = reader.getString(8);
+            String tp_express = reader.getString(9);
+            String sp_endorsement = reader.getString(10);
+            String fwScore = reader.getString(14);
 
             GTLegislator legislator = this.icpsrLegislatorMap.get(icpsrId);
             if (legislator == null) {
@@ -1560,8 +2277,7 @@ public class GTProcessor {
                 continue;
             }
             
-            String tpScore = sline[11];
-            double normTpScore = Double.parseDouble(tpScore) / 4;
+            double normTpScore = reader.getDouble(11) / 4;
 
             legislator.addProperty(GTLegislator.FRESHMEN, freshmen);
             legislator.addProperty(GTLegislator.TP_SCORE, Double.toString(normTpScore));
@@ -1661,6 +2377,13 @@ public class GTProcessor {
         Element docEle = dom.getDocumentElement(); //get the root element
         return docEle;
     }
+
+    protected Element getDocumentElement(InputStream in) throws Exception {
+        DocumentBuilderFactory dbf = DocumentBuilderFactory.newInstance();
+        DocumentBuilder db = dbf.newDocumentBuilder();
+        Document dom = db.parse(in);
+        return dom.getDocumentElement();
+    }
     protected static String[] stateMaps = {
         "41 AL ALABAMA",
         "81 AK ALASKA",
@@ -1,15 +1,18 @@
 package util.govtrack;
 
 import java.io.BufferedReader;
-import java.io.BufferedWriter;
 import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
 import java.util.HashMap;
-import org.w3c.dom.Element;
-import org.w3c.dom.NodeList;
+import java.util.concurrent.ConcurrentHashMap;
 import util.IOUtils;
-import util.MiscUtils;
+import util.tsv.TSVReader;
+import util.tsv.TSVWriter;
 
 /**
  * Here are some major differences of this pre-processing pipeline compared to
@@ -23,53 +26,76 @@ import util.MiscUtils;
 public class GTProcessorV2 extends GTProcessor {
 
     public static final String DATETIME = "datetime";
+    // default normalization of the text of a turn, which keeps "nbsp"
+    public static final GTTextNormalizer TEXT_NORMALIZER = new GTTextNormalizer.Builder()
+            .replace("\n", " ")
+            .delete("&")
+            .build();
+    // phrases of paragraphs that are not included in turns by default
+    public static final String[] DEFAULT_FILTERED_PHRASES = {"I yield", "nbsp", "<p>", "<em>"};
+    private static final GTTextNormalizer BILL_TEXT_MARKERS = new GTTextNormalizer.Builder()
+            .keep("nbsp")
+            .keep("<p>")
+            .keep("<em>")
+            .build();
+    // texts in bills.html when they are read from the archive
+    private HashMap<String, String> archivedBillTexts;
+    // paragraphs that are not included in turns
+    private GTPhraseFilter paragraphFilter;
 
     public GTProcessorV2() {
         super();
+        this.paragraphFilter = createDefaultParagraphFilter();
+        this.turnTextNormalizer = TEXT_NORMALIZER;
     }
 
     public GTProcessorV2(String folder, int congNum) {
         super(folder, congNum);
+        this.paragraphFilter = createDefaultParagraphFilter();
+        this.turnTextNormalizer = TEXT_NORMALIZER;
     }
 
-    // === Processing debates ==================================================
-    @Override
-    public void processDebates() {
-        File crFolder = new File(this.congressFolder, "cr");
-        if (!crFolder.exists()) {
-            throw new RuntimeException(crFolder + " not found.");
-        }
-        if (verbose) {
-            System.out.println("Processing debates " + crFolder.getAbsolutePath() + " ...");
+    private static GTPhraseFilter createDefaultParagraphFilter() {
+        GTPhraseFilter.Builder builder = new GTPhraseFilter.Builder();
+        for (String phrase : DEFAULT_FILTERED_PHRASES) {
+            builder.add(phrase);
         }
+        return builder.build();
+    }
 
-        this.debates = new HashMap<String, GTDebate>();
-        String[] debateFilenames = crFolder.list();
-
-
-        int count = 0;
-        int stepSize = MiscUtils.getRoundStepSize(debateFilenames.length, 10);
-        for (String filename : debateFilenames) {
-            if (count % stepSize == 0 && verbose) {
-                System.out.println("--- Processing debate file "
-                        + count + " / " + debateFilenames.length);
-            }
-            count++;
+    /**
+     * Set the filter of paragraphs that are not included in turns, instead of
+     * the one using DEFAULT_FILTERED_PHRASES.
+     *
+     * @param filter The filter
+     */
+    public void setParagraphFilter(GTPhraseFilter filter) {
+        this.paragraphFilter = filter;
+    }
 
-            File debateFile = new File(crFolder, filename);
-            if (debateFile.length() == 0) {
-                if (verbose) {
-                    System.out.println("--- --- Skipping empty file " + debateFile);
-                }
-                continue;
-            }
+    public GTPhraseFilter getParagraphFilter() {
+        return this.paragraphFilter;
+    }
 
-            GTDebate debate = processSingleDebate(debateFile);
-            this.debates.put(debate.getId(), debate);
-        }
+    // === Processing debates ==================================================
+    /**
+     * The reported numbers of occurrences of the filtered phrases only cover
+     * the debates parsed in this run, since debates loaded from the parse
+     * cache are not filtered again. They therefore depend on how many debates
+     * are in the cache.
+     */
+    @Override
+    public void processDebates() {
+        paragraphFilter.resetHits();
+        super.processDebates();
 
         if (verbose) {
-            System.out.println("--- Loaded " + debates.size() + " debates");
+            System.out.println("--- --- # occurrences of filtered phrases in debates parsed "
+                    + "in this run (not counting debates loaded from the parse cache):");
+            for (int ii = 0; ii < paragraphFilter.getNumPhrases(); ii++) {
+                System.out.println("--- --- --- " + paragraphFilter.getPhrase(ii)
+                        + "\t" + paragraphFilter.getHits(ii));
+            }
             int numDebatesMentioningBill = 0;
             for (GTDebate debate : debates.values()) {
                 if (debate.getBillAssociatedWith() != null) {
@@ -82,12 +108,10 @@ public class GTProcessorV2 extends GTProcessor {
     }
 
     public GTDebate processSingleDebate(File debateFile) {
-        Element docEle;
-        NodeList nodelist;
-        Element el;
         try {
-            docEle = getDocumentElement(debateFile.getAbsolutePath());
+            return parseDebate(debateFile);
         } catch (Exception e) {
+            countSkipped("debate", "invalid-xml", 1);
             if (verbose) {
                 System.out.println("--- --- Skipping problematic debate file "
                         + debateFile);
@@ -95,74 +119,76 @@ public class GTProcessorV2 extends GTProcessor {
             }
             return null;
         }
+    }
 
-        String title = docEle.getAttribute("title");
-        String where = docEle.getAttribute("where");
-        String datetime = docEle.getAttribute(DATETIME);
-        String debateId = IOUtils.removeExtension(debateFile.getName());
-        GTDebate debate = new GTDebate(debateId);
-        debate.setTitle(title);
-        debate.addProperty("where", where);
-        debate.addProperty(DATETIME, datetime);
-
-        // list of turns
-        GTTurn preTurn = null;
-        int turnCount = 0;
-        nodelist = docEle.getElementsByTagName("speaking");
-        for (int i = 0; i < nodelist.getLength(); i++) {
-            el = (Element) nodelist.item(i);
-            String speaker = el.getAttribute("speaker");
-            String topic = el.getAttribute("topic");
-
-            // get contents
-            StringBuilder text = new StringBuilder();
-            ArrayList<String> paraBillsMentioned = new ArrayList<String>();
-            NodeList nl = el.getElementsByTagName("paragraph");
-            for (int j = 0; j < nl.getLength(); j++) {
-                Element turnEle = (Element) nl.item(j);
-
-                // text
-                String paraText = turnEle.getTextContent();
-                if (filterOut(paraText)) {
-                    continue;
-                }
-                text.append(paraText).append(" ");
-
-                // bills mentioned
-                NodeList billNl = turnEle.getElementsByTagName("bill");
-                for (int ii = 0; ii < billNl.getLength(); ii++) {
-                    Element billEl = (Element) billNl.item(ii);
-                    String billType = billEl.getAttribute("type");
-                    String billNumber = billEl.getAttribute("number");
-                    String billId = billType + "-" + billNumber;
-                    paraBillsMentioned.add(billId);
-                    debate.addBillMentioned(billId);
+    @Override
+    protected GTDebate parseDebate(String debateFilename, InputStream in) throws Exception {
+        String debateId = IOUtils.removeExtension(debateFilename);
+        final GTDebate debate = new GTDebate(symbols, debateId);
+        getDebateReader().read(in, new GTDebateReader.Handler() {
+            private GTTurn preTurn = null;
+            private final GTTurn.TextNormalizer normalizer = new GTTurn.TextNormalizer() {
+                @Override
+                public String normalize(String text) {
+                    return procecessText(text);
                 }
+            };
+
+            @Override
+            public void startDebate(String title, String where, String datetime) {
+                debate.setTitle(title);
+                debate.addProperty("where", where);
+                debate.addProperty(DATETIME, datetime);
             }
 
-            // merge consecutive turns are from the same speaker
-            if (preTurn != null && preTurn.getSpeakerId().equals(speaker)) {
-                String preTurnText = preTurn.getText();
-                preTurnText += " " + text.toString();
-                preTurn.setText(preTurnText);
-                preTurn.addBillsMentioned(paraBillsMentioned);
-            } else { // or create a new turn
-                GTTurn turn = new GTTurn(
-                        debateId + "_" + turnCount,
-                        speaker,
-                        procecessText(text.toString()));
-                turn.setBillsMentioned(paraBillsMentioned);
-                if (!topic.trim().isEmpty()) {
-                    turn.addProperty("topic", topic);
+            @Override
+            public void billMentioned(String billId) {
+                // only bills mentioned in paragraphs that are kept count
+            }
+
+            @Override
+            public void speaking(String speaker, String topic,
+                    ArrayList<GTDebateReader.Paragraph> paragraphs) {
+                // get contents
+                StringBuilder text = new StringBuilder();
+                ArrayList<String> paraBillsMentioned = new ArrayList<String>();
+                for (GTDebateReader.Paragraph paragraph : paragraphs) {
+                    // text
+                    String paraText = paragraph.getText();
+                    if (filterOut(paraText)) {
+                        continue;
+                    }
+                    text.append(paraText).append(" ");
+
+                    // bills mentioned
+                    for (String billId : paragraph.getBillsMentioned()) {
+                        paraBillsMentioned.add(billId);
+                        debate.addBillMentioned(billId);
+                    }
+                }
+
+                // merge consecutive turns are from the same speaker
+                if (preTurn != null && preTurn.getSpeakerId().equals(speaker)) {
+                    preTurn.appendText(text.toString());
+                    preTurn.addBillsMentioned(paraBillsMentioned);
+                } else { // or create a new turn
+                    GTTurn turn = new GTTurn(symbols,
+                            debate.getId() + "_" + debate.getNumTurns(),
+                            speaker,
+                            text.toString(),
+                            normalizer);
+                    turn.setBillsMentioned(paraBillsMentioned);
+                    if (!topic.trim().isEmpty()) {
+                        turn.addProperty("topic", topic);
+                    }
+                    debate.addTurn(turn);
+                    preTurn = turn;
                 }
-                debate.addTurn(turn);
-                preTurn = turn;
-                turnCount++;
             }
-        }
+        });
 
         // estimate main bill mentioned for each turn
-        if (debate.getBillsMentioned().size() > 0) {
+        if (debate.getNumBillsMentioned() > 0) {
             estimateTurnMainBillMentioned(debate);
         }
 
@@ -204,117 +230,160 @@ public class GTProcessorV2 extends GTProcessor {
         }
     }
 
+    /**
+     * Whether a paragraph contains any phrase of the paragraph filter, which
+     * by default are "I yield" and bill text (see containBillText).
+     */
     protected boolean filterOut(String paraText) {
-        return paraText.contains("I yield")
-                || containBillText(paraText);
+        return paragraphFilter.matches(paraText);
     }
 
     protected String procecessText(String text) {
-        return text.replaceAll("\n", " ")
-                //                .replace("nbsp", "")
-                .replace("&", "");
+        return turnTextNormalizer.normalize(text);
     }
 
     protected boolean containBillText(String text) {
-        return text.contains("nbsp")
-                || text.contains("<p>")
-                || text.contains("<em>");
+        return BILL_TEXT_MARKERS.matches(text);
     }
     // === End processing debates ==============================================
 
     // === Start processing bills ==============================================
     @Override
     public void processBills() {
-        File billFolder = new File(this.congressFolder, "bills");
-        if (!billFolder.exists()) {
-            throw new RuntimeException(billFolder + " not found.");
+        File billTextFolder = new File(this.congressFolder, "bills.html");
+        if (!billTextFolder.exists() && archive == null) {
+            throw new RuntimeException(billTextFolder + " not found.");
         }
 
-        File billTextFolder = new File(this.congressFolder, "bills.html");
+        this.archivedBillTexts = null;
         if (!billTextFolder.exists()) {
-            throw new RuntimeException(billTextFolder + " not found.");
+            inputArchivedBillTexts();
         }
+        super.processBills();
+        this.archivedBillTexts = null;
 
         if (verbose) {
-            System.out.println("\nProcessing bills " + billFolder);
-        }
-
-        this.bills = new HashMap<String, GTBill>();
-        String[] billFilenames = billFolder.list();
-        int count = 0;
-        int stepSize = MiscUtils.getRoundStepSize(billFilenames.length, 10);
-        for (String billFilename : billFilenames) {
-            // debug
-            if (count % stepSize == 0 && verbose) {
-                System.out.println("--- Processing bill file "
-                        + count + " / " + billFilenames.length);
+            int numBillsHaveTurn = 0;
+            for (GTBill bill : this.bills.values()) {
+                if (bill.getSpeechIds() != null && bill.getSpeechIds().size() > 0) {
+                    numBillsHaveTurn++;
+                }
             }
-            count++;
+            System.out.println("--- --- # bills get mentioned: " + numBillsHaveTurn);
+        }
+    }
 
-            File billFile = new File(billFolder, billFilename);
-            File billTextFile = new File(billTextFolder, billFilename.replaceAll("xml", "txt"));
-            if (!billTextFile.exists() && verbose) {
-                System.out.println("--- --- Skipping bill " + billTextFile
-                        + ". No text found.");
+    /**
+     * Bills without a text in bills.html are skipped. This is checked after
+     * parsing rather than in parseBill, so that it does not depend on whether
+     * the bill is loaded from the parse cache.
+     */
+    @Override
+    protected boolean acceptBill(String billFilename) {
+        String billTextFilename = getBillTextFilename(billFilename);
+        if (hasBillText(billTextFilename)) {
+            return true;
+        }
+        countSkipped("bill", "no-text", 1);
+        if (verbose) {
+            System.out.println("--- --- Skipping bill " + billTextFilename
+                    + ". No text found.");
+        }
+        return false;
+    }
 
-                continue;
-            }
-            Element docEle;
-            try {
-                docEle = getDocumentElement(billFile.getAbsolutePath());
-            } catch (Exception e) {
-                if (verbose) {
-                    System.out.println("--- --- Skipping problematic bill file "
-                            + billFile);
-                    e.printStackTrace();
-                }
-                continue;
-            }
-            NodeList nodelist;
-            Element element;
-
-            // create bill
-            String billType = docEle.getAttribute("type");
-            int billNumber = Integer.parseInt(docEle.getAttribute("number"));
-            GTBill bill = new GTBill(billType, billNumber);
-
-            // titles
-            nodelist = docEle.getElementsByTagName("title");
-            for (int ii = 0; ii < nodelist.getLength(); ii++) {
-                element = (Element) nodelist.item(ii);
-                String type = element.getAttribute("type");
-                String title = element.getTextContent();
-                if (type.equals("popular")) {
-                    bill.setTitle(title);
-                } else if (type.equals("official")) {
-                    bill.setOfficialTitle(title);
-                }
-            }
+    private boolean hasBillText(String billTextFilename) {
+        return archivedBillTexts == null
+                ? new File(new File(this.congressFolder, "bills.html"), billTextFilename).exists()
+                : archivedBillTexts.containsKey(billTextFilename);
+    }
 
-            // subjects (labels) of this bill
-            ArrayList<String> subjects = new ArrayList<String>();
-            nodelist = docEle.getElementsByTagName("term");
-            for (int i = 0; i < nodelist.getLength(); i++) {
-                element = (Element) nodelist.item(i);
-                subjects.add(element.getAttribute("name"));
-            }
-            bill.setSubjects(subjects);
+    @Override
+    protected GTBill parseBill(String billFilename, InputStream in) {
+        GTBill bill = super.parseBill(billFilename, in);
+        if (bill == null) {
+            return null;
+        }
 
-            // bill summary
-            nodelist = docEle.getElementsByTagName("summary");
-            element = (Element) nodelist.item(0);
-            String summary = element.getTextContent();
-            bill.setSummary(summary);
+        // bill text, which is empty if the bill has no text (see acceptBill)
+        String billText;
+        if (archivedBillTexts == null) {
+            billText = inputBillText(getBillTextFile(new File(billFilename)));
+        } else {
+            String billTextFilename = getBillTextFilename(billFilename);
+            billText = hasBillText(billTextFilename)
+                    ? archivedBillTexts.get(billTextFilename) : "";
+        }
+        bill.setText(billText);
+        return bill;
+    }
+
+    private static String getBillTextFilename(String billFilename) {
+        return billFilename.replaceAll("xml", "txt");
+    }
 
-            // bill text
-            String billText = inputBillText(billTextFile);
-            bill.setText(billText);
+    private File getBillTextFile(File billFile) {
+        File billTextFolder = new File(this.congressFolder, "bills.html");
+        return new File(billTextFolder, getBillTextFilename(billFile.getName()));
+    }
 
-            // add bill
-            this.bills.put(bill.getId(), bill);
+    /**
+     * Load all bill texts in bills.html from the archive, since they are not
+     * stored next to the bill files.
+     */
+    private void inputArchivedBillTexts() {
+        if (verbose) {
+            System.out.println("--- Reading bills.html from " + archive.getFile());
         }
+        this.archivedBillTexts = new HashMap<String, String>();
+        try {
+            archive.read("bills.html", new GTArchive.EntryHandler() {
+                @Override
+                public void handle(String filename, InputStream in) throws Exception {
+                    BufferedReader reader = new BufferedReader(
+                            new InputStreamReader(in, "UTF-8"));
+                    archivedBillTexts.put(filename, inputBillText(reader));
+                }
+            });
+        } catch (Exception e) {
+            e.printStackTrace();
+            throw new RuntimeException("Exception while reading bills.html from "
+                    + archive.getFile());
+        }
+    }
 
-        // store the list of debate turns that discuss each bill
+    /**
+     * Parsed debates depend on the phrases of the paragraph filter.
+     */
+    @Override
+    protected String getCacheKey(String label) {
+        if (!label.equals("debate")) {
+            return super.getCacheKey(label);
+        }
+        return super.getCacheKey(label) + "\t" + paragraphFilter.getSignature();
+    }
+
+    /**
+     * Parsed bills also depend on their texts in bills.html.
+     */
+    @Override
+    protected GTParseCache.DependencyResolver getCacheDependencies(String label) {
+        if (!label.equals("bill")) {
+            return super.getCacheDependencies(label);
+        }
+        return new GTParseCache.DependencyResolver() {
+            @Override
+            public File[] getDependencies(File billFile) {
+                return new File[]{getBillTextFile(billFile)};
+            }
+        };
+    }
+
+    /**
+     * Store the list of debate turns that discuss each bill.
+     */
+    @Override
+    protected void linkBillDebates() {
         for (GTDebate debate : this.debates.values()) {
             for (GTTurn turn : debate.getTurns()) {
                 String billAssoc = turn.getBillAssociatedWith();
@@ -329,17 +398,6 @@ public class GTProcessorV2 extends GTProcessor {
                 bill.addDebateId(turn.getId());
             }
         }
-
-        if (verbose) {
-            System.out.println("--- Loaded " + this.bills.size() + " bills.");
-            int numBillsHaveTurn = 0;
-            for (GTBill bill : this.bills.values()) {
-                if (bill.getSpeechIds() != null && bill.getSpeechIds().size() > 0) {
-                    numBillsHaveTurn++;
-                }
-            }
-            System.out.println("--- --- # bills get mentioned: " + numBillsHaveTurn);
-        }
     }
 
     private String inputBillText(File file) {
@@ -349,13 +407,7 @@ public class GTProcessorV2 extends GTProcessor {
         }
         try {
             BufferedReader reader = IOUtils.getBufferedReader(file);
-            String line;
-            while ((line = reader.readLine()) != null) {
-                if (line.trim().isEmpty()) {
-                    continue;
-                }
-                str.append(line.trim()).append(" ");
-            }
+            str.append(inputBillText(reader));
             reader.close();
         } catch (IOException e) {
             e.printStackTrace();
@@ -364,6 +416,18 @@ public class GTProcessorV2 extends GTProcessor {
         }
         return str.toString();
     }
+
+    private static String inputBillText(BufferedReader reader) throws IOException {
+        StringBuilder str = new StringBuilder();
+        String line;
+        while ((line = reader.readLine()) != null) {
+            if (line.trim().isEmpty()) {
+                continue;
+            }
+            str.append(line.trim()).append(" ");
+        }
+        return str.toString();
+    }
     // =========================================================================
 
     @Override
@@ -372,12 +436,16 @@ public class GTProcessorV2 extends GTProcessor {
             System.out.println("Selecting debates ...");
             System.out.println("--- Total # debates: " + debates.size());
         }
+        GTEvents.SelectDebates event = new GTEvents.SelectDebates();
+        event.begin();
         ArrayList<GTDebate> selectedDebates = new ArrayList<GTDebate>();
         for (GTDebate debate : this.debates.values()) {
             if (debate.getNumTurns() > 1) {
                 selectedDebates.add(debate);
             }
         }
+        event.finish(debates.size(), selectedDebates);
+        setNumRecords("selected-debate", selectedDebates.size());
         if (verbose) {
             System.out.println("--- # selected debates: " + selectedDebates.size());
         }
@@ -441,13 +509,21 @@ public class GTProcessorV2 extends GTProcessor {
     // === bills I/O ===
     private void outputBillTexts(File billFolder, ArrayList<GTBill> selectedBills) throws Exception {
         System.out.println("Outputing bill texts to " + billFolder);
+        if (packedOutput) {
+            GTPackedTexts.Writer packedWriter = new GTPackedTexts.Writer(billFolder);
+            for (GTBill bill : selectedBills) {
+                packedWriter.write(bill.getId(),
+                        bill.getText().trim() + "\n" + bill.getSummary().trim());
+            }
+            packedWriter.close();
+            return;
+        }
         IOUtils.createFolder(billFolder);
+        GTPackedTexts.delete(billFolder);
 
-        BufferedWriter writer;
         for (GTBill bill : selectedBills) {
-            writer = IOUtils.getBufferedWriter(new File(billFolder, bill.getId()));
-            writer.write(bill.getText().trim() + "\n" + bill.getSummary().trim());
-            writer.close();
+            writeFile(new File(billFolder, bill.getId()),
+                    bill.getText().trim() + "\n" + bill.getSummary().trim());
         }
     }
 
@@ -459,7 +535,8 @@ public class GTProcessorV2 extends GTProcessor {
 
     public ArrayList<GTBill> inputSelectedBills(File inputFolder) throws Exception {
         File billTextFolder = new File(inputFolder, "texts");
-        if (!billTextFolder.exists()) {
+        String[] filenames = listTexts(billTextFolder);
+        if (filenames == null) {
             throw new RuntimeException("Bill text folder not found. "
                     + billTextFolder);
         }
@@ -467,22 +544,20 @@ public class GTProcessorV2 extends GTProcessor {
         if (verbose) {
             System.out.println("Loading bill turn texts from " + billTextFolder);
         }
-        BufferedReader reader;
-        String line;
+        ConcurrentHashMap<String, String> billTexts = inputTexts(billTextFolder,
+                filenames, "bill text");
         HashMap<String, GTBill> billMap = new HashMap<String, GTBill>();
         ArrayList<GTBill> billList = new ArrayList<GTBill>();
-        String[] filenames = billTextFolder.list();
         for (String filename : filenames) {
-            String type = filename.split("-")[0];
-            int number = Integer.parseInt(filename.split("-")[1]);
-            GTBill bill = new GTBill(type, number);
+            String[] sfilename = GTTextFiles.split(filename, "-");
+            String type = sfilename[0];
+            int number = Integer.parseInt(sfilename[1]);
+            GTBill bill = new GTBill(symbols, type, number);
 
             StringBuilder str = new StringBuilder();
-            reader = IOUtils.getBufferedReader(new File(billTextFolder, filename));
-            while ((line = reader.readLine()) != null) {
+            for (String line : GTTextFiles.getLines(billTexts.get(filename))) {
                 str.append(line).append(" ");
             }
-            reader.close();
             bill.setText(str.toString());
             billList.add(bill);
         }
@@ -504,33 +579,41 @@ public class GTProcessorV2 extends GTProcessor {
 
     public ArrayList<GTDebate> inputSelectedDebates(File inputFolder) throws Exception {
         File debateTextFolder = new File(inputFolder, "texts");
-        if (!debateTextFolder.exists()) {
+        String[] turnIds = listTexts(debateTextFolder);
+        if (turnIds == null) {
             throw new RuntimeException("Debate text folder not found. "
                     + debateTextFolder);
         }
+        if (!GTPackedTexts.exists(debateTextFolder)) {
+            Arrays.sort(turnIds, TURN_ID_COMPARATOR);
+        }
 
         if (verbose) {
             System.out.println("Loading debate turn texts from " + debateTextFolder);
         }
+        ConcurrentHashMap<String, String> turnTexts = inputTexts(debateTextFolder,
+                turnIds, "turn");
         HashMap<String, GTTurn> turnMap = new HashMap<String, GTTurn>();
-        BufferedReader reader;
-        String line;
         ArrayList<GTDebate> debateList = new ArrayList<GTDebate>();
-        String[] filenames = debateTextFolder.list();
-        for (String filename : filenames) {
-            GTDebate debate = new GTDebate(filename);
-            reader = IOUtils.getBufferedReader(new File(debateTextFolder, filename));
-            while ((line = reader.readLine()) != null) {
-                int idx = line.indexOf("\t");
-                String turnId = line.substring(0, idx);
-                String turnText = line.substring(idx + 1);
-                GTTurn turn = new GTTurn(turnId);
-                turn.setText(turnText);
-
-                debate.addTurn(turn);
-                turnMap.put(turnId, turn);
+        GTDebate debate = null;
+        for (String turnId : turnIds) {
+            // turns are stored in the order of their debates
+            String debateId = getDebateId(turnId);
+            if (debate == null || !debate.getId().equals(debateId)) {
+                debate = new GTDebate(symbols, debateId);
+                debateList.add(debate);
             }
-            reader.close();
+
+            String turnText = turnTexts.get(turnId);
+            // remove the line break added by outputDebateTurnText
+            if (turnText.endsWith("\n")) {
+                turnText = turnText.substring(0, turnText.length() - 1);
+            }
+            // the speaker is loaded from speakers.txt
+            GTTurn turn = new GTTurn(symbols, turnId, null, turnText);
+
+            debate.addTurn(turn);
+            turnMap.put(turnId, turn);
         }
 
         if (verbose) {
@@ -545,19 +628,42 @@ public class GTProcessorV2 extends GTProcessor {
         return debateList;
     }
 
+    /**
+     * @param turnId ID of a turn, which is the ID of its debate followed by
+     * "_" and the index of the turn in the debate
+     */
+    private static String getDebateId(String turnId) {
+        return turnId.substring(0, turnId.lastIndexOf('_'));
+    }
+
+    /**
+     * Order turns by their debates, then by their indices in the debates.
+     */
+    private static final Comparator<String> TURN_ID_COMPARATOR = new Comparator<String>() {
+        @Override
+        public int compare(String turnId1, String turnId2) {
+            int cmp = getDebateId(turnId1).compareTo(getDebateId(turnId2));
+            if (cmp != 0) {
+                return cmp;
+            }
+            return Integer.parseInt(turnId1.substring(turnId1.lastIndexOf('_') + 1))
+                    - Integer.parseInt(turnId2.substring(turnId2.lastIndexOf('_') + 1));
+        }
+    };
+
     private void outputDebateTurnSpeakers(File debateTurnSpeakerFile,
             ArrayList<GTDebate> selectedDebates) throws Exception {
         if (verbose) {
             System.out.println("Outputing debate turn speakers to " + debateTurnSpeakerFile);
         }
 
-        BufferedWriter writer = IOUtils.getBufferedWriter(debateTurnSpeakerFile);
+        TSVWriter writer = new GTTSVWriter(debateTurnSpeakerFile);
         for (GTDebate debate : selectedDebates) {
             for (int ii = 0; ii < debate.getNumTurns(); ii++) {
                 GTTurn turn = debate.getTurn(ii);
-                writer.write(turn.getId()
-                        + "\t" + turn.getSpeakerId()
-                        + "\n");
+                writer.field(turn.getId())
+                        .field(turn.getSpeakerId())
+                        .endLine();
             }
         }
         writer.close();
@@ -569,12 +675,10 @@ public class GTProcessorV2 extends GTProcessor {
             System.out.println("Inputing debate turn datetime from " + filepath);
         }
 
-        BufferedReader reader = IOUtils.getBufferedReader(filepath);
-        String line;
-        while ((line = reader.readLine()) != null) {
-            int idx = line.indexOf("\t");
-            String turnId = line.substring(0, idx);
-            String datetime = line.substring(idx + 1);
+        TSVReader reader = new TSVReader(filepath);
+        while (reader.next()) {
+            String turnId = reader.getString(0);
+            String datetime = reader.getRemainder(1);
             GTTurn turn = turnMap.get(turnId);
             turn.addProperty(DATETIME, datetime);
         }
@@ -587,13 +691,13 @@ public class GTProcessorV2 extends GTProcessor {
             System.out.println("Outputing debate datetime to " + filepath);
         }
 
-        BufferedWriter writer = IOUtils.getBufferedWriter(filepath);
+        TSVWriter writer = new GTTSVWriter(filepath);
         for (GTDebate debate : selectedDebates) {
             for (int ii = 0; ii < debate.getNumTurns(); ii++) {
                 GTTurn turn = debate.getTurn(ii);
-                writer.write(turn.getId()
-                        + "\t" + debate.getProperty(DATETIME)
-                        + "\n");
+                writer.field(turn.getId())
+                        .field(debate.getProperty(DATETIME))
+                        .endLine();
             }
         }
         writer.close();
@@ -605,12 +709,10 @@ public class GTProcessorV2 extends GTProcessor {
             System.out.println("Inputing debate turn speakers from " + debateTurnSpeakerFile);
         }
 
-        BufferedReader reader = IOUtils.getBufferedReader(debateTurnSpeakerFile);
-        String line;
-        while ((line = reader.readLine()) != null) {
-            int idx = line.indexOf("\t");
-            String turnId = line.substring(0, idx);
-            String turnSpeaker = line.substring(idx + 1);
+        TSVReader reader = new TSVReader(debateTurnSpeakerFile);
+        while (reader.next()) {
+            String turnId = reader.getString(0);
+            String turnSpeaker = reader.getRemainder(1);
             GTTurn turn = turnMap.get(turnId);
             turn.setSpeakerId(turnSpeaker);
         }
@@ -623,13 +725,13 @@ public class GTProcessorV2 extends GTProcessor {
             System.out.println("Outputing debate turn bills to " + debateTurnBillFile);
         }
 
-        BufferedWriter writer = IOUtils.getBufferedWriter(debateTurnBillFile);
+        TSVWriter writer = new GTTSVWriter(debateTurnBillFile);
         for (GTDebate debate : selectedDebates) {
             for (int ii = 0; ii < debate.getNumTurns(); ii++) {
                 GTTurn turn = debate.getTurn(ii);
-                writer.write(turn.getId()
-                        + "\t" + turn.getMainBillMentioned()
-                        + "\n");
+                writer.field(turn.getId())
+                        .field(turn.getMainBillMentioned())
+                        .endLine();
             }
         }
         writer.close();
@@ -641,12 +743,10 @@ public class GTProcessorV2 extends GTProcessor {
             System.out.println("Inputing debate turn speakers from " + debateTurnBillFile);
         }
 
-        BufferedReader reader = IOUtils.getBufferedReader(debateTurnBillFile);
-        String line;
-        while ((line = reader.readLine()) != null) {
-            int idx = line.indexOf("\t");
-            String turnId = line.substring(0, idx);
-            String turnBill = line.substring(idx + 1);
+        TSVReader reader = new TSVReader(debateTurnBillFile);
+        while (reader.next()) {
+            String turnId = reader.getString(0);
+            String turnBill = reader.getRemainder(1);
             if (turnBill.equals("null")) {
                 turnBill = null;
             }
@@ -662,28 +762,28 @@ public class GTProcessorV2 extends GTProcessor {
         if (verbose) {
             System.out.println("Outputing debate turn subject to " + debateTurnSubjFile);
         }
-        BufferedWriter writer = IOUtils.getBufferedWriter(debateTurnSubjFile);
+        TSVWriter writer = new GTTSVWriter(debateTurnSubjFile);
         for (GTDebate debate : selectedDebates) {
             for (int ii = 0; ii < debate.getNumTurns(); ii++) {
                 GTTurn turn = debate.getTurn(ii);
-                writer.write(turn.getId());
+                writer.field(turn.getId());
 
                 GTBill bill = this.bills.get(turn.getMainBillMentioned());
                 if (bill == null) {
-                    writer.write("\n");
+                    writer.endLine();
                     continue;
                 }
 
                 ArrayList<String> subjects = bill.getSubjects();
                 if (subjects == null || subjects.isEmpty()) {
-                    writer.write("\n");
+                    writer.endLine();
                     continue;
                 }
 
                 for (String subject : subjects) {
-                    writer.write("\t" + subject);
+                    writer.field(subject);
                 }
-                writer.write("\n");
+                writer.endLine();
             }
         }
         writer.close();
@@ -695,15 +795,12 @@ public class GTProcessorV2 extends GTProcessor {
             System.out.println("Inputing debate turn subject from " + debateTurnSubjFile);
         }
 
-        BufferedReader reader = IOUtils.getBufferedReader(debateTurnSubjFile);
-        String line;
-        while ((line = reader.readLine()) != null) {
-            String[] sline = line.split("\t");
-            String turnId = sline[0];
-            GTTurn turn = turnMap.get(turnId);
+        TSVReader reader = new TSVReader(debateTurnSubjFile);
+        while (reader.next()) {
+            GTTurn turn = turnMap.get(reader.getString(0));
 
-            for (int ii = 1; ii < sline.length; ii++) {
-                turn.addSubject(sline[ii]);
+            for (int ii = 1; ii < reader.getNumFields(); ii++) {
+                turn.addSubject(reader.getString(ii));
             }
         }
         reader.close();
@@ -714,15 +811,24 @@ public class GTProcessorV2 extends GTProcessor {
         if (verbose) {
             System.out.println("Outputing debate turns to " + debateTurnTextFolder);
         }
+        if (packedOutput) {
+            GTPackedTexts.Writer packedWriter = new GTPackedTexts.Writer(debateTurnTextFolder);
+            for (GTDebate debate : selectedDebates) {
+                for (int ii = 0; ii < debate.getNumTurns(); ii++) {
+                    GTTurn turn = debate.getTurn(ii);
+                    packedWriter.write(turn.getId(), turn.getText() + "\n");
+                }
+            }
+            packedWriter.close();
+            return;
+        }
         IOUtils.createFolder(debateTurnTextFolder);
+        GTPackedTexts.delete(debateTurnTextFolder);
 
-        BufferedWriter writer;
         for (GTDebate debate : selectedDebates) {
             for (int ii = 0; ii < debate.getNumTurns(); ii++) {
                 GTTurn turn = debate.getTurn(ii);
-                writer = IOUtils.getBufferedWriter(new File(debateTurnTextFolder, turn.getId()));
-                writer.write(turn.getText() + "\n");
-                writer.close();
+                writeFile(new File(debateTurnTextFolder, turn.getId()), turn.getText() + "\n");
             }
         }
     }
@@ -0,0 +1,318 @@
+package util.govtrack;
+
+import core.AbstractObject;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+
+/**
+ * Binary encoding of debates (with their turns), bills, rolls and legislators,
+ * used to store parsed objects on disk so that they can be loaded back without
+ * parsing the raw files again.
+ *
+ * Only what is read from the raw files is stored. Links between objects
+ * (e.g., the debates and rolls of a bill) are rebuilt by GTProcessor after
+ * loading. Strings are written through writeString and readString so that
+ * subclasses can change how strings are stored. Objects that are read use
+ * the symbol tables of the codec, which are those of the processor loading
+ * them.
+ *
+ * @author vietan
+ */
+public class GTRecordCodec {
+
+    // increase whenever the encoding changes so that old files are discarded
+    public static final int VERSION = 1;
+    // properties that are stored for each type of object
+    public static final String[] DEBATE_PROPERTIES = {"where", GTProcessorV2.DATETIME};
+    public static final String[] TURN_PROPERTIES = {"topic", GTProcessorV2.DATETIME};
+    public static final String[] BILL_PROPERTIES = {GTBill.MAJOR_TOPIC, GTBill.MINOR_TOPIC};
+    public static final String[] ROLL_PROPERTIES = {"category", "result"};
+    public static final String[] LEGISLATOR_PROPERTIES = {GTLegislator.NAME,
+        "nickname", GTLegislator.ICPSRID, GTLegislator.CONVOTEID, GTLegislator.FW_ID,
+        GTLegislator.NOMINATE_SCORE1, GTLegislator.NOMINATE_SCORE2,
+        GTLegislator.FRESHMEN, GTLegislator.TP_SCORE, GTLegislator.FW_SCORE,
+        GTLegislator.PRE_SCORE, GTLegislator.POS_SCORE, GTLegislator.TP_Caucus,
+        GTLegislator.FW_Endorsement, GTLegislator.TP_Express, GTLegislator.SP_Endorsement};
+    private static final String UTF8 = "UTF-8";
+    private final GTSymbols symbols;
+
+    /**
+     * @param symbols Symbol tables of the objects that are read
+     */
+    public GTRecordCodec(GTSymbols symbols) {
+        this.symbols = symbols;
+    }
+
+    /**
+     * Read and write objects of a given type.
+     */
+    public static interface RecordCodec<T> {
+
+        public void write(DataOutputStream out, T obj) throws IOException;
+
+        public T read(DataInputStream in) throws IOException;
+    }
+
+    public RecordCodec<GTDebate> getDebateCodec() {
+        return new RecordCodec<GTDebate>() {
+            @Override
+            public void write(DataOutputStream out, GTDebate debate) throws IOException {
+                writeDebate(out, debate);
+            }
+
+            @Override
+            public GTDebate read(DataInputStream in) throws IOException {
+                return readDebate(in);
+            }
+        };
+    }
+
+    public RecordCodec<GTBill> getBillCodec() {
+        return new RecordCodec<GTBill>() {
+            @Override
+            public void write(DataOutputStream out, GTBill bill) throws IOException {
+                writeBill(out, bill);
+            }
+
+            @Override
+            public GTBill read(DataInputStream in) throws IOException {
+                return readBill(in);
+            }
+        };
+    }
+
+    public RecordCodec<GTRoll> getRollCodec() {
+        return new RecordCodec<GTRoll>() {
+            @Override
+            public void write(DataOutputStream out, GTRoll roll) throws IOException {
+                writeRoll(out, roll);
+            }
+
+            @Override
+            public GTRoll read(DataInputStream in) throws IOException {
+                return readRoll(in);
+            }
+        };
+    }
+
+    // === debates ===
+    public void writeDebate(DataOutputStream out, GTDebate debate) throws IOException {
+        writeString(out, debate.getId());
+        writeString(out, debate.getTitle());
+        writeProperties(out, debate, DEBATE_PROPERTIES);
+        writeStrings(out, debate.getBillsMentioned());
+        out.writeInt(debate.getNumTurns());
+        for (GTTurn turn : debate.getTurns()) {
+            writeTurn(out, turn);
+        }
+    }
+
+    public GTDebate readDebate(DataInputStream in) throws IOException {
+        GTDebate debate = new GTDebate(symbols, readString(in));
+        debate.setTitle(readString(in));
+        readProperties(in, debate, DEBATE_PROPERTIES);
+        ArrayList<String> billsMentioned = readStrings(in);
+        for (String billId : billsMentioned) {
+            debate.addBillMentioned(billId);
+        }
+        int numTurns = in.readInt();
+        for (int ii = 0; ii < numTurns; ii++) {
+            debate.addTurn(readTurn(in));
+        }
+        return debate;
+    }
+
+    public void writeTurn(DataOutputStream out, GTTurn turn) throws IOException {
+        writeString(out, turn.getId());
+        writeString(out, turn.getSpeakerId());
+        writeString(out, turn.getText());
+        writeProperties(out, turn, TURN_PROPERTIES);
+        writeStrings(out, turn.getBillsMentioned());
+        writeString(out, turn.getMainBillMentioned());
+        writeStrings(out, turn.getSubjects());
+    }
+
+    public GTTurn readTurn(DataInputStream in) throws IOException {
+        String id = readString(in);
+        String speakerId = readString(in);
+        String text = readString(in);
+        GTTurn turn = new GTTurn(symbols, id, speakerId, text);
+        readProperties(in, turn, TURN_PROPERTIES);
+        turn.setBillsMentioned(readStrings(in));
+        turn.setMainBillMentioned(readString(in));
+        ArrayList<String> subjects = readStrings(in);
+        if (subjects != null) {
+            for (String subject : subjects) {
+                turn.addSubject(subject);
+            }
+        }
+        return turn;
+    }
+
+    // === bills ===
+    public void writeBill(DataOutputStream out, GTBill bill) throws IOException {
+        writeString(out, bill.getType());
+        out.writeInt(bill.getNumber());
+        writeString(out, bill.getTitle());
+        writeString(out, bill.getOfficialTitle());
+        writeString(out, bill.getSummary());
+        writeString(out, bill.getText());
+        writeStrings(out, bill.getSubjects());
+        writeProperties(out, bill, BILL_PROPERTIES);
+    }
+
+    public GTBill readBill(DataInputStream in) throws IOException {
+        String type = readString(in);
+        int number = in.readInt();
+        GTBill bill = new GTBill(symbols, type, number);
+        bill.setTitle(readString(in));
+        bill.setOfficialTitle(readString(in));
+        bill.setSummary(readString(in));
+        bill.setText(readString(in));
+        bill.setSubjects(readStrings(in));
+        readProperties(in, bill, BILL_PROPERTIES);
+        return bill;
+    }
+
+    // === rolls ===
+    public void writeRoll(DataOutputStream out, GTRoll roll) throws IOException {
+        writeString(out, roll.getId());
+        writeString(out, roll.getWhere());
+        out.writeInt(roll.getRoll());
+        out.writeLong(roll.getDate());
+        writeString(out, roll.getBillId());
+        writeString(out, roll.getTitle());
+        writeProperties(out, roll, ROLL_PROPERTIES);
+        out.writeInt(roll.getNumVotes());
+        for (int ii = 0; ii < roll.getNumVotes(); ii++) {
+            writeString(out, roll.getVoterId(ii));
+            writeString(out, roll.getVoteAt(ii));
+        }
+    }
+
+    public GTRoll readRoll(DataInputStream in) throws IOException {
+        GTRoll roll = new GTRoll(symbols, readString(in));
+        roll.setWhere(readString(in));
+        roll.setRoll(in.readInt());
+        roll.setDate(in.readLong());
+        roll.setBillId(readString(in));
+        roll.setTitle(readString(in));
+        readProperties(in, roll, ROLL_PROPERTIES);
+        int numVotes = in.readInt();
+        for (int ii = 0; ii < numVotes; ii++) {
+            String pid = readString(in);
+            roll.putVote(pid, readString(in));
+        }
+        return roll;
+    }
+
+    // === legislators ===
+    public void writeLegislator(DataOutputStream out, GTLegislator legislator) throws IOException {
+        writeString(out, legislator.getId());
+        writeString(out, legislator.getLastname());
+        writeString(out, legislator.getFirstname());
+        writeString(out, legislator.getMiddlename());
+        writeString(out, legislator.getParty());
+        writeString(out, legislator.getState());
+        out.writeInt(legislator.getDistrict());
+        writeString(out, legislator.getType());
+        writeProperties(out, legislator, LEGISLATOR_PROPERTIES);
+        writeStrings(out, legislator.getDebateIds());
+    }
+
+    public GTLegislator readLegislator(DataInputStream in) throws IOException {
+        String id = readString(in);
+        String lastname = readString(in);
+        String firstname = readString(in);
+        String middlename = readString(in);
+        String party = readString(in);
+        String state = readString(in);
+        int district = in.readInt();
+        GTLegislator legislator = new GTLegislator(symbols, id, lastname, firstname,
+                middlename, party, state, district);
+        legislator.setType(readString(in));
+        readProperties(in, legislator, LEGISLATOR_PROPERTIES);
+        ArrayList<String> debateIds = readStrings(in);
+        if (debateIds != null) {
+            for (String debateId : debateIds) {
+                legislator.addDebateId(debateId);
+            }
+        }
+        return legislator;
+    }
+
+    // === strings ===
+    /**
+     * Write the values of the given properties. Missing properties are
+     * written as null.
+     */
+    public void writeProperties(DataOutputStream out, AbstractObject<String> obj,
+            String[] properties) throws IOException {
+        for (String property : properties) {
+            writeString(out, obj.getProperty(property));
+        }
+    }
+
+    public void readProperties(DataInputStream in, AbstractObject<String> obj,
+            String[] properties) throws IOException {
+        for (String property : properties) {
+            String value = readString(in);
+            if (value != null) {
+                obj.addProperty(property, value);
+            }
+        }
+    }
+
+    /**
+     * Write a list of strings. A null list is written as length -1.
+     */
+    public void writeStrings(DataOutputStream out, ArrayList<String> strs) throws IOException {
+        if (strs == null) {
+            out.writeInt(-1);
+            return;
+        }
+        out.writeInt(strs.size());
+        for (String str : strs) {
+            writeString(out, str);
+        }
+    }
+
+    public ArrayList<String> readStrings(DataInputStream in) throws IOException {
+        int size = in.readInt();
+        if (size < 0) {
+            return null;
+        }
+        ArrayList<String> strs = new ArrayList<String>(size);
+        for (int ii = 0; ii < size; ii++) {
+            strs.add(readString(in));
+        }
+        return strs;
+    }
+
+    /**
+     * Write a string as its length in bytes followed by its UTF-8 bytes. A
+     * null string is written as length -1. Unlike DataOutputStream.writeUTF,
+     * this has no limit on the length of the string.
+     */
+    public void writeString(DataOutputStream out, String str) throws IOException {
+        if (str == null) {
+            out.writeInt(-1);
+            return;
+        }
+        byte[] bytes = str.getBytes(UTF8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    public String readString(DataInputStream in) throws IOException {
+        int length = in.readInt();
+        if (length < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return new String(bytes, UTF8);
+    }
+}
@@ -2,8 +2,11 @@ package util.govtrack;
 
 import core.AbstractObject;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 
 /**
+ * A roll-call vote. Votes are stored by the symbols of the legislators and of
+ * the vote values (see GTSymbols).
  *
  * @author vietan
  */
@@ -17,14 +20,28 @@ public class GTRoll extends AbstractObject<String> {
     private String title;
     private long date;
     private String billId;
-    private final HashMap<String, String> votes;
+    private final GTSymbols symbols;
+    private final int symbol;
+    // speaker symbol -> vote symbol
+    private final IntIntHashMap votes;
+    // legislator ID -> vote, built when first needed
+    private HashMap<String, String> voteMap;
     private int numYea;
     private int numNay;
     private int numNotVoting;
 
-    public GTRoll(String id) {
+    public GTRoll(GTSymbols symbols, String id) {
         super(id);
-        this.votes = new HashMap<String, String>();
+        this.symbols = symbols;
+        this.symbol = symbols.getRolls().intern(id);
+        this.votes = new IntIntHashMap();
+    }
+
+    /**
+     * @return The symbol of the roll ID
+     */
+    public int getSymbol() {
+        return this.symbol;
     }
 
     @Override
@@ -45,10 +62,12 @@ public class GTRoll extends AbstractObject<String> {
     }
 
     public void putVote(String pid, String v) {
-        this.votes.put(pid, v);
-        if (v.equals("+")) {
+        int vote = symbols.getVotes().intern(v);
+        this.votes.put(symbols.getSpeakers().intern(pid), vote, GTSymbolTable.MISSING);
+        this.voteMap = null;
+        if (vote == GTSymbols.YEA_SYMBOL) {
             numYea++;
-        } else if (v.equals("-")) {
+        } else if (vote == GTSymbols.NAY_SYMBOL) {
             numNay++;
         } else {
             numNotVoting++;
@@ -76,11 +95,61 @@ public class GTRoll extends AbstractObject<String> {
     }
 
     public String getVote(String pid) {
-        return this.votes.get(pid);
+        return getVote(symbols.getSpeakers().getSymbol(pid));
+    }
+
+    /**
+     * @param speaker Symbol of a legislator
+     * @return The vote of the legislator, or null if the legislator did not
+     * vote
+     */
+    public String getVote(int speaker) {
+        int vote = this.votes.get(speaker, GTSymbolTable.MISSING);
+        return vote == GTSymbolTable.MISSING ? null : symbols.getVotes().getName(vote);
     }
 
+    public int getNumVotes() {
+        return this.votes.size();
+    }
+
+    /**
+     * @param index Index of a vote, in the order in which votes were added
+     * @return The ID of the legislator of the vote
+     */
+    public String getVoterId(int index) {
+        return symbols.getSpeakers().getName(this.votes.getKeyAt(index));
+    }
+
+    /**
+     * @param index Index of a vote, in the order in which votes were added
+     * @return The symbol of the legislator of the vote
+     */
+    public int getVoterSymbol(int index) {
+        return this.votes.getKeyAt(index);
+    }
+
+    /**
+     * @param index Index of a vote, in the order in which votes were added
+     * @return The vote
+     */
+    public String getVoteAt(int index) {
+        return symbols.getVotes().getName(this.votes.getValueAt(index));
+    }
+
+    /**
+     * @return A map from legislator IDs to votes, in the order in which votes
+     * were added. It is built on the first call after a vote is added; votes
+     * can be iterated without it using getNumVotes, getVoterId and getVoteAt.
+     */
     public HashMap<String, String> getVotes() {
-        return this.votes;
+        if (voteMap == null) {
+            HashMap<String, String> map = new LinkedHashMap<String, String>();
+            for (int ii = 0; ii < votes.size(); ii++) {
+                map.put(getVoterId(ii), getVoteAt(ii));
+            }
+            voteMap = map;
+        }
+        return voteMap;
     }
 
     public String getTitle() {
@@ -0,0 +1,222 @@
+package util.govtrack;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+
+/**
+ * Binary snapshot of the processed legislators, debates (with their
+ * associated rolls) and bills, so that they can be loaded in one sequential
+ * read instead of from the many small files in the processed folder.
+ *
+ * The file starts with a table of all distinct strings, followed by the
+ * records, in which every string is stored as its index in the table. Speaker
+ * IDs, bill IDs, votes, subjects etc. are therefore stored only once.
+ *
+ * @author vietan
+ */
+public class GTSnapshot extends GTRecordCodec {
+
+    public static final String SNAPSHOT_FILE = "snapshot.bin";
+    private static final int MAGIC = 0x47545350;
+    private static final int BUFFER_SIZE = 1 << 16;
+    private HashMap<String, GTLegislator> legislators;
+    private ArrayList<GTDebate> debates;
+    private HashMap<String, GTBill> bills;
+    // string table
+    private HashMap<String, Integer> stringIndices;
+    private ArrayList<String> strings;
+    private boolean collectingStrings;
+    private String[] stringTable;
+
+    private GTSnapshot(GTSymbols symbols) {
+        super(symbols);
+    }
+
+    public GTSnapshot(GTSymbols symbols,
+            HashMap<String, GTLegislator> legislators,
+            ArrayList<GTDebate> debates,
+            HashMap<String, GTBill> bills) {
+        super(symbols);
+        this.legislators = legislators;
+        this.debates = debates;
+        this.bills = bills;
+    }
+
+    public HashMap<String, GTLegislator> getLegislators() {
+        return this.legislators;
+    }
+
+    public ArrayList<GTDebate> getDebates() {
+        return this.debates;
+    }
+
+    public HashMap<String, GTBill> getBills() {
+        return this.bills;
+    }
+
+    /**
+     * Write the snapshot. The records are traversed twice: once to build the
+     * string table and once to write them.
+     *
+     * @param file The snapshot file
+     * @throws java.io.IOException
+     */
+    public void write(File file) throws IOException {
+        this.stringIndices = new HashMap<String, Integer>();
+        this.strings = new ArrayList<String>();
+        this.collectingStrings = true;
+        writeRecords(new DataOutputStream(new OutputStream() {
+            @Override
+            public void write(int b) {
+            }
+
+            @Override
+            public void write(byte[] b, int off, int len) {
+            }
+        }));
+        this.collectingStrings = false;
+
+        File tempFile = new File(file.getAbsolutePath() + ".tmp");
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+                new FileOutputStream(tempFile), BUFFER_SIZE));
+        try {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(strings.size());
+            for (String str : strings) {
+                super.writeString(out, str);
+            }
+            writeRecords(out);
+        } finally {
+            out.close();
+        }
+        Files.move(tempFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+
+        this.stringIndices = null;
+        this.strings = null;
+    }
+
+    private void writeRecords(DataOutputStream out) throws IOException {
+        out.writeInt(legislators.size());
+        for (GTLegislator legislator : legislators.values()) {
+            writeLegislator(out, legislator);
+        }
+
+        out.writeInt(debates.size());
+        for (GTDebate debate : debates) {
+            writeDebate(out, debate);
+            GTRoll roll = debate.getAssociatedRoll();
+            out.writeBoolean(roll != null);
+            if (roll != null) {
+                writeRoll(out, roll);
+            }
+        }
+
+        out.writeInt(bills.size());
+        for (GTBill bill : bills.values()) {
+            writeBill(out, bill);
+        }
+    }
+
+    /**
+     * Read a snapshot.
+     *
+     * @param file The snapshot file
+     * @param symbols Symbol tables of the objects that are read, which are
+     * those of the processor using them
+     * @return The snapshot
+     * @throws java.io.IOException
+     */
+    public static GTSnapshot read(File file, GTSymbols symbols) throws IOException {
+        GTSnapshot snapshot = new GTSnapshot(symbols);
+        DataInputStream in = new DataInputStream(new BufferedInputStream(
+                new FileInputStream(file), BUFFER_SIZE));
+        try {
+            snapshot.readRecords(in);
+        } finally {
+            in.close();
+        }
+        return snapshot;
+    }
+
+    private void readRecords(DataInputStream in) throws IOException {
+        if (in.readInt() != MAGIC) {
+            throw new IOException("Not a snapshot file");
+        }
+        int version = in.readInt();
+        if (version != VERSION) {
+            throw new IOException("Unsupported snapshot version " + version);
+        }
+        int numStrings = in.readInt();
+        this.stringTable = new String[numStrings];
+        for (int ii = 0; ii < numStrings; ii++) {
+            stringTable[ii] = super.readString(in);
+        }
+
+        int numLegislators = in.readInt();
+        this.legislators = new HashMap<String, GTLegislator>();
+        for (int ii = 0; ii < numLegislators; ii++) {
+            GTLegislator legislator = readLegislator(in);
+            legislators.put(legislator.getId(), legislator);
+        }
+
+        int numDebates = in.readInt();
+        this.debates = new ArrayList<GTDebate>(numDebates);
+        for (int ii = 0; ii < numDebates; ii++) {
+            GTDebate debate = readDebate(in);
+            if (in.readBoolean()) {
+                debate.setAssociatedVote(readRoll(in));
+            }
+            debates.add(debate);
+        }
+
+        int numBills = in.readInt();
+        this.bills = new HashMap<String, GTBill>();
+        for (int ii = 0; ii < numBills; ii++) {
+            GTBill bill = readBill(in);
+            bills.put(bill.getId(), bill);
+        }
+        this.stringTable = null;
+    }
+
+    /**
+     * Write a string as its index in the string table.
+     */
+    @Override
+    public void writeString(DataOutputStream out, String str) throws IOException {
+        if (str == null) {
+            out.writeInt(-1);
+            return;
+        }
+        Integer idx = stringIndices.get(str);
+        if (idx == null) {
+            if (!collectingStrings) {
+                throw new RuntimeException("String not found in string table: " + str);
+            }
+            idx = strings.size();
+            stringIndices.put(str, idx);
+            strings.add(str);
+        }
+        out.writeInt(idx);
+    }
+
+    @Override
+    public String readString(DataInputStream in) throws IOException {
+        int idx = in.readInt();
+        if (idx < 0) {
+            return null;
+        }
+        return stringTable[idx];
+    }
+}
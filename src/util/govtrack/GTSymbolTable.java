@@ -0,0 +1,92 @@
+package util.govtrack;
+
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Map identifiers (e.g., speaker IDs, bill IDs and roll IDs) to dense integer
+ * symbols so that the model classes can store and join them using primitive
+ * maps and arrays instead of hashing strings.
+ *
+ * Symbols are assigned in the order in which identifiers are first seen,
+ * starting from 0. Each processor has its own tables (see GTSymbols).
+ * Identifiers are interned when objects are parsed; lookups of identifiers
+ * that have never been seen return -1 without adding them.
+ *
+ * Since files are parsed by multiple threads, symbols are looked up in a
+ * ConcurrentHashMap and names in an array that is replaced, never modified in
+ * place, when it grows, so that reads take no lock. Only adding a new
+ * identifier is synchronized.
+ *
+ * @author vietan
+ */
+public class GTSymbolTable {
+
+    public static final int MISSING = -1;
+    private final ConcurrentHashMap<String, Integer> symbols;
+    // names[0, size) are the identifiers of the symbols
+    private volatile String[] names;
+    private volatile int size;
+
+    public GTSymbolTable() {
+        this.symbols = new ConcurrentHashMap<String, Integer>();
+        this.names = new String[64];
+    }
+
+    /**
+     * @param name An identifier
+     * @return The symbol of the identifier, which is added if it has not been
+     * seen before
+     */
+    public int intern(String name) {
+        Integer symbol = symbols.get(name);
+        if (symbol != null) {
+            return symbol;
+        }
+        return add(name);
+    }
+
+    private synchronized int add(String name) {
+        Integer symbol = symbols.get(name);
+        if (symbol != null) {
+            return symbol;
+        }
+        int newSymbol = size;
+        String[] curNames = names;
+        if (newSymbol == curNames.length) {
+            String[] newNames = new String[curNames.length * 2];
+            System.arraycopy(curNames, 0, newNames, 0, newSymbol);
+            curNames = newNames;
+        }
+        curNames[newSymbol] = name;
+        names = curNames;
+        size = newSymbol + 1;
+        // published last, so that the name of a symbol obtained from the map
+        // can be read
+        symbols.put(name, newSymbol);
+        return newSymbol;
+    }
+
+    /**
+     * @param name An identifier
+     * @return The symbol of the identifier, or MISSING if it has not been seen
+     */
+    public int getSymbol(String name) {
+        Integer symbol = symbols.get(name);
+        return symbol == null ? MISSING : symbol;
+    }
+
+    /**
+     * @param symbol A symbol
+     * @return The identifier of the symbol
+     */
+    public String getName(int symbol) {
+        if (symbol < 0 || symbol >= size) {
+            throw new IndexOutOfBoundsException("Unknown symbol " + symbol);
+        }
+        return names[symbol];
+    }
+
+    public int size() {
+        return size;
+    }
+}
@@ -0,0 +1,58 @@
+package util.govtrack;
+
+/**
+ * Symbol tables of a processor, shared by the objects it parses or loads.
+ * Symbols of objects created with different GTSymbols cannot be compared.
+ *
+ * Outputs do not depend on the values of the symbols, which can differ
+ * between runs when files are parsed by multiple threads.
+ *
+ * @author vietan
+ */
+public class GTSymbols {
+
+    // symbols of the vote values interned first
+    public static final int YEA_SYMBOL = 0;
+    public static final int NAY_SYMBOL = 1;
+    // speaker and legislator IDs
+    private final GTSymbolTable speakers;
+    // bill IDs, which are the bill type and number (e.g., h-1234)
+    private final GTSymbolTable bills;
+    // roll IDs
+    private final GTSymbolTable rolls;
+    // vote values (e.g., + and -)
+    private final GTSymbolTable votes;
+
+    public GTSymbols() {
+        this.speakers = new GTSymbolTable();
+        this.bills = new GTSymbolTable();
+        this.rolls = new GTSymbolTable();
+        this.votes = new GTSymbolTable();
+        this.votes.intern(GTRoll.YEA);
+        this.votes.intern(GTRoll.NAY);
+    }
+
+    public GTSymbolTable getSpeakers() {
+        return this.speakers;
+    }
+
+    public GTSymbolTable getBills() {
+        return this.bills;
+    }
+
+    public GTSymbolTable getRolls() {
+        return this.rolls;
+    }
+
+    public GTSymbolTable getVotes() {
+        return this.votes;
+    }
+
+    /**
+     * Symbol of a bill from its type and number, which is the same as the
+     * symbol of its ID.
+     */
+    public int getBillSymbol(String type, int number) {
+        return bills.intern(type + "-" + number);
+    }
+}
@@ -0,0 +1,34 @@
+package util.govtrack;
+
+import java.io.File;
+import java.io.IOException;
+import util.tsv.TSVWriter;
+
+/**
+ * TSVWriter of a file written by the processing pipeline, whose writing is
+ * recorded as a GTEvents.WriteFile event.
+ *
+ * @author vietan
+ */
+public class GTTSVWriter extends TSVWriter {
+
+    private final File file;
+    private final GTEvents.WriteFile event;
+
+    /**
+     * @param file The output file, which is written in UTF-8
+     * @throws java.io.IOException
+     */
+    public GTTSVWriter(File file) throws IOException {
+        super(file);
+        this.file = file;
+        this.event = new GTEvents.WriteFile();
+        this.event.begin();
+    }
+
+    @Override
+    public void close() throws IOException {
+        super.close();
+        event.finish(file);
+    }
+}
@@ -0,0 +1,321 @@
+package util.govtrack;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import util.IOUtils;
+
+/**
+ * Text normalization compiled from a list of rules, each replacing a literal
+ * pattern (e.g., deleting "&") or an HTML tag with a replacement.
+ *
+ * The rules are applied in a single left-to-right pass over the text. At each
+ * position, the rules are looked up by the current character, and the longest
+ * matching pattern (or a tag if no literal pattern matches) is replaced. The
+ * replaced text is not scanned again. This gives the same result as applying
+ * the rules one after the other with String.replace as long as no replacement
+ * creates a pattern of another rule. A tag is the shortest text from a '<' to
+ * the next '>' on the same line, as matched by the regex \<.*?\>. Texts without
+ * any match are returned as they are.
+ *
+ * Rules can be given in code with a Builder or loaded from a file (see load),
+ * e.g., to replace the default normalizers of GTProcessor and GTDownloader.
+ *
+ * @author vietan
+ */
+public class GTTextNormalizer implements GTTurn.TextNormalizer {
+
+    private static final int ASCII_SIZE = 128;
+    // rules by their first character
+    private final Rule[][] asciiRules;
+    private final HashMap<Character, Rule[]> otherRules;
+    private final String signature;
+
+    private GTTextNormalizer(ArrayList<Rule> rules) {
+        int hash = 1;
+        for (Rule rule : rules) {
+            hash = 31 * hash + rule.pattern.hashCode();
+            hash = 31 * hash + rule.replacement.hashCode();
+            hash = 31 * hash + (rule.tag ? 1 : 0);
+        }
+        this.signature = Integer.toHexString(hash);
+        this.asciiRules = new Rule[ASCII_SIZE][];
+        this.otherRules = new HashMap<Character, Rule[]>();
+        HashMap<Character, ArrayList<Rule>> rulesByChar = new HashMap<Character, ArrayList<Rule>>();
+        for (Rule rule : rules) {
+            ArrayList<Rule> charRules = rulesByChar.get(rule.getFirstChar());
+            if (charRules == null) {
+                charRules = new ArrayList<Rule>();
+                rulesByChar.put(rule.getFirstChar(), charRules);
+            }
+            charRules.add(rule);
+        }
+        for (Character c : rulesByChar.keySet()) {
+            ArrayList<Rule> charRules = rulesByChar.get(c);
+            // longest literal patterns first, then tags
+            Collections.sort(charRules, new Comparator<Rule>() {
+                @Override
+                public int compare(Rule r1, Rule r2) {
+                    return r2.getPriority() - r1.getPriority();
+                }
+            });
+            Rule[] charRuleArray = charRules.toArray(new Rule[charRules.size()]);
+            if (c < ASCII_SIZE) {
+                asciiRules[c] = charRuleArray;
+            } else {
+                otherRules.put(c, charRuleArray);
+            }
+        }
+    }
+
+    /**
+     * Builder of a normalizer. Rules added first win over rules added later
+     * with the same pattern.
+     */
+    public static class Builder {
+
+        private final ArrayList<Rule> rules = new ArrayList<Rule>();
+
+        /**
+         * Replace every occurrence of a literal pattern.
+         */
+        public Builder replace(String pattern, String replacement) {
+            if (pattern.isEmpty()) {
+                throw new IllegalArgumentException("Empty pattern");
+            }
+            rules.add(new Rule(pattern, replacement, false));
+            return this;
+        }
+
+        /**
+         * Match a literal pattern without changing it, for use with matches().
+         */
+        public Builder keep(String pattern) {
+            return replace(pattern, pattern);
+        }
+
+        /**
+         * Delete every occurrence of a literal pattern.
+         */
+        public Builder delete(String pattern) {
+            return replace(pattern, "");
+        }
+
+        /**
+         * Replace every HTML tag.
+         */
+        public Builder replaceTags(String replacement) {
+            rules.add(new Rule("<", replacement, true));
+            return this;
+        }
+
+        public GTTextNormalizer build() {
+            return new GTTextNormalizer(new ArrayList<Rule>(rules));
+        }
+    }
+
+    /**
+     * Load rules from a file, one rule per line, in the order in which they
+     * are added to a Builder. Each line is a tab-separated action followed by
+     * its arguments:
+     *
+     * replace PATTERN REPLACEMENT, delete PATTERN, keep PATTERN or tags
+     * REPLACEMENT.
+     *
+     * In patterns and replacements, \n, \r, \t and \\ stand for a new line, a
+     * carriage return, a tab and a backslash. Empty lines and lines starting
+     * with # are skipped.
+     *
+     * @param file The rule file
+     * @return The normalizer
+     * @throws java.io.IOException
+     */
+    public static GTTextNormalizer load(File file) throws IOException {
+        Builder builder = new Builder();
+        BufferedReader reader = IOUtils.getBufferedReader(file);
+        try {
+            String line;
+            int lineNumber = 0;
+            while ((line = reader.readLine()) != null) {
+                lineNumber++;
+                if (line.isEmpty() || line.startsWith("#")) {
+                    continue;
+                }
+                String[] sline = line.split("\t", -1);
+                String action = sline[0];
+                if (action.equals("replace") && sline.length == 3) {
+                    builder.replace(unescape(sline[1]), unescape(sline[2]));
+                } else if (action.equals("delete") && sline.length == 2) {
+                    builder.delete(unescape(sline[1]));
+                } else if (action.equals("keep") && sline.length == 2) {
+                    builder.keep(unescape(sline[1]));
+                } else if (action.equals("tags") && sline.length == 2) {
+                    builder.replaceTags(unescape(sline[1]));
+                } else {
+                    throw new IOException("Invalid rule at line " + lineNumber
+                            + " of " + file + ": " + line);
+                }
+            }
+        } finally {
+            reader.close();
+        }
+        return builder.build();
+    }
+
+    private static String unescape(String str) {
+        if (str.indexOf('\\') == -1) {
+            return str;
+        }
+        StringBuilder unescaped = new StringBuilder(str.length());
+        for (int ii = 0; ii < str.length(); ii++) {
+            char c = str.charAt(ii);
+            if (c != '\\' || ii + 1 == str.length()) {
+                unescaped.append(c);
+                continue;
+            }
+            char next = str.charAt(++ii);
+            if (next == 'n') {
+                unescaped.append('\n');
+            } else if (next == 'r') {
+                unescaped.append('\r');
+            } else if (next == 't') {
+                unescaped.append('\t');
+            } else {
+                unescaped.append(next);
+            }
+        }
+        return unescaped.toString();
+    }
+
+    private static class Rule {
+
+        private final String pattern;
+        private final String replacement;
+        private final boolean tag;
+
+        Rule(String pattern, String replacement, boolean tag) {
+            this.pattern = pattern;
+            this.replacement = replacement;
+            this.tag = tag;
+        }
+
+        char getFirstChar() {
+            return pattern.charAt(0);
+        }
+
+        int getPriority() {
+            return tag ? 0 : pattern.length();
+        }
+
+        /**
+         * @return The end of the match at a position, or -1 if there is none
+         */
+        int match(String text, int start) {
+            if (!tag) {
+                return text.startsWith(pattern, start) ? start + pattern.length() : -1;
+            }
+            for (int ii = start + 1; ii < text.length(); ii++) {
+                char c = text.charAt(ii);
+                if (c == '>') {
+                    return ii + 1;
+                }
+                if (isLineTerminator(c)) {
+                    return -1;
+                }
+            }
+            return -1;
+        }
+
+        /**
+         * Characters not matched by . in a regex.
+         */
+        private static boolean isLineTerminator(char c) {
+            return c == '\n' || c == '\r' || c == '\u0085' || c == '\u2028' || c == '\u2029';
+        }
+    }
+
+    /**
+     * @return A signature of the rules, which changes when the rules do
+     */
+    public String getSignature() {
+        return this.signature;
+    }
+
+    private Rule[] getRules(char c) {
+        if (c < ASCII_SIZE) {
+            return asciiRules[c];
+        }
+        return otherRules.isEmpty() ? null : otherRules.get(c);
+    }
+
+    /**
+     * @param text The text
+     * @param start A position
+     * @return The rule matching at a position, or null if there is none. The
+     * end of the match is returned in matchEnd[0].
+     */
+    private Rule match(String text, int start, int[] matchEnd) {
+        Rule[] rules = getRules(text.charAt(start));
+        if (rules == null) {
+            return null;
+        }
+        for (Rule rule : rules) {
+            int end = rule.match(text, start);
+            if (end != -1) {
+                matchEnd[0] = end;
+                return rule;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Apply the rules to a text.
+     *
+     * @param text The text
+     * @return The normalized text
+     */
+    @Override
+    public String normalize(String text) {
+        StringBuilder str = null;
+        int[] matchEnd = new int[1];
+        int copied = 0;
+        int ii = 0;
+        while (ii < text.length()) {
+            Rule rule = match(text, ii, matchEnd);
+            if (rule == null) {
+                ii++;
+                continue;
+            }
+            if (str == null) {
+                str = new StringBuilder(text.length());
+            }
+            str.append(text, copied, ii).append(rule.replacement);
+            ii = matchEnd[0];
+            copied = ii;
+        }
+        if (str == null) {
+            return text;
+        }
+        str.append(text, copied, text.length());
+        return str.toString();
+    }
+
+    /**
+     * @param text The text
+     * @return True if any rule matches the text
+     */
+    public boolean matches(String text) {
+        int[] matchEnd = new int[1];
+        for (int ii = 0; ii < text.length(); ii++) {
+            if (match(text, ii, matchEnd) != null) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -2,33 +2,70 @@ package util.govtrack;
 
 import core.AbstractObject;
 import java.util.ArrayList;
-import java.util.HashMap;
-import util.RankingItem;
-import util.RankingItemList;
 
 /**
+ * A turn in a debate. The speaker is also stored by its symbol and bills
+ * mentioned by their symbols (see GTSymbols), together with their counts (see
+ * GTBillMentions).
+ *
+ * The text of a turn can be built from segments (e.g., when consecutive
+ * speeches of the same speaker are merged), which are only joined, and the
+ * first one normalized, when the text is needed. Since turns are read by
+ * multiple threads (e.g., when they are written by a GTWriterPool), the text
+ * is only accessed while holding the lock of the turn.
  *
  * @author vietan
  */
 public class GTTurn extends AbstractObject<String> {
 
+    private final GTSymbols symbols;
     private String speakerId;
+    private int speaker = GTSymbolTable.MISSING;
     private String text;
-    private ArrayList<String> billsMentioned;
+    // segments of the text that have not been joined yet, or null
+    private ArrayList<String> segments;
+    // normalizer of the first segment, or null if it is already normalized
+    private TextNormalizer normalizer;
+    private GTBillMentions billsMentioned;
     private String mainBillMentioned;
     private ArrayList<String> subjects;
 
-    public GTTurn(String id) {
+    public GTTurn(GTSymbols symbols, String id) {
         super(id);
+        this.symbols = symbols;
     }
 
-    public GTTurn(String id, String sid, String t) {
+    public GTTurn(GTSymbols symbols, String id, String sid, String t) {
         super(id);
-        this.speakerId = sid;
+        this.symbols = symbols;
+        setSpeakerId(sid);
         this.text = t;
         this.subjects = new ArrayList<String>();
     }
 
+    /**
+     * @param symbols Symbol tables of the speaker and bills
+     * @param id Turn ID
+     * @param sid Speaker ID
+     * @param t Text of the turn before normalization
+     * @param normalizer Normalizer applied to the text when it is needed
+     */
+    public GTTurn(GTSymbols symbols, String id, String sid, String t,
+            TextNormalizer normalizer) {
+        this(symbols, id, sid, null);
+        this.segments = new ArrayList<String>();
+        this.segments.add(t);
+        this.normalizer = normalizer;
+    }
+
+    /**
+     * Normalization of the text of a turn.
+     */
+    public static interface TextNormalizer {
+
+        public String normalize(String text);
+    }
+
     public void setMainBillMentioned(String b) {
         this.mainBillMentioned = b;
     }
@@ -56,44 +93,29 @@ public class GTTurn extends AbstractObject<String> {
      * @return The bill ID that is associated with this debate.
      */
     public String getBillAssociatedWith() {
-        if (billsMentioned.isEmpty()) {
-            return null;
-        }
-        HashMap<String, Integer> billFirstMentioned = new HashMap<String, Integer>();
-        HashMap<String, Integer> billMentionedCounts = new HashMap<String, Integer>();
-        for (int i = 0; i < billsMentioned.size(); i++) {
-            String bm = billsMentioned.get(i);
-            Integer count = billMentionedCounts.get(bm);
-            if (count == null) {
-                billMentionedCounts.put(bm, 1);
-                billFirstMentioned.put(bm, i);
-            } else {
-                billMentionedCounts.put(bm, count + 1);
-            }
-        }
-
-        RankingItemList<String> rankList = new RankingItemList<String>();
-        for (String billDiscussed : billMentionedCounts.keySet()) {
-            rankList.addRankingItem(new RankingItem<String>(
-                    billDiscussed,
-                    billMentionedCounts.get(billDiscussed),
-                    -billFirstMentioned.get(billDiscussed)));
-        }
-        rankList.sortDescending();
-        return rankList.getRankingItem(0).getObject();
+        int bill = billsMentioned.getMostMentioned();
+        return bill == GTSymbolTable.MISSING ? null : symbols.getBills().getName(bill);
     }
 
     public void addBillsMentioned(ArrayList<String> bm) {
-        for (String b : bm) {
-            this.billsMentioned.add(b);
-        }
+        this.billsMentioned.addAll(bm);
     }
 
     public void setBillsMentioned(ArrayList<String> bm) {
-        this.billsMentioned = bm;
+        this.billsMentioned = bm == null ? null : new GTBillMentions(symbols.getBills(), bm);
     }
 
+    /**
+     * @return The IDs of the bills mentioned, in order
+     */
     public ArrayList<String> getBillsMentioned() {
+        return billsMentioned == null ? null : billsMentioned.getIds();
+    }
+
+    /**
+     * @return The bills mentioned, or null if they have not been set
+     */
+    public GTBillMentions getBillMentions() {
         return this.billsMentioned;
     }
 
@@ -101,20 +123,67 @@ public class GTTurn extends AbstractObject<String> {
         return speakerId;
     }
 
+    /**
+     * @return The symbol of the speaker
+     */
+    public int getSpeaker() {
+        return speaker;
+    }
+
     public void setSpeakerId(String speakerId) {
         this.speakerId = speakerId;
+        this.speaker = speakerId == null ? GTSymbolTable.MISSING
+                : symbols.getSpeakers().intern(speakerId);
     }
 
-    public String getText() {
+    public synchronized String getText() {
+        if (segments != null) {
+            joinSegments();
+        }
         return text;
     }
 
-    public void setText(String text) {
+    public synchronized void setText(String text) {
         this.text = text;
+        this.segments = null;
+        this.normalizer = null;
+    }
+
+    /**
+     * Append a segment to the text, separated by a space. The segment is not
+     * normalized.
+     *
+     * @param segment The segment
+     */
+    public synchronized void appendText(String segment) {
+        if (segments == null) {
+            segments = new ArrayList<String>();
+            segments.add(text);
+        }
+        segments.add(segment);
+    }
+
+    private void joinSegments() {
+        String first = segments.get(0);
+        if (normalizer != null) {
+            first = normalizer.normalize(first);
+        }
+        int length = String.valueOf(first).length();
+        for (int ii = 1; ii < segments.size(); ii++) {
+            length += 1 + String.valueOf(segments.get(ii)).length();
+        }
+        StringBuilder str = new StringBuilder(length);
+        str.append(first);
+        for (int ii = 1; ii < segments.size(); ii++) {
+            str.append(" ").append(segments.get(ii));
+        }
+        this.text = str.toString();
+        this.segments = null;
+        this.normalizer = null;
     }
 
     @Override
     public String toString() {
-        return this.id + "\t" + this.speakerId + "\t" + this.text;
+        return this.id + "\t" + this.speakerId + "\t" + getText();
     }
 }
@@ -0,0 +1,193 @@
+package util.govtrack;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import util.IOUtils;
+
+/**
+ * Write output files concurrently in the background, so that the thread
+ * producing the outputs (e.g., a stage of the processing pipeline) does not
+ * wait for each file to be opened, written and closed.
+ *
+ * At most a given number of files are queued or being written at any time.
+ * Once the queue is full, write() blocks until a file is written, which
+ * bounds the memory used by pending outputs. flush() waits until all the files
+ * queued so far are written and reports files that could not be written.
+ *
+ * The threads of the pool are daemon threads, so that a pool that is not
+ * closed (e.g., when the processing fails) does not keep the JVM running.
+ * Files are only guaranteed to be written once flush() or close() returns.
+ *
+ * @author vietan
+ */
+public class GTWriterPool {
+
+    public static final int DEFAULT_QUEUE_SIZE = 1024;
+    private final ExecutorService executor;
+    private final Semaphore permits;
+    private final AtomicInteger numWritten;
+    // guarded by this
+    private int numPending;
+    private int numFailed;
+    private IOException failure;
+
+    /**
+     * @param numThreads Number of threads writing files
+     * @param queueSize Maximum number of files queued or being written
+     */
+    public GTWriterPool(int numThreads, int queueSize) {
+        this.executor = Executors.newFixedThreadPool(Math.max(1, numThreads),
+                new ThreadFactory() {
+            private final ThreadFactory factory = Executors.defaultThreadFactory();
+
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread thread = factory.newThread(r);
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        this.permits = new Semaphore(Math.max(1, queueSize));
+        this.numWritten = new AtomicInteger();
+    }
+
+    /**
+     * Content of an output file, which is written by a thread of the pool.
+     */
+    public static abstract class Output {
+
+        public abstract void write(BufferedWriter writer) throws IOException;
+    }
+
+    /**
+     * Queue a file to be written, waiting if the queue is full.
+     *
+     * @param file The file
+     * @param content The content of the file
+     * @throws java.io.IOException
+     */
+    public void write(File file, final String content) throws IOException {
+        write(file, new Output() {
+            @Override
+            public void write(BufferedWriter writer) throws IOException {
+                writer.write(content);
+            }
+        });
+    }
+
+    /**
+     * Queue a file to be written, waiting if the queue is full.
+     *
+     * @param file The file
+     * @param output Writer of the content of the file
+     * @throws java.io.IOException
+     */
+    public void write(final File file, final Output output) throws IOException {
+        try {
+            permits.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while queueing " + file);
+        }
+        synchronized (this) {
+            numPending++;
+        }
+        try {
+            executor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        GTEvents.WriteFile event = new GTEvents.WriteFile();
+                        event.begin();
+                        BufferedWriter writer = IOUtils.getBufferedWriter(file);
+                        try {
+                            output.write(writer);
+                        } finally {
+                            writer.close();
+                        }
+                        event.finish(file);
+                        numWritten.incrementAndGet();
+                    } catch (IOException e) {
+                        fail(file, e);
+                    } catch (RuntimeException e) {
+                        fail(file, new IOException(e));
+                    } finally {
+                        done();
+                    }
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            done();
+            throw new IOException("Writer pool is closed. Cannot write " + file);
+        }
+    }
+
+    private synchronized void fail(File file, IOException e) {
+        System.out.println("--- --- Failed to write " + file + ". " + e.getMessage());
+        numFailed++;
+        if (failure == null) {
+            failure = e;
+        }
+    }
+
+    private void done() {
+        permits.release();
+        synchronized (this) {
+            numPending--;
+            if (numPending == 0) {
+                notifyAll();
+            }
+        }
+    }
+
+    /**
+     * Wait until all the files queued so far are written.
+     *
+     * @throws java.io.IOException If any file queued since the last flush
+     * could not be written
+     */
+    public synchronized void flush() throws IOException {
+        while (numPending > 0) {
+            try {
+                wait();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while flushing");
+            }
+        }
+        if (failure != null) {
+            IOException e = new IOException("Failed to write " + numFailed + " files", failure);
+            failure = null;
+            numFailed = 0;
+            throw e;
+        }
+    }
+
+    /**
+     * Write the queued files and stop the threads of the pool.
+     *
+     * @throws java.io.IOException If any file could not be written
+     */
+    public void close() throws IOException {
+        try {
+            flush();
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    /**
+     * @return The number of files written so far
+     */
+    public int getNumWritten() {
+        return numWritten.get();
+    }
+}
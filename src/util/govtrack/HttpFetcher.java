@@ -0,0 +1,426 @@
+package util.govtrack;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import util.IOUtils;
+import util.MiscUtils;
+
+/**
+ * Fetch URLs with exactly one GET request each. The status code is returned to
+ * the caller together with the body, which is streamed to a BodyHandler only
+ * if the request succeeded (200 or 206). The latency of every request is
+ * recorded.
+ *
+ * Request headers can be given to send conditional (If-None-Match,
+ * If-Modified-Since) or range (Range, If-Range) requests.
+ *
+ * A fetcher can be shared by multiple threads.
+ *
+ * @author vietan
+ */
+public class HttpFetcher {
+
+    public static final int CONNECT_TIMEOUT = 30000; // in milliseconds
+    public static final int READ_TIMEOUT = 60000; // in milliseconds
+    private static final int BUFFER_SIZE = 1 << 16;
+    private final AtomicInteger numRequests = new AtomicInteger();
+    private final AtomicInteger numFailedRequests = new AtomicInteger();
+    private final AtomicLong totalLatency = new AtomicLong();
+    private final AtomicLong maxLatency = new AtomicLong();
+
+    /**
+     * Consume the body of a successful response.
+     */
+    public static interface BodyHandler<T> {
+
+        /**
+         * @param response The response, with the status code and headers but
+         * without the body yet
+         * @param in The body
+         */
+        public T handle(Response<T> response, InputStream in) throws IOException;
+    }
+
+    /**
+     * Response of a request.
+     */
+    public static class Response<T> {
+
+        private final int status;
+        private final Map<String, List<String>> headers;
+        private T body;
+        private long numBytes;
+        private long latency;
+
+        Response(int status, Map<String, List<String>> headers) {
+            this.status = status;
+            this.headers = headers;
+        }
+
+        public int getStatus() {
+            return this.status;
+        }
+
+        public boolean isOk() {
+            return this.status == HttpURLConnection.HTTP_OK;
+        }
+
+        /**
+         * @return True if the body contains only the requested range
+         */
+        public boolean isPartial() {
+            return this.status == HttpURLConnection.HTTP_PARTIAL;
+        }
+
+        /**
+         * @return True if the response has a body which has been passed to
+         * the body handler
+         */
+        public boolean hasBody() {
+            return isOk() || isPartial();
+        }
+
+        public boolean isNotModified() {
+            return this.status == HttpURLConnection.HTTP_NOT_MODIFIED;
+        }
+
+        public boolean isNotFound() {
+            return this.status == HttpURLConnection.HTTP_NOT_FOUND;
+        }
+
+        /**
+         * @return The value returned by the body handler, or null if the
+         * request did not succeed
+         */
+        public T getBody() {
+            return this.body;
+        }
+
+        /**
+         * @return Number of bytes of the body read from the connection by
+         * the body handler
+         */
+        public long getNumBytes() {
+            return this.numBytes;
+        }
+
+        /**
+         * @return Time (in milliseconds) from sending the request until the
+         * body has been handled
+         */
+        public long getLatency() {
+            return this.latency;
+        }
+
+        /**
+         * @return The first byte position of a partial body, given by the
+         * Content-Range header (e.g., bytes 100-199/200), or -1 if it is
+         * missing or invalid
+         */
+        public long getContentRangeStart() {
+            String range = getHeader("Content-Range");
+            if (range == null || !range.startsWith("bytes ")) {
+                return -1;
+            }
+            int end = range.indexOf('-');
+            if (end == -1) {
+                return -1;
+            }
+            try {
+                return Long.parseLong(range.substring("bytes ".length(), end).trim());
+            } catch (NumberFormatException e) {
+                return -1;
+            }
+        }
+
+        public String getHeader(String name) {
+            for (String key : headers.keySet()) {
+                if (key != null && key.equalsIgnoreCase(name)) {
+                    List<String> values = headers.get(key);
+                    return values.isEmpty() ? null : values.get(0);
+                }
+            }
+            return null;
+        }
+    }
+
+    /**
+     * Send a GET request. The body is passed to the handler only if the status
+     * code is 200. Otherwise, the body is discarded.
+     *
+     * @param url The URL
+     * @param handler The body handler
+     * @return The response
+     * @throws java.io.IOException If the request cannot be sent or the body
+     * cannot be read
+     */
+    public <T> Response<T> get(URL url, BodyHandler<T> handler) throws IOException {
+        return get(url, null, handler);
+    }
+
+    /**
+     * Send a GET request with additional request headers. The body is passed
+     * to the handler only if the status code is 200 or 206. Otherwise, the body
+     * is discarded.
+     *
+     * @param url The URL
+     * @param requestHeaders Request headers, can be null
+     * @param handler The body handler
+     * @return The response
+     * @throws java.io.IOException If the request cannot be sent or the body
+     * cannot be read
+     */
+    public <T> Response<T> get(URL url, Map<String, String> requestHeaders,
+            BodyHandler<T> handler) throws IOException {
+        long startTime = System.currentTimeMillis();
+        numRequests.incrementAndGet();
+        try {
+            HttpURLConnection conn = (HttpURLConnection) url.openConnection();
+            conn.setConnectTimeout(CONNECT_TIMEOUT);
+            conn.setReadTimeout(READ_TIMEOUT);
+            if (requestHeaders != null) {
+                for (Entry<String, String> header : requestHeaders.entrySet()) {
+                    conn.setRequestProperty(header.getKey(), header.getValue());
+                }
+            }
+            int status = conn.getResponseCode();
+            Response<T> response = new Response<T>(status, conn.getHeaderFields());
+
+            if (response.hasBody()) {
+                CountingInputStream in = new CountingInputStream(conn.getInputStream());
+                try {
+                    response.body = handler.handle(response, in);
+                } finally {
+                    response.numBytes = in.count;
+                    in.close();
+                }
+            } else {
+                // read the error body so that the connection can be reused
+                discard(conn.getErrorStream());
+            }
+
+            response.latency = System.currentTimeMillis() - startTime;
+            recordLatency(response.latency);
+            return response;
+        } catch (IOException e) {
+            numFailedRequests.incrementAndGet();
+            throw e;
+        }
+    }
+
+    private static void discard(InputStream in) throws IOException {
+        if (in == null) {
+            return;
+        }
+        try {
+            byte[] buffer = new byte[BUFFER_SIZE];
+            while (in.read(buffer) != -1) {
+                // discard
+            }
+        } finally {
+            in.close();
+        }
+    }
+
+    /**
+     * Count the bytes read from the body of a response.
+     */
+    private static class CountingInputStream extends FilterInputStream {
+
+        private long count;
+
+        CountingInputStream(InputStream in) {
+            super(in);
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = in.read();
+            if (b != -1) {
+                count++;
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int length = in.read(b, off, len);
+            if (length > 0) {
+                count += length;
+            }
+            return length;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            long skipped = in.skip(n);
+            count += skipped;
+            return skipped;
+        }
+    }
+
+    private void recordLatency(long latency) {
+        totalLatency.addAndGet(latency);
+        long max = maxLatency.get();
+        while (latency > max && !maxLatency.compareAndSet(max, latency)) {
+            max = maxLatency.get();
+        }
+    }
+
+    public int getNumRequests() {
+        return this.numRequests.get();
+    }
+
+    public int getNumFailedRequests() {
+        return this.numFailedRequests.get();
+    }
+
+    /**
+     * @return Average latency (in milliseconds) of requests that got a
+     * response
+     */
+    public double getAverageLatency() {
+        int numResponses = numRequests.get() - numFailedRequests.get();
+        if (numResponses == 0) {
+            return 0.0;
+        }
+        return (double) totalLatency.get() / numResponses;
+    }
+
+    public long getMaxLatency() {
+        return this.maxLatency.get();
+    }
+
+    public void printStats() {
+        System.out.println("--- # requests: " + getNumRequests()
+                + ". # failed requests: " + getNumFailedRequests()
+                + ". Avg latency: " + MiscUtils.formatDouble(getAverageLatency()) + " ms"
+                + ". Max latency: " + getMaxLatency() + " ms");
+    }
+
+    /**
+     * Thrown when a partial body does not start where the temporary file of
+     * the download ends, in which case nothing is written.
+     */
+    public static class RangeMismatchException extends IOException {
+
+        private static final long serialVersionUID = 1L;
+
+        public RangeMismatchException(String message) {
+            super(message);
+        }
+    }
+
+    // === body handlers ===
+    /**
+     * Read the body as lines of text, each followed by a new line.
+     *
+     * @return The body handler
+     */
+    public static BodyHandler<String> toText() {
+        return new BodyHandler<String>() {
+            @Override
+            public String handle(Response<String> response, InputStream in) throws IOException {
+                BufferedReader reader = new BufferedReader(new InputStreamReader(in));
+                StringBuilder str = new StringBuilder();
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    str.append(line).append("\n");
+                }
+                return str.toString();
+            }
+        };
+    }
+
+    /**
+     * Read the body into memory.
+     *
+     * @return The body handler
+     */
+    public static BodyHandler<byte[]> toBytes() {
+        return new BodyHandler<byte[]>() {
+            @Override
+            public byte[] handle(Response<byte[]> response, InputStream in) throws IOException {
+                ByteArrayOutputStream out = new ByteArrayOutputStream();
+                byte[] buffer = new byte[BUFFER_SIZE];
+                int length;
+                while ((length = in.read(buffer)) != -1) {
+                    out.write(buffer, 0, length);
+                }
+                return out.toByteArray();
+            }
+        };
+    }
+
+    /**
+     * Temporary file to which the body is written before being renamed to the
+     * output file. It is left in place if the download is interrupted, so that
+     * it can be resumed with a range request.
+     *
+     * @param outFile The output file
+     * @return The temporary file
+     */
+    public static File getPartFile(File outFile) {
+        return new File(outFile.getAbsolutePath() + ".part");
+    }
+
+    /**
+     * Stream the body to a file. The body is first written to a temporary file
+     * next to the output file, which is renamed once the body has been read
+     * completely. A partial (206) body is appended to the temporary file if
+     * its Content-Range starts at the end of the file. Otherwise, a
+     * RangeMismatchException is thrown.
+     *
+     * @param outFile The output file
+     * @return The body handler, which returns the number of bytes written
+     */
+    public static BodyHandler<Long> toFile(final File outFile) {
+        return new BodyHandler<Long>() {
+            @Override
+            public Long handle(Response<Long> response, InputStream in) throws IOException {
+                File parent = outFile.getAbsoluteFile().getParentFile();
+                if (!parent.exists()) {
+                    IOUtils.createFolder(parent);
+                }
+                File partFile = getPartFile(outFile);
+                if (response.isPartial()
+                        && response.getContentRangeStart() != partFile.length()) {
+                    throw new RangeMismatchException("Content-Range "
+                            + response.getHeader("Content-Range")
+                            + " does not start at " + partFile.length());
+                }
+                long count = 0;
+                OutputStream out = new FileOutputStream(partFile, response.isPartial());
+                try {
+                    byte[] buffer = new byte[BUFFER_SIZE];
+                    int length;
+                    while ((length = in.read(buffer)) != -1) {
+                        out.write(buffer, 0, length);
+                        count += length;
+                    }
+                } finally {
+                    out.close();
+                }
+                Files.move(partFile.toPath(), outFile.toPath(),
+                        StandardCopyOption.REPLACE_EXISTING);
+                return count;
+            }
+        };
+    }
+}
@@ -0,0 +1,149 @@
+package util.govtrack;
+
+import java.util.Arrays;
+
+/**
+ * Hash map from non-negative int keys (e.g., symbols of a GTSymbolTable) to
+ * int values, using open addressing with linear probing. Entries are also kept
+ * in insertion order, which is the order in which they are iterated using
+ * getKeyAt and getValueAt. Entries cannot be removed.
+ *
+ * @author vietan
+ */
+public class IntIntHashMap {
+
+    private static final int EMPTY = -1;
+    // slot -> index of the entry, or EMPTY
+    private int[] slots;
+    // entries in insertion order
+    private int[] keys;
+    private int[] values;
+    private int size;
+
+    public IntIntHashMap() {
+        this(8);
+    }
+
+    public IntIntHashMap(int capacity) {
+        int numSlots = 16;
+        while (numSlots < capacity * 2) {
+            numSlots <<= 1;
+        }
+        this.slots = new int[numSlots];
+        Arrays.fill(slots, EMPTY);
+        this.keys = new int[Math.max(1, capacity)];
+        this.values = new int[Math.max(1, capacity)];
+    }
+
+    private static int hash(int key) {
+        int h = key * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+
+    private int findSlot(int key) {
+        int mask = slots.length - 1;
+        int slot = hash(key) & mask;
+        while (slots[slot] != EMPTY && keys[slots[slot]] != key) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    /**
+     * @return The previous value of the key, or the default value if the key
+     * was not in the map
+     */
+    public int put(int key, int value, int defaultValue) {
+        int slot = findSlot(key);
+        int index = slots[slot];
+        if (index != EMPTY) {
+            int oldValue = values[index];
+            values[index] = value;
+            return oldValue;
+        }
+        if (size == keys.length) {
+            keys = Arrays.copyOf(keys, size * 2);
+            values = Arrays.copyOf(values, size * 2);
+        }
+        keys[size] = key;
+        values[size] = value;
+        slots[slot] = size;
+        size++;
+        if (size * 2 > slots.length) {
+            rehash();
+        }
+        return defaultValue;
+    }
+
+    /**
+     * Add a value to the value of a key, which starts from 0.
+     *
+     * @return The new value
+     */
+    public int increment(int key, int delta) {
+        int slot = findSlot(key);
+        int index = slots[slot];
+        if (index != EMPTY) {
+            values[index] += delta;
+            return values[index];
+        }
+        put(key, delta, 0);
+        return delta;
+    }
+
+    /**
+     * @return The value of the key, or the default value if the key is not in
+     * the map
+     */
+    public int get(int key, int defaultValue) {
+        int index = slots[findSlot(key)];
+        return index == EMPTY ? defaultValue : values[index];
+    }
+
+    public boolean containsKey(int key) {
+        return slots[findSlot(key)] != EMPTY;
+    }
+
+    /**
+     * @return The index of the key in insertion order, or -1 if the key is not
+     * in the map
+     */
+    public int indexOf(int key) {
+        return slots[findSlot(key)];
+    }
+
+    private void rehash() {
+        slots = new int[slots.length * 2];
+        Arrays.fill(slots, EMPTY);
+        int mask = slots.length - 1;
+        for (int ii = 0; ii < size; ii++) {
+            int slot = hash(keys[ii]) & mask;
+            while (slots[slot] != EMPTY) {
+                slot = (slot + 1) & mask;
+            }
+            slots[slot] = ii;
+        }
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * @param index Index of an entry in insertion order
+     */
+    public int getKeyAt(int index) {
+        return keys[index];
+    }
+
+    /**
+     * @param index Index of an entry in insertion order
+     */
+    public int getValueAt(int index) {
+        return values[index];
+    }
+}
@@ -0,0 +1,138 @@
+package util.govtrack;
+
+import java.io.File;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicInteger;
+import util.MiscUtils;
+
+/**
+ * Parse a list of files in a folder on a work-stealing (fork-join) pool.
+ * Results are collected into a concurrent map keyed by file name so that the
+ * caller can assemble them afterward in a deterministic order (e.g., the
+ * order of the file names).
+ *
+ * With a single thread, files are parsed one by one in the calling thread.
+ *
+ * @author vietan
+ */
+public class ParallelFileParser<T> {
+
+    // number of files a task parses before it stops splitting itself
+    public static final int GRANULARITY = 4;
+    private final int numThreads;
+    private final boolean verbose;
+
+    public ParallelFileParser(int numThreads, boolean verbose) {
+        this.numThreads = numThreads;
+        this.verbose = verbose;
+    }
+
+    public int getNumThreads() {
+        return this.numThreads;
+    }
+
+    /**
+     * Parse a single file.
+     */
+    public static interface Parser<T> {
+
+        /**
+         * @param file The file to parse
+         * @return The parsed object, or null if the file should be skipped
+         * @throws java.lang.Exception
+         */
+        public T parse(File file) throws Exception;
+    }
+
+    /**
+     * Parse files in a folder.
+     *
+     * @param folder The folder containing the files
+     * @param filenames Names of files to parse
+     * @param label Label used when reporting progress
+     * @param parser The parser
+     * @return Map from file name to the parsed object. Skipped files are not
+     * included.
+     */
+    public ConcurrentHashMap<String, T> parse(File folder, String[] filenames,
+            String label, Parser<T> parser) {
+        ConcurrentHashMap<String, T> results = new ConcurrentHashMap<String, T>();
+        ParseTask task = new ParseTask(folder, filenames, label, parser, results,
+                new AtomicInteger(), 0, filenames.length);
+        if (numThreads <= 1) {
+            task.parseRange();
+        } else {
+            ForkJoinPool pool = new ForkJoinPool(numThreads);
+            try {
+                pool.invoke(task);
+            } finally {
+                pool.shutdown();
+            }
+        }
+        return results;
+    }
+
+    private class ParseTask extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+        private final File folder;
+        private final String[] filenames;
+        private final String label;
+        private final Parser<T> parser;
+        private final ConcurrentHashMap<String, T> results;
+        private final AtomicInteger count;
+        private final int start;
+        private final int end;
+
+        ParseTask(File folder, String[] filenames, String label, Parser<T> parser,
+                ConcurrentHashMap<String, T> results, AtomicInteger count,
+                int start, int end) {
+            this.folder = folder;
+            this.filenames = filenames;
+            this.label = label;
+            this.parser = parser;
+            this.results = results;
+            this.count = count;
+            this.start = start;
+            this.end = end;
+        }
+
+        @Override
+        protected void compute() {
+            if (end - start <= GRANULARITY) {
+                parseRange();
+            } else {
+                int mid = (start + end) >>> 1;
+                invokeAll(
+                        new ParseTask(folder, filenames, label, parser, results, count, start, mid),
+                        new ParseTask(folder, filenames, label, parser, results, count, mid, end));
+            }
+        }
+
+        void parseRange() {
+            int stepSize = MiscUtils.getRoundStepSize(filenames.length, 10);
+            for (int ii = start; ii < end; ii++) {
+                int c = count.getAndIncrement();
+                if (c % stepSize == 0 && verbose) {
+                    System.out.println("--- Processing " + label + " file "
+                            + c + " / " + filenames.length);
+                }
+
+                T result;
+                try {
+                    result = parser.parse(new File(folder, filenames[ii]));
+                } catch (RuntimeException e) {
+                    throw e;
+                } catch (Exception e) {
+                    throw new RuntimeException("Exception while parsing "
+                            + new File(folder, filenames[ii]), e);
+                }
+                if (result != null) {
+                    results.put(filenames[ii], result);
+                }
+            }
+        }
+    }
+}
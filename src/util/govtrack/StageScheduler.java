@@ -0,0 +1,208 @@
+package util.govtrack;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Run the stages of a processing pipeline as a dependency graph. A stage is
+ * started as soon as all the stages it depends on have finished, so
+ * independent branches (e.g., loading legislators and parsing debates) run
+ * concurrently.
+ *
+ * Stages can only depend on stages that have been added before them, which
+ * keeps the graph acyclic. When more stages are ready than there are free
+ * threads, the one added first is started first. With a single thread, the
+ * stages therefore run one by one in the order they are added.
+ *
+ * @author vietan
+ */
+public class StageScheduler {
+
+    private final int numThreads;
+    private final LinkedHashMap<String, Stage> stages;
+    private final HashMap<String, ArrayList<String>> dependencies;
+    private final ConcurrentHashMap<String, Long> stageStartTimes;
+    private final ConcurrentHashMap<String, Long> stageTimes;
+    private long startTime;
+    private long totalTime;
+    private GTMetrics metrics;
+
+    public StageScheduler(int numThreads) {
+        this.numThreads = Math.max(1, numThreads);
+        this.stages = new LinkedHashMap<String, Stage>();
+        this.dependencies = new HashMap<String, ArrayList<String>>();
+        this.stageStartTimes = new ConcurrentHashMap<String, Long>();
+        this.stageTimes = new ConcurrentHashMap<String, Long>();
+    }
+
+    /**
+     * Record the wall and CPU time of each stage into a metrics registry.
+     *
+     * @param metrics The metrics registry, or null to only keep wall times
+     */
+    public void setMetrics(GTMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    /**
+     * A stage in the pipeline.
+     */
+    public static abstract class Stage {
+
+        public abstract void run() throws Exception;
+    }
+
+    /**
+     * Add a stage.
+     *
+     * @param name Name of the stage
+     * @param stage The stage
+     * @param dependencies Names of stages that have to finish before this
+     * stage starts
+     */
+    public void addStage(String name, Stage stage, String... dependencies) {
+        if (this.stages.containsKey(name)) {
+            throw new RuntimeException("Stage " + name + " already exists");
+        }
+        ArrayList<String> deps = new ArrayList<String>();
+        for (String dep : dependencies) {
+            if (!this.stages.containsKey(dep)) {
+                throw new RuntimeException("Stage " + name + " depends on stage "
+                        + dep + " which has not been added");
+            }
+            deps.add(dep);
+        }
+        this.stages.put(name, stage);
+        this.dependencies.put(name, deps);
+    }
+
+    /**
+     * Run all stages. If a stage fails, no new stage is started and the
+     * exception is rethrown once the running stages are interrupted.
+     *
+     * @throws java.lang.Exception
+     */
+    public void run() throws Exception {
+        this.startTime = System.currentTimeMillis();
+
+        HashMap<String, Integer> numRemainingDeps = new HashMap<String, Integer>();
+        HashMap<String, ArrayList<String>> dependents = new HashMap<String, ArrayList<String>>();
+        ArrayList<String> ready = new ArrayList<String>();
+        for (String name : stages.keySet()) {
+            numRemainingDeps.put(name, dependencies.get(name).size());
+            dependents.put(name, new ArrayList<String>());
+            if (dependencies.get(name).isEmpty()) {
+                ready.add(name);
+            }
+        }
+        for (String name : stages.keySet()) {
+            for (String dep : dependencies.get(name)) {
+                dependents.get(dep).add(name);
+            }
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(numThreads);
+        CompletionService<String> completionService = new ExecutorCompletionService<String>(executor);
+        try {
+            int numRunning = 0;
+            int numDone = 0;
+            while (numDone < stages.size()) {
+                // stages in ready are kept in the order they were added
+                while (numRunning < numThreads && !ready.isEmpty()) {
+                    completionService.submit(createTask(ready.remove(0)));
+                    numRunning++;
+                }
+
+                Future<String> future = completionService.take();
+                numRunning--;
+                String name;
+                try {
+                    name = future.get();
+                } catch (ExecutionException e) {
+                    Throwable cause = e.getCause();
+                    if (cause instanceof Exception) {
+                        throw (Exception) cause;
+                    }
+                    throw new RuntimeException(cause);
+                }
+                numDone++;
+
+                for (String dependent : dependents.get(name)) {
+                    int numDeps = numRemainingDeps.get(dependent) - 1;
+                    numRemainingDeps.put(dependent, numDeps);
+                    if (numDeps == 0) {
+                        insertReady(ready, dependent);
+                    }
+                }
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        this.totalTime = System.currentTimeMillis() - startTime;
+    }
+
+    private void insertReady(ArrayList<String> ready, String name) {
+        ArrayList<String> names = new ArrayList<String>(stages.keySet());
+        int order = names.indexOf(name);
+        int idx = 0;
+        while (idx < ready.size() && names.indexOf(ready.get(idx)) < order) {
+            idx++;
+        }
+        ready.add(idx, name);
+    }
+
+    private Callable<String> createTask(final String name) {
+        final Stage stage = stages.get(name);
+        return new Callable<String>() {
+            @Override
+            public String call() throws Exception {
+                long start = System.currentTimeMillis();
+                stageStartTimes.put(name, start - startTime);
+                GTMetrics.Timer timer = metrics == null ? null : metrics.startTimer(name);
+                stage.run();
+                if (timer != null) {
+                    timer.stop();
+                }
+                stageTimes.put(name, System.currentTimeMillis() - start);
+                return name;
+            }
+        };
+    }
+
+    /**
+     * @param name Name of the stage
+     * @return Wall time (in milliseconds) the stage took, or -1 if the stage
+     * has not finished
+     */
+    public long getStageTime(String name) {
+        Long time = this.stageTimes.get(name);
+        if (time == null) {
+            return -1;
+        }
+        return time;
+    }
+
+    public long getTotalTime() {
+        return this.totalTime;
+    }
+
+    public void printStageTimes() {
+        System.out.println("\nStage wall times (" + numThreads + " thread(s)). Total: "
+                + totalTime + " ms");
+        for (String name : stages.keySet()) {
+            System.out.println("--- " + name
+                    + "\tstarted at " + stageStartTimes.get(name) + " ms"
+                    + "\ttook " + getStageTime(name) + " ms"
+                    + "\tdepends on " + dependencies.get(name));
+        }
+    }
+}
@@ -0,0 +1,193 @@
+package util.govtrack;
+
+import java.util.ArrayList;
+import java.util.Collection;
+
+/**
+ * Votes of legislators (rows) on rolls (columns).
+ *
+ * Rows are the symbols of legislators at the time the matrix is built;
+ * legislators interned later have no votes. Each column
+ * stores the vote of every row as a 2-bit code (ABSENT, YEA, NAY or
+ * NOT_VOTING, which includes "present"), packed 32 per long, together with a
+ * bitset of the rows voting yea and one of the rows voting nay, so that tallies
+ * are popcounts.
+ *
+ * @author vietan
+ */
+public class VoteMatrix {
+
+    public static final int ABSENT = 0;
+    public static final int YEA = 1;
+    public static final int NAY = 2;
+    public static final int NOT_VOTING = 3;
+    private static final int CODES_PER_WORD = 32;
+    private final int numRows;
+    private final ArrayList<GTRoll> rolls;
+    // roll symbol -> column
+    private final IntIntHashMap columns;
+    private final ArrayList<long[]> codes;
+    private final ArrayList<long[]> yeas;
+    private final ArrayList<long[]> nays;
+
+    /**
+     * @param symbols Symbol tables of the rolls
+     * @param rolls The rolls, whose order is the order of the columns. Rolls
+     * that are given more than once get a single column.
+     */
+    public VoteMatrix(GTSymbols symbols, Collection<GTRoll> rolls) {
+        this.numRows = symbols.getSpeakers().size();
+        this.rolls = new ArrayList<GTRoll>();
+        this.columns = new IntIntHashMap(rolls.size());
+        this.codes = new ArrayList<long[]>();
+        this.yeas = new ArrayList<long[]>();
+        this.nays = new ArrayList<long[]>();
+        for (GTRoll roll : rolls) {
+            if (!columns.containsKey(roll.getSymbol())) {
+                addRoll(roll);
+            }
+        }
+    }
+
+    private void addRoll(GTRoll roll) {
+        long[] rollCodes = new long[(numRows + CODES_PER_WORD - 1) / CODES_PER_WORD];
+        long[] rollYeas = new long[(numRows + 63) / 64];
+        long[] rollNays = new long[(numRows + 63) / 64];
+        for (int ii = 0; ii < roll.getNumVotes(); ii++) {
+            int row = roll.getVoterSymbol(ii);
+            if (row >= numRows) {
+                continue;
+            }
+            int code = getCode(roll.getVoteAt(ii));
+            // the last vote of a legislator wins, as in GTRoll
+            int shift = (row % CODES_PER_WORD) * 2;
+            rollCodes[row / CODES_PER_WORD] = (rollCodes[row / CODES_PER_WORD] & ~(3L << shift))
+                    | ((long) code << shift);
+            if (code == YEA) {
+                rollYeas[row >> 6] |= 1L << row;
+                rollNays[row >> 6] &= ~(1L << row);
+            } else if (code == NAY) {
+                rollNays[row >> 6] |= 1L << row;
+                rollYeas[row >> 6] &= ~(1L << row);
+            } else {
+                rollYeas[row >> 6] &= ~(1L << row);
+                rollNays[row >> 6] &= ~(1L << row);
+            }
+        }
+        columns.put(roll.getSymbol(), rolls.size(), GTSymbolTable.MISSING);
+        rolls.add(roll);
+        codes.add(rollCodes);
+        yeas.add(rollYeas);
+        nays.add(rollNays);
+    }
+
+    private static int getCode(String vote) {
+        if (vote.equals(GTRoll.YEA)) {
+            return YEA;
+        } else if (vote.equals(GTRoll.NAY)) {
+            return NAY;
+        }
+        return NOT_VOTING;
+    }
+
+    public int getNumRows() {
+        return this.numRows;
+    }
+
+    public int getNumColumns() {
+        return this.rolls.size();
+    }
+
+    /**
+     * @return The column of a roll, or -1 if the roll is not in the matrix
+     */
+    public int getColumn(GTRoll roll) {
+        return columns.get(roll.getSymbol(), GTSymbolTable.MISSING);
+    }
+
+    public GTRoll getRoll(int column) {
+        return this.rolls.get(column);
+    }
+
+    /**
+     * @param legislator Symbol of a legislator
+     * @param column Column of a roll
+     * @return The vote code
+     */
+    public int getVote(int legislator, int column) {
+        if (legislator < 0 || legislator >= numRows) {
+            return ABSENT;
+        }
+        long word = codes.get(column)[legislator / CODES_PER_WORD];
+        return (int) (word >>> ((legislator % CODES_PER_WORD) * 2)) & 3;
+    }
+
+    /**
+     * @param legislator Symbol of a legislator
+     * @param column Column of a roll
+     * @return The vote as stored in the roll (e.g., + or -), or null if the
+     * legislator did not vote
+     */
+    public String getVoteValue(int legislator, int column) {
+        switch (getVote(legislator, column)) {
+            case YEA:
+                return GTRoll.YEA;
+            case NAY:
+                return GTRoll.NAY;
+            case NOT_VOTING: // not voting or present
+                return rolls.get(column).getVote(legislator);
+            default:
+                return null;
+        }
+    }
+
+    public boolean isYea(int legislator, int column) {
+        return legislator >= 0 && legislator < numRows
+                && (yeas.get(column)[legislator >> 6] & (1L << legislator)) != 0;
+    }
+
+    public boolean isNay(int legislator, int column) {
+        return legislator >= 0 && legislator < numRows
+                && (nays.get(column)[legislator >> 6] & (1L << legislator)) != 0;
+    }
+
+    public int getNumYea(int column) {
+        return count(yeas.get(column));
+    }
+
+    public int getNumNay(int column) {
+        return count(nays.get(column));
+    }
+
+    /**
+     * @return The number of legislators who voted but neither yea nor nay
+     */
+    public int getNumNotVoting(int column) {
+        int count = 0;
+        for (long word : codes.get(column)) {
+            // both bits of a code are set for NOT_VOTING
+            count += Long.bitCount(word & (word >>> 1) & 0x5555555555555555L);
+        }
+        return count;
+    }
+
+    private static int count(long[] bits) {
+        int count = 0;
+        for (long word : bits) {
+            count += Long.bitCount(word);
+        }
+        return count;
+    }
+
+    /**
+     * @param legislator Symbol of a legislator
+     * @return The vote codes of the legislator on all rolls, in column order
+     */
+    public byte[] getVoteVector(int legislator) {
+        byte[] vector = new byte[rolls.size()];
+        for (int column = 0; column < vector.length; column++) {
+            vector[column] = (byte) getVote(legislator, column);
+        }
+        return vector;
+    }
+}
@@ -0,0 +1,329 @@
+package util.tsv;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.util.Arrays;
+
+/**
+ * Read tab-separated lines without creating a String for each line and each
+ * field. Lines are read into a char buffer and split in place, and fields are
+ * returned as views of the buffer, which are only valid until the next line
+ * is read. Integer fields are parsed directly from the buffer.
+ *
+ * Lines and fields are the same as those given by BufferedReader.readLine and
+ * String.split("\t"): lines end with \n, \r or \r\n, trailing empty fields
+ * are removed, and an empty line has a single empty field.
+ *
+ * @author vietan
+ */
+public class TSVReader {
+
+    private static final int BUFFER_SIZE = 1 << 16;
+    private final Reader reader;
+    private char[] buffer;
+    // characters of the buffer that have been read from the reader
+    private int numChars;
+    private boolean eof;
+    // the current line is buffer[lineStart, lineEnd)
+    private int lineStart;
+    private int lineEnd;
+    // start of the next line
+    private int nextStart;
+    private boolean skipLF;
+    private int numFields;
+    private int[] fieldStarts;
+    private int[] fieldEnds;
+    private Field[] fields;
+    private final Field line;
+
+    public TSVReader(Reader reader) {
+        this(reader, BUFFER_SIZE);
+    }
+
+    /**
+     * @param reader The reader
+     * @param bufferSize Initial size of the buffer, which grows to fit the
+     * longest line (e.g., the length of a text read from a StringReader)
+     */
+    public TSVReader(Reader reader, int bufferSize) {
+        this.reader = reader;
+        this.buffer = new char[Math.max(16, bufferSize)];
+        this.fieldStarts = new int[16];
+        this.fieldEnds = new int[16];
+        this.fields = new Field[16];
+        this.line = new Field();
+    }
+
+    /**
+     * @param file A UTF-8 file
+     * @throws java.io.IOException
+     */
+    public TSVReader(File file) throws IOException {
+        this(new InputStreamReader(new FileInputStream(file), "UTF-8"));
+    }
+
+    /**
+     * View of a field (or a line) in the buffer.
+     */
+    private class Field implements CharSequence {
+
+        private int start;
+        private int end;
+
+        @Override
+        public int length() {
+            return end - start;
+        }
+
+        @Override
+        public char charAt(int index) {
+            return buffer[start + index];
+        }
+
+        @Override
+        public CharSequence subSequence(int s, int e) {
+            return toString().subSequence(s, e);
+        }
+
+        @Override
+        public String toString() {
+            return new String(buffer, start, end - start);
+        }
+    }
+
+    /**
+     * Read the next line.
+     *
+     * @return False if there are no more lines
+     * @throws java.io.IOException
+     */
+    public boolean next() throws IOException {
+        if (skipLF) {
+            // the previous line ended with \r
+            skipLF = false;
+            if (nextStart == numChars && !fill()) {
+                return false;
+            }
+            if (buffer[nextStart] == '\n') {
+                nextStart++;
+            }
+        }
+        // number of characters of the line scanned so far
+        int numScanned = 0;
+        while (true) {
+            int pos = nextStart + numScanned;
+            while (pos < numChars && buffer[pos] != '\n' && buffer[pos] != '\r') {
+                pos++;
+            }
+            if (pos < numChars) {
+                setLine(nextStart, pos);
+                skipLF = buffer[pos] == '\r';
+                nextStart = pos + 1;
+                return true;
+            }
+            numScanned = pos - nextStart;
+            if (!fill()) {
+                if (numScanned == 0) {
+                    return false;
+                }
+                // last line without a line break
+                setLine(nextStart, numChars);
+                nextStart = numChars;
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Read more characters, moving the unread part of the buffer (from
+     * nextStart) to the front and growing the buffer if it is full.
+     *
+     * @return False if the end of the input is reached
+     */
+    private boolean fill() throws IOException {
+        if (eof) {
+            return false;
+        }
+        int numUnread = numChars - nextStart;
+        if (nextStart > 0) {
+            System.arraycopy(buffer, nextStart, buffer, 0, numUnread);
+        } else if (numUnread == buffer.length) {
+            buffer = Arrays.copyOf(buffer, buffer.length * 2);
+        }
+        nextStart = 0;
+        numChars = numUnread;
+        int numRead = reader.read(buffer, numChars, buffer.length - numChars);
+        if (numRead < 0) {
+            eof = true;
+            return false;
+        }
+        numChars += numRead;
+        return true;
+    }
+
+    private void setLine(int start, int end) {
+        this.lineStart = start;
+        this.lineEnd = end;
+        this.numFields = 0;
+        int fieldStart = start;
+        for (int ii = start; ii < end; ii++) {
+            if (buffer[ii] == '\t') {
+                addField(fieldStart, ii);
+                fieldStart = ii + 1;
+            }
+        }
+        addField(fieldStart, end);
+        // remove trailing empty fields, unless there is no tab
+        if (numFields > 1) {
+            while (numFields > 0 && fieldStarts[numFields - 1] == fieldEnds[numFields - 1]) {
+                numFields--;
+            }
+        }
+    }
+
+    private void addField(int start, int end) {
+        if (numFields == fieldStarts.length) {
+            fieldStarts = Arrays.copyOf(fieldStarts, numFields * 2);
+            fieldEnds = Arrays.copyOf(fieldEnds, numFields * 2);
+            fields = Arrays.copyOf(fields, numFields * 2);
+        }
+        fieldStarts[numFields] = start;
+        fieldEnds[numFields] = end;
+        numFields++;
+    }
+
+    /**
+     * @return The current line, valid until the next line is read
+     */
+    public CharSequence getLine() {
+        line.start = lineStart;
+        line.end = lineEnd;
+        return line;
+    }
+
+    public int getNumFields() {
+        return numFields;
+    }
+
+    private void checkIndex(int index) {
+        if (index < 0 || index >= numFields) {
+            throw new ArrayIndexOutOfBoundsException(index);
+        }
+    }
+
+    /**
+     * @param index Index of a field
+     * @return The field, valid until the next line is read
+     */
+    public CharSequence getField(int index) {
+        checkIndex(index);
+        Field field = fields[index];
+        if (field == null) {
+            field = new Field();
+            fields[index] = field;
+        }
+        field.start = fieldStarts[index];
+        field.end = fieldEnds[index];
+        return field;
+    }
+
+    public String getString(int index) {
+        checkIndex(index);
+        return new String(buffer, fieldStarts[index], fieldEnds[index] - fieldStarts[index]);
+    }
+
+    /**
+     * Parse an integer field, as Integer.parseInt does.
+     *
+     * @param index Index of a field
+     * @return The value
+     */
+    public int getInt(int index) {
+        return (int) parseLong(index, Integer.MIN_VALUE, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Parse a long field, as Long.parseLong does.
+     *
+     * @param index Index of a field
+     * @return The value
+     */
+    public long getLong(int index) {
+        return parseLong(index, Long.MIN_VALUE, Long.MAX_VALUE);
+    }
+
+    private long parseLong(int index, long min, long max) {
+        checkIndex(index);
+        int end = fieldEnds[index];
+        int pos = fieldStarts[index];
+        boolean negative = false;
+        if (pos < end && (buffer[pos] == '-' || buffer[pos] == '+')) {
+            negative = buffer[pos] == '-';
+            pos++;
+        }
+        if (pos == end) {
+            throw new NumberFormatException("For input string: \"" + getString(index) + "\"");
+        }
+        // accumulate negatively, since |min| > max
+        long limit = negative ? min : -max;
+        long multLimit = limit / 10;
+        long value = 0;
+        for (; pos < end; pos++) {
+            int digit = Character.digit(buffer[pos], 10);
+            if (digit < 0 || value < multLimit || value * 10 < limit + digit) {
+                throw new NumberFormatException("For input string: \"" + getString(index) + "\"");
+            }
+            value = value * 10 - digit;
+        }
+        return negative ? value : -value;
+    }
+
+    /**
+     * The rest of the line from a field, including the tabs and the trailing
+     * empty fields, as the substring after the index-th tab of the line.
+     *
+     * @param index Index of a field
+     * @return The rest of the line
+     */
+    public String getRemainder(int index) {
+        int pos = lineStart;
+        for (int ii = 0; ii < index; ii++) {
+            while (pos < lineEnd && buffer[pos] != '\t') {
+                pos++;
+            }
+            if (pos == lineEnd) {
+                throw new ArrayIndexOutOfBoundsException(index);
+            }
+            pos++;
+        }
+        return new String(buffer, pos, lineEnd - pos);
+    }
+
+    public double getDouble(int index) {
+        return Double.parseDouble(getString(index));
+    }
+
+    /**
+     * @return True if a field is equal to a string
+     */
+    public boolean fieldEquals(int index, String str) {
+        checkIndex(index);
+        int length = fieldEnds[index] - fieldStarts[index];
+        if (length != str.length()) {
+            return false;
+        }
+        for (int ii = 0; ii < length; ii++) {
+            if (buffer[fieldStarts[index] + ii] != str.charAt(ii)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public void close() throws IOException {
+        reader.close();
+    }
+}
@@ -0,0 +1,101 @@
+package util.tsv;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+
+/**
+ * Write tab-separated lines. Fields are written directly to the writer as
+ * they are added, instead of concatenating a String for each line.
+ *
+ * A given writer is not buffered by TSVWriter, so it should be buffered or
+ * in memory (e.g., a CharArrayWriter).
+ *
+ * @author vietan
+ */
+public class TSVWriter {
+
+    private static final int BUFFER_SIZE = 1 << 16;
+    private final Writer writer;
+    private boolean firstField;
+
+    public TSVWriter(Writer writer) {
+        this.writer = writer;
+        this.firstField = true;
+    }
+
+    /**
+     * @param file The output file, which is written in UTF-8
+     * @throws java.io.IOException
+     */
+    public TSVWriter(File file) throws IOException {
+        this(new BufferedWriter(new OutputStreamWriter(
+                new FileOutputStream(file), "UTF-8"), BUFFER_SIZE));
+    }
+
+    private Writer startField() throws IOException {
+        if (!firstField) {
+            writer.write('\t');
+        }
+        firstField = false;
+        return writer;
+    }
+
+    /**
+     * Append a field to the current line. Null is written as "null".
+     */
+    public TSVWriter field(CharSequence value) throws IOException {
+        startField().append(value);
+        return this;
+    }
+
+    public TSVWriter field(String value) throws IOException {
+        startField().write(String.valueOf(value));
+        return this;
+    }
+
+    public TSVWriter field(int value) throws IOException {
+        startField().write(Integer.toString(value));
+        return this;
+    }
+
+    public TSVWriter field(long value) throws IOException {
+        startField().write(Long.toString(value));
+        return this;
+    }
+
+    public TSVWriter field(double value) throws IOException {
+        startField().write(Double.toString(value));
+        return this;
+    }
+
+    public TSVWriter field(boolean value) throws IOException {
+        startField().write(Boolean.toString(value));
+        return this;
+    }
+
+    /**
+     * Append a field using String.valueOf.
+     */
+    public TSVWriter field(Object value) throws IOException {
+        startField().write(String.valueOf(value));
+        return this;
+    }
+
+    /**
+     * End the current line with a line break, and start a new line.
+     *
+     * @throws java.io.IOException
+     */
+    public void endLine() throws IOException {
+        writer.write('\n');
+        firstField = true;
+    }
+
+    public void close() throws IOException {
+        writer.close();
+    }
+}